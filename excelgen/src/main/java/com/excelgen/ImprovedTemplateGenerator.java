@@ -1,9 +1,9 @@
 package com.excelgen;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.excelgen.template.StyleSpec;
+import com.excelgen.template.TemplateBuilder;
+import org.apache.poi.ss.usermodel.IndexedColors;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 /**
@@ -28,80 +28,28 @@ public class ImprovedTemplateGenerator {
      * - jx:endif to close the condition (optional but clearer)
      */
     public static void createProperJxlsTemplate(String filePath) throws IOException {
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("PersonInfo");
-
-        // Row 0: Title
-        Row row0 = sheet.createRow(0);
-        Cell titleCell = row0.createCell(0);
-        titleCell.setCellValue("Person Report");
-
-        CellStyle boldStyle = workbook.createCellStyle();
-        Font boldFont = workbook.createFont();
-        boldFont.setBold(true);
-        boldStyle.setFont(boldFont);
-        titleCell.setCellStyle(boldStyle);
-
-        // Row 1: Empty
-        sheet.createRow(1);
-
-        // Row 2: Name with JXLS expression
-        Row row2 = sheet.createRow(2);
-        row2.createCell(0).setCellValue("Name:");
-        row2.createCell(1).setCellValue("${person.name}");
-
-        // Row 3: Age with JXLS expression
-        Row row3 = sheet.createRow(3);
-        row3.createCell(0).setCellValue("Age:");
-        row3.createCell(1).setCellValue("${person.age}");
-
-        // Row 4: Empty spacer
-        sheet.createRow(4);
-
-        // Row 5: jx:if command (start of conditional block)
-        Row row5 = sheet.createRow(5);
-        Cell ifCell = row5.createCell(0);
-        ifCell.setCellValue("jx:if(condition=\"person.age < 18\", lastCell=\"B6\")");
-
-        // Mark the command cell visually
-        CellStyle commandStyle = workbook.createCellStyle();
-        commandStyle.setFillForegroundColor(IndexedColors.LIGHT_YELLOW.getIndex());
-        commandStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        ifCell.setCellStyle(commandStyle);
-
-        // Row 6: Parent name (conditional content - only shown if age < 18)
-        Row row6 = sheet.createRow(6);
-        row6.createCell(0).setCellValue("Parent:");
-        row6.createCell(1).setCellValue("${person.parentName}");
-
-        // Adjust column widths
-        sheet.setColumnWidth(0, 4000);
-        sheet.setColumnWidth(1, 6000);
-
-        // Add a cell comment to explain the jx:if command
-        Drawing<?> drawing = sheet.createDrawingPatriarch();
-        ClientAnchor anchor = workbook.getCreationHelper().createClientAnchor();
-        anchor.setCol1(ifCell.getColumnIndex());
-        anchor.setCol2(ifCell.getColumnIndex() + 2);
-        anchor.setRow1(row5.getRowNum());
-        anchor.setRow2(row5.getRowNum() + 3);
-
-        Comment comment = drawing.createCellComment(anchor);
-        RichTextString commentText = workbook.getCreationHelper().createRichTextString(
-            "JXLS Command:\n" +
-            "This row contains the jx:if condition.\n" +
-            "If condition is true, the next row(s) will be included.\n" +
-            "If false, they will be removed from output."
-        );
-        comment.setString(commentText);
-        ifCell.setCellComment(comment);
-
-        // Write to file
-        try (FileOutputStream outputStream = new FileOutputStream(filePath)) {
-            workbook.write(outputStream);
-        }
-
-        workbook.close();
+        TemplateBuilder.sheet("PersonInfo")
+                // Row 1: Title
+                .cell("A1", "Person Report", StyleSpec.BOLD)
+                .emptyRows(2, 2)
+
+                // Rows 3-4: Name and age with JXLS expressions
+                .row(3, "Name:", "${person.name}")
+                .row(4, "Age:", "${person.age}")
+                .emptyRows(5, 5)
+
+                // Row 6: jx:if command (start of conditional block), marked in light yellow
+                .cell("A6", "jx:if(condition=\"person.age < 18\", lastCell=\"B6\")",
+                        StyleSpec.fill(IndexedColors.LIGHT_YELLOW))
+                .comment("A6", "JXLS Command:\n" +
+                        "This row contains the jx:if condition.\n" +
+                        "If condition is true, the next row(s) will be included.\n" +
+                        "If false, they will be removed from output.")
+
+                // Row 7: Parent name (conditional content - only shown if age < 18)
+                .row(7, "Parent:", "${person.parentName}")
+                .columnWidths(4000, 6000)
+                .write(filePath);
 
         System.out.println("\nTemplate structure:");
         System.out.println("Row 1: Title");
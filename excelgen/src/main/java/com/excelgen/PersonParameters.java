@@ -0,0 +1,72 @@
+package com.excelgen;
+
+import java.util.function.Function;
+
+/**
+ * Builds the {@link Person} described by the form parameters shared by
+ * /processTemplate and /jobs, in the servlets as well as in the standalone
+ * server. Required parameters are validated by the caller.
+ */
+public final class PersonParameters {
+
+    private PersonParameters() {
+    }
+
+    /**
+     * @param parameters values of a form parameter by name, null when absent,
+     *                   e.g. request::getParameterValues
+     */
+    public static Person toPerson(Function<String, String[]> parameters, int age) {
+        String name = first(parameters, "name");
+        String parentName = first(parameters, "parentName");
+        String addressType = ValueInterner.shared().intern(first(parameters, "addressType"));
+        String addressLine = first(parameters, "addressLine");
+        String[] phoneTypes = parameters.apply("phoneType[]");
+        String[] phoneNos = parameters.apply("phoneNo[]");
+
+        Person person = new Person();
+        person.setName(name);
+        person.setAge(age);
+
+        // Set parent name if provided (and not empty)
+        if (parentName != null && !parentName.trim().isEmpty()) {
+            person.setParentName(parentName);
+        }
+
+        // Create and set Address if provided
+        if ((addressType != null && !addressType.trim().isEmpty()) ||
+            (addressLine != null && !addressLine.trim().isEmpty())) {
+
+            Address address = new Address();
+            address.setType(addressType);
+            address.setAddressLine(addressLine);
+            person.setAddress(address);
+        }
+
+        // Add phone numbers if provided
+        if (phoneTypes != null && phoneNos != null) {
+            int phoneLength = Math.min(phoneTypes.length, phoneNos.length);
+            System.out.println("Processing " + phoneLength + " phone numbers");
+
+            for (int i = 0; i < phoneLength; i++) {
+                String phoneType = ValueInterner.shared().intern(phoneTypes[i]);
+                String phoneNo = phoneNos[i];
+
+                // Only add if both type and number are provided and not empty
+                if ((phoneType != null && !phoneType.trim().isEmpty()) ||
+                    (phoneNo != null && !phoneNo.trim().isEmpty())) {
+
+                    System.out.println("  Adding phone " + (i + 1) + ": " + phoneType + " - " + phoneNo);
+                    person.addPhone(phoneType, phoneNo);
+                }
+            }
+        }
+
+        return person;
+    }
+
+    private static String first(Function<String, String[]> parameters, String name) {
+        String[] values = parameters.apply(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+}
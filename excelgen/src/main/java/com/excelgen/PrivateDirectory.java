@@ -0,0 +1,75 @@
+package com.excelgen;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * Directories that only the process user may write to, for state other
+ * local users must not read or plant: compiled templates, the job journal
+ * and spooled reports. A missing directory is created owner-only; an
+ * existing one must be owned by the process user and not writable by group
+ * or others.
+ */
+public final class PrivateDirectory {
+
+    private PrivateDirectory() {
+    }
+
+    /**
+     * Create the directory owner-only when missing, and check that it is a
+     * private directory of the process user
+     *
+     * @throws IOException when it is not
+     */
+    public static Path require(Path directory) throws IOException {
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            create(directory);
+        }
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS) || !isPrivate(directory)) {
+            throw new IOException(directory + " is not a private directory of the process user");
+        }
+        return directory;
+    }
+
+    /**
+     * True when path is owned by the process user and not writable by group
+     * or others
+     */
+    public static boolean isPrivate(Path path) throws IOException {
+        UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!user.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+            return false;
+        }
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+            return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        } catch (UnsupportedOperationException e) {
+            return true;
+        }
+    }
+
+    private static void create(Path directory) throws IOException {
+        if (directory.getParent() != null) {
+            Files.createDirectories(directory.getParent());
+        }
+        try {
+            Files.createDirectory(directory,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system: the user's own directory is private enough
+            Files.createDirectory(directory);
+        } catch (FileAlreadyExistsException e) {
+            // Created concurrently; checked like any existing directory
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.excelgen;
 
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.WorkbookOutput;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.jxls.common.Context;
@@ -65,8 +67,16 @@ public class TemplateCreator {
      * Process the template with person data
      */
     public static void processTemplate(String templatePath, String outputPath, Person person) throws IOException {
+        processTemplate(templatePath, outputPath, person, CompressionPolicy.DEFAULT);
+    }
+
+    /**
+     * Process the template with person data, deflating the output at the policy's level
+     */
+    public static void processTemplate(String templatePath, String outputPath, Person person,
+                                       CompressionPolicy compression) throws IOException {
         try (InputStream is = new FileInputStream(templatePath);
-             OutputStream os = new FileOutputStream(outputPath)) {
+             OutputStream os = WorkbookOutput.open(new FileOutputStream(outputPath), compression)) {
 
             Context context = new Context();
             context.putVar("person", person);
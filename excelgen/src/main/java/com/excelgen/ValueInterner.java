@@ -0,0 +1,94 @@
+package com.excelgen;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one String instance per distinct value of low-cardinality fields
+ * such as phoneType ("Mobile", "Home", "Work") and the address type, across
+ * requests. A bulk export holds millions of these values; without interning
+ * every one of them is a separate copy parsed from the request.
+ *
+ * The table is bounded: values longer than excelgen.intern.maxLength are
+ * never interned, and once excelgen.intern.maxEntries values are held new
+ * values are returned as they are. Nothing is ever evicted, so a field that
+ * turns out not to be low-cardinality costs at most the bound. The fields
+ * are listed in excelgen.intern.fields.
+ */
+public final class ValueInterner {
+
+    private static final ValueInterner SHARED = new ValueInterner(
+            Integer.getInteger("excelgen.intern.maxEntries", 4096),
+            Integer.getInteger("excelgen.intern.maxLength", 64),
+            fields(System.getProperty("excelgen.intern.fields", "phoneType,type,addressType")));
+
+    private final int maxEntries;
+    private final int maxLength;
+    private final Set<String> fields;
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ValueInterner(int maxEntries, int maxLength, Set<String> fields) {
+        this.maxEntries = maxEntries;
+        this.maxLength = maxLength;
+        this.fields = fields;
+    }
+
+    public static ValueInterner shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the shared instance equal to value, or value itself when it
+     * is too long or the table is full
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        String shared = values.get(value);
+        if (shared != null) {
+            hits.incrementAndGet();
+            return shared;
+        }
+        misses.incrementAndGet();
+        if (values.size() >= maxEntries) {
+            return value;
+        }
+        shared = values.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * True when values of the bean property are interned
+     */
+    public boolean isInterned(String property) {
+        return fields.contains(property);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static Set<String> fields(String list) {
+        Set<String> fields = new HashSet<>();
+        for (String field : list.split(",")) {
+            if (!field.trim().isEmpty()) {
+                fields.add(field.trim());
+            }
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+}
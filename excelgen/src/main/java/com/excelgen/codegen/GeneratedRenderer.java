@@ -0,0 +1,21 @@
+package com.excelgen.codegen;
+
+import com.excelgen.template.RowSink;
+
+import java.io.IOException;
+
+/**
+ * A renderer class generated by {@link RendererCompiler} for one template
+ * and root bean type. It produces the same rows as
+ * {@link com.excelgen.template.LayoutWalker}, with the template commands
+ * unrolled into plain Java and every expression turned into getter calls.
+ */
+public interface GeneratedRenderer {
+
+    /**
+     * Render the template for the root bean
+     *
+     * @return number of rows written to the sink
+     */
+    int render(Object root, RowSink sink) throws IOException;
+}
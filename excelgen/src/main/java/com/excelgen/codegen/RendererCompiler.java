@@ -0,0 +1,333 @@
+package com.excelgen.codegen;
+
+import com.excelgen.expression.NullNavigation;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateDiskCache;
+import com.excelgen.template.TemplateLayout;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates a renderer class per template and root bean type with
+ * {@link RendererGenerator}, compiles it in memory with the JDK compiler and
+ * keeps the instance for the life of the JVM.
+ *
+ * Generation is best effort: templates using expressions outside the
+ * compiled subset, and servers running on a JRE without javac, simply get no
+ * generated renderer and keep rendering through JXLS.
+ */
+public final class RendererCompiler {
+
+    private static final RendererCompiler SHARED = new RendererCompiler();
+
+    /**
+     * Marks templates that could not be generated, so they are not retried
+     */
+    private static final GeneratedRenderer NOT_GENERATED = (root, sink) -> 0;
+
+    /** Kind of the disk cache entries holding renderer class files */
+    static final String CLASSES_ENTRY = "renderer";
+
+    private final TemplateDiskCache diskCache;
+    private final Map<String, GeneratedRenderer> renderers = new ConcurrentHashMap<>();
+
+    public RendererCompiler() {
+        this(TemplateDiskCache.shared());
+    }
+
+    public RendererCompiler(TemplateDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    public static RendererCompiler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the generated renderer of a template, generating it on first use
+     *
+     * @return the renderer, or null when the template cannot be generated
+     */
+    public GeneratedRenderer get(String templateName, TemplateLayout layout, String rootVariable, Class<?> rootType) {
+        String key = templateName + '|' + rootVariable + '|' + rootType.getName();
+        GeneratedRenderer renderer = renderers.computeIfAbsent(key, k -> {
+            GeneratedRenderer generated = compile(templateName, layout, rootVariable, rootType, diskCache);
+            return generated != null ? generated : NOT_GENERATED;
+        });
+        return renderer != NOT_GENERATED ? renderer : null;
+    }
+
+    /**
+     * Generate, compile and instantiate a renderer
+     *
+     * @return the renderer, or null when the template cannot be generated
+     */
+    public static GeneratedRenderer compile(String templateName, TemplateLayout layout,
+                                            String rootVariable, Class<?> rootType) {
+        return compile(templateName, layout, rootVariable, rootType, TemplateDiskCache.shared());
+    }
+
+    /**
+     * Generate a renderer, loading its classes from diskCache when they were
+     * compiled before
+     *
+     * @return the renderer, or null when the template cannot be generated
+     */
+    public static GeneratedRenderer compile(String templateName, TemplateLayout layout,
+                                            String rootVariable, Class<?> rootType,
+                                            TemplateDiskCache diskCache) {
+        // Each renderer has its own class loader, so the name needs no counter;
+        // a stable name keeps the source, and so the cache key, stable
+        String className = "Renderer_" + templateName.replaceAll("[^A-Za-z0-9]", "_");
+
+        RendererGenerator generator = new RendererGenerator(layout, className, rootVariable, rootType);
+        String source;
+        try {
+            source = generator.generate();
+        } catch (UnsupportedTemplateException e) {
+            System.out.println("Template " + templateName + " stays on JXLS: " + e.getMessage());
+            return null;
+        }
+
+        String qualifiedName = RendererGenerator.PACKAGE + "." + className;
+        String key = cacheKey(source, generator.getReferencedTypes());
+        Map<String, byte[]> cached = loadClasses(diskCache, key);
+        if (cached != null) {
+            GeneratedRenderer renderer = instantiate(templateName, qualifiedName, cached, layout);
+            if (renderer != null) {
+                return renderer;
+            }
+            // Classes that no longer link: compile them again
+            diskCache.remove(CLASSES_ENTRY, key);
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            System.out.println("Template " + templateName + " stays on JXLS: no Java compiler available");
+            return null;
+        }
+
+        Map<String, byte[]> classes = compileSource(javac, qualifiedName, source,
+                classpath(generator.getReferencedTypes()));
+        if (classes == null) {
+            return null;
+        }
+        GeneratedRenderer renderer = instantiate(templateName, qualifiedName, classes, layout);
+        if (renderer != null) {
+            storeClasses(diskCache, key, classes);
+        }
+        return renderer;
+    }
+
+    private static GeneratedRenderer instantiate(String templateName, String qualifiedName,
+                                                 Map<String, byte[]> classes, TemplateLayout layout) {
+        try {
+            Class<?> type = new GeneratedClassLoader(GeneratedRenderer.class.getClassLoader(), classes)
+                    .loadClass(qualifiedName);
+            GeneratedRenderer renderer =
+                    (GeneratedRenderer) type.getConstructor(TemplateLayout.class).newInstance(layout);
+            System.out.println("Generated renderer " + qualifiedName + " for " + templateName);
+            return renderer;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            System.err.println("Could not load generated renderer for " + templateName + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Key of the renderer classes: the source together with the class files
+     * it is compiled against and the Java version compiling it
+     */
+    private static String cacheKey(String source, Set<Class<?>> referencedTypes) {
+        Set<Class<?>> types = new LinkedHashSet<>(referencedTypes);
+        types.add(GeneratedRenderer.class);
+        types.add(RendererGenerator.class);
+        types.add(RowSink.class);
+        types.add(LayoutWalker.class);
+        types.add(NullNavigation.class);
+        String key = source + "\n" + TemplateDiskCache.classDigest(types.toArray(new Class<?>[0]))
+                + "\n" + Runtime.version().feature();
+        return TemplateDiskCache.key(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return class bytes by binary name, or null when there is no usable entry
+     */
+    private static Map<String, byte[]> loadClasses(TemplateDiskCache diskCache, String key) {
+        InputStream cached = diskCache.open(CLASSES_ENTRY, key);
+        if (cached == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(cached);
+            int count = in.readInt();
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            return classes;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring cached renderer classes: " + e.getMessage());
+            diskCache.remove(CLASSES_ENTRY, key);
+            return null;
+        }
+    }
+
+    private static void storeClasses(TemplateDiskCache diskCache, String key, Map<String, byte[]> classes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.flush();
+            diskCache.store(CLASSES_ENTRY, key, bytes.toByteArray());
+        } catch (IOException e) {
+            System.err.println("Could not cache renderer classes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Source of the renderer that {@link #compile} would build, for
+     * inspection and debugging
+     *
+     * @return the source, or null when the template cannot be generated
+     */
+    public static String generateSource(TemplateLayout layout, String className,
+                                        String rootVariable, Class<?> rootType) {
+        try {
+            return new RendererGenerator(layout, className, rootVariable, rootType).generate();
+        } catch (UnsupportedTemplateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return class bytes by binary name, or null when javac reported errors
+     */
+    private static Map<String, byte[]> compileSource(JavaCompiler javac, String qualifiedName, String source,
+                                                     String classpath) {
+        Map<String, ByteArrayOutputStream> output = new HashMap<>();
+        StandardJavaFileManager standard = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(
+                        URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        output.put(className, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+
+        JavaFileObject sourceFile = new SimpleJavaFileObject(
+                URI.create("string:///" + qualifiedName.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean ok = javac.getTask(null, fileManager, diagnostics,
+                Arrays.asList("-classpath", classpath, "-proc:none"), null,
+                Collections.singletonList(sourceFile)).call();
+        if (!ok) {
+            System.err.println("Could not compile generated renderer " + qualifiedName + ":");
+            diagnostics.getDiagnostics().forEach(d -> System.err.println("  " + d));
+            return null;
+        }
+
+        Map<String, byte[]> classes = new HashMap<>();
+        output.forEach((name, bytes) -> classes.put(name, bytes.toByteArray()));
+        return classes;
+    }
+
+    /**
+     * Class path with the locations of the renderer API and the bean types.
+     * Inside a servlet container these are WEB-INF/classes and WEB-INF/lib,
+     * which are not on java.class.path.
+     */
+    private static String classpath(Set<Class<?>> types) {
+        Set<String> entries = new LinkedHashSet<>();
+        Set<Class<?>> all = new LinkedHashSet<>(types);
+        all.add(GeneratedRenderer.class);
+        all.add(TemplateLayout.class);
+        for (Class<?> type : all) {
+            CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                try {
+                    entries.add(Paths.get(codeSource.getLocation().toURI()).toString());
+                } catch (Exception e) {
+                    System.err.println("Ignoring class path entry " + codeSource.getLocation() + ": " + e.getMessage());
+                }
+            }
+        }
+        String javaClassPath = System.getProperty("java.class.path");
+        if (javaClassPath != null && !javaClassPath.isEmpty()) {
+            entries.add(javaClassPath);
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Defines the classes of one generated renderer
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        GeneratedClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package com.excelgen.codegen;
+
+import com.excelgen.expression.ExpressionCompiler;
+import com.excelgen.expression.SimpleExpression;
+import com.excelgen.template.CellText;
+import com.excelgen.template.TemplateCell;
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the Java source of a {@link GeneratedRenderer} for one template
+ * layout and root bean type.
+ *
+ * The layout is walked the same way {@link com.excelgen.template.LayoutWalker}
+ * walks it, but at generation time: static rows become precomputed value
+ * arrays, jx:if becomes an if statement and jx:each a for loop over the
+ * typed items. Every expression must be resolvable against the bean types
+ * (see {@link ExpressionCompiler} for the supported subset); otherwise no
+ * source is generated and the template stays on the JXLS path.
+ */
+final class RendererGenerator {
+
+    static final String PACKAGE = "com.excelgen.codegen.generated";
+
+    private final TemplateLayout layout;
+    private final String className;
+    private final List<Variable> scope = new ArrayList<>();
+    private final Set<Integer> usedRows = new TreeSet<>();
+    private final Set<Class<?>> referencedTypes = new LinkedHashSet<>();
+    private final StringBuilder body = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private int methodCount;
+    private int localCount;
+    private int indent = 2;
+
+    RendererGenerator(TemplateLayout layout, String className, String rootVariable, Class<?> rootType) {
+        this.layout = layout;
+        this.className = className;
+        scope.add(new Variable(rootVariable, "v_" + rootVariable, rootType));
+    }
+
+    /**
+     * @return the source of the renderer class
+     * @throws UnsupportedTemplateException when the template uses something
+     *         that cannot be turned into typed Java
+     */
+    String generate() throws UnsupportedTemplateException {
+        Variable root = scope.get(0);
+        checkAccessible(root.type);
+        if (!isIdentifier(root.name)) {
+            throw new UnsupportedTemplateException("invalid variable name " + root.name);
+        }
+
+        int row = 0;
+        for (TemplateCommand area : layout.getAreas()) {
+            if (area.isDegenerate() || area.getFirstRow() < row) {
+                continue;
+            }
+            for (; row < area.getFirstRow() && row < layout.getRowCount(); row++) {
+                emitStatic(row);
+            }
+            renderRange(area.getFirstRow(), area.getLastRow(), area.getChildren());
+            row = area.getLastRow() + 1;
+        }
+        for (; row < layout.getRowCount(); row++) {
+            emitStatic(row);
+        }
+
+        return classSource(root);
+    }
+
+    /**
+     * Bean classes the generated source refers to
+     */
+    Set<Class<?>> getReferencedTypes() {
+        return referencedTypes;
+    }
+
+    private String classSource(Variable root) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("public final class ").append(className)
+                .append(" implements com.excelgen.codegen.GeneratedRenderer {\n\n");
+
+        for (int row : usedRows) {
+            sb.append("    private final com.excelgen.template.TemplateRow row").append(row).append(";\n");
+            sb.append("    private final Object[] static").append(row).append(";\n");
+        }
+
+        sb.append("\n    public ").append(className).append("(com.excelgen.template.TemplateLayout layout) {\n");
+        for (int row : usedRows) {
+            sb.append("        row").append(row).append(" = layout.getRow(").append(row).append(");\n");
+            sb.append("        static").append(row).append(" = staticValues(row").append(row).append(");\n");
+        }
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public int render(Object root, com.excelgen.template.RowSink sink) throws java.io.IOException {\n");
+        sb.append("        ").append(typeName(root.type)).append(' ').append(root.local)
+                .append(" = (").append(typeName(root.type)).append(") root;\n");
+        sb.append("        Object[] values = new Object[").append(layout.getWidth()).append("];\n");
+        sb.append("        int out = 0;\n");
+        sb.append(body);
+        sb.append("        return out;\n");
+        sb.append("    }\n\n");
+
+        sb.append("    private static Object[] staticValues(com.excelgen.template.TemplateRow row) {\n");
+        sb.append("        Object[] values = new Object[").append(layout.getWidth()).append("];\n");
+        sb.append("        for (int c = 0; c < values.length; c++) {\n");
+        sb.append("            com.excelgen.template.TemplateCell cell = row != null ? row.getCell(c) : null;\n");
+        sb.append("            values[c] = cell != null ? cell.getStaticValue() : null;\n");
+        sb.append("        }\n");
+        sb.append("        return values;\n");
+        sb.append("    }\n\n");
+
+        sb.append("    private static boolean isTrue(Object value) {\n");
+        sb.append("        if (value instanceof Boolean) {\n");
+        sb.append("            return (Boolean) value;\n");
+        sb.append("        }\n");
+        sb.append("        return value != null && Boolean.parseBoolean(value.toString());\n");
+        sb.append("    }\n");
+        sb.append(methods);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private void renderRange(int firstRow, int lastRow, List<TemplateCommand> commands)
+            throws UnsupportedTemplateException {
+        int last = Math.min(lastRow, layout.getRowCount() - 1);
+        int next = 0;
+        int row = firstRow;
+        while (row <= last) {
+            while (next < commands.size() && commands.get(next).getFirstRow() < row) {
+                next++;
+            }
+            if (next < commands.size() && commands.get(next).getFirstRow() == row) {
+                row = renderCommand(commands.get(next++));
+            } else {
+                emitEvaluated(row, -1);
+                row++;
+            }
+        }
+    }
+
+    private int renderCommand(TemplateCommand command) throws UnsupportedTemplateException {
+        if (command.isDegenerate()) {
+            emitEvaluated(command.getFirstRow(), command.getFirstColumn());
+            return command.getFirstRow() + 1;
+        }
+
+        switch (command.getName()) {
+            case TemplateCommand.IF:
+                line("if (" + condition(command.getCondition()) + ") {");
+                indent++;
+                renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                indent--;
+                line("}");
+                break;
+            case TemplateCommand.EACH:
+                renderEach(command);
+                break;
+            default:
+                renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                break;
+        }
+        return command.getLastRow() + 1;
+    }
+
+    private void renderEach(TemplateCommand command) throws UnsupportedTemplateException {
+        String var = command.getVar();
+        if (var == null || !isIdentifier(var)) {
+            throw new UnsupportedTemplateException("invalid jx:each var " + var);
+        }
+        SimpleExpression items = parse(command.getItems());
+        if (items.getKind() != SimpleExpression.Kind.PATH) {
+            throw new UnsupportedTemplateException("jx:each items is not a property path: " + command.getItems());
+        }
+
+        // Items are generated as a method returning a typed Iterable or array,
+        // empty when any bean on the path is null
+        String method = "items" + (methodCount++);
+        StringBuilder m = new StringBuilder();
+        Terminal terminal = navigate(m, items, "EMPTY");
+
+        Class<?> elementType;
+        String returnType;
+        String empty;
+        if (terminal.type.isArray() && !terminal.type.getComponentType().isPrimitive()) {
+            elementType = terminal.type.getComponentType();
+            returnType = typeName(elementType) + "[]";
+            empty = "new " + typeName(elementType) + "[0]";
+        } else if (Iterable.class.isAssignableFrom(terminal.type)) {
+            elementType = elementType(terminal.genericType);
+            returnType = "Iterable<" + typeName(elementType) + ">";
+            empty = "java.util.Collections.<" + typeName(elementType) + ">emptyList()";
+        } else {
+            throw new UnsupportedTemplateException("jx:each items is not iterable: " + command.getItems());
+        }
+        checkAccessible(elementType);
+
+        String code = m.toString().replace("return EMPTY;", "return " + empty + ";");
+        String nullCheck = terminal.type.isPrimitive() ? ""
+                : "        if (" + terminal.local + " == null) {\n            return " + empty + ";\n        }\n";
+        addMethod("private static " + returnType + " " + method + "(" + parameters() + ")",
+                code + nullCheck + "        return " + terminal.local + ";\n");
+
+        Variable loop = new Variable(var, "v_" + var + "_" + (localCount++), elementType);
+        line("for (" + typeName(elementType) + " " + loop.local + " : " + method + "(" + arguments() + ")) {");
+        scope.add(loop);
+        indent++;
+        renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+        indent--;
+        scope.remove(scope.size() - 1);
+        line("}");
+    }
+
+    private void emitStatic(int row) {
+        usedRows.add(row);
+        line("sink.row(out++, row" + row + ", static" + row + ");");
+    }
+
+    private void emitEvaluated(int rowIndex, int clearedColumn) throws UnsupportedTemplateException {
+        usedRows.add(rowIndex);
+        TemplateRow row = layout.getRow(rowIndex);
+        for (int c = 0; c < layout.getWidth(); c++) {
+            TemplateCell cell = row != null ? row.getCell(c) : null;
+            if (cell == null || c == clearedColumn) {
+                line("values[" + c + "] = null;");
+            } else if (!cell.isDynamic()) {
+                line("values[" + c + "] = static" + rowIndex + "[" + c + "];");
+            } else {
+                line("values[" + c + "] = " + cellValue(cell.getText()) + ";");
+            }
+        }
+        line("sink.row(out++, row" + rowIndex + ", values);");
+    }
+
+    /**
+     * Java expression computing the value of a dynamic cell
+     */
+    private String cellValue(CellText text) throws UnsupportedTemplateException {
+        if (text.isSingleExpression()) {
+            return value(text.getExpression(0));
+        }
+
+        String method = "text" + (methodCount++);
+        StringBuilder m = new StringBuilder();
+        m.append("        StringBuilder sb = new StringBuilder(").append(literal(text.getLiteral(0))).append(");\n");
+        m.append("        Object value;\n");
+        for (int i = 0; i < text.getExpressionCount(); i++) {
+            m.append("        value = ").append(value(text.getExpression(i))).append(";\n");
+            m.append("        if (value != null) {\n            sb.append(value);\n        }\n");
+            m.append("        sb.append(").append(literal(text.getLiteral(i + 1))).append(");\n");
+        }
+        m.append("        return sb.toString();\n");
+        addMethod("private static String " + method + "(" + parameters() + ")", m.toString());
+        return method + "(" + arguments() + ")";
+    }
+
+    /**
+     * Java expression computing the value of an expression as an Object
+     */
+    private String value(String expression) throws UnsupportedTemplateException {
+        SimpleExpression parsed = parse(expression);
+        switch (parsed.getKind()) {
+            case LITERAL:
+                return boxedLiteral(parsed.getValue());
+            case PATH: {
+                String method = "value" + (methodCount++);
+                StringBuilder m = new StringBuilder();
+                Terminal terminal = navigate(m, parsed, "null");
+                m.append("        return ").append(terminal.local).append(";\n");
+                addMethod("private static Object " + method + "(" + parameters() + ")", m.toString());
+                return method + "(" + arguments() + ")";
+            }
+            default:
+                return "Boolean.valueOf(" + booleanExpression(parsed, expression) + ")";
+        }
+    }
+
+    /**
+     * Java boolean expression for a jx:if condition
+     */
+    private String condition(String expression) throws UnsupportedTemplateException {
+        SimpleExpression parsed = parse(expression);
+        if (parsed.getKind() == SimpleExpression.Kind.LITERAL) {
+            return "isTrue(" + boxedLiteral(parsed.getValue()) + ")";
+        }
+        if (parsed.getKind() == SimpleExpression.Kind.PATH) {
+            return "isTrue(" + value(expression) + ")";
+        }
+        return booleanExpression(parsed, expression);
+    }
+
+    /**
+     * Negation or comparison as a call of a generated boolean method
+     */
+    private String booleanExpression(SimpleExpression parsed, String expression) throws UnsupportedTemplateException {
+        String method = "test" + (methodCount++);
+        StringBuilder m = new StringBuilder();
+
+        if (parsed.getKind() == SimpleExpression.Kind.NOT) {
+            // JEXL treats !null as true
+            Terminal terminal = navigate(m, parsed.getLeft(), "true");
+            if (terminal.type == boolean.class) {
+                m.append("        return !").append(terminal.local).append(";\n");
+            } else if (terminal.type == Boolean.class) {
+                m.append("        return ").append(terminal.local).append(" == null || !")
+                        .append(terminal.local).append(";\n");
+            } else {
+                throw new UnsupportedTemplateException("negation of a non-boolean: " + expression);
+            }
+        } else {
+            comparison(m, parsed, expression);
+        }
+
+        addMethod("private static boolean " + method + "(" + parameters() + ")", m.toString());
+        return method + "(" + arguments() + ")";
+    }
+
+    /**
+     * A property path compared to a literal. Null beans on the path compare
+     * the way JEXL compares null: unequal to anything but null, and neither
+     * less nor greater than anything.
+     */
+    private void comparison(StringBuilder m, SimpleExpression parsed, String expression)
+            throws UnsupportedTemplateException {
+        SimpleExpression path = parsed.getLeft();
+        SimpleExpression literal = parsed.getRight();
+        SimpleExpression.Operator operator = parsed.getOperator();
+        if (path.getKind() == SimpleExpression.Kind.LITERAL && literal.getKind() == SimpleExpression.Kind.PATH) {
+            path = parsed.getRight();
+            literal = parsed.getLeft();
+            operator = mirror(operator);
+        }
+        if (path.getKind() != SimpleExpression.Kind.PATH || literal.getKind() != SimpleExpression.Kind.LITERAL) {
+            throw new UnsupportedTemplateException("comparison is not path against literal: " + expression);
+        }
+
+        Object value = literal.getValue();
+        boolean equality = operator == SimpleExpression.Operator.EQ || operator == SimpleExpression.Operator.NE;
+        String nullResult = equality ? String.valueOf((value == null) == (operator == SimpleExpression.Operator.EQ))
+                : "false";
+        Terminal terminal = navigate(m, path, nullResult);
+        String t = terminal.local;
+        Class<?> type = terminal.type;
+
+        String test;
+        if (value == null) {
+            if (!equality) {
+                throw new UnsupportedTemplateException("ordering against null: " + expression);
+            }
+            test = type.isPrimitive() ? String.valueOf(operator == SimpleExpression.Operator.NE)
+                    : t + (operator == SimpleExpression.Operator.EQ ? " == null" : " != null");
+        } else if (value instanceof Number && isNumeric(type)) {
+            String number = value instanceof Double ? value + "d" : value.toString();
+            test = t + " " + javaOperator(operator) + " " + number;
+            if (!type.isPrimitive()) {
+                test = operator == SimpleExpression.Operator.NE
+                        ? "(" + t + " == null || " + test + ")"
+                        : "(" + t + " != null && " + test + ")";
+            }
+        } else if (value instanceof String && type == String.class) {
+            test = equality
+                    ? (operator == SimpleExpression.Operator.NE ? "!" : "") + literal((String) value) + ".equals(" + t + ")"
+                    : "(" + t + " != null && " + t + ".compareTo(" + literal((String) value) + ") "
+                            + javaOperator(operator) + " 0)";
+        } else if (value instanceof Boolean && (type == boolean.class || type == Boolean.class) && equality) {
+            test = type == boolean.class
+                    ? t + " " + javaOperator(operator) + " " + value
+                    : (operator == SimpleExpression.Operator.NE ? "!" : "") + boxedLiteral(value) + ".equals(" + t + ")";
+        } else {
+            throw new UnsupportedTemplateException("unsupported operand types: " + expression);
+        }
+        m.append("        return ").append(test).append(";\n");
+    }
+
+    /**
+     * Append statements that read a property path into a typed local,
+     * returning nullResult (and counting it in {@link
+     * com.excelgen.expression.NullNavigation}) as soon as a bean on the way
+     * is null
+     */
+    private Terminal navigate(StringBuilder m, SimpleExpression path, String nullResult)
+            throws UnsupportedTemplateException {
+        Variable variable = lookup(path.getVariable());
+        String local = variable.local;
+        Class<?> type = variable.type;
+        Type genericType = variable.type;
+
+        int n = 0;
+        for (String property : path.getProperties()) {
+            if (type.isPrimitive()) {
+                throw new UnsupportedTemplateException("property " + property + " of a primitive");
+            }
+            Method getter = getter(type, property);
+            m.append("        if (").append(local).append(" == null) {\n")
+                    .append("            com.excelgen.expression.NullNavigation.suppressed();\n")
+                    .append("            return ").append(nullResult).append(";\n        }\n");
+            type = getter.getReturnType();
+            genericType = getter.getGenericReturnType();
+            if (!type.isPrimitive()) {
+                checkAccessible(type);
+            }
+            String next = "t" + (n++);
+            m.append("        ").append(typeName(type)).append(' ').append(next).append(" = ")
+                    .append(local).append('.').append(getter.getName()).append("();\n");
+            local = next;
+        }
+        return new Terminal(local, type, genericType);
+    }
+
+    /**
+     * Public no-argument getX() or isX() of a public class, the way JEXL
+     * resolves a property
+     */
+    private Method getter(Class<?> type, String property) throws UnsupportedTemplateException {
+        String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (String name : new String[]{"get" + suffix, "is" + suffix}) {
+            try {
+                Method method = type.getMethod(name);
+                if (method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())
+                        && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next name
+            }
+        }
+        throw new UnsupportedTemplateException("no getter for " + property + " on " + type.getName());
+    }
+
+    private Variable lookup(String name) throws UnsupportedTemplateException {
+        for (int i = scope.size() - 1; i >= 0; i--) {
+            if (scope.get(i).name.equals(name)) {
+                return scope.get(i);
+            }
+        }
+        throw new UnsupportedTemplateException("unknown variable " + name);
+    }
+
+    private static SimpleExpression parse(String expression) throws UnsupportedTemplateException {
+        SimpleExpression parsed = expression != null ? ExpressionCompiler.parse(expression) : null;
+        if (parsed == null) {
+            throw new UnsupportedTemplateException("expression outside the compiled subset: " + expression);
+        }
+        return parsed;
+    }
+
+    private static Class<?> elementType(Type iterableType) throws UnsupportedTemplateException {
+        if (iterableType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) iterableType).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        throw new UnsupportedTemplateException("element type of " + iterableType + " is unknown");
+    }
+
+    private void checkAccessible(Class<?> type) throws UnsupportedTemplateException {
+        Class<?> outer = type;
+        while (outer != null) {
+            if (!Modifier.isPublic(outer.getModifiers())) {
+                throw new UnsupportedTemplateException(type.getName() + " is not public");
+            }
+            outer = outer.getDeclaringClass();
+        }
+        if (!type.getName().startsWith("java.")) {
+            referencedTypes.add(type);
+        }
+    }
+
+    private void addMethod(String signature, String code) {
+        methods.append("\n    ").append(signature).append(" {\n").append(code).append("    }\n");
+    }
+
+    private String parameters() {
+        StringBuilder sb = new StringBuilder();
+        for (Variable variable : scope) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(typeName(variable.type)).append(' ').append(variable.local);
+        }
+        return sb.toString();
+    }
+
+    private String arguments() {
+        StringBuilder sb = new StringBuilder();
+        for (Variable variable : scope) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(variable.local);
+        }
+        return sb.toString();
+    }
+
+    private void line(String code) {
+        for (int i = 0; i < indent; i++) {
+            body.append("    ");
+        }
+        body.append(code).append('\n');
+    }
+
+    private static String typeName(Class<?> type) {
+        return type.getCanonicalName();
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return type == int.class || type == long.class || type == short.class || type == byte.class
+                || type == double.class || type == float.class
+                || type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == Double.class || type == Float.class;
+    }
+
+    private static SimpleExpression.Operator mirror(SimpleExpression.Operator operator) {
+        switch (operator) {
+            case LT:
+                return SimpleExpression.Operator.GT;
+            case LE:
+                return SimpleExpression.Operator.GE;
+            case GT:
+                return SimpleExpression.Operator.LT;
+            case GE:
+                return SimpleExpression.Operator.LE;
+            default:
+                return operator;
+        }
+    }
+
+    private static String javaOperator(SimpleExpression.Operator operator) {
+        switch (operator) {
+            case LT:
+                return "<";
+            case LE:
+                return "<=";
+            case GT:
+                return ">";
+            case GE:
+                return ">=";
+            case EQ:
+                return "==";
+            default:
+                return "!=";
+        }
+    }
+
+    private static String boxedLiteral(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return literal((String) value);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "Boolean.TRUE" : "Boolean.FALSE";
+        }
+        if (value instanceof Double) {
+            return "Double.valueOf(" + value + "d)";
+        }
+        return "Integer.valueOf(" + value + ")";
+    }
+
+    /**
+     * Java string literal, with everything outside printable ASCII escaped.
+     * Control characters use octal escapes, since javac would turn a \\u
+     * escaped line break into a real one inside the literal.
+     */
+    static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static boolean isIdentifier(String s) {
+        if (s.isEmpty() || !Character.isJavaIdentifierStart(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < s.length(); i++) {
+            if (!Character.isJavaIdentifierPart(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Variable {
+        private final String name;
+        private final String local;
+        private final Class<?> type;
+
+        Variable(String name, String local, Class<?> type) {
+            this.name = name;
+            this.local = local;
+            this.type = type;
+        }
+    }
+
+    private static final class Terminal {
+        private final String local;
+        private final Class<?> type;
+        private final Type genericType;
+
+        Terminal(String local, Class<?> type, Type genericType) {
+            this.local = local;
+            this.type = type;
+            this.genericType = genericType;
+        }
+    }
+}
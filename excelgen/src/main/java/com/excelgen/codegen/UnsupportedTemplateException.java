@@ -0,0 +1,12 @@
+package com.excelgen.codegen;
+
+/**
+ * Thrown by {@link RendererGenerator} when a template uses an expression or
+ * bean type that cannot be turned into typed Java.
+ */
+class UnsupportedTemplateException extends Exception {
+
+    UnsupportedTemplateException(String message) {
+        super(message);
+    }
+}
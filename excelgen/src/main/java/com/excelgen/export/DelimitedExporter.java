@@ -0,0 +1,56 @@
+package com.excelgen.export;
+
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.TemplateLayout;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders a compiled template straight to CSV or TSV.
+ *
+ * Uses the same template semantics as the xlsx output (jx:if, jx:each and
+ * ${...} expressions) but never creates a POI workbook or a zip package,
+ * so large phone lists are streamed at the cost of writing text.
+ */
+public final class DelimitedExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DelimitedExporter() {
+    }
+
+    /**
+     * Render the layout to the output stream
+     *
+     * @param gzip compress the text with gzip
+     * @return number of lines written
+     */
+    public static int export(TemplateLayout layout, Map<String, Object> vars, DelimitedFormat format,
+                             OutputStream out, boolean gzip) throws IOException {
+        return export(new LayoutWalker(), layout, vars, format, out, gzip);
+    }
+
+    public static int export(LayoutWalker walker, TemplateLayout layout, Map<String, Object> vars,
+                             DelimitedFormat format, OutputStream out, boolean gzip) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzipStream != null ? gzipStream : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        DelimitedRowWriter rowWriter = new DelimitedRowWriter(writer, format);
+        walker.walk(layout, vars, rowWriter);
+
+        // Flush but leave the caller's stream open
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        return rowWriter.getLinesWritten();
+    }
+}
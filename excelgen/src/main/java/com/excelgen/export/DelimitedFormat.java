@@ -0,0 +1,101 @@
+package com.excelgen.export;
+
+/**
+ * Delimited text formats that can be produced instead of an xlsx workbook
+ */
+public enum DelimitedFormat {
+
+    CSV(',', "text/csv", "csv", "\r\n"),
+    TSV('\t', "text/tab-separated-values", "tsv", "\n");
+
+    private final char delimiter;
+    private final String contentType;
+    private final String extension;
+    private final String lineSeparator;
+
+    DelimitedFormat(char delimiter, String contentType, String extension, String lineSeparator) {
+        this.delimiter = delimiter;
+        this.contentType = contentType;
+        this.extension = extension;
+        this.lineSeparator = lineSeparator;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    /**
+     * Pick a delimited format from a "format" request parameter or, when the
+     * parameter is absent, from the Accept header.
+     *
+     * @return the format, or null when the client wants the xlsx workbook
+     */
+    public static DelimitedFormat negotiate(String formatParameter, String acceptHeader) {
+        if (formatParameter != null && !formatParameter.trim().isEmpty()) {
+            String format = formatParameter.trim();
+            for (DelimitedFormat candidate : values()) {
+                if (candidate.extension.equalsIgnoreCase(format)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        if (acceptHeader != null) {
+            for (String mediaRange : acceptHeader.split(",")) {
+                String mediaType = mediaRange.split(";")[0].trim();
+                for (DelimitedFormat candidate : values()) {
+                    if (candidate.contentType.equalsIgnoreCase(mediaType)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows a gzip-encoded body: gzip or
+     * x-gzip, or * when gzip is not listed, with a q-value above 0
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzip = Math.max(gzip, q);
+            } else if (name.equals("*")) {
+                any = Math.max(any, q);
+            }
+        }
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
+}
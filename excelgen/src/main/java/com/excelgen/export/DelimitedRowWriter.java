@@ -0,0 +1,121 @@
+package com.excelgen.export;
+
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateRow;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rendered rows as CSV or TSV lines.
+ *
+ * CSV values are quoted per RFC 4180. TSV cannot quote, so tabs and line
+ * breaks inside values are replaced by spaces. Blank rows are held back and
+ * only written when a non-blank row follows, so the output never ends in
+ * empty lines left over from template padding.
+ *
+ * Text values starting with =, +, -, @, tab or carriage return would be
+ * read as formulas when the file is opened in a spreadsheet, so they are
+ * prefixed with ' (and quoted in CSV). Numbers are written as they are.
+ */
+public class DelimitedRowWriter implements RowSink {
+
+    private final Writer writer;
+    private final DelimitedFormat format;
+    private int pendingBlankRows;
+    private int linesWritten;
+
+    public DelimitedRowWriter(Writer writer, DelimitedFormat format) {
+        this.writer = writer;
+        this.format = format;
+    }
+
+    @Override
+    public void row(int outputRow, TemplateRow source, Object[] values) throws IOException {
+        int width = values.length;
+        while (width > 0 && isBlank(values[width - 1])) {
+            width--;
+        }
+        if (width == 0) {
+            pendingBlankRows++;
+            return;
+        }
+
+        for (; pendingBlankRows > 0; pendingBlankRows--) {
+            for (int c = 1; c < values.length; c++) {
+                writer.write(format.getDelimiter());
+            }
+            writer.write(format.getLineSeparator());
+            linesWritten++;
+        }
+
+        for (int c = 0; c < values.length; c++) {
+            if (c > 0) {
+                writer.write(format.getDelimiter());
+            }
+            if (c < width && values[c] != null) {
+                String text = format(values[c]);
+                if (values[c] instanceof CharSequence && isFormulaLike(text)) {
+                    writeValue("'" + text, true);
+                } else {
+                    writeValue(text, false);
+                }
+            }
+        }
+        writer.write(format.getLineSeparator());
+        linesWritten++;
+    }
+
+    public int getLinesWritten() {
+        return linesWritten;
+    }
+
+    private void writeValue(String value, boolean quote) throws IOException {
+        if (format == DelimitedFormat.TSV) {
+            writer.write(value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+            return;
+        }
+
+        boolean needsQuotes = quote;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == format.getDelimiter() || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Format a cell value the way Excel shows it: whole numbers without a
+     * trailing ".0"
+     */
+    static String format(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * True when a spreadsheet would start a formula at the first character
+     */
+    static boolean isFormulaLike(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        char first = text.charAt(0);
+        return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+    }
+
+    private static boolean isBlank(Object value) {
+        return value == null || (value instanceof String && ((String) value).isEmpty());
+    }
+}
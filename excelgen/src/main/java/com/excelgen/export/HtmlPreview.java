@@ -0,0 +1,62 @@
+package com.excelgen.export;
+
+import com.excelgen.expression.CompiledExpressionEvaluator;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.TemplateLayout;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Renders a compiled template to an HTML table for previewing a report
+ * before downloading it.
+ *
+ * Same template semantics as the xlsx and CSV output, without a workbook or
+ * zip package, and every jx:each is limited to its first rows so a preview
+ * of a huge phone list costs the same as a small one. The default limit is
+ * excelgen.preview.maxRows (default 50).
+ */
+public final class HtmlPreview {
+
+    public static final int DEFAULT_MAX_ROWS = Integer.getInteger("excelgen.preview.maxRows", 50);
+
+    /** Largest limit a client can ask for */
+    public static final int MAX_ROWS_LIMIT = 1000;
+
+    private HtmlPreview() {
+    }
+
+    /**
+     * Items rendered per jx:each for a rows request parameter: the default
+     * when absent, capped at {@link #MAX_ROWS_LIMIT}
+     *
+     * @return the limit, or -1 when the parameter is not a number
+     */
+    public static int maxRows(String parameter) {
+        if (parameter == null || parameter.trim().isEmpty()) {
+            return DEFAULT_MAX_ROWS;
+        }
+        try {
+            return Math.max(0, Math.min(MAX_ROWS_LIMIT, Integer.parseInt(parameter.trim())));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Write the preview table to the writer, which is flushed but not closed
+     *
+     * @param maxRows items rendered per jx:each
+     * @return the writer's sink, for its row and omitted item counts
+     */
+    public static HtmlPreviewWriter render(TemplateLayout layout, Map<String, Object> vars, int maxRows,
+                                           Writer writer) throws IOException {
+        HtmlPreviewWriter sink = new HtmlPreviewWriter(writer, layout.getWidth());
+        sink.start(layout);
+        new LayoutWalker(CompiledExpressionEvaluator.shared(), Math.max(0, maxRows)).walk(layout, vars, sink);
+        sink.end();
+        writer.flush();
+        return sink;
+    }
+}
@@ -0,0 +1,105 @@
+package com.excelgen.export;
+
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rendered rows as a plain HTML table, one &lt;tr&gt; per row.
+ *
+ * Column widths come from the template, values are formatted the way the
+ * CSV output formats them, and a jx:each cut short by the preview row limit
+ * is followed by a row saying how many items were left out.
+ */
+public class HtmlPreviewWriter implements RowSink {
+
+    private final Writer writer;
+    private final int width;
+    private int rowsWritten;
+    private int omittedItems;
+
+    public HtmlPreviewWriter(Writer writer, int width) {
+        this.writer = writer;
+        this.width = Math.max(1, width);
+    }
+
+    /**
+     * Open the table, with a &lt;colgroup&gt; sized like the template columns
+     */
+    public void start(TemplateLayout layout) throws IOException {
+        writer.write("<table class=\"excelgen-preview\" data-sheet=\"");
+        escape(layout.getSheetName());
+        writer.write("\">\n<colgroup>");
+        for (int c = 0; c < width; c++) {
+            int characters = layout.getColumnWidth(c) / 256;
+            if (characters > 0) {
+                writer.write("<col style=\"width:" + characters + "ch\">");
+            } else {
+                writer.write("<col>");
+            }
+        }
+        writer.write("</colgroup>\n");
+    }
+
+    public void end() throws IOException {
+        writer.write("</table>\n");
+    }
+
+    @Override
+    public void row(int outputRow, TemplateRow source, Object[] values) throws IOException {
+        writer.write("<tr>");
+        for (int c = 0; c < width; c++) {
+            Object value = c < values.length ? values[c] : null;
+            if (value == null) {
+                writer.write("<td></td>");
+            } else {
+                writer.write("<td>");
+                escape(DelimitedRowWriter.format(value));
+                writer.write("</td>");
+            }
+        }
+        writer.write("</tr>\n");
+        rowsWritten++;
+    }
+
+    @Override
+    public void itemsOmitted(int outputRow, TemplateCommand command, int omitted) throws IOException {
+        writer.write("<tr class=\"omitted\"><td colspan=\"" + width + "\">&hellip; " + omitted
+                + (omitted == 1 ? " more item" : " more items") + "</td></tr>\n");
+        omittedItems += omitted;
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Total of the items left out by all truncated jx:each commands
+     */
+    public int getOmittedItems() {
+        return omittedItems;
+    }
+
+    private void escape(String text) throws IOException {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '&': entity = "&amp;"; break;
+                case '"': entity = "&quot;"; break;
+                case '\'': entity = "&#39;"; break;
+                default: continue;
+            }
+            writer.write(text, start, i - start);
+            writer.write(entity);
+            start = i + 1;
+        }
+        writer.write(text, start, text.length() - start);
+    }
+}
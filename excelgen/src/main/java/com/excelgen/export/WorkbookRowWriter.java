@@ -0,0 +1,89 @@
+package com.excelgen.export;
+
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateCell;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes rendered rows into the template sheet of a workbook, the way JXLS
+ * leaves its output: template rows and command comments are replaced by the
+ * rendered rows, and every cell keeps the style of the template cell it was
+ * produced from. Use on a workbook of the same template the layout was
+ * compiled from, typically one from the
+ * {@link com.excelgen.template.WorkbookSnapshotPool}.
+ */
+public class WorkbookRowWriter implements RowSink {
+
+    private final Workbook workbook;
+    private final Sheet sheet;
+    private final short[] heights;
+
+    public WorkbookRowWriter(Workbook workbook, TemplateLayout layout) {
+        this.workbook = workbook;
+        Sheet named = workbook.getSheet(layout.getSheetName());
+        this.sheet = named != null ? named : workbook.getSheetAt(0);
+
+        // Keep the template row heights, then clear the template rows
+        heights = new short[layout.getRowCount()];
+        List<Row> rows = new ArrayList<>();
+        for (Row row : sheet) {
+            if (row.getRowNum() < heights.length) {
+                heights[row.getRowNum()] = row.getHeight();
+            }
+            for (Cell cell : row) {
+                if (cell.getCellComment() != null) {
+                    cell.removeCellComment();
+                }
+            }
+            rows.add(row);
+        }
+        for (Row row : rows) {
+            sheet.removeRow(row);
+        }
+    }
+
+    @Override
+    public void row(int outputRow, TemplateRow source, Object[] values) throws IOException {
+        Row row = sheet.createRow(outputRow);
+        if (source.getIndex() < heights.length && heights[source.getIndex()] > 0) {
+            row.setHeight(heights[source.getIndex()]);
+        }
+
+        for (int c = 0; c < values.length; c++) {
+            TemplateCell templateCell = source.getCell(c);
+            if (templateCell == null && values[c] == null) {
+                continue;
+            }
+            Cell cell = row.createCell(c);
+            if (templateCell != null) {
+                cell.setCellStyle(workbook.getCellStyleAt(templateCell.getStyleIndex()));
+            }
+            setValue(cell, values[c]);
+        }
+    }
+
+    private static void setValue(Cell cell, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number) {
+            cell.setCellValue(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.excelgen.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+
+/**
+ * An expression compiled by {@link ExpressionCompiler}. Evaluation returns
+ * {@link #FALLBACK} for any case it does not handle exactly like JEXL, and
+ * the caller then evaluates the expression with JEXL instead.
+ */
+abstract class CompiledExpression {
+
+    static final Object FALLBACK = new Object();
+
+    abstract Object evaluate(Map<String, Object> vars);
+
+    /**
+     * var.property.property... read through cached getter handles. A null
+     * bean on the way yields null, like JEXL, without involving JEXL.
+     */
+    static final class Path extends CompiledExpression {
+
+        private final String variable;
+        private final String[] properties;
+
+        Path(String variable, String[] properties) {
+            this.variable = variable;
+            this.properties = properties;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> vars) {
+            Object value = vars.get(variable);
+            for (String property : properties) {
+                if (value == null) {
+                    NullNavigation.suppressed();
+                    return null;
+                }
+                if (value instanceof Map) {
+                    value = ((Map<?, ?>) value).get(property);
+                    continue;
+                }
+                MethodHandle getter = PropertyAccessors.getter(value.getClass(), property);
+                if (getter == PropertyAccessors.MISSING) {
+                    return FALLBACK;
+                }
+                try {
+                    value = (Object) getter.invokeExact(value);
+                } catch (Throwable e) {
+                    return FALLBACK;
+                }
+            }
+            return value;
+        }
+    }
+
+    static final class Literal extends CompiledExpression {
+
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> vars) {
+            return value;
+        }
+    }
+
+    /**
+     * !operand for a boolean or null operand
+     */
+    static final class Not extends CompiledExpression {
+
+        private final CompiledExpression operand;
+
+        Not(CompiledExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> vars) {
+            Object value = operand.evaluate(vars);
+            if (value instanceof Boolean) {
+                return !(Boolean) value;
+            }
+            // JEXL: !null is true
+            return value == null ? Boolean.TRUE : FALLBACK;
+        }
+    }
+
+    /**
+     * left op right for numbers, strings and booleans, and null against
+     * anything
+     */
+    static final class Comparison extends CompiledExpression {
+
+        private final CompiledExpression left;
+        private final SimpleExpression.Operator operator;
+        private final CompiledExpression right;
+
+        Comparison(CompiledExpression left, SimpleExpression.Operator operator, CompiledExpression right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> vars) {
+            Object a = left.evaluate(vars);
+            if (a == FALLBACK) {
+                return FALLBACK;
+            }
+            Object b = right.evaluate(vars);
+            if (b == FALLBACK) {
+                return FALLBACK;
+            }
+
+            int compared;
+            if ((a == null || b == null) && operator != SimpleExpression.Operator.EQ
+                    && operator != SimpleExpression.Operator.NE) {
+                // JEXL: null is neither less nor greater than anything
+                return false;
+            }
+            if (a instanceof Number && b instanceof Number) {
+                compared = compareNumbers((Number) a, (Number) b);
+            } else if (a instanceof String && b instanceof String) {
+                compared = ((String) a).compareTo((String) b);
+            } else if (operator == SimpleExpression.Operator.EQ || operator == SimpleExpression.Operator.NE) {
+                if (a == null || b == null) {
+                    compared = a == b ? 0 : 1;
+                } else if (a instanceof Boolean && b instanceof Boolean) {
+                    compared = a.equals(b) ? 0 : 1;
+                } else {
+                    return FALLBACK;
+                }
+            } else {
+                return FALLBACK;
+            }
+
+            switch (operator) {
+                case LT:
+                    return compared < 0;
+                case LE:
+                    return compared <= 0;
+                case GT:
+                    return compared > 0;
+                case GE:
+                    return compared >= 0;
+                case EQ:
+                    return compared == 0;
+                default:
+                    return compared != 0;
+            }
+        }
+
+        private static int compareNumbers(Number a, Number b) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(a.longValue(), b.longValue());
+            }
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+
+        private static boolean isIntegral(Number n) {
+            return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+        }
+    }
+}
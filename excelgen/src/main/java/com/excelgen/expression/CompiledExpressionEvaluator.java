@@ -0,0 +1,110 @@
+package com.excelgen.expression;
+
+import org.jxls.expression.ExpressionEvaluator;
+import org.jxls.expression.JexlExpressionEvaluator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ExpressionEvaluator} that compiles simple property paths,
+ * comparisons and boolean flags once into getter method-handle chains, so a
+ * ${phone.phoneNo} inside a long jx:each costs about as much as calling the
+ * getters directly. Every other expression, and any value the compiled form
+ * cannot handle exactly like JEXL, is evaluated by JEXL.
+ *
+ * Thread-safe; one instance can be shared by all renders.
+ */
+public class CompiledExpressionEvaluator implements ExpressionEvaluator {
+
+    private static final CompiledExpressionEvaluator SHARED = new CompiledExpressionEvaluator();
+
+    /**
+     * Expressions JEXL has to handle, so they are not parsed again
+     */
+    private static final CompiledExpression NOT_COMPILABLE = new CompiledExpression.Literal(null);
+
+    private final Map<String, CompiledExpression> compiled;
+    private final JexlExpressionEvaluator jexl;
+    private final String expression;
+    private final LongAdder fallbacks;
+
+    public CompiledExpressionEvaluator() {
+        this(new ConcurrentHashMap<>(), new JexlExpressionEvaluator(), null, new LongAdder());
+    }
+
+    /**
+     * Evaluator bound to one expression, for {@link #evaluate(Map)}
+     */
+    public CompiledExpressionEvaluator(String expression) {
+        this(SHARED.compiled, SHARED.jexl, expression, SHARED.fallbacks);
+    }
+
+    private CompiledExpressionEvaluator(Map<String, CompiledExpression> compiled, JexlExpressionEvaluator jexl,
+                                        String expression, LongAdder fallbacks) {
+        this.compiled = compiled;
+        this.jexl = jexl;
+        this.expression = expression;
+        this.fallbacks = fallbacks;
+    }
+
+    public static CompiledExpressionEvaluator shared() {
+        return SHARED;
+    }
+
+    @Override
+    public Object evaluate(String expression, Map<String, Object> context) {
+        CompiledExpression compiledExpression = compiled.get(expression);
+        if (compiledExpression == null) {
+            compiledExpression = ExpressionCompiler.compile(expression);
+            if (compiledExpression == null) {
+                compiledExpression = NOT_COMPILABLE;
+            }
+            compiled.put(expression, compiledExpression);
+        }
+
+        if (compiledExpression != NOT_COMPILABLE) {
+            Object value = compiledExpression.evaluate(context);
+            if (value != CompiledExpression.FALLBACK) {
+                return value;
+            }
+        }
+        fallbacks.increment();
+        return jexl.evaluate(expression, context);
+    }
+
+    @Override
+    public Object evaluate(Map<String, Object> context) {
+        return evaluate(expression, context);
+    }
+
+    @Override
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * True when the expression is handled without JEXL (for inputs the
+     * compiled form supports)
+     */
+    public boolean isCompiled(String expression) {
+        ensureCompiled(expression);
+        CompiledExpression compiledExpression = compiled.get(expression);
+        return compiledExpression != null && compiledExpression != NOT_COMPILABLE;
+    }
+
+    private void ensureCompiled(String expression) {
+        if (!compiled.containsKey(expression)) {
+            CompiledExpression compiledExpression = ExpressionCompiler.compile(expression);
+            compiled.putIfAbsent(expression, compiledExpression != null ? compiledExpression : NOT_COMPILABLE);
+        }
+    }
+
+    /**
+     * Evaluations handed to JEXL so far
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+}
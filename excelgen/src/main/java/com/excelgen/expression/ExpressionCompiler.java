@@ -0,0 +1,195 @@
+package com.excelgen.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the simple expressions templates use most into
+ * {@link SimpleExpression}s, and compiles those into {@link CompiledExpression}
+ * trees:
+ * <ul>
+ *   <li>property paths: {@code person.address.type}</li>
+ *   <li>boolean flags and their negation: {@code person.addressExists}, {@code !person.addressExists}</li>
+ *   <li>one comparison of paths and literals: {@code person.age < 18}, {@code phone.phoneType == 'Home'}</li>
+ * </ul>
+ * Anything else (method calls, arithmetic, &amp;&amp;/||, brackets) is left to JEXL.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * @return the compiled expression, or null when it must be left to JEXL
+     */
+    static CompiledExpression compile(String expression) {
+        SimpleExpression parsed = parse(expression);
+        return parsed != null ? compile(parsed) : null;
+    }
+
+    /**
+     * @return the parsed expression, or null when it is outside the subset
+     */
+    public static SimpleExpression parse(String expression) {
+        List<String> tokens = tokenize(expression);
+        if (tokens == null || tokens.isEmpty()) {
+            return null;
+        }
+
+        if (tokens.size() == 1) {
+            return operand(tokens.get(0));
+        }
+        if (tokens.size() == 2 && isNot(tokens.get(0))) {
+            SimpleExpression operand = operand(tokens.get(1));
+            return operand != null && operand.getKind() == SimpleExpression.Kind.PATH
+                    ? SimpleExpression.not(operand) : null;
+        }
+        if (tokens.size() == 3) {
+            SimpleExpression.Operator operator = operator(tokens.get(1));
+            SimpleExpression left = operand(tokens.get(0));
+            SimpleExpression right = operand(tokens.get(2));
+            if (operator != null && left != null && right != null) {
+                return SimpleExpression.comparison(left, operator, right);
+            }
+        }
+        return null;
+    }
+
+    private static CompiledExpression compile(SimpleExpression expression) {
+        switch (expression.getKind()) {
+            case PATH:
+                return new CompiledExpression.Path(expression.getVariable(),
+                        expression.getProperties().toArray(new String[0]));
+            case LITERAL:
+                return new CompiledExpression.Literal(expression.getValue());
+            case NOT:
+                return new CompiledExpression.Not(compile(expression.getLeft()));
+            default:
+                return new CompiledExpression.Comparison(compile(expression.getLeft()), expression.getOperator(),
+                        compile(expression.getRight()));
+        }
+    }
+
+    private static boolean isNot(String token) {
+        return token.equals("!") || token.equals("not");
+    }
+
+    private static SimpleExpression.Operator operator(String token) {
+        switch (token) {
+            case "<":
+            case "lt":
+                return SimpleExpression.Operator.LT;
+            case "<=":
+            case "le":
+                return SimpleExpression.Operator.LE;
+            case ">":
+            case "gt":
+                return SimpleExpression.Operator.GT;
+            case ">=":
+            case "ge":
+                return SimpleExpression.Operator.GE;
+            case "==":
+            case "eq":
+                return SimpleExpression.Operator.EQ;
+            case "!=":
+            case "ne":
+                return SimpleExpression.Operator.NE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * A literal or a property path, or null for anything else
+     */
+    private static SimpleExpression operand(String token) {
+        char first = token.charAt(0);
+        if (first == '\'' || first == '"') {
+            return SimpleExpression.literal(token.substring(1, token.length() - 1));
+        }
+        if (Character.isDigit(first)) {
+            try {
+                if (token.indexOf('.') >= 0) {
+                    return SimpleExpression.literal(Double.valueOf(token));
+                }
+                return SimpleExpression.literal(Integer.valueOf(token));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        switch (token) {
+            case "true":
+                return SimpleExpression.literal(Boolean.TRUE);
+            case "false":
+                return SimpleExpression.literal(Boolean.FALSE);
+            case "null":
+                return SimpleExpression.literal(null);
+            default:
+                break;
+        }
+
+        String[] segments = token.split("\\.", -1);
+        for (String segment : segments) {
+            if (!isIdentifier(segment) || operator(segment) != null || isNot(segment)) {
+                return null;
+            }
+        }
+        String[] properties = new String[segments.length - 1];
+        System.arraycopy(segments, 1, properties, 0, properties.length);
+        return SimpleExpression.path(segments[0], properties);
+    }
+
+    private static boolean isIdentifier(String s) {
+        if (s.isEmpty() || !Character.isJavaIdentifierStart(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < s.length(); i++) {
+            if (!Character.isJavaIdentifierPart(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split into paths, literals and operators; null when the expression
+     * contains anything else
+     */
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = expression.indexOf(c, i + 1);
+                if (end < 0 || expression.lastIndexOf('\\', end) > i) {
+                    return null;
+                }
+                tokens.add(expression.substring(i, end + 1));
+                i = end + 1;
+            } else if (c == '<' || c == '>' || c == '=' || c == '!') {
+                int end = i + 1 < length && expression.charAt(i + 1) == '=' ? i + 2 : i + 1;
+                String op = expression.substring(i, end);
+                if (op.equals("=")) {
+                    return null;
+                }
+                tokens.add(op);
+                i = end;
+            } else if (Character.isJavaIdentifierPart(c) || c == '.') {
+                int end = i;
+                while (end < length && (Character.isJavaIdentifierPart(expression.charAt(end))
+                        || expression.charAt(end) == '.')) {
+                    end++;
+                }
+                tokens.add(expression.substring(i, end));
+                i = end;
+            } else {
+                return null;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,33 @@
+package com.excelgen.expression;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts property paths that stopped at a null bean, such as
+ * ${person.address.addressLine} for a person without an address.
+ *
+ * Compiled expressions and generated renderers check every bean on a path
+ * for null and yield an empty value right there, instead of letting the
+ * evaluator fail and log. This counter is the only trace they leave.
+ */
+public final class NullNavigation {
+
+    private static final LongAdder SUPPRESSED = new LongAdder();
+
+    private NullNavigation() {
+    }
+
+    /**
+     * Record one path that ended at a null bean
+     */
+    public static void suppressed() {
+        SUPPRESSED.increment();
+    }
+
+    /**
+     * Paths that ended at a null bean since startup
+     */
+    public static long getSuppressedCount() {
+        return SUPPRESSED.sum();
+    }
+}
@@ -0,0 +1,63 @@
+package com.excelgen.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Getter method handles per bean class and property name, looked up once and
+ * then invoked like a direct call. A property is read with getX() or, like
+ * JEXL does, isX().
+ */
+final class PropertyAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Marks a property without a usable public getter
+     */
+    static final MethodHandle MISSING = MethodHandles.constant(Object.class, null);
+
+    private static final ClassValue<Map<String, MethodHandle>> GETTERS = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * Getter of a property as an (Object)Object handle, or {@link #MISSING}
+     */
+    static MethodHandle getter(Class<?> type, String property) {
+        Map<String, MethodHandle> getters = GETTERS.get(type);
+        MethodHandle getter = getters.get(property);
+        if (getter == null) {
+            getter = lookup(type, property);
+            getters.put(property, getter);
+        }
+        return getter;
+    }
+
+    private static MethodHandle lookup(Class<?> type, String property) {
+        String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (String name : new String[]{"get" + suffix, "is" + suffix}) {
+            try {
+                Method method = type.getMethod(name);
+                if (method.getReturnType() == void.class || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    continue;
+                }
+                return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                // try the next name
+            }
+        }
+        return MISSING;
+    }
+}
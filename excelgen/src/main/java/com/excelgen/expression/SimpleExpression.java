@@ -0,0 +1,91 @@
+package com.excelgen.expression;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsed form of an expression in the subset {@link ExpressionCompiler}
+ * understands: a property path, a literal, a negated path, or one
+ * comparison of paths and literals.
+ */
+public final class SimpleExpression {
+
+    public enum Kind { PATH, LITERAL, NOT, COMPARISON }
+
+    public enum Operator { LT, LE, GT, GE, EQ, NE }
+
+    private final Kind kind;
+    private final String variable;
+    private final String[] properties;
+    private final Object value;
+    private final Operator operator;
+    private final SimpleExpression left;
+    private final SimpleExpression right;
+
+    private SimpleExpression(Kind kind, String variable, String[] properties, Object value,
+                             Operator operator, SimpleExpression left, SimpleExpression right) {
+        this.kind = kind;
+        this.variable = variable;
+        this.properties = properties;
+        this.value = value;
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    static SimpleExpression path(String variable, String[] properties) {
+        return new SimpleExpression(Kind.PATH, variable, properties, null, null, null, null);
+    }
+
+    static SimpleExpression literal(Object value) {
+        return new SimpleExpression(Kind.LITERAL, null, null, value, null, null, null);
+    }
+
+    static SimpleExpression not(SimpleExpression operand) {
+        return new SimpleExpression(Kind.NOT, null, null, null, null, operand, null);
+    }
+
+    static SimpleExpression comparison(SimpleExpression left, Operator operator, SimpleExpression right) {
+        return new SimpleExpression(Kind.COMPARISON, null, null, null, operator, left, right);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Variable a path starts from
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    /**
+     * Properties read from the variable, in order
+     */
+    public List<String> getProperties() {
+        return Arrays.asList(properties);
+    }
+
+    /**
+     * Value of a literal: String, Integer, Double, Boolean or null
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Left side of a comparison, or the operand of a negation
+     */
+    public SimpleExpression getLeft() {
+        return left;
+    }
+
+    public SimpleExpression getRight() {
+        return right;
+    }
+}
@@ -0,0 +1,311 @@
+package com.excelgen.importer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Write side of a bean property path such as person.address.type, resolved
+ * once per template against the bean classes. Intermediate beans that are
+ * still null are created with their no-arg constructor and set on their
+ * parent, so importing an address row gives the person an Address.
+ */
+final class BeanPath {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodHandle ADD_TO_COLLECTION;
+
+    static {
+        try {
+            ADD_TO_COLLECTION = MethodHandles.lookup().findStatic(BeanPath.class, "addToCollection",
+                    MethodType.methodType(void.class, MethodHandle.class, MethodHandle.class,
+                            Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String text;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    private final MethodHandle[] constructors;
+    private final Class<?> holderType;
+    private final String property;
+
+    private BeanPath(String text, MethodHandle[] getters, MethodHandle[] setters, MethodHandle[] constructors,
+                     Class<?> holderType, String property) {
+        this.text = text;
+        this.getters = getters;
+        this.setters = setters;
+        this.constructors = constructors;
+        this.holderType = holderType;
+        this.property = property;
+    }
+
+    /**
+     * Resolve the beans leading to the last property of the path
+     *
+     * @return the path, or null when an intermediate bean cannot be read,
+     *         set or created
+     */
+    static BeanPath resolve(Class<?> rootType, List<String> properties) {
+        int depth = properties.size() - 1;
+        MethodHandle[] getters = new MethodHandle[depth];
+        MethodHandle[] setters = new MethodHandle[depth];
+        MethodHandle[] constructors = new MethodHandle[depth];
+        Class<?> type = rootType;
+        for (int i = 0; i < depth; i++) {
+            Method getter = getter(type, properties.get(i));
+            if (getter == null) {
+                return null;
+            }
+            Class<?> child = getter.getReturnType();
+            MethodHandle setter = setter(type, properties.get(i), child);
+            MethodHandle constructor = constructor(child);
+            if (setter == null || constructor == null) {
+                return null;
+            }
+            getters[i] = unreflect(getter).asType(GETTER_TYPE);
+            setters[i] = setter;
+            constructors[i] = constructor;
+            type = child;
+        }
+        return new BeanPath(String.join(".", properties), getters, setters, constructors,
+                type, properties.get(depth));
+    }
+
+    /**
+     * Bean holding the last property, creating missing beans on the way
+     */
+    Object holder(Object root) {
+        Object bean = root;
+        try {
+            for (int i = 0; i < getters.length; i++) {
+                Object child = getters[i].invokeExact(bean);
+                if (child == null) {
+                    child = constructors[i].invokeExact();
+                    setters[i].invokeExact(bean, child);
+                }
+                bean = child;
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot set " + text + ": " + e, e);
+        }
+        return bean;
+    }
+
+    Class<?> getHolderType() {
+        return holderType;
+    }
+
+    String getProperty() {
+        return property;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Public getX() or isX() method of a property, or null
+     */
+    static Method getter(Class<?> type, String property) {
+        String suffix = suffix(property);
+        for (String name : new String[]{"get" + suffix, "is" + suffix}) {
+            try {
+                Method method = type.getMethod(name);
+                if (method.getReturnType() != void.class && isPublic(method)) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next name
+            }
+        }
+        return null;
+    }
+
+    /**
+     * setX(...) of a property as a (Object,Object)void handle, preferring the
+     * overload taking the given type; null when there is none
+     */
+    static MethodHandle setter(Class<?> type, String property, Class<?> preferred) {
+        Method method = setterMethod(type, property, preferred);
+        return method != null ? unreflect(method).asType(SETTER_TYPE) : null;
+    }
+
+    static Method setterMethod(Class<?> type, String property, Class<?> preferred) {
+        String name = "set" + suffix(property);
+        Method found = null;
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1 && isPublic(method)) {
+                if (method.getParameterTypes()[0] == preferred) {
+                    return method;
+                }
+                found = found != null ? found : method;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Handle adding an item of a jx:each collection to its holder: an
+     * addX(item) method such as Person.addPhone(Phone) for the phones
+     * property when there is one, so the bean keeps its own bookkeeping,
+     * otherwise add to the collection returned by the getter, creating and
+     * setting an ArrayList when it is null.
+     *
+     * @return a (holder,item)void handle, or null when items cannot be added
+     */
+    static MethodHandle adder(Class<?> holderType, String property, Class<?> itemType) {
+        for (Method method : holderType.getMethods()) {
+            String name = method.getName();
+            if (name.startsWith("add") && name.length() > 3 && method.getParameterCount() == 1
+                    && method.getParameterTypes()[0] == itemType && isPublic(method)
+                    && property.toLowerCase().startsWith(name.substring(3).toLowerCase())) {
+                return unreflect(method).asType(SETTER_TYPE);
+            }
+        }
+
+        Method getter = getter(holderType, property);
+        if (getter == null || !Collection.class.isAssignableFrom(getter.getReturnType())) {
+            return null;
+        }
+        MethodHandle get = unreflect(getter).asType(GETTER_TYPE);
+        MethodHandle set = getter.getReturnType().isAssignableFrom(ArrayList.class)
+                ? setter(holderType, property, getter.getReturnType())
+                : null;
+        return MethodHandles.insertArguments(ADD_TO_COLLECTION, 0, get, set);
+    }
+
+    /**
+     * Element type of a collection property, from its generic getter type
+     *
+     * @return the element class, or null when the getter is not a
+     *         parameterised collection
+     */
+    static Class<?> itemType(Class<?> holderType, String property) {
+        Method getter = getter(holderType, property);
+        if (getter == null || !Collection.class.isAssignableFrom(getter.getReturnType())) {
+            return null;
+        }
+        Type type = getter.getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * No-arg constructor as a ()Object handle, or null
+     */
+    static MethodHandle constructor(Class<?> type) {
+        try {
+            if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())) {
+                return null;
+            }
+            return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+                    .asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True when cell text can be converted to the type by {@link #convert}
+     */
+    static boolean isConvertible(Class<?> type) {
+        return type == String.class || type == Object.class
+                || type == int.class || type == Integer.class
+                || type == long.class || type == Long.class
+                || type == short.class || type == Short.class
+                || type == double.class || type == Double.class
+                || type == float.class || type == Float.class
+                || type == boolean.class || type == Boolean.class
+                || type == BigDecimal.class;
+    }
+
+    /**
+     * Convert the displayed text of a cell to a property type
+     *
+     * @throws IllegalArgumentException when the text is not a valid value
+     */
+    static Object convert(String text, Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return text;
+        }
+        String value = text.trim();
+        try {
+            if (type == int.class || type == Integer.class) {
+                return new BigDecimal(value).intValueExact();
+            } else if (type == long.class || type == Long.class) {
+                return new BigDecimal(value).longValueExact();
+            } else if (type == short.class || type == Short.class) {
+                return new BigDecimal(value).shortValueExact();
+            } else if (type == double.class || type == Double.class) {
+                return Double.parseDouble(value);
+            } else if (type == float.class || type == Float.class) {
+                return Float.parseFloat(value);
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(value);
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("'" + text + "' is not a valid " + type.getSimpleName());
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            if (value.equalsIgnoreCase("true")) {
+                return Boolean.TRUE;
+            } else if (value.equalsIgnoreCase("false")) {
+                return Boolean.FALSE;
+            }
+            throw new IllegalArgumentException("'" + text + "' is not TRUE or FALSE");
+        }
+        throw new IllegalArgumentException("Cannot convert to " + type.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addToCollection(MethodHandle getter, MethodHandle setter, Object holder, Object item)
+            throws Throwable {
+        Collection<Object> items = (Collection<Object>) (Object) getter.invokeExact(holder);
+        if (items == null) {
+            if (setter == null) {
+                throw new IllegalStateException("Collection is null and cannot be set");
+            }
+            items = new ArrayList<>();
+            setter.invokeExact(holder, (Object) items);
+        }
+        items.add(item);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access " + method, e);
+        }
+    }
+
+    private static boolean isPublic(Method method) {
+        return Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    private static String suffix(String property) {
+        return Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    }
+}
@@ -0,0 +1,410 @@
+package com.excelgen.importer;
+
+import com.excelgen.ValueInterner;
+import com.excelgen.expression.ExpressionCompiler;
+import com.excelgen.expression.SimpleExpression;
+import com.excelgen.template.CellText;
+import com.excelgen.template.TemplateCell;
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reverse of a compiled template: for every template row, the labels a
+ * filled copy of it shows and the bean properties its ${...} cells were
+ * rendered from.
+ *
+ * Rows are described the way the {@link com.excelgen.template.LayoutWalker}
+ * renders them, so the command cell of a degenerate jx:if is not expected as
+ * a label, and the rows of a top-level jx:each form a {@link Group} that may
+ * repeat. Only cells holding a single property path such as
+ * ${person.address.type}, possibly with literal text around it, are
+ * imported; other expressions are listed in {@link #getSkipped()}.
+ */
+final class ImportPlan {
+
+    private final String rootVar;
+    private final Class<?> rootType;
+    private final MethodHandle rootConstructor;
+    private final int width;
+    private final Rule[] rules;
+    private final List<String> skipped;
+
+    private ImportPlan(String rootVar, Class<?> rootType, MethodHandle rootConstructor, int width,
+                       Rule[] rules, List<String> skipped) {
+        this.rootVar = rootVar;
+        this.rootType = rootType;
+        this.rootConstructor = rootConstructor;
+        this.width = width;
+        this.rules = rules;
+        this.skipped = Collections.unmodifiableList(skipped);
+    }
+
+    /**
+     * Build the plan of a template whose root variable is a bean of the given type
+     *
+     * @throws IllegalArgumentException when the root type cannot be created
+     */
+    static ImportPlan build(TemplateLayout layout, String rootVar, Class<?> rootType) {
+        MethodHandle rootConstructor = BeanPath.constructor(rootType);
+        if (rootConstructor == null) {
+            throw new IllegalArgumentException(rootType.getName() + " has no public no-arg constructor");
+        }
+
+        int rowCount = layout.getRowCount();
+        int[] clearedColumns = new int[rowCount];
+        Arrays.fill(clearedColumns, -1);
+        TemplateCommand[] eachOfRow = new TemplateCommand[rowCount];
+        for (TemplateCommand area : layout.getAreas()) {
+            if (!area.isDegenerate()) {
+                visit(area.getChildren(), null, clearedColumns, eachOfRow);
+            }
+        }
+
+        List<String> skipped = new ArrayList<>();
+        List<Rule> rules = new ArrayList<>();
+        Group group = null;
+        for (int r = 0; r < rowCount; r++) {
+            TemplateCommand each = eachOfRow[r];
+            if (each == null) {
+                group = null;
+            } else if (group == null || group.command != each) {
+                group = Group.resolve(each, rootVar, rootType, skipped);
+            }
+
+            Rule rule = Rule.build(layout.getRow(r), layout.getWidth(), clearedColumns[r], rootVar, rootType,
+                    group, skipped);
+            if (rule != null) {
+                rule.index = rules.size();
+                if (rule.group != null) {
+                    if (rule.group.firstRule < 0) {
+                        rule.group.firstRule = rule.index;
+                    }
+                    rule.group.lastRule = rule.index;
+                }
+                rules.add(rule);
+            }
+        }
+        return new ImportPlan(rootVar, rootType, rootConstructor, layout.getWidth(),
+                rules.toArray(new Rule[0]), skipped);
+    }
+
+    /**
+     * Mark the command cells of degenerate commands, which JXLS clears, and
+     * the rows of top-level jx:each commands
+     */
+    private static void visit(List<TemplateCommand> commands, TemplateCommand each,
+                              int[] clearedColumns, TemplateCommand[] eachOfRow) {
+        for (TemplateCommand command : commands) {
+            if (command.isDegenerate()) {
+                if (command.getFirstRow() < clearedColumns.length) {
+                    clearedColumns[command.getFirstRow()] = command.getFirstColumn();
+                }
+                continue;
+            }
+            TemplateCommand inner = each;
+            if (each == null && TemplateCommand.EACH.equals(command.getName())) {
+                inner = command;
+                for (int r = command.getFirstRow(); r <= command.getLastRow() && r < eachOfRow.length; r++) {
+                    eachOfRow[r] = command;
+                }
+            }
+            visit(command.getChildren(), inner, clearedColumns, eachOfRow);
+        }
+    }
+
+    String getRootVar() {
+        return rootVar;
+    }
+
+    Class<?> getRootType() {
+        return rootType;
+    }
+
+    /**
+     * Number of columns a filled row is read from
+     */
+    int getWidth() {
+        return width;
+    }
+
+    int getRuleCount() {
+        return rules.length;
+    }
+
+    Rule getRule(int index) {
+        return rules[index];
+    }
+
+    /**
+     * Expressions that are rendered but cannot be imported
+     */
+    List<String> getSkipped() {
+        return skipped;
+    }
+
+    Object newRoot() {
+        try {
+            return rootConstructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create " + rootType.getName(), e);
+        }
+    }
+
+    /**
+     * One template row as it appears in a filled copy
+     */
+    static final class Rule {
+
+        final int templateRow;
+        /** Expected label text per column, null where the cell is not a label */
+        final String[] labels;
+        final Binding[] bindings;
+        final Group group;
+        /** True when the row can be recognised by its text, not only its position */
+        final boolean labeled;
+        int index;
+
+        private Rule(int templateRow, String[] labels, Binding[] bindings, Group group, boolean labeled) {
+            this.templateRow = templateRow;
+            this.labels = labels;
+            this.bindings = bindings;
+            this.group = group;
+            this.labeled = labeled;
+        }
+
+        static Rule build(TemplateRow row, int width, int clearedColumn, String rootVar, Class<?> rootType,
+                          Group group, List<String> skipped) {
+            String[] labels = new String[width];
+            List<Binding> bindings = new ArrayList<>();
+            boolean labeled = false;
+            for (int c = 0; c < width; c++) {
+                TemplateCell cell = row.getCell(c);
+                if (cell == null || c == clearedColumn) {
+                    continue;
+                }
+                if (!cell.isDynamic()) {
+                    Object value = cell.getStaticValue();
+                    if (value instanceof String && !((String) value).trim().isEmpty()) {
+                        labels[c] = ((String) value).trim();
+                        labeled = true;
+                    }
+                    continue;
+                }
+                Binding binding = Binding.resolve(c, cell.getText(), rootVar, rootType, group);
+                if (binding == null) {
+                    skipped.add(cell.getText().getRaw());
+                    continue;
+                }
+                bindings.add(binding);
+                labeled |= !binding.prefix.trim().isEmpty() || !binding.suffix.trim().isEmpty();
+            }
+            if (!labeled && bindings.isEmpty()) {
+                return null;
+            }
+            return new Rule(row.getIndex(), labels, bindings.toArray(new Binding[0]), group, labeled);
+        }
+
+        /**
+         * True when every label of the row is found in the filled cells
+         */
+        boolean matchesLabels(String[] cells) {
+            for (int c = 0; c < labels.length; c++) {
+                if (labels[c] != null && (cells[c] == null || !labels[c].equals(cells[c].trim()))) {
+                    return false;
+                }
+            }
+            for (Binding binding : bindings) {
+                String value = cells[binding.column];
+                if (value != null && !binding.fits(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A ${...} cell written back into a bean property
+     */
+    static final class Binding {
+
+        final int column;
+        final String prefix;
+        final String suffix;
+        /** True when the property belongs to the jx:each item rather than the root */
+        final boolean item;
+        final BeanPath path;
+        final MethodHandle setter;
+        final Class<?> type;
+        /** True for low-cardinality String properties, see {@link ValueInterner} */
+        final boolean interned;
+
+        private Binding(int column, String prefix, String suffix, boolean item, BeanPath path,
+                        MethodHandle setter, Class<?> type) {
+            this.column = column;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.item = item;
+            this.path = path;
+            this.setter = setter;
+            this.type = type;
+            this.interned = type == String.class && ValueInterner.shared().isInterned(path.getProperty());
+        }
+
+        static Binding resolve(int column, CellText text, String rootVar, Class<?> rootType, Group group) {
+            if (text.getExpressionCount() != 1) {
+                return null;
+            }
+            SimpleExpression expression = ExpressionCompiler.parse(text.getExpression(0));
+            if (expression == null || expression.getKind() != SimpleExpression.Kind.PATH
+                    || expression.getProperties().isEmpty()) {
+                return null;
+            }
+
+            boolean item;
+            Class<?> type;
+            if (expression.getVariable().equals(rootVar)) {
+                item = false;
+                type = rootType;
+            } else if (group != null && group.itemType != null && expression.getVariable().equals(group.var)) {
+                item = true;
+                type = group.itemType;
+            } else {
+                return null;
+            }
+
+            BeanPath path = BeanPath.resolve(type, expression.getProperties());
+            if (path == null) {
+                return null;
+            }
+            Method getter = BeanPath.getter(path.getHolderType(), path.getProperty());
+            Method setter = BeanPath.setterMethod(path.getHolderType(), path.getProperty(),
+                    getter != null ? getter.getReturnType() : String.class);
+            if (setter == null || !BeanPath.isConvertible(setter.getParameterTypes()[0])) {
+                return null;
+            }
+            return new Binding(column, text.getLiteral(0), text.getLiteral(1), item, path,
+                    BeanPath.setter(path.getHolderType(), path.getProperty(), setter.getParameterTypes()[0]),
+                    setter.getParameterTypes()[0]);
+        }
+
+        /**
+         * True when filled text has the literal text around the expression
+         */
+        boolean fits(String value) {
+            return value.length() >= prefix.length() + suffix.length()
+                    && value.startsWith(prefix) && value.endsWith(suffix);
+        }
+
+        /**
+         * The part of the filled text that replaced the expression, or null
+         * when nothing was filled in
+         */
+        String extract(String value) {
+            if (value == null || !fits(value)) {
+                return null;
+            }
+            String extracted = value.substring(prefix.length(), value.length() - suffix.length());
+            return extracted.trim().isEmpty() ? null : extracted;
+        }
+
+        /**
+         * Convert and set the value on the root or item bean
+         *
+         * @throws IllegalArgumentException when the text is not a valid value
+         */
+        void apply(Object target, String value) {
+            Object converted = interned ? ValueInterner.shared().intern(value) : BeanPath.convert(value, type);
+            Object holder = path.holder(target);
+            try {
+                setter.invokeExact(holder, converted);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot set " + path + ": " + e, e);
+            }
+        }
+    }
+
+    /**
+     * The rows of a top-level jx:each, repeated once per item
+     */
+    static final class Group {
+
+        final TemplateCommand command;
+        final String var;
+        final int height;
+        final BeanPath holderPath;
+        final Class<?> itemType;
+        final MethodHandle itemConstructor;
+        final MethodHandle adder;
+        int firstRule = -1;
+        int lastRule = -1;
+
+        private Group(TemplateCommand command, BeanPath holderPath, Class<?> itemType,
+                      MethodHandle itemConstructor, MethodHandle adder) {
+            this.command = command;
+            this.var = command.getVar();
+            this.height = command.getRowCount();
+            this.holderPath = holderPath;
+            this.itemType = itemType;
+            this.itemConstructor = itemConstructor;
+            this.adder = adder;
+        }
+
+        /**
+         * Resolve the collection of a jx:each. A group whose items cannot be
+         * created or added keeps its rows, but none of its item cells are imported.
+         */
+        static Group resolve(TemplateCommand command, String rootVar, Class<?> rootType, List<String> skipped) {
+            SimpleExpression items = command.getItems() != null ? ExpressionCompiler.parse(command.getItems()) : null;
+            if (items != null && items.getKind() == SimpleExpression.Kind.PATH
+                    && items.getVariable().equals(rootVar) && !items.getProperties().isEmpty()
+                    && command.getVar() != null) {
+                BeanPath holderPath = BeanPath.resolve(rootType, items.getProperties());
+                if (holderPath != null) {
+                    Class<?> itemType = BeanPath.itemType(holderPath.getHolderType(), holderPath.getProperty());
+                    MethodHandle constructor = itemType != null ? BeanPath.constructor(itemType) : null;
+                    MethodHandle adder = constructor != null
+                            ? BeanPath.adder(holderPath.getHolderType(), holderPath.getProperty(), itemType)
+                            : null;
+                    if (adder != null) {
+                        return new Group(command, holderPath, itemType, constructor, adder);
+                    }
+                }
+            }
+            skipped.add("jx:each items=" + command.getItems());
+            return new Group(command, null, null, null, null);
+        }
+
+        /**
+         * Create an item and add it to the collection of the root
+         *
+         * @return the item, or null when the items cannot be imported
+         */
+        Object newItem(Object root) {
+            if (adder == null) {
+                return null;
+            }
+            try {
+                Object item = itemConstructor.invokeExact();
+                adder.invokeExact(holderPath.holder(root), item);
+                return item;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot add " + var + " to " + holderPath + ": " + e, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.excelgen.importer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bean read from one sheet of an uploaded workbook, with the problems
+ * found on the way, such as an age that is not a number.
+ */
+public final class ImportedSheet<T> {
+
+    private final String fileName;
+    private final String sheetName;
+    private final T value;
+    private final int rowCount;
+    private final List<String> warnings;
+
+    ImportedSheet(String fileName, String sheetName, T value, int rowCount, List<String> warnings) {
+        this.fileName = fileName;
+        this.sheetName = sheetName;
+        this.value = value;
+        this.rowCount = rowCount;
+        this.warnings = Collections.unmodifiableList(warnings);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Number of rows recognised as template rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Cells that could not be imported, and rows that matched no template
+     * row; at most {@link WorkbookImporter#MAX_WARNINGS} per sheet
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    @Override
+    public String toString() {
+        return fileName + "!" + sheetName + " (" + rowCount + " rows, " + warnings.size() + " warnings)";
+    }
+}
@@ -0,0 +1,319 @@
+package com.excelgen.importer;
+
+import com.excelgen.Person;
+import com.excelgen.output.FastGeneralFormatter;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Reads filled copies of a template back into beans, one bean per sheet.
+ *
+ * The mapping comes from the compiled template itself (see {@link ImportPlan}):
+ * a row of the upload is recognised by the labels of a template row, or by
+ * its distance from the last recognised row when the template row has no
+ * label, such as a phone row of the jx:each. Its ${...} cells are converted
+ * and set on the root bean, or on a new item of the jx:each collection.
+ *
+ * Uploads are read with the XSSF event (SAX) API, sheet by sheet, so memory
+ * use does not depend on the number of sheets; only the beans themselves and
+ * the shared strings table are held. Several uploads are imported in
+ * parallel on excelgen.import.threads threads (default: one per core).
+ */
+public final class WorkbookImporter<T> {
+
+    public static final String ROOT_VAR = "person";
+
+    /** Warnings kept per sheet, so a wrong file cannot fill the heap with them */
+    public static final int MAX_WARNINGS = 100;
+
+    private static final int THREADS = Integer.getInteger("excelgen.import.threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService IMPORT_POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "workbook-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ImportPlan plan;
+    private final Class<T> type;
+
+    public WorkbookImporter(TemplateLayout layout, String rootVar, Class<T> type) {
+        this.plan = ImportPlan.build(layout, rootVar, type);
+        this.type = type;
+    }
+
+    /**
+     * Importer of filled copies of a bundled person template
+     *
+     * @return the importer, or null when no such template exists
+     */
+    public static WorkbookImporter<Person> forTemplate(String templateName) throws IOException {
+        TemplateLayout layout = TemplateCache.shared().get(templateName);
+        return layout != null ? new WorkbookImporter<>(layout, ROOT_VAR, Person.class) : null;
+    }
+
+    /**
+     * Expressions of the template that are rendered but not imported, such
+     * as method calls
+     */
+    public List<String> getSkippedExpressions() {
+        return plan.getSkipped();
+    }
+
+    /**
+     * Import every sheet of a file holding at least one template row
+     */
+    public List<ImportedSheet<T>> importFile(File file) throws IOException {
+        List<ImportedSheet<T>> sheets = new ArrayList<>();
+        importFile(file, file.getName(), sheets::add);
+        return sheets;
+    }
+
+    /**
+     * Import a file sheet by sheet, handing each bean to the consumer as soon
+     * as its sheet has been read
+     *
+     * @param name file name to report, e.g. the name of an upload
+     * @return number of sheets imported
+     */
+    public int importFile(File file, String name, Consumer<ImportedSheet<T>> consumer) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            DataFormatter formatter = new FastGeneralFormatter();
+
+            int count = 0;
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    SheetMatcher matcher = new SheetMatcher();
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            styles, null, strings, matcher, formatter, false));
+                    parser.parse(new InputSource(sheet));
+                    if (matcher.matched > 0) {
+                        consumer.accept(new ImportedSheet<>(name, sheets.getSheetName(),
+                                type.cast(matcher.root), matcher.matched, matcher.warnings));
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot read " + name + ": " + e.getMessage(), e);
+        } finally {
+            // Read-only package: discard instead of saving on close
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * Import a file on the import threads
+     */
+    public Future<List<ImportedSheet<T>>> submit(File file, String name) {
+        return IMPORT_POOL.submit(() -> {
+            List<ImportedSheet<T>> sheets = new ArrayList<>();
+            importFile(file, name, sheets::add);
+            return sheets;
+        });
+    }
+
+    /**
+     * Shut down the shared import threads, when the application stops
+     */
+    public static void shutdown() {
+        IMPORT_POOL.shutdownNow();
+    }
+
+    /**
+     * Import several files in parallel
+     *
+     * @return the sheets of all files, in file order
+     * @throws IOException for the first file that cannot be read
+     */
+    public List<ImportedSheet<T>> importAll(List<File> files) throws IOException {
+        List<Future<List<ImportedSheet<T>>>> futures = new ArrayList<>();
+        for (File file : files) {
+            futures.add(submit(file, file.getName()));
+        }
+        List<ImportedSheet<T>> sheets = new ArrayList<>();
+        for (Future<List<ImportedSheet<T>>> future : futures) {
+            sheets.addAll(await(future));
+        }
+        return sheets;
+    }
+
+    /**
+     * Result of a {@link #submit}, with the import failure rethrown as is
+     */
+    public static <T> List<ImportedSheet<T>> await(Future<List<ImportedSheet<T>>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Matches the rows of one sheet against the plan, in template order
+     */
+    private final class SheetMatcher implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final String[] cells = new String[plan.getWidth()];
+        private final Object root = plan.newRoot();
+        private final List<String> warnings = new ArrayList<>();
+        private boolean rowHasCells;
+        private ImportPlan.Rule last;
+        private Object item;
+        private int next;
+        private int lastOutputRow = -1;
+        private int lastTemplateRow = -1;
+        private int matched;
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(cells, null);
+            rowHasCells = false;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowHasCells) {
+                match(rowNum);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue == null || formattedValue.isEmpty()) {
+                return;
+            }
+            int column = new CellReference(cellReference).getCol();
+            if (column < cells.length) {
+                cells[column] = formattedValue;
+                rowHasCells = true;
+            }
+        }
+
+        private void match(int row) {
+            ImportPlan.Rule rule;
+            if (last != null && last.group != null) {
+                ImportPlan.Group group = last.group;
+                // The rest of this item, the next item, or the rows after the jx:each
+                rule = find(row, last.index + 1, group.lastRule, 0);
+                if (rule == null) {
+                    rule = find(row, group.firstRule, last.index, group.height);
+                    if (rule != null) {
+                        consume(row, rule, true);
+                        return;
+                    }
+                    rule = find(row, group.lastRule + 1, plan.getRuleCount() - 1, 0);
+                }
+            } else {
+                rule = find(row, next, plan.getRuleCount() - 1, 0);
+            }
+
+            if (rule == null) {
+                warn("Row " + (row + 1) + " does not match the template");
+                return;
+            }
+            consume(row, rule, rule.group != null && (last == null || last.group != rule.group));
+        }
+
+        /**
+         * First rule between from and to (inclusive) the row matches
+         *
+         * @param shift rows the rule is moved down by, when trying the next item of a jx:each
+         */
+        private ImportPlan.Rule find(int row, int from, int to, int shift) {
+            for (int i = from; i <= to; i++) {
+                ImportPlan.Rule rule = plan.getRule(i);
+                if (rule.labeled
+                        ? rule.matchesLabels(cells)
+                        : row - lastOutputRow == rule.templateRow + shift - lastTemplateRow) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+
+        private void consume(int row, ImportPlan.Rule rule, boolean newItem) {
+            if (newItem) {
+                try {
+                    item = rule.group.newItem(root);
+                } catch (IllegalStateException e) {
+                    item = null;
+                    warn("Row " + (row + 1) + ": " + e.getMessage());
+                }
+            }
+            for (ImportPlan.Binding binding : rule.bindings) {
+                String value = binding.extract(cells[binding.column]);
+                Object target = binding.item ? item : root;
+                if (value == null || target == null) {
+                    continue;
+                }
+                try {
+                    binding.apply(target, value);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    warn("Cell " + CellReference.convertNumToColString(binding.column) + (row + 1)
+                            + " (" + binding.path + "): " + e.getMessage());
+                }
+            }
+            last = rule;
+            next = rule.index + 1;
+            lastOutputRow = row;
+            lastTemplateRow = rule.templateRow;
+            matched++;
+        }
+
+        private void warn(String warning) {
+            if (warnings.size() < MAX_WARNINGS) {
+                warnings.add(warning);
+            }
+        }
+    }
+}
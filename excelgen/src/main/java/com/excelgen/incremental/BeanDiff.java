@@ -0,0 +1,101 @@
+package com.excelgen.incremental;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Lists the property paths that differ between two beans of the same type,
+ * in the form expressions use: person.name, person.address.type,
+ * person.phones[3].phoneNo. A list whose size changed is reported under its
+ * own path as well as for its common elements.
+ */
+final class BeanDiff {
+
+    private static final int MAX_DEPTH = 8;
+
+    private static final ClassValue<List<Method>> GETTERS = new ClassValue<List<Method>>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+            List<Method> getters = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                boolean getter = (name.startsWith("get") && name.length() > 3 && Character.isUpperCase(name.charAt(3)))
+                        || (name.startsWith("is") && name.length() > 2 && Character.isUpperCase(name.charAt(2)));
+                if (getter && method.getParameterCount() == 0 && method.getReturnType() != void.class
+                        && !Modifier.isStatic(method.getModifiers()) && method.getDeclaringClass() != Object.class) {
+                    getters.add(method);
+                }
+            }
+            getters.sort((a, b) -> a.getName().compareTo(b.getName()));
+            return getters;
+        }
+    };
+
+    private BeanDiff() {
+    }
+
+    static List<String> diff(String path, Object before, Object after) {
+        List<String> changes = new ArrayList<>();
+        diff(path, before, after, changes, 0);
+        return changes;
+    }
+
+    private static void diff(String path, Object before, Object after, List<String> changes, int depth) {
+        if (before == after) {
+            return;
+        }
+        if (before == null || after == null || before.getClass() != after.getClass()) {
+            changes.add(path);
+            return;
+        }
+
+        if (before instanceof List) {
+            List<?> beforeList = (List<?>) before;
+            List<?> afterList = (List<?>) after;
+            if (beforeList.size() != afterList.size()) {
+                changes.add(path);
+            }
+            int common = Math.min(beforeList.size(), afterList.size());
+            for (int i = 0; i < common; i++) {
+                diff(path + "[" + i + "]", beforeList.get(i), afterList.get(i), changes, depth + 1);
+            }
+            return;
+        }
+
+        if (!isBean(before.getClass()) || depth == MAX_DEPTH) {
+            if (!Objects.deepEquals(before, after)) {
+                changes.add(path);
+            }
+            return;
+        }
+        for (Method getter : GETTERS.get(before.getClass())) {
+            String name = getter.getName();
+            String property = Character.toLowerCase(name.charAt(name.startsWith("is") ? 2 : 3))
+                    + name.substring(name.startsWith("is") ? 3 : 4);
+            diff(path + "." + property, read(getter, before), read(getter, after), changes, depth + 1);
+        }
+    }
+
+    /**
+     * Application classes are compared property by property, JDK types
+     * such as String, Integer or LocalDate with equals
+     */
+    private static boolean isBean(Class<?> type) {
+        String name = type.getName();
+        return !type.isArray() && !type.isEnum() && !type.isPrimitive()
+                && !name.startsWith("java.") && !name.startsWith("javax.");
+    }
+
+    private static Object read(Method getter, Object bean) {
+        try {
+            return getter.invoke(bean);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // Unreadable on both sides, so not a difference
+            return null;
+        }
+    }
+}
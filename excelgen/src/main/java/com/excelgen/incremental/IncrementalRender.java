@@ -0,0 +1,522 @@
+package com.excelgen.incremental;
+
+import com.excelgen.expression.CompiledExpressionEvaluator;
+import com.excelgen.expression.ExpressionCompiler;
+import com.excelgen.expression.SimpleExpression;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateCell;
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+import com.excelgen.template.WorkbookSnapshotPool;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Re-renders a template for one user by patching the previous output.
+ *
+ * The first render runs the normal full path and keeps the xlsx package: all
+ * parts as compressed bytes, the worksheet as a {@link SheetPart}. The next
+ * bean is diffed against the previous one; when no jx:if condition or
+ * jx:each list is affected, only the cells whose expressions read a changed
+ * property are re-evaluated and rewritten, the sheet chunks holding them are
+ * deflated again and the package is reassembled from the stored bytes. A
+ * changed phone number costs one cell and one 128 KB chunk, whatever the
+ * size of the report. Anything else falls back to a full render.
+ *
+ * Beans must not be modified after they were rendered, since the next render
+ * is diffed against them. Instances are synchronized and are kept per session
+ * by {@link IncrementalRenderCache}, which charges {@link #getRetainedBytes()}
+ * to the memory budget. Sheets larger than excelgen.incremental.maxSheetBytes
+ * (default 32 MB) are not kept.
+ */
+public class IncrementalRender {
+
+    public static final long MAX_SHEET_BYTES = Long.getLong("excelgen.incremental.maxSheetBytes", 32L << 20);
+
+    /** Dependency of an expression outside the compiled subset, changed by anything */
+    private static final String ANY = "*";
+
+    private static final Pattern SHEET_PART = Pattern.compile("xl/worksheets/sheet\\d+\\.xml");
+
+    private final String templateName;
+    private final String rootVar;
+    private final LayoutWalker walker = new LayoutWalker();
+    private final Map<TemplateCell, List<String>> cellDependencies = new IdentityHashMap<>();
+
+    private TemplateLayout layout;
+    private int[] clearedColumns;
+    private List<String> structuralDependencies;
+    private boolean indexable;
+
+    private Object previous;
+    private CompressionPolicy policy;
+    private RenderIndex index;
+    private List<ZipArchiveEntry> entries;
+    private List<byte[]> rawEntries;
+    private SheetPart sheet;
+    private String sheetName;
+
+    private int fullRenders;
+    private int incrementalRenders;
+
+    public IncrementalRender(String templateName) {
+        this(templateName, "person");
+    }
+
+    public IncrementalRender(String templateName, String rootVar) {
+        this.templateName = templateName;
+        this.rootVar = rootVar;
+    }
+
+    /**
+     * Render the bean and write the xlsx package to out, which is flushed
+     * but not closed
+     *
+     * @return number of cells patched, or -1 when the workbook was rendered in full
+     */
+    public synchronized int render(Object bean, CompressionPolicy compression, OutputStream out) throws IOException {
+        TemplateLayout current = TemplateCache.shared().get(templateName);
+        if (current == null) {
+            throw new IOException("Template not found: " + templateName);
+        }
+        if (current != layout) {
+            analyze(current);
+        }
+
+        if (sheet != null && compression == policy) {
+            List<String> changes = BeanDiff.diff(rootVar, previous, bean);
+            int patched = patch(bean, changes);
+            if (patched >= 0) {
+                previous = bean;
+                incrementalRenders++;
+                write(out);
+                return patched;
+            }
+            System.out.println("Incremental render of " + templateName + " falls back to a full render for "
+                    + (changes.size() > 5 ? changes.subList(0, 5) + "..." : changes));
+        }
+
+        byte[] rendered = renderFull(bean, compression);
+        fullRenders++;
+        out.write(rendered);
+        out.flush();
+        return -1;
+    }
+
+    public synchronized int getFullRenders() {
+        return fullRenders;
+    }
+
+    public synchronized int getIncrementalRenders() {
+        return incrementalRenders;
+    }
+
+    /**
+     * Heap held for the next render: the stored package parts and the sheet
+     * chunks. The previous bean and the row index are small next to them and
+     * not counted.
+     */
+    public synchronized long getRetainedBytes() {
+        if (sheet == null) {
+            return 0;
+        }
+        long bytes = sheet.retainedBytes();
+        for (byte[] raw : rawEntries) {
+            bytes += raw != null ? raw.length : 0;
+        }
+        return bytes;
+    }
+
+    /**
+     * Forget the previous render, so the next one is a full render
+     */
+    public synchronized void reset() {
+        previous = null;
+        index = null;
+        entries = null;
+        rawEntries = null;
+        sheet = null;
+    }
+
+    private byte[] renderFull(Object bean, CompressionPolicy compression) throws IOException {
+        reset();
+        Workbook workbook = WorkbookSnapshotPool.shared().acquire(templateName);
+        if (workbook == null) {
+            throw new IOException("Template not found: " + templateName);
+        }
+        Context context = new Context();
+        context.putVar(rootVar, bean);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        WorkbookRenderer.transform(templateName, workbook, WorkbookOutput.open(buffer, compression), context);
+        byte[] rendered = buffer.toByteArray();
+
+        if (indexable) {
+            try {
+                keep(bean, compression, rendered);
+            } catch (IOException e) {
+                System.err.println("Cannot render " + templateName + " incrementally: " + e.getMessage());
+                reset();
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Index the rows of the render and split its package into stored parts
+     */
+    private void keep(Object bean, CompressionPolicy compression, byte[] rendered) throws IOException {
+        RenderIndex renderIndex = new RenderIndex(layout);
+        walker.walk(layout, Collections.singletonMap(rootVar, bean), renderIndex);
+        renderIndex.finish();
+        if (renderIndex.isNested()) {
+            indexable = false;
+            return;
+        }
+
+        List<ZipArchiveEntry> packageEntries = new ArrayList<>();
+        List<byte[]> packageBytes = new ArrayList<>();
+        SheetPart sheetPart = null;
+        String sheetPartName = null;
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(rendered))) {
+            for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+                packageEntries.add(entry);
+                if (!SHEET_PART.matcher(entry.getName()).matches()) {
+                    try (InputStream raw = zip.getRawInputStream(entry)) {
+                        packageBytes.add(IOUtils.toByteArray(raw));
+                    }
+                    continue;
+                }
+                if (sheetPart != null || entry.getSize() > MAX_SHEET_BYTES) {
+                    // Several sheets or a very large one: always render in full
+                    return;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    sheetPart = SheetPart.parse(IOUtils.toByteArray(in), compression.getLevel());
+                }
+                sheetPartName = entry.getName();
+                packageBytes.add(null);
+            }
+        }
+        if (sheetPart == null) {
+            return;
+        }
+
+        previous = bean;
+        policy = compression;
+        index = renderIndex;
+        entries = packageEntries;
+        rawEntries = packageBytes;
+        sheet = sheetPart;
+        sheetName = sheetPartName;
+    }
+
+    /**
+     * Rewrite the cells that depend on the changes
+     *
+     * @return number of cells rewritten, or -1 when a full render is needed
+     */
+    private int patch(Object bean, List<String> changes) {
+        for (String change : changes) {
+            if (isStructural(change)) {
+                return -1;
+            }
+        }
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put(rootVar, bean);
+        Set<Long> patched = new HashSet<>();
+        for (String change : changes) {
+            for (int row : index.getEvaluatedRows()) {
+                if (!patchRow(row, change, vars, patched)) {
+                    return -1;
+                }
+            }
+            for (RenderIndex.Loop loop : index.getLoops()) {
+                if (!patchLoop(loop, change, vars, patched)) {
+                    return -1;
+                }
+            }
+        }
+        return patched.size();
+    }
+
+    private boolean patchLoop(RenderIndex.Loop loop, String change, Map<String, Object> vars, Set<Long> patched) {
+        String items = itemsPath(loop.command);
+        String var = loop.command.getVar();
+        Object list = CompiledExpressionEvaluator.shared().evaluate(loop.command.getItems(), vars);
+
+        if (change.startsWith(items + "[")) {
+            // A property of one item: only that item's rows
+            int close = change.indexOf(']', items.length());
+            int item = Integer.parseInt(change.substring(items.length() + 1, close));
+            if (item >= loop.itemCount) {
+                return false;
+            }
+            vars.put(var, itemAt(list, item));
+            String relative = var + change.substring(close + 1);
+            try {
+                for (int row = loop.firstRow(item); row < loop.endRow(item); row++) {
+                    if (!patchRow(row, relative, vars, patched)) {
+                        return false;
+                    }
+                }
+            } finally {
+                vars.remove(var);
+            }
+            return true;
+        }
+
+        if (!loopReads(loop.command, change)) {
+            return true;
+        }
+        // A root property shown in every item
+        Iterator<?> iterator = iterate(list);
+        try {
+            for (int item = 0; item < loop.itemCount && iterator.hasNext(); item++) {
+                vars.put(var, iterator.next());
+                for (int row = loop.firstRow(item); row < loop.endRow(item); row++) {
+                    if (!patchRow(row, change, vars, patched)) {
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            vars.remove(var);
+        }
+        return true;
+    }
+
+    private boolean patchRow(int outputRow, String change, Map<String, Object> vars, Set<Long> patched) {
+        int templateRow = index.getTemplateRow(outputRow);
+        TemplateRow row = layout.getRow(templateRow);
+        for (int c = 0; c < layout.getWidth(); c++) {
+            TemplateCell cell = row.getCell(c);
+            if (cell == null || !cell.isDynamic() || c == clearedColumns[templateRow]
+                    || !reads(cell, change)) {
+                continue;
+            }
+            if (!sheet.setCell(outputRow, c, walker.value(cell, vars))) {
+                return false;
+            }
+            patched.add(((long) outputRow << 16) | c);
+        }
+        return true;
+    }
+
+    private void write(OutputStream out) throws IOException {
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+        for (int i = 0; i < entries.size(); i++) {
+            ZipArchiveEntry entry = entries.get(i);
+            if (entry.getName().equals(sheetName)) {
+                sheet.write(zip, sheetName);
+            } else {
+                zip.addRawArchiveEntry(new ZipArchiveEntry(entry), new ByteArrayInputStream(rawEntries.get(i)));
+            }
+        }
+        zip.finish();
+        out.flush();
+    }
+
+    /**
+     * Collect what the template's commands and cells read, once per layout
+     */
+    private void analyze(TemplateLayout current) {
+        reset();
+        layout = current;
+        cellDependencies.clear();
+        clearedColumns = new int[current.getRowCount()];
+        Arrays.fill(clearedColumns, -1);
+        structuralDependencies = new ArrayList<>();
+        indexable = true;
+        for (TemplateCommand area : current.getAreas()) {
+            if (!area.isDegenerate()) {
+                analyze(area.getChildren());
+            }
+        }
+    }
+
+    private void analyze(List<TemplateCommand> commands) {
+        for (TemplateCommand command : commands) {
+            if (command.isDegenerate()) {
+                if (command.getFirstRow() < clearedColumns.length) {
+                    clearedColumns[command.getFirstRow()] = command.getFirstColumn();
+                }
+                continue;
+            }
+            if (TemplateCommand.IF.equals(command.getName())) {
+                dependencies(command.getCondition(), structuralDependencies);
+            } else if (TemplateCommand.EACH.equals(command.getName())) {
+                if (itemsPath(command) == null) {
+                    indexable = false;
+                }
+                dependencies(command.getItems(), structuralDependencies);
+            }
+            analyze(command.getChildren());
+        }
+    }
+
+    /**
+     * Whether a change can add, remove or move rows
+     */
+    private boolean isStructural(String change) {
+        List<String> forms = new ArrayList<>();
+        forms.add(change);
+        for (RenderIndex.Loop loop : index.getLoops()) {
+            String items = itemsPath(loop.command);
+            if (change.startsWith(items + "[")) {
+                forms.add(loop.command.getVar() + change.substring(change.indexOf(']', items.length()) + 1));
+            }
+        }
+        for (String dependency : structuralDependencies) {
+            for (String form : forms) {
+                // Properties of list items leave the list itself alone
+                if (dependency.equals(ANY) || dependency.equals(form) || isPrefix(form, dependency)
+                        || (isPrefix(dependency, form) && form.charAt(dependency.length()) == '.')) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean loopReads(TemplateCommand loop, String change) {
+        for (int r = loop.getFirstRow(); r <= loop.getLastRow() && r < layout.getRowCount(); r++) {
+            TemplateRow row = layout.getRow(r);
+            for (int c = 0; c < layout.getWidth(); c++) {
+                TemplateCell cell = row.getCell(c);
+                if (cell != null && cell.isDynamic() && reads(cell, change)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean reads(TemplateCell cell, String change) {
+        List<String> dependencies = cellDependencies.get(cell);
+        if (dependencies == null) {
+            dependencies = new ArrayList<>();
+            for (int i = 0; i < cell.getText().getExpressionCount(); i++) {
+                dependencies(cell.getText().getExpression(i), dependencies);
+            }
+            cellDependencies.put(cell, dependencies);
+        }
+        for (String dependency : dependencies) {
+            if (dependency.equals(ANY) || dependency.equals(change)
+                    || isPrefix(change, dependency) || isPrefix(dependency, change)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Root-relative path of a jx:each list, or null when it is not a plain
+     * property path of the root bean
+     */
+    private String itemsPath(TemplateCommand each) {
+        SimpleExpression items = each.getItems() != null ? ExpressionCompiler.parse(each.getItems()) : null;
+        if (items == null || items.getKind() != SimpleExpression.Kind.PATH || !rootVar.equals(items.getVariable())) {
+            return null;
+        }
+        return path(items);
+    }
+
+    private static void dependencies(String expression, List<String> dependencies) {
+        SimpleExpression parsed = expression != null ? ExpressionCompiler.parse(expression) : null;
+        if (parsed == null) {
+            dependencies.add(ANY);
+        } else {
+            paths(parsed, dependencies);
+        }
+    }
+
+    private static void paths(SimpleExpression expression, List<String> paths) {
+        switch (expression.getKind()) {
+            case PATH:
+                paths.add(path(expression));
+                break;
+            case NOT:
+                paths(expression.getLeft(), paths);
+                break;
+            case COMPARISON:
+                paths(expression.getLeft(), paths);
+                paths(expression.getRight(), paths);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String path(SimpleExpression path) {
+        StringBuilder sb = new StringBuilder(path.getVariable());
+        for (String property : path.getProperties()) {
+            sb.append('.').append(property);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Whether path continues prefix with a property or an index
+     */
+    private static boolean isPrefix(String prefix, String path) {
+        return path.length() > prefix.length() && path.startsWith(prefix)
+                && (path.charAt(prefix.length()) == '.' || path.charAt(prefix.length()) == '[');
+    }
+
+    private static Object itemAt(Object items, int index) {
+        if (items instanceof List) {
+            return ((List<?>) items).get(index);
+        }
+        if (items != null && items.getClass().isArray()) {
+            return Array.get(items, index);
+        }
+        Iterator<?> iterator = iterate(items);
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    private static Iterator<?> iterate(Object items) {
+        if (items instanceof Iterable) {
+            return ((Iterable<?>) items).iterator();
+        }
+        if (items != null && items.getClass().isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(items); i++) {
+                list.add(Array.get(items, i));
+            }
+            return list.iterator();
+        }
+        return Collections.emptyIterator();
+    }
+}
@@ -0,0 +1,209 @@
+package com.excelgen.incremental;
+
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.render.MemoryBudget;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental renderers of all sessions, one per session and template, kept
+ * in an LRU bounded by entry count and retained bytes. The state every
+ * renderer keeps between requests is charged to the {@link MemoryBudget};
+ * when the budget is used up the least recently used sessions lose theirs
+ * and their next request renders in full.
+ *
+ * Nothing is stored in the HTTP session itself, which keeps sessions small
+ * and serializable. Entries of an ended session are dropped with
+ * {@link #removeSession(String)}. Limits are set with the
+ * excelgen.incremental.cacheMB (default 128) and
+ * excelgen.incremental.maxEntries (default 256) system properties.
+ */
+public final class IncrementalRenderCache {
+
+    private static final IncrementalRenderCache SHARED = new IncrementalRenderCache(MemoryBudget.shared(),
+            Long.getLong("excelgen.incremental.cacheMB", 128) * 1024 * 1024,
+            Integer.getInteger("excelgen.incremental.maxEntries", 256));
+
+    private final MemoryBudget budget;
+    private final long maxBytes;
+    private final int maxEntries;
+    /** Entries by session id and template, least recently used first */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+    private long evictions;
+
+    public IncrementalRenderCache(MemoryBudget budget, long maxBytes, int maxEntries) {
+        this.budget = budget;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    public static IncrementalRenderCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Render the bean with the session's renderer for the template and
+     * charge the state it keeps
+     *
+     * @return number of cells patched, or -1 when the workbook was rendered in full
+     * @see IncrementalRender#render(Object, CompressionPolicy, OutputStream)
+     */
+    public int render(String sessionId, String templateName, Object bean, CompressionPolicy compression,
+                      OutputStream out) throws IOException {
+        String key = key(sessionId, templateName);
+        List<IncrementalRender> evicted = new ArrayList<>();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(new IncrementalRender(templateName));
+                entries.put(key, entry);
+                while (entries.size() > maxEntries && evictEldest(entry, evicted)) {
+                    // evicted
+                }
+            }
+        }
+        resetAll(evicted);
+        try {
+            return entry.render.render(bean, compression, out);
+        } finally {
+            charge(key, entry);
+        }
+    }
+
+    /**
+     * Drop the renderers of a session that ended
+     */
+    public void removeSession(String sessionId) {
+        String prefix = key(sessionId, "");
+        List<IncrementalRender> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    it.remove();
+                    release(e.getValue());
+                    removed.add(e.getValue().render);
+                }
+            }
+        }
+        resetAll(removed);
+    }
+
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Bytes kept by all renderers and reserved from the memory budget
+     */
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Renderers whose state was dropped to stay within the limits
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized IncrementalRender get(String sessionId, String templateName) {
+        Entry entry = entries.get(key(sessionId, templateName));
+        return entry != null ? entry.render : null;
+    }
+
+    /**
+     * Reserve what the renderer keeps after a render, evicting least
+     * recently used entries until it fits; drop its state when it cannot
+     */
+    private void charge(String key, Entry entry) {
+        long bytes = entry.render.getRetainedBytes();
+        List<IncrementalRender> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (entries.get(key) != entry) {
+                // Evicted or removed while rendering
+                evicted.add(entry.render);
+            } else {
+                release(entry);
+                if (bytes > 0) {
+                    MemoryBudget.Reservation reservation = null;
+                    if (bytes <= maxBytes) {
+                        while (retainedBytes + bytes > maxBytes && evictEldest(entry, evicted)) {
+                            // evicted
+                        }
+                        reservation = budget.tryReserve(bytes);
+                        while (reservation == null && evictEldest(entry, evicted)) {
+                            reservation = budget.tryReserve(bytes);
+                        }
+                    }
+                    if (reservation != null) {
+                        entry.reservation = reservation;
+                        retainedBytes += bytes;
+                    } else {
+                        entries.remove(key);
+                        evictions++;
+                        evicted.add(entry.render);
+                    }
+                }
+            }
+        }
+        resetAll(evicted);
+    }
+
+    /**
+     * Remove the least recently used entry other than keep
+     *
+     * @return false when there is none
+     */
+    private boolean evictEldest(Entry keep, List<IncrementalRender> evicted) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry eldest = it.next();
+            if (eldest != keep) {
+                it.remove();
+                release(eldest);
+                evictions++;
+                evicted.add(eldest.render);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void release(Entry entry) {
+        if (entry.reservation != null) {
+            retainedBytes -= entry.reservation.getBytes();
+            entry.reservation.close();
+            entry.reservation = null;
+        }
+    }
+
+    /**
+     * Reset outside the cache lock, since a renderer stays locked while it renders
+     */
+    private static void resetAll(List<IncrementalRender> renders) {
+        for (IncrementalRender render : renders) {
+            render.reset();
+        }
+    }
+
+    private static String key(String sessionId, String templateName) {
+        return sessionId + "|" + templateName;
+    }
+
+    private static final class Entry {
+        private final IncrementalRender render;
+        private MemoryBudget.Reservation reservation;
+
+        Entry(IncrementalRender render) {
+            this.render = render;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.excelgen.incremental;
+
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.TemplateRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records where the rows of a render came from: the template row of every
+ * output row, which of them were evaluated, and the first output row of
+ * every item of the top-level jx:each commands. Templates with nested
+ * jx:each are marked as not indexable.
+ */
+final class RenderIndex implements RowSink {
+
+    private final boolean[] evaluated;
+    private int[] templateRows = new int[64];
+    private int rowCount;
+    private final List<Integer> evaluatedRows = new ArrayList<>();
+    private final List<Loop> loops = new ArrayList<>();
+    private Loop current;
+    private boolean nested;
+
+    RenderIndex(TemplateLayout layout) {
+        this.evaluated = new boolean[layout.getRowCount()];
+        for (TemplateCommand area : layout.getAreas()) {
+            if (!area.isDegenerate()) {
+                Arrays.fill(evaluated, area.getFirstRow(), Math.min(area.getLastRow() + 1, evaluated.length), true);
+            }
+        }
+    }
+
+    @Override
+    public void row(int outputRow, TemplateRow source, Object[] values) {
+        if (outputRow == templateRows.length) {
+            templateRows = Arrays.copyOf(templateRows, templateRows.length * 2);
+        }
+        templateRows[outputRow] = source.getIndex();
+        rowCount = outputRow + 1;
+
+        if (current != null && (source.getIndex() < current.command.getFirstRow()
+                || source.getIndex() > current.command.getLastRow())) {
+            current.endRow = outputRow;
+            current = null;
+        }
+        if (current == null && source.getIndex() < evaluated.length && evaluated[source.getIndex()]) {
+            evaluatedRows.add(outputRow);
+        }
+    }
+
+    @Override
+    public void itemStarted(TemplateCommand command, int index) {
+        if (current != null && current.command != command) {
+            if (command.getFirstRow() <= current.command.getLastRow()) {
+                nested = true;
+                return;
+            }
+            // A jx:each right after the previous one
+            finish();
+        }
+        if (current == null) {
+            current = new Loop(command);
+            loops.add(current);
+        }
+        if (current.itemCount == current.itemStarts.length) {
+            current.itemStarts = Arrays.copyOf(current.itemStarts, current.itemStarts.length * 2);
+        }
+        current.itemStarts[current.itemCount++] = rowCount;
+    }
+
+    /**
+     * Close a jx:each that ends with the last row of the output
+     */
+    void finish() {
+        if (current != null) {
+            current.endRow = rowCount;
+            current = null;
+        }
+    }
+
+    int getTemplateRow(int outputRow) {
+        return templateRows[outputRow];
+    }
+
+    /**
+     * Evaluated output rows outside every jx:each
+     */
+    List<Integer> getEvaluatedRows() {
+        return evaluatedRows;
+    }
+
+    List<Loop> getLoops() {
+        return loops;
+    }
+
+    boolean isNested() {
+        return nested;
+    }
+
+    /**
+     * Rendered items of one top-level jx:each
+     */
+    static final class Loop {
+        final TemplateCommand command;
+        int[] itemStarts = new int[16];
+        int itemCount;
+        int endRow;
+
+        Loop(TemplateCommand command) {
+            this.command = command;
+        }
+
+        int firstRow(int item) {
+            return itemStarts[item];
+        }
+
+        /**
+         * Output row after the last row of the item
+         */
+        int endRow(int item) {
+            return item + 1 < itemCount ? itemStarts[item + 1] : endRow;
+        }
+    }
+}
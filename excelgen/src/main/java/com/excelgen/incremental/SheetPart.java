@@ -0,0 +1,401 @@
+package com.excelgen.incremental;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Worksheet XML of a rendered package, kept as chunks of whole &lt;row&gt;
+ * elements that are deflated independently.
+ *
+ * Every chunk is a raw deflate segment ending in a sync flush, without a
+ * dictionary, so the segments plus a final empty block form the entry's
+ * deflate stream and a changed chunk can be recompressed on its own. The
+ * entry CRC is combined from the chunk CRCs. Changed cells are written as
+ * inline strings, numbers or booleans, so no other package part changes;
+ * shared strings that are no longer used stay in sharedStrings.xml, which
+ * Excel accepts.
+ */
+final class SheetPart {
+
+    static final int CHUNK_SIZE = 128 * 1024;
+
+    /** Final, empty, fixed-Huffman block that terminates a raw deflate stream */
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    private final int level;
+    private final List<Chunk> chunks;
+    /** Chunk of every 0-based row number, -1 for rows the sheet does not contain */
+    private final int[] rowChunk;
+
+    private SheetPart(int level, List<Chunk> chunks, int[] rowChunk) {
+        this.level = level;
+        this.chunks = chunks;
+        this.rowChunk = rowChunk;
+    }
+
+    /**
+     * Split worksheet XML as POI writes it into chunks and deflate them
+     *
+     * @throws IOException when sheetData holds anything but row elements
+     */
+    static SheetPart parse(byte[] xml, int level) throws IOException {
+        int dataStart = indexOf(xml, "<sheetData>", 0);
+        int dataEnd = indexOf(xml, "</sheetData>", 0);
+        if (dataStart < 0 || dataEnd < dataStart) {
+            throw new IOException("Worksheet without sheetData rows");
+        }
+        dataStart += "<sheetData>".length();
+
+        List<Chunk> chunks = new ArrayList<>();
+        chunks.add(new Chunk(Arrays.copyOfRange(xml, 0, dataStart), new int[0], new int[0]));
+
+        List<Integer> rows = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        int chunkStart = dataStart;
+        int maxRow = -1;
+        int pos = dataStart;
+        while (pos < dataEnd) {
+            if (!startsWith(xml, "<row ", pos)) {
+                throw new IOException("Unexpected content in sheetData at byte " + pos);
+            }
+            int tagEnd = indexOf(xml, ">", pos);
+            if (tagEnd < 0) {
+                throw new IOException("Unterminated row element at byte " + pos);
+            }
+            int end = xml[tagEnd - 1] == '/' ? tagEnd + 1 : indexOf(xml, "</row>", tagEnd) + "</row>".length();
+            int row = rowNumber(new String(xml, pos, tagEnd - pos, StandardCharsets.UTF_8));
+            if (end < tagEnd || end > dataEnd || row <= maxRow) {
+                throw new IOException("Unexpected row element at byte " + pos);
+            }
+            rows.add(row);
+            offsets.add(pos - chunkStart);
+            maxRow = row;
+            pos = end;
+
+            if (pos - chunkStart >= CHUNK_SIZE || pos >= dataEnd) {
+                chunks.add(new Chunk(Arrays.copyOfRange(xml, chunkStart, pos), toArray(rows), toArray(offsets)));
+                rows.clear();
+                offsets.clear();
+                chunkStart = pos;
+            }
+        }
+        chunks.add(new Chunk(Arrays.copyOfRange(xml, dataEnd, xml.length), new int[0], new int[0]));
+
+        int[] rowChunk = new int[maxRow + 1];
+        Arrays.fill(rowChunk, -1);
+        for (int c = 0; c < chunks.size(); c++) {
+            for (int row : chunks.get(c).rows) {
+                rowChunk[row] = c;
+            }
+        }
+
+        SheetPart part = new SheetPart(level, chunks, rowChunk);
+        part.compress();
+        return part;
+    }
+
+    /**
+     * Heap held by the chunks, raw and deflated, and the row tables
+     */
+    long retainedBytes() {
+        long bytes = 4L * rowChunk.length;
+        for (Chunk chunk : chunks) {
+            bytes += chunk.data.length + 8L * chunk.rows.length
+                    + (chunk.deflated != null ? chunk.deflated.length : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * Replace the value of a cell, keeping its style
+     *
+     * @param row    0-based row
+     * @param column 0-based column
+     * @return false when the row is not in the sheet or the value cannot be
+     * written without touching other package parts, such as a date
+     */
+    boolean setCell(int row, int column, Object value) {
+        if (row >= rowChunk.length || rowChunk[row] < 0) {
+            return false;
+        }
+        Chunk chunk = chunks.get(rowChunk[row]);
+        int index = Arrays.binarySearch(chunk.rows, row);
+        int start = chunk.offsets[index];
+        int end = index + 1 < chunk.rows.length ? chunk.offsets[index + 1] : chunk.data.length;
+
+        String rowXml = new String(chunk.data, start, end - start, StandardCharsets.UTF_8);
+        String ref = columnName(column) + (row + 1);
+        String patched = patchRow(rowXml, ref, column, value);
+        if (patched == null) {
+            return false;
+        }
+        chunk.replace(index, start, end, patched.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Deflate the chunks changed since the last call
+     *
+     * @return number of chunks deflated
+     */
+    int compress() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.deflated == null) {
+                chunk.deflate(level);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    long getSize() {
+        long size = 0;
+        for (Chunk chunk : chunks) {
+            size += chunk.data.length;
+        }
+        return size;
+    }
+
+    int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Write the sheet as one pre-compressed entry, deflating changed chunks first
+     */
+    void write(ZipArchiveOutputStream zip, String name) throws IOException {
+        compress();
+
+        long crc = 0;
+        long size = 0;
+        long compressedSize = FINAL_BLOCK.length;
+        List<InputStream> parts = new ArrayList<>(chunks.size() + 1);
+        for (Chunk chunk : chunks) {
+            crc = Crc32Combine.combine(crc, chunk.crc, chunk.data.length);
+            size += chunk.data.length;
+            compressedSize += chunk.deflated.length;
+            parts.add(new ByteArrayInputStream(chunk.deflated));
+        }
+        parts.add(new ByteArrayInputStream(FINAL_BLOCK));
+
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setSize(size);
+        entry.setCrc(crc);
+        entry.setCompressedSize(compressedSize);
+        zip.addRawArchiveEntry(entry, new SequenceInputStream(Collections.enumeration(parts)));
+    }
+
+    /**
+     * @return the row with the cell replaced or inserted, or null when the
+     * value needs more than the sheet part
+     */
+    static String patchRow(String rowXml, String ref, int column, Object value) {
+        String cellStart = "<c r=\"" + ref + "\"";
+        int at = rowXml.indexOf(cellStart);
+        if (at >= 0) {
+            int tagEnd = rowXml.indexOf('>', at);
+            boolean empty = rowXml.charAt(tagEnd - 1) == '/';
+            int end = empty ? tagEnd + 1 : rowXml.indexOf("</c>", tagEnd) + "</c>".length();
+            String cell = cellXml(ref, attribute(rowXml.substring(at, tagEnd), "s"), value);
+            return cell == null ? null : rowXml.substring(0, at) + cell + rowXml.substring(end);
+        }
+
+        String cell = cellXml(ref, null, value);
+        if (cell == null) {
+            return null;
+        }
+        if (rowXml.endsWith("/>") && rowXml.indexOf('>') == rowXml.length() - 1) {
+            // <row r="5" .../> becomes <row r="5" ...><c .../></row>
+            return rowXml.substring(0, rowXml.length() - 2) + ">" + cell + "</row>";
+        }
+        // Keep the cells ordered by column
+        int insert = rowXml.lastIndexOf("</row>");
+        for (int pos = rowXml.indexOf("<c r=\""); pos >= 0; pos = rowXml.indexOf("<c r=\"", pos + 1)) {
+            int refEnd = rowXml.indexOf('"', pos + 6);
+            if (columnIndex(rowXml.substring(pos + 6, refEnd)) > column) {
+                insert = pos;
+                break;
+            }
+        }
+        return rowXml.substring(0, insert) + cell + rowXml.substring(insert);
+    }
+
+    /**
+     * Cell element for a rendered value, or null for values such as dates
+     * that need a number format from styles.xml
+     */
+    static String cellXml(String ref, String style, Object value) {
+        StringBuilder sb = new StringBuilder("<c r=\"").append(ref).append('"');
+        if (style != null) {
+            sb.append(" s=\"").append(style).append('"');
+        }
+        if (value == null) {
+            return sb.append("/>").toString();
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return null;
+            }
+            return sb.append(" t=\"n\"><v>").append(value instanceof Double || value instanceof Float
+                    ? Double.toString(number) : value.toString()).append("</v></c>").toString();
+        }
+        if (value instanceof Boolean) {
+            return sb.append(" t=\"b\"><v>").append((Boolean) value ? '1' : '0').append("</v></c>").toString();
+        }
+        if (value instanceof java.util.Date || value instanceof java.util.Calendar
+                || value instanceof java.time.temporal.Temporal) {
+            return null;
+        }
+
+        String text = value.toString();
+        sb.append(" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                default:
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                        // POI escapes these as _xHHHH_, leave it to a full render
+                        return null;
+                    }
+                    sb.append(c);
+            }
+        }
+        return sb.append("</t></is></c>").toString();
+    }
+
+    static String columnName(int column) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = column + 1; c > 0; c = (c - 1) / 26) {
+            sb.insert(0, (char) ('A' + (c - 1) % 26));
+        }
+        return sb.toString();
+    }
+
+    private static int columnIndex(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+            column = column * 26 + (ref.charAt(i) - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static int rowNumber(String rowTag) {
+        String r = attribute(rowTag, "r");
+        try {
+            return r != null ? Integer.parseInt(r) - 1 : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String attribute(String tag, String name) {
+        String key = " " + name + "=\"";
+        int at = tag.indexOf(key);
+        if (at < 0) {
+            return null;
+        }
+        int start = at + key.length();
+        return tag.substring(start, tag.indexOf('"', start));
+    }
+
+    private static boolean startsWith(byte[] data, String prefix, int from) {
+        if (from + prefix.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[from + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, String pattern, int from) {
+        for (int i = from; i <= data.length - pattern.length(); i++) {
+            if (startsWith(data, pattern, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Consecutive rows of the sheet XML, raw and deflated
+     */
+    private static final class Chunk {
+        private byte[] data;
+        private final int[] rows;
+        private final int[] offsets;
+        private byte[] deflated;
+        private long crc;
+
+        Chunk(byte[] data, int[] rows, int[] offsets) {
+            this.data = data;
+            this.rows = rows;
+            this.offsets = offsets;
+        }
+
+        void replace(int index, int start, int end, byte[] row) {
+            byte[] replaced = new byte[data.length - (end - start) + row.length];
+            System.arraycopy(data, 0, replaced, 0, start);
+            System.arraycopy(row, 0, replaced, start, row.length);
+            System.arraycopy(data, end, replaced, start + row.length, data.length - end);
+            int shift = row.length - (end - start);
+            for (int i = index + 1; i < offsets.length; i++) {
+                offsets[i] += shift;
+            }
+            data = replaced;
+            deflated = null;
+        }
+
+        void deflate(int level) {
+            CRC32 checksum = new CRC32();
+            checksum.update(data);
+            crc = checksum.getValue();
+
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(data);
+                byte[] out = new byte[data.length / 2 + 64];
+                int outLength = 0;
+                while (true) {
+                    int n = deflater.deflate(out, outLength, out.length - outLength, Deflater.SYNC_FLUSH);
+                    outLength += n;
+                    if (outLength < out.length) {
+                        break;
+                    }
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                deflated = Arrays.copyOf(out, outLength);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.excelgen.job;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue that keeps one FIFO per client and serves the clients round
+ * robin, so a client that submits a hundred jobs cannot starve one that
+ * submits a single job.
+ */
+public final class FairQueue<T> {
+
+    private final int capacity;
+    private final int perClient;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, Deque<T>> queues = new HashMap<>();
+    private final Deque<String> turns = new ArrayDeque<>();
+    private int size;
+
+    public FairQueue(int capacity, int perClient) {
+        this.capacity = capacity;
+        this.perClient = perClient;
+    }
+
+    /**
+     * Queue an item for a client
+     *
+     * @return false when the queue or the client's share of it is full
+     */
+    public boolean offer(String client, T item) {
+        lock.lock();
+        try {
+            Deque<T> queue = queues.get(client);
+            if (size >= capacity || (queue != null && queue.size() >= perClient)) {
+                return false;
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(client, queue);
+                turns.addLast(client);
+            }
+            queue.addLast(item);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the next item of the client whose turn it is, waiting up to the
+     * timeout for one to arrive
+     *
+     * @return the item, or null on timeout
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+
+            String client = turns.pollFirst();
+            Deque<T> queue = queues.get(client);
+            T item = queue.pollFirst();
+            size--;
+            if (queue.isEmpty()) {
+                queues.remove(client);
+            } else {
+                turns.addLast(client);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(String client) {
+        lock.lock();
+        try {
+            Deque<T> queue = queues.get(client);
+            return queue != null ? queue.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.excelgen.job;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.Phone;
+import com.excelgen.PrivateDirectory;
+import com.excelgen.output.CompressionPolicy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of render jobs, so batches survive a JVM restart.
+ *
+ * Every submitted job is written with its persons, and every finished person
+ * is written as a checkpoint with the spool id of its report. On restart
+ * {@link #recover()} returns the jobs that were not finished together with
+ * the reports they already have, and the journal is compacted down to them.
+ *
+ * Records are appended to the OS page cache and forced to disk in groups by
+ * a background thread every {@code syncMillis}. A caller that must not lose
+ * a record (a job it is about to acknowledge) waits with {@link #awaitDurable}.
+ * Each record carries a length and CRC32, so a record torn by a crash is
+ * detected and dropped together with everything after it.
+ *
+ * Records hold full persons and are replayed as jobs, so the journal is only
+ * opened in a {@link PrivateDirectory} of the process user.
+ */
+public final class JobJournal implements AutoCloseable {
+
+    static final String FILE_NAME = "jobs.journal";
+
+    private static final byte SUBMITTED = 1;
+    private static final byte CHECKPOINT = 2;
+    private static final byte FINISHED = 3;
+
+    private final Path file;
+    private final long syncMillis;
+    private final List<RecoveredJob> recovered;
+
+    private final FileChannel channel;
+    private long written;
+    private long synced;
+    private boolean closed;
+    private final Thread syncer;
+
+    private JobJournal(Path file, long syncMillis, List<RecoveredJob> recovered) throws IOException {
+        this.file = file;
+        this.syncMillis = Math.max(1, syncMillis);
+        this.recovered = recovered;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.written = channel.size();
+        this.synced = written;
+        this.syncer = new Thread(this::syncLoop, "job-journal-sync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+    /**
+     * Open the journal in a directory, replaying and compacting what an
+     * earlier run left there
+     *
+     * @throws IOException also when the directory is not private to the process user
+     */
+    public static JobJournal open(Path directory, long syncMillis) throws IOException {
+        PrivateDirectory.require(directory);
+        Path file = directory.resolve(FILE_NAME);
+
+        List<RecoveredJob> unfinished = new ArrayList<>(replay(file).values());
+        unfinished.removeIf(job -> job.finished);
+
+        // Rewrite the journal with only the unfinished jobs, then swap it in
+        Path compacted = directory.resolve(FILE_NAME + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (RecoveredJob job : unfinished) {
+                out.write(frame(submittedRecord(job.id, job.clientId, job.templateName, job.compression, job.persons)));
+                for (int i = 0; i < job.reportIds.length; i++) {
+                    if (job.reportIds[i] != null) {
+                        out.write(frame(checkpointRecord(job.id, i, job.reportIds[i])));
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return new JobJournal(file, syncMillis, unfinished);
+    }
+
+    /**
+     * Jobs that were submitted but not finished when the journal was last
+     * closed or the JVM stopped
+     */
+    public List<RecoveredJob> recover() {
+        return recovered;
+    }
+
+    /**
+     * @return position to pass to {@link #awaitDurable}
+     */
+    public long submitted(RenderJob job) throws IOException {
+        return append(submittedRecord(job.getId(), job.getClientId(), job.getTemplateName(),
+                job.getCompression(), job.getPersons()));
+    }
+
+    public long checkpoint(String jobId, int person, String reportId) throws IOException {
+        return append(checkpointRecord(jobId, person, reportId));
+    }
+
+    /**
+     * The job is done or has failed for good and will not be resumed
+     */
+    public long finished(String jobId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FINISHED);
+        writeString(out, jobId);
+        return append(bytes.toByteArray());
+    }
+
+    /**
+     * Wait until everything up to the position has been forced to disk
+     */
+    public synchronized void awaitDurable(long position) throws IOException {
+        while (synced < position) {
+            if (closed) {
+                throw new IOException("Journal closed");
+            }
+            notifyAll();
+            try {
+                wait(syncMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the job journal", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            syncer.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.force(false);
+            synced = written;
+            channel.close();
+            notifyAll();
+        }
+    }
+
+    private synchronized long append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("Journal closed");
+        }
+        ByteBuffer buffer = frame(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written = channel.position();
+        return written;
+    }
+
+    /**
+     * Force whatever was appended since the last round, at most once per
+     * syncMillis, so many appends share one fsync
+     */
+    private void syncLoop() {
+        try {
+            while (true) {
+                long target;
+                synchronized (this) {
+                    while (!closed && synced == written) {
+                        wait(syncMillis);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    target = written;
+                }
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    System.err.println("Could not sync job journal " + file + ": " + e.getMessage());
+                }
+                synchronized (this) {
+                    synced = Math.max(synced, target);
+                    notifyAll();
+                    // Let appends pile up before the next fsync
+                    if (!closed) {
+                        wait(syncMillis);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Exit quietly; close() forces the rest
+        }
+    }
+
+    // ---- records ----
+
+    private static ByteBuffer frame(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(record);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] submittedRecord(String jobId, String clientId, String templateName,
+                                          CompressionPolicy compression, List<Person> persons) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SUBMITTED);
+        writeString(out, jobId);
+        writeString(out, clientId);
+        writeString(out, templateName);
+        writeString(out, compression.name());
+        out.writeInt(persons.size());
+        for (Person person : persons) {
+            writePerson(out, person);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] checkpointRecord(String jobId, int person, String reportId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(CHECKPOINT);
+        writeString(out, jobId);
+        out.writeInt(person);
+        writeString(out, reportId);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, RecoveredJob> replay(Path file) throws IOException {
+        Map<String, RecoveredJob> jobs = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return jobs;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 1 || length > 64 * 1024 * 1024) {
+                        throw new EOFException("Bad record length " + length);
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new EOFException("Bad record checksum");
+                    }
+                } catch (EOFException e) {
+                    // End of the journal, or a record torn by a crash
+                    break;
+                }
+                apply(jobs, new DataInputStream(new ByteArrayInputStream(record)));
+            }
+        }
+        return jobs;
+    }
+
+    private static void apply(Map<String, RecoveredJob> jobs, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String jobId = readString(in);
+        switch (type) {
+            case SUBMITTED:
+                String clientId = readString(in);
+                String templateName = readString(in);
+                CompressionPolicy compression = CompressionPolicy.valueOf(readString(in));
+                int count = in.readInt();
+                List<Person> persons = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    persons.add(readPerson(in));
+                }
+                jobs.put(jobId, new RecoveredJob(jobId, clientId, templateName, compression, persons));
+                break;
+            case CHECKPOINT:
+                int person = in.readInt();
+                String reportId = readString(in);
+                RecoveredJob job = jobs.get(jobId);
+                if (job != null && person >= 0 && person < job.reportIds.length) {
+                    job.reportIds[person] = reportId;
+                }
+                break;
+            case FINISHED:
+                RecoveredJob finished = jobs.get(jobId);
+                if (finished != null) {
+                    finished.finished = true;
+                }
+                break;
+            default:
+                System.err.println("Skipping unknown job journal record type " + type);
+        }
+    }
+
+    private static void writePerson(DataOutputStream out, Person person) throws IOException {
+        writeString(out, person.getName());
+        out.writeInt(person.getAge());
+        writeString(out, person.getParentName());
+        Address address = person.getAddress();
+        out.writeBoolean(address != null);
+        if (address != null) {
+            writeString(out, address.getType());
+            writeString(out, address.getAddressLine());
+        }
+        List<Phone> phones = person.getPhones();
+        out.writeInt(phones != null ? phones.size() : 0);
+        if (phones != null) {
+            for (Phone phone : phones) {
+                writeString(out, phone.getPhoneType());
+                writeString(out, phone.getPhoneNo());
+            }
+        }
+    }
+
+    private static Person readPerson(DataInputStream in) throws IOException {
+        Person person = new Person();
+        person.setName(readString(in));
+        person.setAge(in.readInt());
+        person.setParentName(readString(in));
+        if (in.readBoolean()) {
+            Address address = new Address();
+            address.setType(readString(in));
+            address.setAddressLine(readString(in));
+            person.setAddress(address);
+        }
+        int phones = in.readInt();
+        for (int i = 0; i < phones; i++) {
+            person.addPhone(readString(in), readString(in));
+        }
+        return person;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An unfinished job read back from the journal
+     */
+    public static final class RecoveredJob {
+
+        private final String id;
+        private final String clientId;
+        private final String templateName;
+        private final CompressionPolicy compression;
+        private final List<Person> persons;
+        private final String[] reportIds;
+        private boolean finished;
+
+        RecoveredJob(String id, String clientId, String templateName, CompressionPolicy compression,
+                     List<Person> persons) {
+            this.id = id;
+            this.clientId = clientId;
+            this.templateName = templateName;
+            this.compression = compression;
+            this.persons = persons;
+            this.reportIds = new String[persons.size()];
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public CompressionPolicy getCompression() {
+            return compression;
+        }
+
+        public List<Person> getPersons() {
+            return persons;
+        }
+
+        /**
+         * Spool id of each person's report, null where it was not checkpointed
+         */
+        public String getReportId(int person) {
+            return reportIds[person];
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.excelgen.job;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only view of a list that counts the items handed out by its
+ * iterators. Put in place of a collection a jx:each command iterates, it
+ * reports how far the render has got.
+ */
+final class ProgressList<E> extends AbstractList<E> {
+
+    private final List<E> items;
+    private final AtomicLong counter;
+
+    ProgressList(List<E> items, AtomicLong counter) {
+        this.items = items;
+        this.counter = counter;
+    }
+
+    @Override
+    public E get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> iterator = items.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                E item = iterator.next();
+                counter.incrementAndGet();
+                return item;
+            }
+        };
+    }
+}
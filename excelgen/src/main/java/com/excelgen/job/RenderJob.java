@@ -0,0 +1,163 @@
+package com.excelgen.job;
+
+import com.excelgen.Person;
+import com.excelgen.output.CompressionPolicy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A render submitted through the job API, with its state and progress.
+ * State changes are made by the worker running it and read by pollers.
+ *
+ * A job renders one report per person. A job for many persons is a batch;
+ * it is checkpointed after every person so it can resume after a restart.
+ */
+public final class RenderJob {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+    private final String clientId;
+    private final String templateName;
+    private final List<Person> persons;
+    private final String[] reportIds;
+    private final CompressionPolicy compression;
+    private final long submittedAt = System.currentTimeMillis();
+    private final AtomicLong rowsDone = new AtomicLong();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long estimatedRows;
+    private volatile String error;
+    private volatile long finishedAt;
+    private volatile int attempts;
+
+    RenderJob(String id, String clientId, String templateName, List<Person> persons, CompressionPolicy compression) {
+        this.id = id;
+        this.clientId = clientId;
+        this.templateName = templateName;
+        this.persons = Collections.unmodifiableList(persons);
+        this.reportIds = new String[persons.size()];
+        this.compression = compression;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    List<Person> getPersons() {
+        return persons;
+    }
+
+    public int getPersonCount() {
+        return persons.size();
+    }
+
+    /**
+     * Persons whose report is finished
+     */
+    public synchronized int getPersonsDone() {
+        int done = 0;
+        for (String reportId : reportIds) {
+            if (reportId != null) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    CompressionPolicy getCompression() {
+        return compression;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Rows rendered so far (one per jx:each item)
+     */
+    public long getRowsDone() {
+        return rowsDone.get();
+    }
+
+    AtomicLong rowsDoneCounter() {
+        return rowsDone;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * Spool id of the first person's report, see {@link com.excelgen.output.OutputSpool}
+     */
+    public String getReportId() {
+        return getReportId(0);
+    }
+
+    /**
+     * Spool id of a person's report, or null while it is not rendered
+     */
+    public synchronized String getReportId(int person) {
+        return reportIds[person];
+    }
+
+    synchronized void personDone(int person, String reportId) {
+        reportIds[person] = reportId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    void started(long estimatedRows, long rowsDone) {
+        this.estimatedRows = estimatedRows;
+        this.attempts++;
+        this.rowsDone.set(rowsDone);
+        this.status = Status.RUNNING;
+    }
+
+    void requeued() {
+        this.status = Status.QUEUED;
+    }
+
+    void completed() {
+        this.finishedAt = System.currentTimeMillis();
+        this.rowsDone.set(Math.max(rowsDone.get(), estimatedRows));
+        this.status = Status.DONE;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = Status.FAILED;
+    }
+}
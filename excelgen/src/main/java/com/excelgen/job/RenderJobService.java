@@ -0,0 +1,412 @@
+package com.excelgen.job;
+
+import com.excelgen.Person;
+import com.excelgen.Phone;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.MemoryEstimator;
+import com.excelgen.render.RenderCostEstimator;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.render.RenderScheduler;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.WorkbookSnapshotPool;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs renders submitted through the job API on a fixed set of worker
+ * threads, taking jobs from a {@link FairQueue} so every client gets its turn.
+ *
+ * A job goes through the same lanes and memory budget as a synchronous
+ * render. When those are full the job goes back to the queue and is tried
+ * again later instead of failing. Finished reports are written to the
+ * {@link OutputSpool} and downloaded from there.
+ *
+ * With a {@link JobJournal} every job is journaled before it is accepted and
+ * checkpointed after every person, so after a restart unfinished batches
+ * continue with the first person that has no report yet.
+ *
+ * Sizes are read from system properties: excelgen.jobs.workers (default 2),
+ * excelgen.jobs.queue (100) and excelgen.jobs.perClient (10). The journal
+ * lives in excelgen.jobs.journalDir (default .excelgen/jobs in user.home),
+ * which must be private to the process user, and is synced every
+ * excelgen.jobs.journalSyncMillis (50).
+ */
+public final class RenderJobService {
+
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long FINISHED_JOB_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static volatile RenderJobService shared;
+
+    private final OutputSpool spool;
+    private final RenderScheduler scheduler;
+    private final MemoryBudget budget;
+    private final JobJournal journal;
+    private final FairQueue<RenderJob> queue;
+    private final Map<String, RenderJob> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    /** Workers waiting for a job, the only ones shutdown interrupts */
+    private final Set<Thread> idle = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "render-job-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    public RenderJobService(OutputSpool spool, RenderScheduler scheduler, MemoryBudget budget,
+                            int workerCount, int queueCapacity, int perClient) {
+        this(spool, scheduler, budget, null, workerCount, queueCapacity, perClient);
+    }
+
+    /**
+     * @param journal journal to record jobs in and resume unfinished ones from, or null
+     */
+    public RenderJobService(OutputSpool spool, RenderScheduler scheduler, MemoryBudget budget, JobJournal journal,
+                            int workerCount, int queueCapacity, int perClient) {
+        this.spool = spool;
+        this.scheduler = scheduler;
+        this.budget = budget;
+        this.journal = journal;
+        this.queue = new FairQueue<>(queueCapacity, perClient);
+        if (journal != null) {
+            resume(journal.recover());
+        }
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::work, "render-job-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    public static RenderJobService shared() {
+        if (shared == null) {
+            synchronized (RenderJobService.class) {
+                if (shared == null) {
+                    shared = new RenderJobService(OutputSpool.shared(), RenderScheduler.shared(),
+                            MemoryBudget.shared(), openJournal(),
+                            Integer.getInteger("excelgen.jobs.workers", 2),
+                            Integer.getInteger("excelgen.jobs.queue", 100),
+                            Integer.getInteger("excelgen.jobs.perClient", 10));
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Stop the shared service, if it was started: wait for running renders
+     * to reach their next checkpoint and close the journal, so a redeployed
+     * instance can take it over
+     */
+    public static void shutdownShared() {
+        RenderJobService service;
+        synchronized (RenderJobService.class) {
+            service = shared;
+            shared = null;
+        }
+        if (service == null) {
+            return;
+        }
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(TimeUnit.SECONDS.toMillis(30))) {
+                System.err.println("Render job workers still running after 30 s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (service.journal != null) {
+            try {
+                service.journal.close();
+            } catch (IOException e) {
+                System.err.println("Could not close job journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private static JobJournal openJournal() {
+        Path directory = Paths.get(System.getProperty("excelgen.jobs.journalDir",
+                Paths.get(System.getProperty("user.home"), ".excelgen", "jobs").toString()));
+        try {
+            return JobJournal.open(directory, Long.getLong("excelgen.jobs.journalSyncMillis", 50));
+        } catch (IOException e) {
+            System.err.println("Job journal disabled, cannot open " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queue a render of the template for the person
+     *
+     * @throws RenderRejectedException when the queue or the client's share of it is full
+     */
+    public RenderJob submit(String clientId, String templateName, Person person,
+                            CompressionPolicy compression) throws RenderRejectedException, IOException {
+        return submitBatch(clientId, templateName, Collections.singletonList(person), compression);
+    }
+
+    /**
+     * Queue one render per person as a single job. The job is journaled
+     * before this method returns, so it is resumed after a restart.
+     *
+     * @throws RenderRejectedException when the queue or the client's share of it is full
+     */
+    public RenderJob submitBatch(String clientId, String templateName, List<Person> persons,
+                                 CompressionPolicy compression) throws RenderRejectedException, IOException {
+        purgeFinished();
+
+        RenderJob job = new RenderJob(UUID.randomUUID().toString(), clientId, templateName,
+                new ArrayList<>(persons), compression);
+        // Journal first: a worker may checkpoint the job as soon as it is queued,
+        // and replay drops records of jobs it has not seen submitted
+        if (journal != null) {
+            journal.awaitDurable(journal.submitted(job));
+        }
+        jobs.put(job.getId(), job);
+        if (!queue.offer(clientId, job)) {
+            jobs.remove(job.getId());
+            if (journal != null) {
+                // Never resume a job the client was told was rejected
+                journal.awaitDurable(journal.finished(job.getId()));
+            }
+            throw new RenderRejectedException("Too many queued jobs for client " + clientId, 30);
+        }
+        return job;
+    }
+
+    /**
+     * @return the job, or null when unknown or expired
+     */
+    public RenderJob find(String id) {
+        return id != null ? jobs.get(id) : null;
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Stop taking jobs. A running job stops after the person being rendered;
+     * with a journal it is resumed from that checkpoint by the next service.
+     * The journal stays open for the running jobs and is closed by its owner.
+     */
+    public void shutdown() {
+        running = false;
+        retries.shutdownNow();
+        for (Thread worker : idle) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Wait for the workers to stop after {@link #shutdown()}
+     *
+     * @return false when some are still running
+     */
+    public boolean awaitTermination(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void work() {
+        Thread self = Thread.currentThread();
+        while (running) {
+            RenderJob job;
+            idle.add(self);
+            try {
+                if (!running) {
+                    return;
+                }
+                job = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                idle.remove(self);
+            }
+            if (job != null) {
+                run(job);
+            }
+        }
+    }
+
+    private void run(RenderJob job) {
+        try {
+            TemplateLayout layout = TemplateCache.shared().get(job.getTemplateName());
+            if (layout == null) {
+                fail(job, "Template not found: " + job.getTemplateName());
+                return;
+            }
+
+            // Size the whole batch up front, counting persons already done as rendered
+            List<Person> persons = job.getPersons();
+            long[] estimates = new long[persons.size()];
+            long estimatedRows = 0;
+            long rowsDone = 0;
+            for (int i = 0; i < persons.size(); i++) {
+                estimates[i] = RenderCostEstimator.estimateRows(layout,
+                        Collections.singletonMap("person", persons.get(i)));
+                estimatedRows += estimates[i];
+                if (job.getReportId(i) != null) {
+                    rowsDone += estimates[i];
+                }
+            }
+            job.started(estimatedRows, rowsDone);
+
+            for (int i = 0; i < persons.size(); i++) {
+                if (job.getReportId(i) != null) {
+                    continue;
+                }
+                if (!running) {
+                    // Left unfinished in the journal, resumed after the restart
+                    return;
+                }
+                String reportId = render(job, layout, persons.get(i), estimates[i]);
+                job.personDone(i, reportId);
+                rowsDone += estimates[i];
+                job.rowsDoneCounter().set(rowsDone);
+                if (journal != null) {
+                    journal.checkpoint(job.getId(), i, reportId);
+                }
+            }
+
+            job.completed();
+            if (journal != null) {
+                journal.finished(job.getId());
+            }
+            System.out.println("Job " + job.getId() + " done: " + persons.size() + " report(s)");
+        } catch (RenderRejectedException e) {
+            retryLater(job, e);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            fail(job, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Render one person of a job into the spool
+     *
+     * @return spool id of the report
+     */
+    private String render(RenderJob job, TemplateLayout layout, Person person, long estimatedRows)
+            throws IOException, RenderRejectedException {
+
+        long estimatedBytes = MemoryEstimator.estimateBytes(layout, estimatedRows, false);
+        Context context = new Context();
+        context.putVar("person", withProgress(person, job));
+
+        try (RenderScheduler.Ticket ticket = scheduler.admit(job.getTemplateName(), estimatedRows);
+             MemoryBudget.Reservation reservation = budget.reserve(estimatedBytes)) {
+            Workbook workbook = WorkbookSnapshotPool.shared().acquire(job.getTemplateName());
+            SpooledReport report = spool.spool("application/vnd.ms-excel",
+                    "PersonReport_" + job.getId() + ".xls",
+                    out -> WorkbookRenderer.transform(job.getTemplateName(), workbook,
+                            WorkbookOutput.open(out, job.getCompression()), context));
+            return report.getId();
+        }
+    }
+
+    private void fail(RenderJob job, String error) {
+        job.failed(error);
+        if (journal != null) {
+            try {
+                journal.finished(job.getId());
+            } catch (IOException e) {
+                System.err.println("Could not journal failure of job " + job.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue the jobs an earlier run left unfinished. Reports that expired
+     * from the spool in the meantime are rendered again.
+     */
+    private void resume(List<JobJournal.RecoveredJob> recovered) {
+        for (JobJournal.RecoveredJob unfinished : recovered) {
+            RenderJob job = new RenderJob(unfinished.getId(), unfinished.getClientId(),
+                    unfinished.getTemplateName(), unfinished.getPersons(), unfinished.getCompression());
+            for (int i = 0; i < unfinished.getPersons().size(); i++) {
+                String reportId = unfinished.getReportId(i);
+                try {
+                    if (reportId != null && spool.find(reportId) != null) {
+                        job.personDone(i, reportId);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Cannot check report " + reportId + ": " + e.getMessage());
+                }
+            }
+            jobs.put(job.getId(), job);
+            if (queue.offer(job.getClientId(), job)) {
+                System.out.println("Resuming job " + job.getId() + " at person "
+                        + job.getPersonsDone() + " of " + job.getPersonCount());
+            } else {
+                fail(job, "Job queue full while resuming");
+            }
+        }
+    }
+
+    private void retryLater(RenderJob job, RenderRejectedException e) {
+        if (job.getAttempts() >= MAX_ATTEMPTS) {
+            fail(job, "Server busy: " + e.getMessage());
+            return;
+        }
+        job.requeued();
+        try {
+            retries.schedule(() -> {
+                if (!queue.offer(job.getClientId(), job)) {
+                    fail(job, "Server busy: " + e.getMessage());
+                }
+            }, e.getRetryAfterSeconds(), TimeUnit.SECONDS);
+        } catch (RejectedExecutionException stopped) {
+            // Shutting down: left unfinished in the journal, resumed after the restart
+        }
+    }
+
+    /**
+     * Copy of the person whose phone list counts the phones rendered so far
+     */
+    private static Person withProgress(Person person, RenderJob job) {
+        if (person.getPhones() == null) {
+            return person;
+        }
+        Person copy = new Person(person.getName(), person.getAge(), person.getParentName(), person.getAddress());
+        List<Phone> phones = new ProgressList<>(person.getPhones(), job.rowsDoneCounter());
+        copy.setPhones(phones);
+        copy.setAddressExists(person.isAddressExists());
+        copy.setPhoneExists(person.isPhoneExists());
+        return copy;
+    }
+
+    private void purgeFinished() {
+        long cutoff = System.currentTimeMillis() - FINISHED_JOB_TTL_MILLIS;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+}
@@ -0,0 +1,91 @@
+package com.excelgen.output;
+
+/**
+ * A single byte range from an HTTP Range header, resolved against the
+ * length of the resource.
+ *
+ * Only one range per request is supported; for anything else the whole
+ * resource is sent, which RFC 7233 allows a server to do.
+ */
+public final class ByteRange {
+
+    /** Marker for a range that lies completely outside the resource (416) */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long start;
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse a Range header
+     *
+     * @return the range, {@link #UNSATISFIABLE}, or null when the whole
+     *         resource should be sent
+     */
+    public static ByteRange parse(String header, long length) {
+        if (header == null || !header.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            if (end < start) {
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Value of the Content-Range response header
+     */
+    public String toContentRange(long totalLength) {
+        if (this == UNSATISFIABLE) {
+            return "bytes */" + totalLength;
+        }
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+}
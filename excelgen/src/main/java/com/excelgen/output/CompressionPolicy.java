@@ -0,0 +1,48 @@
+package com.excelgen.output;
+
+import java.util.zip.Deflater;
+
+/**
+ * How hard to deflate the parts of a generated xlsx package.
+ *
+ * STORED still writes deflate entries, but at level 0, because a zip written
+ * to a non-seekable stream (like a servlet response) cannot use the STORED
+ * method without knowing every part's size and CRC up front.
+ */
+public enum CompressionPolicy {
+
+    STORED(Deflater.NO_COMPRESSION),
+    FAST(Deflater.BEST_SPEED),
+    DEFAULT(Deflater.DEFAULT_COMPRESSION),
+    MAXIMUM(Deflater.BEST_COMPRESSION);
+
+    private final int level;
+
+    CompressionPolicy(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Deflater level to use for this policy
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Parse a policy name, case-insensitively
+     *
+     * @return the policy, or null for a null, empty or unknown name
+     */
+    public static CompressionPolicy parse(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        for (CompressionPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.excelgen.output;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable direct ByteBuffers for staging output packages off the heap.
+ * Large renders used to stage every block of a package part in fresh heap
+ * arrays; those short-lived arrays of hundreds of kilobytes are exactly what
+ * G1 handles worst (humongous allocations).
+ *
+ * Buffers are pooled per capacity. Released buffers are kept until the pool
+ * holds excelgen.buffers.maxPooledMB (default 64) megabytes; beyond that they
+ * are left to the garbage collector, which frees their native memory.
+ */
+public final class DirectBufferPool {
+
+    private static final DirectBufferPool SHARED =
+            new DirectBufferPool(Long.getLong("excelgen.buffers.maxPooledMB", 64) * 1024 * 1024);
+
+    private final long maxPooledBytes;
+    private final Map<Integer, Deque<ByteBuffer>> free = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public DirectBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return a cleared direct buffer of exactly the capacity
+     */
+    public ByteBuffer acquire(int capacity) {
+        acquired.incrementAndGet();
+        inUseBytes.addAndGet(capacity);
+        ByteBuffer buffer = free.computeIfAbsent(capacity, c -> new ConcurrentLinkedDeque<>()).pollFirst();
+        if (buffer != null) {
+            pooledBytes.addAndGet(-capacity);
+            buffer.clear();
+            return buffer;
+        }
+        allocated.incrementAndGet();
+        allocatedBytes.addAndGet(capacity);
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Return a buffer taken from {@link #acquire(int)}. The caller must not
+     * use it, or any view of it, afterwards. Null is ignored.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        inUseBytes.addAndGet(-capacity);
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            discarded.incrementAndGet();
+            return;
+        }
+        free.computeIfAbsent(capacity, c -> new ConcurrentLinkedDeque<>()).offerFirst(buffer);
+    }
+
+    /**
+     * Bytes of the buffers waiting in the pool
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Bytes of the buffers acquired and not released yet
+     */
+    public long getInUseBytes() {
+        return inUseBytes.get();
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * Acquires that had to allocate a new buffer
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Released buffers dropped because the pool was full
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+}
@@ -0,0 +1,21 @@
+package com.excelgen.output;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+
+/**
+ * DataFormatter that formats whole numbers in the General format itself.
+ * Those are almost all numeric cells of our outputs, and DataFormatter would
+ * otherwise dominate the time of a streaming read. Unlike General it also
+ * keeps long numbers such as phone numbers exact instead of switching to
+ * scientific notation.
+ */
+public final class FastGeneralFormatter extends DataFormatter {
+
+    @Override
+    public String formatRawCellContents(double value, int formatIndex, String formatString) {
+        if (formatIndex == 0 && value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return super.formatRawCellContents(value, formatIndex, formatString);
+    }
+}
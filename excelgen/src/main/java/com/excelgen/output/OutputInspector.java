@@ -0,0 +1,327 @@
+package com.excelgen.output;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Reads the cells of a generated xlsx with the XSSF event (SAX) API instead
+ * of loading a workbook, so even million-row outputs can be checked in a
+ * small heap.
+ *
+ * Cells are streamed in sheet order as {@link CellValue}s holding the value
+ * as Excel displays it (15 rather than 15.0). Row and cell predicates select
+ * what is handed to the caller; lookups stop reading as soon as they have
+ * their answer. Memory use is constant apart from the shared strings table,
+ * which POI keeps in memory while a sheet is read.
+ *
+ * <pre>
+ *   OutputInspector inspector = OutputInspector.open(file);
+ *   assertEquals("John Doe", inspector.value(2, 1));
+ *   assertEquals(0, inspector.count(cell -&gt; cell.getValue().contains("${")));
+ * </pre>
+ */
+public final class OutputInspector {
+
+    private final File file;
+    private final byte[] bytes;
+    private final int sheetIndex;
+
+    private OutputInspector(File file, byte[] bytes, int sheetIndex) {
+        this.file = file;
+        this.bytes = bytes;
+        this.sheetIndex = sheetIndex;
+    }
+
+    /**
+     * Inspect a file on disk; parts are read straight from the zip
+     */
+    public static OutputInspector open(File file) {
+        return new OutputInspector(file, null, 0);
+    }
+
+    /**
+     * Inspect an output held in memory
+     */
+    public static OutputInspector open(byte[] bytes) {
+        return new OutputInspector(null, bytes, 0);
+    }
+
+    /**
+     * Inspector for another sheet of the same output (0-based)
+     */
+    public OutputInspector sheet(int index) {
+        return new OutputInspector(file, bytes, index);
+    }
+
+    /**
+     * Stream every cell of the rows accepted by rowFilter that matches
+     * cellFilter to the handler
+     */
+    public void scan(IntPredicate rowFilter, Predicate<CellValue> cellFilter, CellHandler handler) throws IOException {
+        read(new SheetContentsHandlerAdapter(rowFilter, cellFilter, handler));
+    }
+
+    /**
+     * Stream every cell to the handler
+     */
+    public void scan(CellHandler handler) throws IOException {
+        scan(row -> true, cell -> true, handler);
+    }
+
+    /**
+     * Displayed value of one cell, or "" when the cell is empty or missing.
+     * Stops reading once the row has been passed.
+     */
+    public String value(int row, int column) throws IOException {
+        String[] found = {""};
+        scanUntil(row, cell -> {
+            if (cell.getRow() == row && cell.getColumn() == column) {
+                found[0] = cell.getValue();
+                throw new StopScan();
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Displayed values of one row, indexed by column, "" for empty cells
+     */
+    public List<String> row(int row) throws IOException {
+        List<String> values = new ArrayList<>();
+        scanUntil(row, cell -> {
+            if (cell.getRow() == row) {
+                while (values.size() < cell.getColumn()) {
+                    values.add("");
+                }
+                values.add(cell.getValue());
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Number of cells matching the predicate
+     */
+    public long count(Predicate<CellValue> predicate) throws IOException {
+        long[] count = {0};
+        scan(row -> true, predicate, cell -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * First cell matching the predicate, or null; stops at the first match
+     */
+    public CellValue findFirst(Predicate<CellValue> predicate) throws IOException {
+        CellValue[] found = {null};
+        try {
+            scan(row -> true, predicate, cell -> {
+                found[0] = cell;
+                throw new StopScan();
+            });
+        } catch (StopScan e) {
+            // found
+        }
+        return found[0];
+    }
+
+    /**
+     * True when every cell of the accepted rows matches the predicate;
+     * stops at the first cell that does not
+     */
+    public boolean allMatch(IntPredicate rowFilter, Predicate<CellValue> predicate) throws IOException {
+        return findFirst(cell -> rowFilter.test(cell.getRow()) && !predicate.test(cell)) == null;
+    }
+
+    /**
+     * Index of the last row holding at least one cell, -1 for an empty sheet
+     */
+    public int lastRow() throws IOException {
+        int[] last = {-1};
+        scan(cell -> last[0] = Math.max(last[0], cell.getRow()));
+        return last[0];
+    }
+
+    /**
+     * Scan cells up to and including the given row, then stop
+     */
+    private void scanUntil(int lastRow, CellHandler handler) throws IOException {
+        try {
+            scan(row -> {
+                if (row > lastRow) {
+                    throw new StopScan();
+                }
+                return row == lastRow;
+            }, cell -> true, handler);
+        } catch (StopScan e) {
+            // reached the row
+        }
+    }
+
+    private void read(XSSFSheetXMLHandler.SheetContentsHandler contents) throws IOException {
+        if (file != null && !file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        OPCPackage pkg = null;
+        try {
+            pkg = file != null
+                    ? OPCPackage.open(file, PackageAccess.READ)
+                    : OPCPackage.open(new ByteArrayInputStream(bytes));
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; sheets.hasNext(); i++) {
+                try (InputStream sheet = sheets.next()) {
+                    if (i != sheetIndex) {
+                        continue;
+                    }
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            styles, null, strings, contents, new FastGeneralFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                    return;
+                }
+            }
+            throw new IOException("No sheet " + sheetIndex + " in output");
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot read output: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            // SAX wraps exceptions thrown by the handler
+            if (e.getCause() instanceof StopScan) {
+                throw (StopScan) e.getCause();
+            }
+            throw e;
+        } finally {
+            // Read-only package: discard instead of saving on close
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * Receives the cells of a scan
+     */
+    @FunctionalInterface
+    public interface CellHandler {
+        void cell(CellValue cell);
+    }
+
+    /**
+     * One non-empty cell of the output
+     */
+    public static final class CellValue {
+
+        private final int row;
+        private final int column;
+        private final String value;
+
+        CellValue(int row, int column, String value) {
+            this.row = row;
+            this.column = column;
+            this.value = value;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * Value as Excel displays it
+         */
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + row + "," + column + ")=" + value;
+        }
+    }
+
+    /**
+     * Ends a scan early
+     */
+    private static final class StopScan extends RuntimeException {
+        StopScan() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class SheetContentsHandlerAdapter implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final IntPredicate rowFilter;
+        private final Predicate<CellValue> cellFilter;
+        private final CellHandler handler;
+        private int row;
+        private boolean rowAccepted;
+
+        SheetContentsHandlerAdapter(IntPredicate rowFilter, Predicate<CellValue> cellFilter, CellHandler handler) {
+            this.rowFilter = rowFilter;
+            this.cellFilter = cellFilter;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row = rowNum;
+            rowAccepted = rowFilter.test(rowNum);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (!rowAccepted || formattedValue == null) {
+                return;
+            }
+            CellValue cell = new CellValue(row, column(cellReference), formattedValue);
+            if (cellFilter.test(cell)) {
+                handler.cell(cell);
+            }
+        }
+
+        /**
+         * 0-based column of a reference such as "AB12"
+         */
+        private static int column(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.excelgen.output;
+
+import com.excelgen.PrivateDirectory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Local store for rendered reports, so a download that breaks off can be
+ * resumed with an HTTP Range request instead of rendering the report again.
+ *
+ * Each report is a data file plus a small .properties file with its content
+ * type and download name. Reports older than the time-to-live are removed
+ * when new ones are spooled.
+ *
+ * Reports hold personal data, so they are only written to a
+ * {@link PrivateDirectory} of the process user.
+ *
+ * The directory (default .excelgen/spool in user.home) and time-to-live can
+ * be set with the system properties excelgen.spool.dir and
+ * excelgen.spool.ttlMinutes.
+ */
+public class OutputSpool {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f\\-]{36}");
+    private static final String DATA_SUFFIX = ".data";
+    private static final String META_SUFFIX = ".properties";
+
+    private static final OutputSpool SHARED = new OutputSpool(
+            Paths.get(System.getProperty("excelgen.spool.dir",
+                    Paths.get(System.getProperty("user.home"), ".excelgen", "spool").toString())),
+            Long.getLong("excelgen.spool.ttlMinutes", 60) * 60_000L);
+
+    /**
+     * Writes the report content into the spool file
+     */
+    public interface SpoolWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final Path directory;
+    private final long timeToLiveMillis;
+
+    public OutputSpool(Path directory, long timeToLiveMillis) {
+        this.directory = directory;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public static OutputSpool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Render a report into the spool. The report only becomes visible to
+     * {@link #find(String)} once it has been written completely.
+     *
+     * @throws IOException also when the spool directory is not private to the process user
+     */
+    public SpooledReport spool(String contentType, String fileName, SpoolWriter writer) throws IOException {
+        PrivateDirectory.require(directory);
+        purgeExpired();
+
+        String id = UUID.randomUUID().toString();
+        Path data = directory.resolve(id + DATA_SUFFIX);
+        Path partial = directory.resolve(id + DATA_SUFFIX + ".part");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+            writer.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("contentType", contentType);
+        meta.setProperty("fileName", fileName);
+        try (OutputStream out = Files.newOutputStream(directory.resolve(id + META_SUFFIX))) {
+            meta.store(out, null);
+        }
+        Files.move(partial, data, StandardCopyOption.ATOMIC_MOVE);
+
+        return new SpooledReport(id, data, contentType, fileName,
+                Files.size(data), Files.getLastModifiedTime(data).toMillis());
+    }
+
+    /**
+     * Look up a spooled report
+     *
+     * @return the report, or null when the id is unknown, malformed or expired
+     */
+    public SpooledReport find(String id) throws IOException {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        Path data = directory.resolve(id + DATA_SUFFIX);
+        Path metaFile = directory.resolve(id + META_SUFFIX);
+        if (!Files.exists(data) || !Files.exists(metaFile)) {
+            return null;
+        }
+
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            meta.load(in);
+        }
+        return new SpooledReport(id, data, meta.getProperty("contentType"), meta.getProperty("fileName"),
+                Files.size(data), Files.getLastModifiedTime(data).toMillis());
+    }
+
+    /**
+     * Delete reports older than the time-to-live
+     */
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - timeToLiveMillis;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error purging spool directory: " + directory);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.excelgen.output;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.Zip64RequiredException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip stream that deflates large package parts on several cores.
+ *
+ * Parts are buffered in blocks. Small parts are written through the normal
+ * single-threaded path once they are closed. As soon as a part grows past the
+ * threshold, its blocks are deflated in parallel, pigz style: every block is
+ * compressed by its own raw Deflater, primed with the last 32 KB of the
+ * previous block as dictionary and ended with a sync flush, so the
+ * concatenated blocks plus a final empty block form one valid deflate stream.
+ * That stream is written as a single pre-compressed zip entry, opened with
+ * unknown sizes as soon as the part goes parallel: deflated chunks are
+ * written out in order as their blocks complete, and the CRC and sizes follow
+ * in the entry's data descriptor. The entry is copied to the output by a
+ * writer thread, because commons-compress pulls raw entry data from an
+ * InputStream while POI pushes the part into this stream.
+ *
+ * POI writes a workbook into whatever ZipArchiveOutputStream it is given,
+ * so a single sheet XML of hundreds of megabytes no longer spends the whole
+ * write in one thread.
+ *
+ * Blocks and their deflated output are staged in direct buffers from the
+ * {@link DirectBufferPool}, and deflated buffer to buffer, so the stream
+ * allocates no heap arrays per block.
+ */
+public class ParallelDeflateZipOutputStream extends ZipArchiveOutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    /** Size of the buffers deflated output is written to; small, as a block compresses to a fraction of its size */
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** Final, empty, fixed-Huffman block that terminates a raw deflate stream */
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    /** Deflated chunks queued for the writer thread of an entry */
+    private static final int QUEUED_CHUNKS = 64;
+    private static final ByteBuffer END_OF_ENTRY = ByteBuffer.allocate(0);
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+
+    private static final ExecutorService DEFLATE_POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "parallel-deflate");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** One thread per parallel entry being written; never shares threads with DEFLATE_POOL */
+    private static final ExecutorService WRITER_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "parallel-deflate-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int level;
+    private final int blockSize;
+    private final int parallelThreshold;
+    private final DirectBufferPool buffers;
+
+    private ZipArchiveEntry entry;
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private ByteBuffer block;
+    private ByteBuffer previousBlock;
+    private final List<ByteBuffer> bufferedBlocks = new ArrayList<>();
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private byte[] copyBuffer;
+    private boolean parallel;
+
+    /** Chunks of the raw entry being written, and the thread writing them */
+    private BlockingQueue<ByteBuffer> rawChunks;
+    private Future<?> rawWriter;
+    private ChunkInputStream rawInput;
+    /** CRC and size of the raw entry, set before its end is queued */
+    private volatile long rawCrc;
+    private volatile long rawSize;
+
+    public ParallelDeflateZipOutputStream(OutputStream out, int level) {
+        this(out, level, DEFAULT_BLOCK_SIZE, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public ParallelDeflateZipOutputStream(OutputStream out, int level, int blockSize, int parallelThreshold) {
+        this(out, level, blockSize, parallelThreshold, DirectBufferPool.shared());
+    }
+
+    public ParallelDeflateZipOutputStream(OutputStream out, int level, int blockSize, int parallelThreshold,
+                                          DirectBufferPool buffers) {
+        super(out);
+        if (blockSize <= DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be larger than " + DICTIONARY_SIZE);
+        }
+        this.level = level;
+        this.blockSize = blockSize;
+        this.parallelThreshold = parallelThreshold;
+        this.buffers = buffers;
+        setLevel(level);
+    }
+
+    @Override
+    public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+        if (level == Deflater.NO_COMPRESSION) {
+            // Nothing to parallelise when nothing is compressed
+            super.putArchiveEntry(archiveEntry);
+            return;
+        }
+        if (entry != null) {
+            closeArchiveEntry();
+        }
+        entry = (ZipArchiveEntry) archiveEntry;
+        crc.reset();
+        size = 0;
+        block = buffers.acquire(blockSize);
+        previousBlock = null;
+        parallel = false;
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (entry == null) {
+            super.write(b, offset, length);
+            return;
+        }
+        crc.update(b, offset, length);
+        size += length;
+        while (length > 0) {
+            int n = Math.min(length, block.remaining());
+            block.put(b, offset, n);
+            offset += n;
+            length -= n;
+            if (!block.hasRemaining()) {
+                completeBlock(block);
+                block = buffers.acquire(blockSize);
+            }
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        if (entry == null) {
+            super.closeArchiveEntry();
+            return;
+        }
+        ZipArchiveEntry current = entry;
+        entry = null;
+
+        if (!parallel) {
+            // Small part: write it through the regular deflater
+            super.putArchiveEntry(current);
+            for (ByteBuffer buffered : bufferedBlocks) {
+                writeThrough(buffered);
+            }
+            writeThrough(block);
+            super.closeArchiveEntry();
+            releaseAll(bufferedBlocks);
+            buffers.release(block);
+            block = null;
+            return;
+        }
+
+        if (block.position() > 0) {
+            submit(block);
+        } else {
+            buffers.release(block);
+        }
+        block = null;
+        while (!pending.isEmpty()) {
+            collect();
+        }
+        buffers.release(previousBlock);
+        previousBlock = null;
+
+        rawCrc = crc.getValue();
+        rawSize = size;
+        handOff(END_OF_ENTRY);
+        try {
+            awaitWriter();
+        } finally {
+            rawChunks = null;
+            rawWriter = null;
+            rawInput = null;
+        }
+    }
+
+    /**
+     * Fill in the CRC and sizes of a raw entry, known only once all of it
+     * was written. The entry is commons-compress' own copy, the one it also
+     * writes into the central directory.
+     */
+    @Override
+    protected void writeDataDescriptor(ZipArchiveEntry archiveEntry) throws IOException {
+        if (rawInput != null && archiveEntry.getSize() == ArchiveEntry.SIZE_UNKNOWN) {
+            long compressedSize = rawInput.getCount();
+            if (rawSize >= ZIP32_LIMIT || compressedSize >= ZIP32_LIMIT) {
+                throw new Zip64RequiredException(archiveEntry.getName() + "'s size exceeds the limit of 4GByte.");
+            }
+            archiveEntry.setCrc(rawCrc);
+            archiveEntry.setSize(rawSize);
+            archiveEntry.setCompressedSize(compressedSize);
+        }
+        super.writeDataDescriptor(archiveEntry);
+    }
+
+    /**
+     * Shut down the shared deflate and writer threads, when the application
+     * stops
+     */
+    public static void shutdown() {
+        DEFLATE_POOL.shutdownNow();
+        WRITER_POOL.shutdownNow();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (entry != null) {
+            closeArchiveEntry();
+        }
+        super.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            // Only left over when the package was abandoned half-way
+            while (!pending.isEmpty()) {
+                Pending abandoned = pending.removeFirst();
+                try {
+                    releaseAll(await(abandoned.result));
+                } catch (IOException e) {
+                    // Already failed, the buffers are left to the garbage collector
+                }
+                buffers.release(abandoned.dictionary);
+            }
+            if (rawWriter != null) {
+                rawWriter.cancel(true);
+                drainRawChunks();
+                rawWriter = null;
+            }
+            releaseAll(bufferedBlocks);
+            buffers.release(block);
+            buffers.release(previousBlock);
+            block = null;
+            previousBlock = null;
+        }
+    }
+
+    /**
+     * Write a buffered block of a small part through the regular deflater
+     */
+    private void writeThrough(ByteBuffer buffered) throws IOException {
+        if (copyBuffer == null) {
+            copyBuffer = new byte[DICTIONARY_SIZE];
+        }
+        buffered.flip();
+        while (buffered.hasRemaining()) {
+            int n = Math.min(buffered.remaining(), copyBuffer.length);
+            buffered.get(copyBuffer, 0, n);
+            super.write(copyBuffer, 0, n);
+        }
+    }
+
+    /**
+     * Start writing the current part as a raw deflated entry of unknown
+     * size, fed by {@link #handOff}
+     */
+    private void openRawEntry() {
+        // CRC and sizes stay unknown, so the entry gets a data descriptor
+        ZipArchiveEntry raw = new ZipArchiveEntry(entry.getName());
+        raw.setTime(entry.getTime());
+        raw.setMethod(DEFLATED);
+        rawChunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        rawInput = new ChunkInputStream(rawChunks, buffers);
+        ChunkInputStream input = rawInput;
+        rawWriter = WRITER_POOL.submit(() -> {
+            try {
+                addRawArchiveEntry(raw, input);
+            } finally {
+                input.releaseCurrent();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Queue a deflated chunk for the writer, waiting while the output is
+     * behind; fails when the writer has stopped
+     */
+    private void handOff(ByteBuffer chunk) throws IOException {
+        try {
+            while (!rawChunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (rawWriter.isDone()) {
+                    buffers.release(chunk);
+                    awaitWriter();
+                    throw new IOException("Zip writer stopped before the end of the entry");
+                }
+            }
+        } catch (InterruptedException e) {
+            buffers.release(chunk);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing deflated data");
+        }
+    }
+
+    private void awaitWriter() throws IOException {
+        try {
+            rawWriter.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing deflated data");
+        } catch (ExecutionException e) {
+            drainRawChunks();
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Zip writer failed", e.getCause());
+        }
+    }
+
+    private void drainRawChunks() {
+        ByteBuffer chunk;
+        while ((chunk = rawChunks.poll()) != null) {
+            buffers.release(chunk);
+        }
+    }
+
+    private void completeBlock(ByteBuffer full) throws IOException {
+        if (!parallel) {
+            bufferedBlocks.add(full);
+            if ((long) bufferedBlocks.size() * blockSize < parallelThreshold) {
+                return;
+            }
+            parallel = true;
+            openRawEntry();
+            for (ByteBuffer buffered : bufferedBlocks) {
+                submit(buffered);
+            }
+            bufferedBlocks.clear();
+            return;
+        }
+        submit(full);
+    }
+
+    private void submit(ByteBuffer data) throws IOException {
+        ByteBuffer input = data.duplicate().flip();
+        ByteBuffer dictionary = previousBlock;
+        ByteBuffer dictionaryView = dictionary == null ? null
+                : dictionary.duplicate().limit(blockSize).position(blockSize - DICTIONARY_SIZE);
+        pending.addLast(new Pending(DEFLATE_POOL.submit(() -> deflateBlock(input, dictionaryView)), dictionary));
+        previousBlock = data;
+
+        // Keep a bounded number of raw blocks in flight
+        while (pending.size() > 2 * THREADS) {
+            collect();
+        }
+    }
+
+    /**
+     * Wait for the oldest block and pass its output on to the writer. Its
+     * dictionary, the block before it, is no longer needed once it is
+     * deflated.
+     */
+    private void collect() throws IOException {
+        Pending oldest = pending.removeFirst();
+        List<ByteBuffer> chunks;
+        try {
+            chunks = await(oldest.result);
+        } finally {
+            buffers.release(oldest.dictionary);
+        }
+        try {
+            while (!chunks.isEmpty()) {
+                handOff(chunks.remove(0));
+            }
+        } finally {
+            releaseAll(chunks);
+        }
+    }
+
+    private List<ByteBuffer> deflateBlock(ByteBuffer input, ByteBuffer dictionary) {
+        Deflater deflater = new Deflater(level, true);
+        List<ByteBuffer> chunks = new ArrayList<>();
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            while (true) {
+                ByteBuffer chunk = buffers.acquire(CHUNK_SIZE);
+                chunks.add(chunk);
+                deflater.deflate(chunk, Deflater.SYNC_FLUSH);
+                if (chunk.hasRemaining()) {
+                    break;
+                }
+            }
+            for (ByteBuffer chunk : chunks) {
+                chunk.flip();
+            }
+            return chunks;
+        } catch (RuntimeException | Error e) {
+            releaseAll(chunks);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void releaseAll(List<ByteBuffer> list) {
+        for (ByteBuffer buffer : list) {
+            buffers.release(buffer);
+        }
+        list.clear();
+    }
+
+    private static List<ByteBuffer> await(Future<List<ByteBuffer>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while deflating");
+        } catch (ExecutionException e) {
+            throw new IOException("Parallel deflate failed", e.getCause());
+        }
+    }
+
+    /**
+     * A block being deflated, and the block used as its dictionary
+     */
+    private static final class Pending {
+        final Future<List<ByteBuffer>> result;
+        final ByteBuffer dictionary;
+
+        Pending(Future<List<ByteBuffer>> result, ByteBuffer dictionary) {
+            this.result = result;
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * The deflated chunks of an entry, as they are handed off, followed by
+     * the final block. Chunks go back to the pool once read.
+     */
+    private static final class ChunkInputStream extends InputStream {
+        private final BlockingQueue<ByteBuffer> chunks;
+        private final DirectBufferPool buffers;
+        private final ByteBuffer end = ByteBuffer.wrap(FINAL_BLOCK);
+        private ByteBuffer current;
+        private boolean ended;
+        private volatile long count;
+
+        ChunkInputStream(BlockingQueue<ByteBuffer> chunks, DirectBufferPool buffers) {
+            this.chunks = chunks;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            count++;
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) throws IOException {
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(b, offset, n);
+            count += n;
+            return n;
+        }
+
+        /**
+         * Bytes read so far, the compressed size once the stream has ended
+         */
+        long getCount() {
+            return count;
+        }
+
+        void releaseCurrent() {
+            if (current != null) {
+                buffers.release(current);
+                current = null;
+            }
+        }
+
+        private ByteBuffer current() throws IOException {
+            while (!ended && (current == null || !current.hasRemaining())) {
+                releaseCurrent();
+                ByteBuffer next;
+                try {
+                    next = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for deflated data");
+                }
+                if (next == END_OF_ENTRY) {
+                    ended = true;
+                } else {
+                    current = next;
+                }
+            }
+            if (!ended) {
+                return current;
+            }
+            return end.hasRemaining() ? end : null;
+        }
+    }
+}
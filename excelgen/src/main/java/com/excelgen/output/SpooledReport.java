@@ -0,0 +1,79 @@
+package com.excelgen.output;
+
+import org.apache.commons.compress.utils.BoundedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A rendered report kept in the {@link OutputSpool}.
+ *
+ * A spooled file is never rewritten, so its id is enough for a strong ETag.
+ */
+public final class SpooledReport {
+
+    private final String id;
+    private final Path file;
+    private final String contentType;
+    private final String fileName;
+    private final long length;
+    private final long lastModified;
+
+    SpooledReport(String id, Path file, String contentType, String fileName, long length, long lastModified) {
+        this.id = id;
+        this.file = file;
+        this.contentType = contentType;
+        this.fileName = fileName;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Modification time in epoch milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getETag() {
+        return "\"" + id + "\"";
+    }
+
+    /**
+     * Copy a byte range of the spooled file to out. This is a plain stream
+     * copy through a heap buffer; zero-copy sends go through the container,
+     * such as Tomcat's sendfile support, with {@link #getFile()}.
+     */
+    public void copyTo(long position, long count, OutputStream out) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(position);
+            long copied = new BoundedInputStream(in, count).transferTo(out);
+            if (copied < count) {
+                throw new IOException("Spooled report " + id + " is shorter than expected");
+            }
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.excelgen.output;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Canonical content fingerprint of an xlsx output: a SHA-256 over every
+ * cell, in sheet, row and column order, of its position, type, style index
+ * and value. Two outputs with the same cells have the same fingerprint
+ * however they were written: shared or inline strings, "15" or "15.0",
+ * blank unstyled cells or no cells at all.
+ *
+ * Sheets are read with a StAX pull parser, so memory use is constant apart
+ * from the shared strings table, and {@link #firstDifference} can walk two
+ * outputs side by side and stop at the first cell that differs.
+ *
+ * <pre>
+ *   assertEquals(golden, WorkbookFingerprint.of(file).getHash());
+ *   assertNull(WorkbookFingerprint.firstDifference(expected, actual));
+ * </pre>
+ */
+public final class WorkbookFingerprint {
+
+    private static final XMLInputFactory XML = newXmlInputFactory();
+
+    private final String hash;
+    private final int sheets;
+    private final long cells;
+
+    private WorkbookFingerprint(String hash, int sheets, long cells) {
+        this.hash = hash;
+        this.sheets = sheets;
+        this.cells = cells;
+    }
+
+    public static WorkbookFingerprint of(File file) throws IOException {
+        return of(Source.of(file));
+    }
+
+    public static WorkbookFingerprint of(byte[] xlsx) throws IOException {
+        return of(Source.of(xlsx));
+    }
+
+    /**
+     * First cell that differs between two outputs, or null when they have
+     * the same cells. Stops reading both at the first difference.
+     */
+    public static Difference firstDifference(byte[] expected, byte[] actual) throws IOException {
+        return firstDifference(Source.of(expected), Source.of(actual));
+    }
+
+    public static Difference firstDifference(File expected, File actual) throws IOException {
+        return firstDifference(Source.of(expected), Source.of(actual));
+    }
+
+    /**
+     * Hex SHA-256 of the canonical cells
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public int getSheets() {
+        return sheets;
+    }
+
+    /**
+     * Number of cells that went into the hash
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WorkbookFingerprint && hash.equals(((WorkbookFingerprint) o).hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return hash + " (" + sheets + " sheets, " + cells + " cells)";
+    }
+
+    private static WorkbookFingerprint of(Source source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long cells = 0;
+        try (CellCursor cursor = new CellCursor(source)) {
+            Cell cell;
+            while ((cell = cursor.next()) != null) {
+                digest.update(cell.canonical().getBytes(StandardCharsets.UTF_8));
+                cells++;
+            }
+            return new WorkbookFingerprint(toHex(digest.digest()), cursor.sheetCount, cells);
+        }
+    }
+
+    private static Difference firstDifference(Source expected, Source actual) throws IOException {
+        try (CellCursor left = new CellCursor(expected); CellCursor right = new CellCursor(actual)) {
+            while (true) {
+                Cell a = left.next();
+                Cell b = right.next();
+                if (a == null && b == null) {
+                    return null;
+                }
+                if (a == null || b == null || !a.equals(b)) {
+                    return new Difference(a, b);
+                }
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * The first cell that differs. One side is null when that output has
+     * no more cells.
+     */
+    public static final class Difference {
+
+        private final Cell expected;
+        private final Cell actual;
+
+        Difference(Cell expected, Cell actual) {
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        public Cell getExpected() {
+            return expected;
+        }
+
+        public Cell getActual() {
+            return actual;
+        }
+
+        @Override
+        public String toString() {
+            Cell at = expected != null ? expected : actual;
+            if (expected != null && actual != null && expected.positionCompareTo(actual) > 0) {
+                at = actual;
+            }
+            return "First difference at " + at.getReference() + ": expected " + describe(expected)
+                    + " but was " + describe(actual);
+        }
+
+        private static String describe(Cell cell) {
+            return cell == null ? "no more cells" : cell.toString();
+        }
+    }
+
+    /**
+     * One cell in canonical form
+     */
+    public static final class Cell {
+
+        private final int sheet;
+        private final String sheetName;
+        private final int row;
+        private final int column;
+        private final char type;
+        private final int style;
+        private final String value;
+        private final String formula;
+
+        Cell(int sheet, String sheetName, int row, int column, char type, int style, String value, String formula) {
+            this.sheet = sheet;
+            this.sheetName = sheetName;
+            this.row = row;
+            this.column = column;
+            this.type = type;
+            this.style = style;
+            this.value = value;
+            this.formula = formula;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        /**
+         * 0-based row
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * 0-based column
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * s string, n number, b boolean, e error or blank
+         */
+        public char getType() {
+            return type;
+        }
+
+        public int getStyle() {
+            return style;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Formula text, null for plain values
+         */
+        public String getFormula() {
+            return formula;
+        }
+
+        /**
+         * Reference such as PersonInfo!B12
+         */
+        public String getReference() {
+            StringBuilder letters = new StringBuilder();
+            for (int c = column + 1; c > 0; c = (c - 1) / 26) {
+                letters.insert(0, (char) ('A' + (c - 1) % 26));
+            }
+            return sheetName + "!" + letters + (row + 1);
+        }
+
+        int positionCompareTo(Cell other) {
+            if (sheet != other.sheet) {
+                return Integer.compare(sheet, other.sheet);
+            }
+            if (row != other.row) {
+                return Integer.compare(row, other.row);
+            }
+            return Integer.compare(column, other.column);
+        }
+
+        String canonical() {
+            return sheet + "\u0000" + sheetName + "\u0000" + row + "\u0000" + column + "\u0000" + type + "\u0000"
+                    + style + "\u0000" + value + "\u0000" + (formula != null ? formula : "") + "\n";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Cell)) {
+                return false;
+            }
+            Cell other = (Cell) o;
+            return sheet == other.sheet && row == other.row && column == other.column && type == other.type
+                    && style == other.style && sheetName.equals(other.sheetName) && value.equals(other.value)
+                    && Objects.equals(formula, other.formula);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sheet, row, column, value);
+        }
+
+        @Override
+        public String toString() {
+            return getReference() + " " + type + " s" + style + " \"" + value + "\""
+                    + (formula != null ? " =" + formula : "");
+        }
+    }
+
+    /**
+     * Where an output is read from
+     */
+    private interface Source {
+        OPCPackage open() throws IOException, OpenXML4JException;
+
+        static Source of(File file) {
+            return () -> {
+                if (!file.isFile()) {
+                    throw new FileNotFoundException(file.getPath());
+                }
+                return OPCPackage.open(file, PackageAccess.READ);
+            };
+        }
+
+        static Source of(byte[] xlsx) {
+            return () -> OPCPackage.open(new ByteArrayInputStream(xlsx));
+        }
+    }
+
+    /**
+     * Pulls the canonical cells of all sheets, one at a time
+     */
+    private static final class CellCursor implements Closeable {
+
+        private final OPCPackage pkg;
+        private final ReadOnlySharedStringsTable strings;
+        private final XSSFReader.SheetIterator sheets;
+        private int sheetCount;
+        private String sheetName;
+        private InputStream sheetStream;
+        private XMLStreamReader xml;
+        private int row;
+        private int column;
+
+        CellCursor(Source source) throws IOException {
+            try {
+                pkg = source.open();
+            } catch (OpenXML4JException e) {
+                throw new IOException("Cannot read output: " + e.getMessage(), e);
+            }
+            try {
+                XSSFReader reader = new XSSFReader(pkg);
+                strings = new ReadOnlySharedStringsTable(pkg);
+                sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            } catch (OpenXML4JException | SAXException | IOException | RuntimeException e) {
+                pkg.revert();
+                throw e instanceof IOException ? (IOException) e
+                        : new IOException("Cannot read output: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @return the next cell, null after the last cell of the last sheet
+         */
+        Cell next() throws IOException {
+            try {
+                while (true) {
+                    if (xml == null && !nextSheet()) {
+                        return null;
+                    }
+                    while (xml.hasNext()) {
+                        if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                            continue;
+                        }
+                        String element = xml.getLocalName();
+                        if ("row".equals(element)) {
+                            String r = xml.getAttributeValue(null, "r");
+                            row = r != null ? Integer.parseInt(r) - 1 : row + 1;
+                            column = -1;
+                        } else if ("c".equals(element)) {
+                            Cell cell = readCell();
+                            if (cell != null) {
+                                return cell;
+                            }
+                        }
+                    }
+                    closeSheet();
+                }
+            } catch (XMLStreamException e) {
+                throw new IOException("Cannot read sheet " + sheetName + ": " + e.getMessage(), e);
+            }
+        }
+
+        private boolean nextSheet() throws IOException, XMLStreamException {
+            if (!sheets.hasNext()) {
+                return false;
+            }
+            sheetStream = sheets.next();
+            sheetName = sheets.getSheetName();
+            sheetCount++;
+            xml = XML.createXMLStreamReader(sheetStream);
+            row = -1;
+            return true;
+        }
+
+        /**
+         * Read the c element the parser is on, up to its end tag
+         *
+         * @return the cell, or null for a blank cell in the default style
+         */
+        private Cell readCell() throws XMLStreamException {
+            String reference = xml.getAttributeValue(null, "r");
+            column = reference != null ? column(reference) : column + 1;
+            String t = xml.getAttributeValue(null, "t");
+            String s = xml.getAttributeValue(null, "s");
+            int style = s != null ? Integer.parseInt(s) : 0;
+
+            String raw = null;
+            String formula = null;
+            StringBuilder inline = null;
+            int depth = 1;
+            while (depth > 0) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String element = xml.getLocalName();
+                    if ("v".equals(element)) {
+                        raw = xml.getElementText();
+                        depth--;
+                    } else if ("f".equals(element)) {
+                        formula = xml.getElementText();
+                        depth--;
+                    } else if ("t".equals(element)) {
+                        // Inline string, possibly split into rich text runs
+                        if (inline == null) {
+                            inline = new StringBuilder();
+                        }
+                        inline.append(xml.getElementText());
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+
+            char type;
+            String value;
+            if ("s".equals(t)) {
+                type = 's';
+                value = raw != null ? strings.getItemAt(Integer.parseInt(raw.trim())).getString() : "";
+            } else if ("inlineStr".equals(t)) {
+                type = 's';
+                value = inline != null ? inline.toString() : "";
+            } else if ("str".equals(t)) {
+                type = 's';
+                value = raw != null ? raw : "";
+            } else if ("b".equals(t)) {
+                type = 'b';
+                value = "1".equals(raw != null ? raw.trim() : null) ? "TRUE" : "FALSE";
+            } else if ("e".equals(t)) {
+                type = 'e';
+                value = raw != null ? raw : "";
+            } else if (raw != null && !raw.isEmpty()) {
+                type = 'n';
+                value = number(raw.trim());
+            } else {
+                type = ' ';
+                value = "";
+            }
+            if (type == ' ' && formula == null && style == 0) {
+                return null;
+            }
+            return new Cell(sheetCount - 1, sheetName, row, column, type, style, value, formula);
+        }
+
+        /**
+         * "15", "15.0" and "1.5E1" are the same number
+         */
+        private static String number(String raw) {
+            try {
+                return Double.toString(Double.parseDouble(raw));
+            } catch (NumberFormatException e) {
+                return raw;
+            }
+        }
+
+        /**
+         * 0-based column of a reference such as "AB12"
+         */
+        private static int column(String reference) {
+            int column = 0;
+            for (int i = 0; i < reference.length(); i++) {
+                char c = reference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+
+        private void closeSheet() throws IOException {
+            try {
+                if (xml != null) {
+                    xml.close();
+                }
+            } catch (XMLStreamException e) {
+                // closing only
+            }
+            xml = null;
+            if (sheetStream != null) {
+                sheetStream.close();
+                sheetStream = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeSheet();
+            // Read-only package: discard instead of saving on close
+            pkg.revert();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.excelgen.output;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens the zip stream an xlsx package is written into.
+ *
+ * POI writes a workbook straight into a {@link ZipArchiveOutputStream} when it
+ * is handed one, so the deflate level chosen here is used for every package
+ * part without recompressing anything afterwards. Parts larger than a few
+ * megabytes are deflated on several cores, see
+ * {@link ParallelDeflateZipOutputStream}.
+ *
+ * Per-template defaults are read from template-compression.properties on the
+ * classpath (template name = policy name). A policy requested explicitly, for
+ * example through a request parameter, wins over the template default.
+ */
+public final class WorkbookOutput {
+
+    private static final String TEMPLATE_POLICIES = "template-compression.properties";
+
+    private static final Map<String, CompressionPolicy> templatePolicies = loadTemplatePolicies();
+
+    private WorkbookOutput() {
+    }
+
+    /**
+     * Wrap the target stream in a zip stream that deflates at the policy's level.
+     * Closing the returned stream closes the target.
+     */
+    public static ZipArchiveOutputStream open(OutputStream target, CompressionPolicy policy) {
+        return new ParallelDeflateZipOutputStream(target, policy.getLevel());
+    }
+
+    /**
+     * Resolve the policy for a render
+     *
+     * @param requested policy name asked for by the caller, may be null
+     */
+    public static CompressionPolicy resolve(String templateName, String requested) {
+        CompressionPolicy policy = CompressionPolicy.parse(requested);
+        if (policy != null) {
+            return policy;
+        }
+        return templatePolicies.getOrDefault(templateName, CompressionPolicy.DEFAULT);
+    }
+
+    private static Map<String, CompressionPolicy> loadTemplatePolicies() {
+        Map<String, CompressionPolicy> policies = new ConcurrentHashMap<>();
+        try (InputStream is = WorkbookOutput.class.getClassLoader().getResourceAsStream(TEMPLATE_POLICIES)) {
+            if (is == null) {
+                return policies;
+            }
+            Properties properties = new Properties();
+            properties.load(is);
+            for (String template : properties.stringPropertyNames()) {
+                CompressionPolicy policy = CompressionPolicy.parse(properties.getProperty(template));
+                if (policy != null) {
+                    policies.put(template, policy);
+                } else {
+                    System.err.println("Unknown compression policy for " + template + ": "
+                            + properties.getProperty(template));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + TEMPLATE_POLICIES);
+            e.printStackTrace();
+        }
+        return policies;
+    }
+}
@@ -0,0 +1,101 @@
+package com.excelgen.render;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how close the memory estimates are to what renders really use.
+ *
+ * The heap a single render retains cannot be observed while others run, so
+ * the bytes allocated by the rendering thread are used instead. Allocation
+ * includes garbage and is an upper bound of the peak, which makes
+ * "estimate below allocation" the number to watch: the lower it stays, the
+ * fewer renders can exceed their reservation.
+ */
+public final class EstimateAccuracy {
+
+    private static final EstimateAccuracy SHARED = new EstimateAccuracy();
+
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicLong observedBytes = new AtomicLong();
+    private final AtomicLong underEstimates = new AtomicLong();
+
+    public static EstimateAccuracy shared() {
+        return SHARED;
+    }
+
+    /**
+     * Start measuring the current thread's allocations
+     */
+    public Probe start(long estimate) {
+        return new Probe(estimate);
+    }
+
+    public void record(long estimate, long observed) {
+        samples.incrementAndGet();
+        estimatedBytes.addAndGet(estimate);
+        observedBytes.addAndGet(observed);
+        if (estimate < observed) {
+            underEstimates.incrementAndGet();
+        }
+    }
+
+    public long getSamples() {
+        return samples.get();
+    }
+
+    /**
+     * Sum of estimates divided by sum of observed allocations, or 0 before any sample
+     */
+    public double getRatio() {
+        long observed = observedBytes.get();
+        return observed == 0 ? 0 : (double) estimatedBytes.get() / observed;
+    }
+
+    /**
+     * Renders that allocated more than was reserved for them
+     */
+    public long getUnderEstimates() {
+        return underEstimates.get();
+    }
+
+    /**
+     * Measures one render; closing it records the sample. Does nothing when
+     * the JVM cannot report per-thread allocation.
+     */
+    public final class Probe implements AutoCloseable {
+
+        private final long estimate;
+        private final long threadId = Thread.currentThread().getId();
+        private final long startBytes;
+
+        private Probe(long estimate) {
+            this.estimate = estimate;
+            this.startBytes = allocatedBytes(threadId);
+        }
+
+        @Override
+        public void close() {
+            if (startBytes < 0) {
+                return;
+            }
+            long end = allocatedBytes(threadId);
+            if (end >= startBytes) {
+                record(estimate, end - startBytes);
+            }
+        }
+    }
+
+    private static long allocatedBytes(long threadId) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,150 @@
+package com.excelgen.render;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global budget of heap that renders may reserve. A render first reserves its
+ * estimated peak ({@link MemoryEstimator}); when the budget is used up it
+ * waits for other renders to finish, and it is rejected when it could never
+ * fit or the wait times out. Shedding one request is better than an
+ * OutOfMemoryError that takes the whole node down.
+ *
+ * The budget defaults to half of the max heap and can be set with the
+ * excelgen.memory.budgetMB and excelgen.memory.waitMillis system properties.
+ */
+public final class MemoryBudget {
+
+    private static final long DEFAULT_BUDGET = Long.getLong("excelgen.memory.budgetMB",
+            Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024)) * 1024 * 1024;
+
+    private static final MemoryBudget SHARED =
+            new MemoryBudget(DEFAULT_BUDGET, Long.getLong("excelgen.memory.waitMillis", 30_000));
+
+    private final long capacity;
+    private final long maxWaitMillis;
+    private long reserved;
+    private int waiting;
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MemoryBudget(long capacity, long maxWaitMillis) {
+        this.capacity = capacity;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public static MemoryBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Reserve bytes from the budget, waiting up to the configured time for
+     * other renders to release theirs
+     *
+     * @throws RenderRejectedException when the request does not fit
+     */
+    public Reservation reserve(long bytes) throws RenderRejectedException {
+        if (bytes > capacity) {
+            rejected.incrementAndGet();
+            throw new RenderRejectedException("Render needs ~" + toMB(bytes) + " MB but the memory budget is "
+                    + toMB(capacity) + " MB", 60);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        synchronized (this) {
+            waiting++;
+            try {
+                while (reserved + bytes > capacity) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new RenderRejectedException("Not enough memory for this render right now ("
+                                + toMB(reserved) + " of " + toMB(capacity) + " MB reserved)",
+                                (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis)));
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Interrupted while waiting for memory", 1);
+            } finally {
+                waiting--;
+            }
+            reserved += bytes;
+        }
+        admitted.incrementAndGet();
+        return new Reservation(bytes);
+    }
+
+    /**
+     * Reserve bytes only if they fit right now, without waiting. For memory
+     * that is kept between requests, which can be dropped instead.
+     *
+     * @return the reservation, or null when the budget is used up
+     */
+    public synchronized Reservation tryReserve(long bytes) {
+        if (reserved + bytes > capacity) {
+            return null;
+        }
+        reserved += bytes;
+        return new Reservation(bytes);
+    }
+
+    private synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    private static long toMB(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Requests waiting for memory right now
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Reserved bytes; closing the reservation gives them back
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.excelgen.render;
+
+import com.excelgen.template.TemplateLayout;
+
+/**
+ * Estimates the peak heap a render needs, so it can be reserved from the
+ * {@link MemoryBudget} before the render starts.
+ *
+ * An xlsx render keeps the whole XSSF workbook in memory: a fixed cost for
+ * the parsed template plus roughly 1.1 KB per cell and 256 bytes per row of
+ * output (measured with the bundled templates), and some headroom for
+ * serialising the sheet at the end. CSV/TSV renders stream their rows and
+ * only need a small constant amount.
+ */
+public final class MemoryEstimator {
+
+    static final long WORKBOOK_BASE_BYTES = 4L * 1024 * 1024;
+    static final long TEMPLATE_CELL_BYTES = 2 * 1024;
+    static final long OUTPUT_ROW_BYTES = 256;
+    static final long OUTPUT_CELL_BYTES = 1_100;
+    static final long STREAMING_BYTES = 256L * 1024;
+    static final double WRITE_HEADROOM = 1.25;
+
+    private MemoryEstimator() {
+    }
+
+    /**
+     * @param layout        compiled template
+     * @param estimatedRows output rows, see {@link RenderCostEstimator}
+     * @param streaming     true for CSV/TSV output, which never holds a workbook
+     */
+    public static long estimateBytes(TemplateLayout layout, long estimatedRows, boolean streaming) {
+        if (streaming) {
+            return STREAMING_BYTES;
+        }
+
+        long templateCells = 0;
+        for (int r = 0; r < layout.getRowCount(); r++) {
+            for (int c = 0; c < layout.getWidth(); c++) {
+                if (layout.getRow(r).getCell(c) != null) {
+                    templateCells++;
+                }
+            }
+        }
+
+        long rowBytes = OUTPUT_ROW_BYTES + OUTPUT_CELL_BYTES * Math.max(1, layout.getWidth());
+        long bytes = WORKBOOK_BASE_BYTES + templateCells * TEMPLATE_CELL_BYTES + estimatedRows * rowBytes;
+        return (long) (bytes * WRITE_HEADROOM);
+    }
+}
@@ -0,0 +1,95 @@
+package com.excelgen.render;
+
+import com.excelgen.template.TemplateCommand;
+import com.excelgen.template.TemplateLayout;
+import org.jxls.expression.ExpressionEvaluator;
+import org.jxls.expression.JexlExpressionEvaluator;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how many rows a render will produce, from the compiled template
+ * and the size of the collections its jx:each commands iterate over.
+ *
+ * For the bundled templates this is the template rows plus one row per phone.
+ * A jx:each nested in another is sized for each item of the outer one, with
+ * the outer loop variable bound to that item.
+ */
+public final class RenderCostEstimator {
+
+    private static final ExpressionEvaluator EVALUATOR = new JexlExpressionEvaluator();
+
+    private RenderCostEstimator() {
+    }
+
+    public static long estimateRows(TemplateLayout layout, Map<String, Object> vars) {
+        long rows = layout.getRowCount();
+        for (TemplateCommand area : layout.getAreas()) {
+            rows += extraRows(area.getChildren(), vars);
+        }
+        return rows;
+    }
+
+    private static long extraRows(List<TemplateCommand> commands, Map<String, Object> vars) {
+        long extra = 0;
+        for (TemplateCommand command : commands) {
+            if (TemplateCommand.EACH.equals(command.getName()) && command.getItems() != null) {
+                extra += eachExtraRows(command, vars);
+            } else {
+                extra += extraRows(command.getChildren(), vars);
+            }
+        }
+        return extra;
+    }
+
+    /**
+     * Rows a jx:each adds to the ones it covers in the template, counting
+     * the commands nested in it once per item
+     */
+    private static long eachExtraRows(TemplateCommand each, Map<String, Object> vars) {
+        Collection<?> items = items(each.getItems(), vars);
+        long extra = (long) each.getRowCount() * Math.max(0, items.size() - 1);
+        if (each.getChildren().isEmpty()) {
+            return extra;
+        }
+        Map<String, Object> itemVars = new HashMap<>(vars);
+        for (Object item : items) {
+            if (each.getVar() != null) {
+                itemVars.put(each.getVar(), item);
+            }
+            extra += extraRows(each.getChildren(), itemVars);
+        }
+        return extra;
+    }
+
+    /**
+     * Items a jx:each iterates over; a value that cannot be evaluated or is
+     * not a collection counts as one item
+     */
+    private static Collection<?> items(String expression, Map<String, Object> vars) {
+        Object items;
+        try {
+            items = EVALUATOR.evaluate(expression, vars);
+        } catch (RuntimeException e) {
+            return Collections.singletonList(null);
+        }
+        if (items instanceof Collection) {
+            return (Collection<?>) items;
+        }
+        if (items != null && items.getClass().isArray()) {
+            int length = Array.getLength(items);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(Array.get(items, i));
+            }
+            return list;
+        }
+        return Collections.singletonList(items);
+    }
+}
@@ -0,0 +1,127 @@
+package com.excelgen.render;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lane of renders: at most {@code concurrency} renders run at once,
+ * at most {@code queueLimit} wait for a slot, and within the lane no template
+ * may hold more than {@code perTemplate} slots (the per-template bulkhead).
+ */
+public final class RenderLane {
+
+    private final String name;
+    private final int concurrency;
+    private final int queueLimit;
+    private final int perTemplate;
+    private final long maxWaitMillis;
+
+    private final Semaphore slots;
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RenderLane(String name, int concurrency, int queueLimit, int perTemplate, long maxWaitMillis) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+        this.queueLimit = Math.max(0, queueLimit);
+        this.perTemplate = Math.max(1, Math.min(perTemplate, this.concurrency));
+        this.maxWaitMillis = maxWaitMillis;
+        this.slots = new Semaphore(this.concurrency, true);
+    }
+
+    /**
+     * Wait for a slot in this lane and in the template's bulkhead
+     */
+    Runnable enter(String templateName) throws RenderRejectedException {
+        if (waiting.incrementAndGet() > queueLimit + concurrency) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RenderRejectedException("Render lane '" + name + "' is full", retryAfterSeconds());
+        }
+
+        Semaphore bulkhead = bulkheads.computeIfAbsent(templateName, t -> new Semaphore(perTemplate, true));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        try {
+            if (!bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Too many '" + templateName + "' renders in lane '"
+                        + name + "'", retryAfterSeconds());
+            }
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (!slots.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                bulkhead.release();
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Render lane '" + name + "' is busy", retryAfterSeconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new RenderRejectedException("Interrupted while waiting for render lane '" + name + "'", 1);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        active.incrementAndGet();
+        return () -> {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+            slots.release();
+            bulkhead.release();
+        };
+    }
+
+    private int retryAfterSeconds() {
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+
+    public int getPerTemplate() {
+        return perTemplate;
+    }
+
+    /**
+     * Renders running in this lane right now
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Renders waiting for a slot in this lane right now
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[active=" + active + "/" + concurrency + ", waiting=" + waiting
+                + ", completed=" + completed + ", rejected=" + rejected + "]";
+    }
+}
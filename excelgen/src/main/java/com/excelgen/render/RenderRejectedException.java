@@ -0,0 +1,22 @@
+package com.excelgen.render;
+
+/**
+ * Thrown when a render cannot be admitted, e.g. its lane is full. The
+ * caller should answer 503 so the client retries later.
+ */
+public class RenderRejectedException extends Exception {
+
+    private final int retryAfterSeconds;
+
+    public RenderRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Suggested delay before retrying, for the Retry-After header
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,106 @@
+package com.excelgen.render;
+
+/**
+ * Puts every render in one of two lanes by its estimated size, so small
+ * interactive renders never queue behind bulk ones.
+ *
+ * <pre>
+ *   try (RenderScheduler.Ticket ticket = RenderScheduler.shared().admit(template, rows)) {
+ *       ... render ...
+ *   }
+ * </pre>
+ *
+ * Limits are read from system properties:
+ * <ul>
+ *   <li>excelgen.render.bulkThresholdRows (default 5000) - estimated rows from which a render is bulk</li>
+ *   <li>excelgen.render.interactive.concurrency / .queue / .perTemplate / .waitMillis</li>
+ *   <li>excelgen.render.bulk.concurrency / .queue / .perTemplate / .waitMillis</li>
+ * </ul>
+ */
+public final class RenderScheduler {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private static final RenderScheduler SHARED = new RenderScheduler(
+            Long.getLong("excelgen.render.bulkThresholdRows", 5_000),
+            lane("interactive", Math.max(2, CPUS), 200, Math.max(2, CPUS), 10_000),
+            lane("bulk", Math.max(1, CPUS / 4), 20, 1, 60_000));
+
+    private final long bulkThresholdRows;
+    private final RenderLane interactive;
+    private final RenderLane bulk;
+
+    public RenderScheduler(long bulkThresholdRows, RenderLane interactive, RenderLane bulk) {
+        this.bulkThresholdRows = bulkThresholdRows;
+        this.interactive = interactive;
+        this.bulk = bulk;
+    }
+
+    public static RenderScheduler shared() {
+        return SHARED;
+    }
+
+    private static RenderLane lane(String name, int concurrency, int queue, int perTemplate, long waitMillis) {
+        String prefix = "excelgen.render." + name + ".";
+        return new RenderLane(name,
+                Integer.getInteger(prefix + "concurrency", concurrency),
+                Integer.getInteger(prefix + "queue", queue),
+                Integer.getInteger(prefix + "perTemplate", perTemplate),
+                Long.getLong(prefix + "waitMillis", waitMillis));
+    }
+
+    /**
+     * Lane a render of the given estimated size runs in
+     */
+    public RenderLane laneFor(long estimatedRows) {
+        return estimatedRows >= bulkThresholdRows ? bulk : interactive;
+    }
+
+    /**
+     * Block until the render may start
+     *
+     * @throws RenderRejectedException when its lane or template bulkhead stays full
+     */
+    public Ticket admit(String templateName, long estimatedRows) throws RenderRejectedException {
+        RenderLane lane = laneFor(estimatedRows);
+        return new Ticket(lane, lane.enter(templateName));
+    }
+
+    public RenderLane getInteractiveLane() {
+        return interactive;
+    }
+
+    public RenderLane getBulkLane() {
+        return bulk;
+    }
+
+    public long getBulkThresholdRows() {
+        return bulkThresholdRows;
+    }
+
+    /**
+     * Permission to render; closing it frees the slot
+     */
+    public static final class Ticket implements AutoCloseable {
+
+        private final RenderLane lane;
+        private Runnable release;
+
+        Ticket(RenderLane lane, Runnable release) {
+            this.lane = lane;
+            this.release = release;
+        }
+
+        public RenderLane getLane() {
+            return lane;
+        }
+
+        @Override
+        public void close() {
+            if (release != null) {
+                release.run();
+                release = null;
+            }
+        }
+    }
+}
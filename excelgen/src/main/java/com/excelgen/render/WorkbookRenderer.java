@@ -0,0 +1,90 @@
+package com.excelgen.render;
+
+import com.excelgen.codegen.GeneratedRenderer;
+import com.excelgen.codegen.RendererCompiler;
+import com.excelgen.expression.CompiledExpressionEvaluator;
+import com.excelgen.export.WorkbookRowWriter;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+import org.jxls.transform.poi.PoiTransformer;
+import org.jxls.util.JxlsHelper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Runs JXLS over a template workbook that is already parsed, typically one
+ * taken from the {@link com.excelgen.template.WorkbookSnapshotPool}.
+ * Expressions are evaluated by the shared {@link CompiledExpressionEvaluator}.
+ *
+ * With -Dexcelgen.render.generated=true, templates are rendered by a
+ * renderer class generated for the template and bean type instead (see
+ * {@link RendererCompiler}); templates that cannot be generated keep using
+ * JXLS.
+ */
+public final class WorkbookRenderer {
+
+    private static final boolean GENERATED = Boolean.getBoolean("excelgen.render.generated");
+
+    private WorkbookRenderer() {
+    }
+
+    /**
+     * Transform the workbook in place and write the result to out.
+     * The transformer closes out when done.
+     */
+    public static void transform(Workbook workbook, OutputStream out, Context context) throws IOException {
+        PoiTransformer transformer = PoiTransformer.createTransformer(workbook);
+        transformer.setOutputStream(out);
+        transformer.getTransformationConfig().setExpressionEvaluator(CompiledExpressionEvaluator.shared());
+        JxlsHelper.getInstance().processTemplate(context, transformer);
+    }
+
+    /**
+     * Render a workbook of the named template, through the generated
+     * renderer when enabled, otherwise through JXLS. Closes out when done.
+     */
+    public static void transform(String templateName, Workbook workbook, OutputStream out, Context context)
+            throws IOException {
+        if (GENERATED && renderGenerated(templateName, workbook, out, context)) {
+            return;
+        }
+        transform(workbook, out, context);
+    }
+
+    /**
+     * Render with the generated renderer of the template. The context must
+     * hold exactly one variable, the root bean.
+     *
+     * @return false when there is no generated renderer for the template
+     */
+    public static boolean renderGenerated(String templateName, Workbook workbook, OutputStream out, Context context)
+            throws IOException {
+        Map<String, Object> vars = context.toMap();
+        TemplateLayout layout = TemplateCache.shared().get(templateName);
+        if (layout == null || vars.size() != 1) {
+            return false;
+        }
+        Map.Entry<String, Object> root = vars.entrySet().iterator().next();
+        if (root.getValue() == null) {
+            return false;
+        }
+        GeneratedRenderer renderer = RendererCompiler.shared().get(
+                templateName, layout, root.getKey(), root.getValue().getClass());
+        if (renderer == null) {
+            return false;
+        }
+
+        // Like JXLS, a template without jx:area is written unchanged
+        try (OutputStream target = out) {
+            if (layout.hasAreas()) {
+                renderer.render(root.getValue(), new WorkbookRowWriter(workbook, layout));
+            }
+            workbook.write(target);
+        }
+        return true;
+    }
+}
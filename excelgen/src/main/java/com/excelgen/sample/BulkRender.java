@@ -0,0 +1,153 @@
+package com.excelgen.sample;
+
+import com.excelgen.Person;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.WorkbookSnapshotPool;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line load generator: renders persons from a {@link PersonGenerator}
+ * through the same snapshot pool, renderer and zip output as the web app and
+ * prints throughput and latency. The same seed renders the same data, so runs
+ * can be compared.
+ *
+ *   mvn exec:java -Dexec.mainClass=com.excelgen.sample.BulkRender \
+ *       -Dexec.args="person_template_with_phones.xlsx 10000 42"
+ *
+ * Arguments: template, number of persons, optional seed and optional output
+ * directory (reports are discarded without one). Renders run on
+ * excelgen.bulk.threads threads (default 1).
+ */
+public final class BulkRender {
+
+    private BulkRender() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BulkRender <template> <persons> [seed] [outputDir]");
+            System.exit(1);
+        }
+        String template = args[0];
+        int persons = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : PersonGenerator.DEFAULT_SEED;
+        Path outputDir = args.length > 3 ? Paths.get(args[3]) : null;
+        int threads = Integer.getInteger("excelgen.bulk.threads", 1);
+
+        if (TemplateCache.shared().get(template) == null) {
+            System.err.println("Template not found: " + template);
+            System.exit(1);
+        }
+        if (outputDir != null) {
+            Files.createDirectories(outputDir);
+        }
+
+        PersonGenerator generator = new PersonGenerator(seed);
+        long[] micros = new long[persons];
+        AtomicLong phones = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+
+        System.out.println("Rendering " + persons + " persons (seed " + seed + ") through " + template
+                + " on " + threads + " thread(s)");
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                workers.add(executor.submit(() -> {
+                    // Persons are generated on demand, never held as a list
+                    for (int i = first; i < persons; i += threads) {
+                        Person person = generator.person(i);
+                        long renderStart = System.nanoTime();
+                        bytes.addAndGet(render(template, person, outputDir, i));
+                        micros[i] = (System.nanoTime() - renderStart) / 1_000;
+                        phones.addAndGet(person.getPhones().size());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(micros);
+        System.out.printf("%,d persons, %,d phones, %,d bytes in %.1f s (%,.0f persons/s)%n",
+                persons, phones.get(), bytes.get(), seconds, persons / seconds);
+        System.out.printf("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n", percentile(micros, 0.50),
+                percentile(micros, 0.90), percentile(micros, 0.99), percentile(micros, 1.0));
+    }
+
+    private static long render(String template, Person person, Path outputDir, int index) throws IOException {
+        Workbook workbook = WorkbookSnapshotPool.shared().acquire(template);
+        Context context = new Context();
+        context.putVar("person", person);
+
+        CountingOutputStream counter = new CountingOutputStream(outputDir == null ? OutputStream.nullOutputStream()
+                : new BufferedOutputStream(Files.newOutputStream(outputDir.resolve("person-" + index + ".xlsx"))));
+        // Closes the stream
+        WorkbookRenderer.transform(template, workbook,
+                WorkbookOutput.open(counter, WorkbookOutput.resolve(template, null)), context);
+        return counter.count;
+    }
+
+    private static double percentile(long[] sortedMicros, double fraction) {
+        if (sortedMicros.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedMicros.length - 1, Math.ceil(fraction * sortedMicros.length) - 1);
+        return sortedMicros[Math.max(0, index)] / 1000.0;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) throws IOException {
+            out.write(b, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
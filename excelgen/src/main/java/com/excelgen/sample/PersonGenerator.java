@@ -0,0 +1,203 @@
+package com.excelgen.sample;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Seeded generator of synthetic persons for benchmarks, load tests and the
+ * bulk render CLI.
+ *
+ * Person i depends only on the seed and i, never on the persons before it,
+ * so the same seed always gives the same data, a stream of millions of
+ * persons holds one person at a time, and any person can be regenerated
+ * on its own.
+ *
+ * Distributions:
+ * - age: 22% minors (0-17, with a parent), adults around 42 (18-95)
+ * - address: 80% have one (or addressShare), 70% of those Home, 25% Work,
+ *   5% Other
+ * - phones: 10% have none; the rest follow a Pareto distribution
+ *   (alpha 1.2), so most have one or two and a few have thousands,
+ *   up to maxPhones
+ * - phone types: 60% Mobile, 25% Home, 15% Work
+ */
+public final class PersonGenerator {
+
+    public static final long DEFAULT_SEED = Long.getLong("excelgen.data.seed", 42L);
+    public static final int DEFAULT_MAX_PHONES = 5_000;
+    public static final double DEFAULT_ADDRESS_SHARE = 0.80;
+
+    private static final double MINOR_SHARE = 0.22;
+    private static final double NO_PHONE_SHARE = 0.10;
+    private static final double PHONE_TAIL_ALPHA = 1.2;
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+        "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Priya", "Wei",
+        "Aarav", "Fatima", "Mateo", "Sofia", "Kenji", "Amara", "Lukas", "Chloe", "Omar", "Ana"
+    };
+    private static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Patel", "Chen",
+        "Nguyen", "Kim", "Müller", "Rossi", "Silva", "Okafor", "Sato", "Novak", "Haddad", "O'Brien"
+    };
+    private static final String[] STREETS = {
+        "Main", "Oak", "Maple", "Cedar", "Elm", "Washington", "Lake", "Hill", "Park", "Pine", "River", "Sunset"
+    };
+    private static final String[] STREET_SUFFIXES = {"St", "Ave", "Rd", "Blvd", "Ln", "Dr"};
+    private static final String[] CITIES = {
+        "Springfield", "Riverside", "Franklin", "Greenville", "Bristol", "Clinton", "Fairview", "Salem"
+    };
+
+    private final long seed;
+    private final int maxPhones;
+    private final double addressShare;
+
+    public PersonGenerator() {
+        this(DEFAULT_SEED);
+    }
+
+    public PersonGenerator(long seed) {
+        this(seed, DEFAULT_MAX_PHONES);
+    }
+
+    public PersonGenerator(long seed, int maxPhones) {
+        this(seed, maxPhones, DEFAULT_ADDRESS_SHARE);
+    }
+
+    /**
+     * @param addressShare share of persons with an address, 0 to 1
+     */
+    public PersonGenerator(long seed, int maxPhones, double addressShare) {
+        if (maxPhones < 0) {
+            throw new IllegalArgumentException("maxPhones must not be negative: " + maxPhones);
+        }
+        if (!(addressShare >= 0 && addressShare <= 1)) {
+            throw new IllegalArgumentException("addressShare must be between 0 and 1: " + addressShare);
+        }
+        this.seed = seed;
+        this.maxPhones = maxPhones;
+        this.addressShare = addressShare;
+    }
+
+    /**
+     * Lazy stream of persons 0 to count - 1
+     */
+    public Stream<Person> persons(long count) {
+        return LongStream.range(0, count).mapToObj(this::person);
+    }
+
+    /**
+     * Person number index of this generator's sequence
+     */
+    public Person person(long index) {
+        SplittableRandom random = random(index);
+        Person person = basePerson(random, index);
+        addPhones(person, random, index, phoneCount(random));
+        return person;
+    }
+
+    /**
+     * Person number index with exactly the given number of phones instead
+     * of a drawn one, for benchmarks of a fixed size
+     */
+    public Person person(long index, int phones) {
+        SplittableRandom random = random(index);
+        Person person = basePerson(random, index);
+        phoneCount(random);
+        addPhones(person, random, index, phones);
+        return person;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMaxPhones() {
+        return maxPhones;
+    }
+
+    public double getAddressShare() {
+        return addressShare;
+    }
+
+    private SplittableRandom random(long index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    private Person basePerson(SplittableRandom random, long index) {
+        String lastName = pick(random, LAST_NAMES);
+        String name = pick(random, FIRST_NAMES) + " " + lastName;
+
+        int age;
+        String parentName = null;
+        if (random.nextDouble() < MINOR_SHARE) {
+            age = random.nextInt(18);
+            parentName = pick(random, FIRST_NAMES) + " " + lastName;
+        } else {
+            age = (int) Math.round(42 + 16 * gaussian(random));
+            age = Math.max(18, Math.min(95, age));
+        }
+
+        Person person = new Person(name, age, parentName);
+        if (random.nextDouble() < addressShare) {
+            double type = random.nextDouble();
+            person.setAddress(new Address(type < 0.70 ? "Home" : type < 0.95 ? "Work" : "Other",
+                    (1 + random.nextInt(9_999)) + " " + pick(random, STREETS) + " " + pick(random, STREET_SUFFIXES)
+                            + ", " + pick(random, CITIES)));
+        }
+        return person;
+    }
+
+    private int phoneCount(SplittableRandom random) {
+        if (random.nextDouble() < NO_PHONE_SHARE) {
+            return 0;
+        }
+        // Inverse transform sampling of Pareto(1, alpha); 1 - nextDouble() is in (0, 1]
+        double pareto = Math.pow(1 - random.nextDouble(), -1 / PHONE_TAIL_ALPHA);
+        return (int) Math.min(maxPhones, Math.floor(pareto));
+    }
+
+    private static void addPhones(Person person, SplittableRandom random, long index, int phones) {
+        for (int i = 0; i < phones; i++) {
+            double type = random.nextDouble();
+            person.addPhone(type < 0.60 ? "Mobile" : type < 0.85 ? "Home" : "Work",
+                    phoneNo(200 + random.nextInt(800), random.nextInt(1000), (int) ((index * 31 + i) % 10_000)));
+        }
+    }
+
+    /**
+     * +1-AAA-EEE-NNNN, without String.format as this runs for every phone
+     */
+    private static String phoneNo(int area, int exchange, int line) {
+        StringBuilder sb = new StringBuilder(15).append("+1-").append(area).append('-');
+        pad(sb, exchange, 3).append('-');
+        return pad(sb, line, 4).toString();
+    }
+
+    private static StringBuilder pad(StringBuilder sb, int value, int digits) {
+        for (int limit = 10; digits > 1; digits--, limit *= 10) {
+            if (value < limit) {
+                sb.append('0');
+            }
+        }
+        return sb.append(value);
+    }
+
+    /**
+     * Standard normal value, Box-Muller
+     */
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
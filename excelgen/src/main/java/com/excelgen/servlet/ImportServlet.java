@@ -0,0 +1,173 @@
+package com.excelgen.servlet;
+
+import com.excelgen.Person;
+import com.excelgen.Phone;
+import com.excelgen.importer.ImportedSheet;
+import com.excelgen.importer.WorkbookImporter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Imports filled copies of a template back into persons.
+ *
+ * <pre>
+ *   POST /import    multipart: template=..., one or more file parts
+ * </pre>
+ *
+ * Every uploaded file is spooled to a temporary file and imported on the
+ * import threads, all files of a request in parallel. The answer lists the
+ * persons read from each sheet, with the warnings of the import; a file that
+ * cannot be read gets an error instead.
+ *
+ * Uploads are limited to excelgen.import.maxRequestMB per request (default
+ * 50) and excelgen.import.maxFileMB per file (default 20); larger ones are
+ * answered with 413 before anything is imported. The request size is checked
+ * against Content-Length before the body is read, so uploads without one are
+ * refused with 411.
+ */
+@MultipartConfig(fileSizeThreshold = 1024 * 1024)
+public class ImportServlet extends HttpServlet {
+
+    private static final long MAX_REQUEST_BYTES = Long.getLong("excelgen.import.maxRequestMB", 50) * 1024 * 1024;
+    private static final long MAX_FILE_BYTES = Long.getLong("excelgen.import.maxFileMB", 20) * 1024 * 1024;
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Check the size before the container spools the parts to disk
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            response.setStatus(HttpServletResponse.SC_LENGTH_REQUIRED);
+            response.getWriter().write("Uploads need a Content-Length");
+            return;
+        }
+        if (length > MAX_REQUEST_BYTES) {
+            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            response.getWriter().write("Upload larger than " + MAX_REQUEST_BYTES / (1024 * 1024) + " MB");
+            return;
+        }
+
+        String templateName = request.getParameter("template");
+        if (templateName == null || templateName.trim().isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("Missing required parameter: template");
+            return;
+        }
+
+        WorkbookImporter<Person> importer = WorkbookImporter.forTemplate(templateName);
+        if (importer == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Template not found: " + templateName);
+            return;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        List<Future<List<ImportedSheet<Person>>>> imports = new ArrayList<>();
+        try {
+            for (Part part : request.getParts()) {
+                if (part.getSubmittedFileName() != null && part.getSize() > MAX_FILE_BYTES) {
+                    response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    response.getWriter().write("File " + part.getSubmittedFileName() + " larger than "
+                            + MAX_FILE_BYTES / (1024 * 1024) + " MB");
+                    return;
+                }
+            }
+            for (Part part : request.getParts()) {
+                if (part.getSubmittedFileName() == null) {
+                    continue;
+                }
+                File file = Files.createTempFile("excelgen-import", ".xlsx").toFile();
+                files.add(file);
+                try (InputStream is = part.getInputStream()) {
+                    Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                names.add(part.getSubmittedFileName());
+                imports.add(importer.submit(file, part.getSubmittedFileName()));
+            }
+
+            if (imports.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("No files uploaded");
+                return;
+            }
+            System.out.println("Importing " + imports.size() + " file(s) for template " + templateName);
+
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            PrintWriter out = response.getWriter();
+            out.print("{\"template\":" + Json.string(templateName) + ",\"files\":[");
+            for (int i = 0; i < imports.size(); i++) {
+                out.print(i > 0 ? "," : "");
+                out.print("{\"file\":" + Json.string(names.get(i)));
+                try {
+                    writeSheets(out, WorkbookImporter.await(imports.get(i)));
+                } catch (IOException e) {
+                    System.err.println("Import of " + names.get(i) + " failed: " + e.getMessage());
+                    out.print(",\"error\":" + Json.string(String.valueOf(e.getMessage())));
+                }
+                out.print("}");
+            }
+            out.print("]}");
+            out.flush();
+        } finally {
+            for (Future<?> future : imports) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    // reported above, or the request was abandoned
+                }
+            }
+            for (File file : files) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private static void writeSheets(PrintWriter out, List<ImportedSheet<Person>> sheets) {
+        out.print(",\"sheets\":[");
+        for (int i = 0; i < sheets.size(); i++) {
+            ImportedSheet<Person> sheet = sheets.get(i);
+            Person person = sheet.getValue();
+            out.print(i > 0 ? "," : "");
+            out.print("{\"sheet\":" + Json.string(sheet.getSheetName()));
+            out.print(",\"name\":" + Json.string(person.getName()));
+            out.print(",\"age\":" + person.getAge());
+            out.print(",\"parentName\":" + Json.string(person.getParentName()));
+            if (person.getAddress() != null) {
+                out.print(",\"address\":{\"type\":" + Json.string(person.getAddress().getType())
+                        + ",\"addressLine\":" + Json.string(person.getAddress().getAddressLine()) + "}");
+            }
+            out.print(",\"phones\":[");
+            List<Phone> phones = person.getPhones();
+            for (int p = 0; p < phones.size(); p++) {
+                out.print(p > 0 ? "," : "");
+                out.print("{\"phoneType\":" + Json.string(phones.get(p).getPhoneType())
+                        + ",\"phoneNo\":" + Json.string(phones.get(p).getPhoneNo()) + "}");
+            }
+            out.print("],\"warnings\":[");
+            for (int w = 0; w < sheet.getWarnings().size(); w++) {
+                out.print((w > 0 ? "," : "") + Json.string(sheet.getWarnings().get(w)));
+            }
+            out.print("]}");
+        }
+        out.print("]");
+    }
+}
@@ -0,0 +1,17 @@
+package com.excelgen.servlet;
+
+import com.excelgen.incremental.IncrementalRenderCache;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * Drops the incremental renderers of a session when it ends, so their
+ * memory goes back to the budget without waiting for eviction.
+ */
+public class IncrementalSessionListener implements HttpSessionListener {
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        IncrementalRenderCache.shared().removeSession(event.getSession().getId());
+    }
+}
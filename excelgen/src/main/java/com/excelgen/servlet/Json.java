@@ -0,0 +1,35 @@
+package com.excelgen.servlet;
+
+/**
+ * Escaping for the small JSON documents the servlets write by hand
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Escape a value for use inside a JSON string literal
+     */
+    static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A JSON string literal, or null
+     */
+    static String string(String value) {
+        return value == null ? "null" : "\"" + escape(value) + "\"";
+    }
+}
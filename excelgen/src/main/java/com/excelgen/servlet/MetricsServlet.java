@@ -0,0 +1,83 @@
+package com.excelgen.servlet;
+
+import com.excelgen.expression.CompiledExpressionEvaluator;
+import com.excelgen.expression.NullNavigation;
+import com.excelgen.output.DirectBufferPool;
+import com.excelgen.render.EstimateAccuracy;
+import com.excelgen.incremental.IncrementalRenderCache;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.RenderLane;
+import com.excelgen.render.RenderScheduler;
+import com.excelgen.template.TemplateDiskCache;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Plain-text metrics of render admission: lanes, memory budget and the
+ * accuracy of the memory estimates, plus the output buffer pool, expression
+ * evaluation counters and the incremental render cache, one "name value"
+ * pair per line.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+
+        RenderScheduler scheduler = RenderScheduler.shared();
+        writeLane(out, scheduler.getInteractiveLane());
+        writeLane(out, scheduler.getBulkLane());
+
+        MemoryBudget budget = MemoryBudget.shared();
+        out.println("excelgen_memory_budget_bytes " + budget.getCapacity());
+        out.println("excelgen_memory_reserved_bytes " + budget.getReserved());
+        out.println("excelgen_memory_waiting " + budget.getWaiting());
+        out.println("excelgen_memory_admitted_total " + budget.getAdmitted());
+        out.println("excelgen_memory_rejected_total " + budget.getRejected());
+
+        IncrementalRenderCache incremental = IncrementalRenderCache.shared();
+        out.println("excelgen_incremental_entries " + incremental.getEntries());
+        out.println("excelgen_incremental_retained_bytes " + incremental.getRetainedBytes());
+        out.println("excelgen_incremental_evictions_total " + incremental.getEvictions());
+
+        EstimateAccuracy accuracy = EstimateAccuracy.shared();
+        out.println("excelgen_memory_estimate_samples " + accuracy.getSamples());
+        out.println("excelgen_memory_estimate_ratio " + String.format("%.3f", accuracy.getRatio()));
+        out.println("excelgen_memory_estimate_under_total " + accuracy.getUnderEstimates());
+
+        DirectBufferPool buffers = DirectBufferPool.shared();
+        out.println("excelgen_buffer_pool_pooled_bytes " + buffers.getPooledBytes());
+        out.println("excelgen_buffer_pool_in_use_bytes " + buffers.getInUseBytes());
+        out.println("excelgen_buffer_pool_acquired_total " + buffers.getAcquired());
+        out.println("excelgen_buffer_pool_allocated_total " + buffers.getAllocated());
+        out.println("excelgen_buffer_pool_allocated_bytes_total " + buffers.getAllocatedBytes());
+        out.println("excelgen_buffer_pool_discarded_total " + buffers.getDiscarded());
+
+        TemplateDiskCache templateCache = TemplateDiskCache.shared();
+        out.println("excelgen_template_cache_hits_total " + templateCache.getHits());
+        out.println("excelgen_template_cache_misses_total " + templateCache.getMisses());
+        out.println("excelgen_template_cache_rejected_total " + templateCache.getRejected());
+
+        out.println("excelgen_expression_fallback_total " + CompiledExpressionEvaluator.shared().getFallbackCount());
+        out.println("excelgen_expression_null_navigation_total " + NullNavigation.getSuppressedCount());
+        out.flush();
+    }
+
+    private void writeLane(PrintWriter out, RenderLane lane) {
+        String prefix = "excelgen_render_lane_";
+        String label = "{lane=\"" + lane.getName() + "\"} ";
+        out.println(prefix + "active" + label + lane.getActive());
+        out.println(prefix + "waiting" + label + lane.getWaiting());
+        out.println(prefix + "completed_total" + label + lane.getCompleted());
+        out.println(prefix + "rejected_total" + label + lane.getRejected());
+    }
+}
@@ -0,0 +1,98 @@
+package com.excelgen.servlet;
+
+import com.excelgen.Person;
+import com.excelgen.PersonParameters;
+import com.excelgen.export.HtmlPreview;
+import com.excelgen.export.HtmlPreviewWriter;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+/**
+ * Renders the report as an HTML table for the page to show before the real
+ * download.
+ *
+ * <pre>
+ *   POST /preview    same form as /processTemplate, plus rows=N
+ * </pre>
+ *
+ * Lists are cut to their first rows items (default excelgen.preview.maxRows),
+ * so a preview never goes through the render lanes or the memory budget.
+ * X-Preview-Omitted tells how many list items were left out.
+ */
+@MultipartConfig
+public class PreviewServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        try {
+            String name = request.getParameter("name");
+            String ageStr = request.getParameter("age");
+            String templateName = request.getParameter("template");
+            if (name == null || name.trim().isEmpty() ||
+                ageStr == null || ageStr.trim().isEmpty() ||
+                templateName == null || templateName.trim().isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("Missing required parameters: name=" + name + ", age=" + ageStr + ", template=" + templateName);
+                return;
+            }
+
+            int age;
+            try {
+                age = Integer.parseInt(ageStr);
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("Invalid age format");
+                return;
+            }
+
+            int rows = HtmlPreview.maxRows(request.getParameter("rows"));
+            if (rows < 0) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("Invalid rows format");
+                return;
+            }
+
+            TemplateLayout layout = TemplateCache.shared().get(templateName);
+            if (layout == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("Template not found: " + templateName);
+                return;
+            }
+
+            Person person = PersonParameters.toPerson(request::getParameterValues, age);
+
+            // Render into memory first, so the omitted count can go in a header
+            StringWriter html = new StringWriter();
+            HtmlPreviewWriter preview = HtmlPreview.render(layout, Collections.singletonMap("person", person),
+                    rows, html);
+
+            response.setContentType("text/html");
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Cache-Control", "no-store");
+            response.setHeader("X-Preview-Omitted", String.valueOf(preview.getOmittedItems()));
+            response.getWriter().write(html.toString());
+        } catch (Exception e) {
+            e.printStackTrace();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.getWriter().write("Error rendering preview: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        response.getWriter().write("GET method not supported. Please use POST.");
+    }
+}
@@ -0,0 +1,188 @@
+package com.excelgen.servlet;
+
+import com.excelgen.Person;
+import com.excelgen.PersonParameters;
+import com.excelgen.job.RenderJob;
+import com.excelgen.job.RenderJobService;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.template.TemplateCache;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous render API, for reports that take longer than a proxy lets a
+ * request run.
+ *
+ * <pre>
+ *   POST /jobs                 same form parameters as /processTemplate, returns 202 and the job id
+ *   GET  /jobs/{id}            job status and progress as JSON
+ *   GET  /jobs/{id}/result     the finished report (supports Range like /reports/{id})
+ * </pre>
+ *
+ * Jobs are queued per client: the authenticated user, else the remote
+ * address. The X-Client-Id header is only trusted from the proxies listed in
+ * excelgen.jobs.trustedProxies (comma-separated addresses), since any other
+ * client could send a new id with every request and escape its share.
+ */
+@MultipartConfig
+public class RenderJobServlet extends HttpServlet {
+
+    private static final String RESULT_SUFFIX = "/result";
+
+    private static final Set<String> TRUSTED_PROXIES = Arrays.stream(
+                    System.getProperty("excelgen.jobs.trustedProxies", "").split(","))
+            .map(String::trim)
+            .filter(address -> !address.isEmpty())
+            .collect(Collectors.toSet());
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String name = request.getParameter("name");
+        String ageStr = request.getParameter("age");
+        String templateName = request.getParameter("template");
+
+        if (name == null || name.trim().isEmpty() ||
+            ageStr == null || ageStr.trim().isEmpty() ||
+            templateName == null || templateName.trim().isEmpty()) {
+
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("Missing required parameters: name=" + name + ", age=" + ageStr + ", template=" + templateName);
+            return;
+        }
+
+        int age;
+        try {
+            age = Integer.parseInt(ageStr);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("Invalid age format");
+            return;
+        }
+
+        if (TemplateCache.shared().get(templateName) == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Template not found: " + templateName);
+            return;
+        }
+
+        Person person = PersonParameters.toPerson(request::getParameterValues, age);
+        CompressionPolicy compression = WorkbookOutput.resolve(templateName, request.getParameter("compression"));
+
+        String clientId = clientId(request);
+
+        RenderJob job;
+        try {
+            job = RenderJobService.shared().submit(clientId, templateName, person, compression);
+        } catch (RenderRejectedException e) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        System.out.println("Queued job " + job.getId() + " for client " + clientId);
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", jobUrl(request, job));
+        writeJob(request, response, job);
+    }
+
+    /**
+     * Key of the client's share of the job queue
+     */
+    private static String clientId(HttpServletRequest request) {
+        Principal user = request.getUserPrincipal();
+        if (user != null) {
+            return "user:" + user.getName();
+        }
+        String header = request.getHeader("X-Client-Id");
+        if (header != null && !header.trim().isEmpty() && TRUSTED_PROXIES.contains(request.getRemoteAddr())) {
+            return "client:" + header.trim();
+        }
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null || pathInfo.length() <= 1) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Job id missing");
+            return;
+        }
+
+        boolean result = pathInfo.endsWith(RESULT_SUFFIX);
+        String id = pathInfo.substring(1, result ? pathInfo.length() - RESULT_SUFFIX.length() : pathInfo.length());
+
+        RenderJob job = RenderJobService.shared().find(id);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Job not found or expired: " + id);
+            return;
+        }
+
+        if (!result) {
+            writeJob(request, response, job);
+            return;
+        }
+
+        if (job.getStatus() != RenderJob.Status.DONE) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            writeJob(request, response, job);
+            return;
+        }
+
+        SpooledReport report = OutputSpool.shared().find(job.getReportId());
+        if (report == null) {
+            response.setStatus(HttpServletResponse.SC_GONE);
+            response.getWriter().write("Report of job " + id + " has expired");
+            return;
+        }
+        SpooledReportResponder.send(request, response, report, true, true);
+    }
+
+    private static String jobUrl(HttpServletRequest request, RenderJob job) {
+        return request.getContextPath() + "/jobs/" + job.getId();
+    }
+
+    private void writeJob(HttpServletRequest request, HttpServletResponse response, RenderJob job)
+            throws IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        PrintWriter out = response.getWriter();
+        out.print("{\"id\":\"" + job.getId() + "\"");
+        out.print(",\"status\":\"" + job.getStatus() + "\"");
+        out.print(",\"template\":\"" + Json.escape(job.getTemplateName()) + "\"");
+        out.print(",\"rowsDone\":" + job.getRowsDone());
+        out.print(",\"estimatedRows\":" + job.getEstimatedRows());
+        out.print(",\"persons\":" + job.getPersonCount());
+        out.print(",\"personsDone\":" + job.getPersonsDone());
+        if (job.getStatus() == RenderJob.Status.DONE) {
+            out.print(",\"result\":\"" + jobUrl(request, job) + RESULT_SUFFIX + "\"");
+        }
+        if (job.getError() != null) {
+            out.print(",\"error\":\"" + Json.escape(job.getError()) + "\"");
+        }
+        out.print("}");
+        out.flush();
+    }
+}
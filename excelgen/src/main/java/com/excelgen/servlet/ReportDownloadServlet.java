@@ -0,0 +1,45 @@
+package com.excelgen.servlet;
+
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Serves reports spooled by /processTemplate (spool=true) at /reports/{id},
+ * so interrupted downloads can resume with a Range request.
+ */
+public class ReportDownloadServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        serve(request, response, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        serve(request, response, false);
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response, boolean includeBody)
+            throws IOException {
+
+        String pathInfo = request.getPathInfo();
+        String id = pathInfo != null && pathInfo.length() > 1 ? pathInfo.substring(1) : null;
+
+        SpooledReport report = OutputSpool.shared().find(id);
+        if (report == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Report not found or expired: " + id);
+            return;
+        }
+
+        SpooledReportResponder.send(request, response, report, true, includeBody);
+    }
+}
@@ -0,0 +1,110 @@
+package com.excelgen.servlet;
+
+import com.excelgen.output.ByteRange;
+import com.excelgen.output.SpooledReport;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Sends a spooled report with ETag, Range and If-Range support.
+ *
+ * On Tomcat the body is handed to the connector's sendfile support, so the
+ * kernel copies the file to the socket. Other containers get a plain copy
+ * of the file into the response stream.
+ */
+final class SpooledReportResponder {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private SpooledReportResponder() {
+    }
+
+    /**
+     * @param honorRange  apply Range/If-Range headers (GET and HEAD only)
+     * @param includeBody false for HEAD requests
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, SpooledReport report,
+                     boolean honorRange, boolean includeBody) throws IOException {
+
+        long length = report.getLength();
+        response.setHeader("ETag", report.getETag());
+        response.setDateHeader("Last-Modified", report.getLastModified());
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Content-Location", request.getContextPath() + "/reports/" + report.getId());
+        response.setHeader("Content-Disposition", "attachment;filename=" + report.getFileName());
+        response.setContentType(report.getContentType());
+
+        if (honorRange && matches(request.getHeader("If-None-Match"), report)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range = honorRange && ifRangeMatches(request, report)
+                ? ByteRange.parse(request.getHeader("Range"), length)
+                : null;
+
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", range.toContentRange(length));
+            return;
+        }
+
+        long start = 0;
+        long count = length;
+        if (range != null) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", range.toContentRange(length));
+            start = range.getStart();
+            count = range.getLength();
+        }
+        response.setContentLengthLong(count);
+
+        if (!includeBody || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, report.getFile().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        report.copyTo(start, count, response.getOutputStream());
+        response.flushBuffer();
+    }
+
+    /**
+     * A Range is only applied when If-Range is absent or still matches the
+     * report, either by ETag or by modification date
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, SpooledReport report) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(report.getETag());
+        }
+        long date = request.getDateHeader("If-Range");
+        return date >= 0 && report.getLastModified() / 1000 <= date / 1000;
+    }
+
+    private static boolean matches(String ifNoneMatch, SpooledReport report) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(report.getETag()) || trimmed.equals("W/" + report.getETag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,22 +1,55 @@
 package com.excelgen.servlet;
 
-import com.excelgen.Address;
 import com.excelgen.Person;
+import com.excelgen.PersonParameters;
+import com.excelgen.export.DelimitedExporter;
+import com.excelgen.export.DelimitedFormat;
+import com.excelgen.incremental.IncrementalRenderCache;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.EstimateAccuracy;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.MemoryEstimator;
+import com.excelgen.render.RenderCostEstimator;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.render.RenderScheduler;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateDescriptor;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.WorkbookSnapshotPool;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.jxls.common.Context;
-import org.jxls.util.JxlsHelper;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
 
 @MultipartConfig
 public class TemplateProcessorServlet extends HttpServlet {
 
+    @Override
+    public void init() throws ServletException {
+        // Load the precompiled template descriptors up front and start
+        // parsing workbooks for the snapshot pool
+        try {
+            int count = TemplateCache.shared().preload();
+            System.out.println("Preloaded " + count + " template layout(s)");
+            for (String templateName : TemplateDescriptor.listBundled(getClass().getClassLoader())) {
+                WorkbookSnapshotPool.shared().warmUp(templateName);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not preload template layouts: " + e.getMessage());
+        }
+    }
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -25,11 +58,7 @@ public class TemplateProcessorServlet extends HttpServlet {
             // Get form parameters
             String name = request.getParameter("name");
             String ageStr = request.getParameter("age");
-            String parentName = request.getParameter("parentName");
-            String addressType = request.getParameter("addressType");
-            String addressLine = request.getParameter("addressLine");
             String[] phoneTypes = request.getParameterValues("phoneType[]");
-            String[] phoneNos = request.getParameterValues("phoneNo[]");
             String templateName = request.getParameter("template");
 
             // Debug logging
@@ -61,78 +90,146 @@ public class TemplateProcessorServlet extends HttpServlet {
             }
 
             // Create Person object
-            Person person = new Person();
-            person.setName(name);
-            person.setAge(age);
+            Person person = PersonParameters.toPerson(request::getParameterValues, age);
 
-            // Set parent name if provided (and not empty)
-            if (parentName != null && !parentName.trim().isEmpty()) {
-                person.setParentName(parentName);
+            // Estimate the size of the render and wait for a slot in its lane
+            TemplateLayout layout = TemplateCache.shared().get(templateName);
+            if (layout == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("Template not found: " + templateName);
+                return;
             }
-
-            // Create and set Address if provided
-            if ((addressType != null && !addressType.trim().isEmpty()) ||
-                (addressLine != null && !addressLine.trim().isEmpty())) {
-
-                Address address = new Address();
-                address.setType(addressType);
-                address.setAddressLine(addressLine);
-                person.setAddress(address);
+            long estimatedRows = RenderCostEstimator.estimateRows(layout, Collections.singletonMap("person", person));
+            boolean streaming = DelimitedFormat.negotiate(
+                    request.getParameter("format"), request.getHeader("Accept")) != null;
+            long estimatedBytes = MemoryEstimator.estimateBytes(layout, estimatedRows, streaming);
+
+            // Then reserve its estimated peak heap, so concurrent large
+            // renders cannot exhaust the heap together
+            try (RenderScheduler.Ticket ticket = RenderScheduler.shared().admit(templateName, estimatedRows);
+                 MemoryBudget.Reservation reservation = MemoryBudget.shared().reserve(estimatedBytes);
+                 EstimateAccuracy.Probe probe = EstimateAccuracy.shared().start(estimatedBytes)) {
+                System.out.println("  lane: " + ticket.getLane().getName() + " (~" + estimatedRows + " rows, ~"
+                        + (estimatedBytes / 1024) + " KB)");
+                render(request, response, templateName, person);
+            } catch (RenderRejectedException e) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+                response.getWriter().write("Server busy: " + e.getMessage());
             }
 
-            // Add phone numbers if provided
-            if (phoneTypes != null && phoneNos != null) {
-                int phoneLength = Math.min(phoneTypes.length, phoneNos.length);
-                System.out.println("Processing " + phoneLength + " phone numbers");
-
-                for (int i = 0; i < phoneLength; i++) {
-                    String phoneType = phoneTypes[i];
-                    String phoneNo = phoneNos[i];
+        } catch (Exception e) {
+            e.printStackTrace();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.getWriter().write("Error processing template: " + e.getMessage());
+        }
+    }
 
-                    // Only add if both type and number are provided and not empty
-                    if ((phoneType != null && !phoneType.trim().isEmpty()) ||
-                        (phoneNo != null && !phoneNo.trim().isEmpty())) {
+    /**
+     * Render the person into the requested format once the scheduler has
+     * admitted the request
+     */
+    private void render(HttpServletRequest request, HttpServletResponse response,
+                        String templateName, Person person) throws IOException {
+
+        // CSV/TSV requested: render the compiled layout, no workbook involved
+        DelimitedFormat delimitedFormat = DelimitedFormat.negotiate(
+                request.getParameter("format"), request.getHeader("Accept"));
+        if (delimitedFormat != null) {
+            writeDelimited(request, response, templateName, person, delimitedFormat);
+            return;
+        }
 
-                        System.out.println("  Adding phone " + (i + 1) + ": " + phoneType + " - " + phoneNo);
-                        person.addPhone(phoneType, phoneNo);
-                    }
-                }
-            }
+        // incremental=true: patch the previous render of this session
+        // instead of rendering a snapshot of the template
+        if ("true".equalsIgnoreCase(request.getParameter("incremental"))) {
+            String sessionId = request.getSession().getId();
+            CompressionPolicy compression = WorkbookOutput.resolve(templateName, request.getParameter("compression"));
+            response.setContentType("application/vnd.ms-excel");
+            response.setHeader("Content-Disposition",
+                    "attachment;filename=PersonReport_" + System.currentTimeMillis() + ".xls");
+            int patched = IncrementalRenderCache.shared().render(sessionId, templateName, person, compression,
+                    response.getOutputStream());
+            System.out.println(patched < 0 ? "  incremental: full render" : "  incremental: " + patched + " cell(s) patched");
+            return;
+        }
 
-            // Load template from resources
-            InputStream templateStream = getClass().getClassLoader()
-                    .getResourceAsStream(templateName);
+        // Take a pre-parsed copy of the template from the snapshot pool
+        Workbook workbook = WorkbookSnapshotPool.shared().acquire(templateName);
 
-            if (templateStream == null) {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                response.getWriter().write("Template not found: " + templateName);
-                return;
-            }
+        if (workbook == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Template not found: " + templateName);
+            return;
+        }
 
-            // Set response headers for Excel download
-            response.setContentType("application/vnd.ms-excel");
-            response.setHeader("Content-Disposition",
-                    "attachment;filename=" + "PersonReport_" + System.currentTimeMillis() + ".xls");
+        // Deflate level: compression parameter, else the template's default
+        CompressionPolicy compression = WorkbookOutput.resolve(templateName, request.getParameter("compression"));
+        System.out.println("  compression: " + compression);
+
+        // Create JXLS context and add person object
+        Context context = new Context();
+        context.putVar("person", person);
+
+        String fileName = "PersonReport_" + System.currentTimeMillis() + ".xls";
+
+        // spool=true: render into the local spool first, so an interrupted
+        // download can be resumed from /reports/{id} with a Range request
+        if ("true".equalsIgnoreCase(request.getParameter("spool"))) {
+            SpooledReport report = OutputSpool.shared().spool("application/vnd.ms-excel", fileName,
+                    spoolOut -> WorkbookRenderer.transform(templateName, workbook,
+                            WorkbookOutput.open(spoolOut, compression), context));
+            System.out.println("  spooled as: " + report.getId() + " (" + report.getLength() + " bytes)");
+            SpooledReportResponder.send(request, response, report, false, true);
+            return;
+        }
 
-            // Get output stream
-            OutputStream out = response.getOutputStream();
+        // Set response headers for Excel download
+        response.setContentType("application/vnd.ms-excel");
+        response.setHeader("Content-Disposition", "attachment;filename=" + fileName);
 
-            // Create JXLS context and add person object
-            Context context = new Context();
-            context.putVar("person", person);
+        // Get output stream; POI writes the package straight into this zip stream
+        OutputStream out = WorkbookOutput.open(response.getOutputStream(), compression);
 
-            // Process template using JXLS 2.x
-            JxlsHelper.getInstance().processTemplate(templateStream, out, context);
+        // Process template using JXLS 2.x
+        WorkbookRenderer.transform(templateName, workbook, out, context);
+    }
 
-            // Flush and close streams
-            out.flush();
-            templateStream.close();
+    /**
+     * Stream the report as CSV or TSV, gzip-compressed when asked for with
+     * gzip=true or, without a gzip parameter, when Accept-Encoding allows it
+     */
+    private void writeDelimited(HttpServletRequest request, HttpServletResponse response,
+                                String templateName, Person person, DelimitedFormat format) throws IOException {
+
+        TemplateLayout layout = TemplateCache.shared().get(templateName);
+        if (layout == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("Template not found: " + templateName);
+            return;
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write("Error processing template: " + e.getMessage());
+        String gzipParameter = request.getParameter("gzip");
+        boolean gzip = gzipParameter != null
+                ? "true".equalsIgnoreCase(gzipParameter)
+                : DelimitedFormat.acceptsGzip(request.getHeader("Accept-Encoding"));
+
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment;filename=" + "PersonReport_" + System.currentTimeMillis() + "." + format.getExtension());
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        if (gzipParameter == null) {
+            response.setHeader("Vary", "Accept-Encoding");
         }
+
+        OutputStream out = response.getOutputStream();
+        int lines = DelimitedExporter.export(layout, Collections.singletonMap("person", person), format, out, gzip);
+        out.flush();
+
+        System.out.println("Wrote " + lines + " " + format + " lines" + (gzip ? " (gzip)" : ""));
     }
 
     @Override
@@ -0,0 +1,23 @@
+package com.excelgen.servlet;
+
+import com.excelgen.importer.WorkbookImporter;
+import com.excelgen.job.RenderJobService;
+import com.excelgen.output.ParallelDeflateZipOutputStream;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+/**
+ * Stops the shared worker threads when the application is undeployed, so a
+ * redeploy does not leave them running with the old class loader, and
+ * closes the job journal before the next deployment opens it.
+ */
+public class ThreadPoolShutdownListener implements ServletContextListener {
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        RenderJobService.shutdownShared();
+        ParallelDeflateZipOutputStream.shutdown();
+        WorkbookImporter.shutdown();
+        System.out.println("Stopped render job, deflate and import threads");
+    }
+}
@@ -0,0 +1,172 @@
+package com.excelgen.standalone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Form parameters of a request to the standalone server: the query string
+ * plus an application/x-www-form-urlencoded or multipart/form-data body,
+ * the two encodings browsers and curl -d / -F send. File parts of a
+ * multipart body are skipped.
+ */
+final class FormData {
+
+    /** Largest body read, /processTemplate forms are a few KB */
+    static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    private final Map<String, List<String>> values = new LinkedHashMap<>();
+
+    private FormData() {
+    }
+
+    /**
+     * @throws IOException when the body is larger than {@link #MAX_BODY_BYTES}
+     */
+    static FormData parse(String query, String contentType, InputStream body) throws IOException {
+        FormData form = new FormData();
+        if (query != null) {
+            form.addUrlEncoded(query);
+        }
+        if (contentType == null) {
+            return form;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("application/x-www-form-urlencoded")) {
+            form.addUrlEncoded(new String(readBody(body), StandardCharsets.UTF_8));
+        } else if (type.startsWith("multipart/form-data")) {
+            String boundary = attribute(contentType, "boundary");
+            if (boundary == null) {
+                throw new IOException("Multipart request without boundary");
+            }
+            form.addMultipart(readBody(body), ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return form;
+    }
+
+    /**
+     * First value of a parameter, or null
+     */
+    String get(String name) {
+        List<String> list = values.get(name);
+        return list != null ? list.get(0) : null;
+    }
+
+    /**
+     * All values of a parameter, or null when it is absent
+     */
+    String[] getValues(String name) {
+        List<String> list = values.get(name);
+        return list != null ? list.toArray(new String[0]) : null;
+    }
+
+    private void add(String name, String value) {
+        values.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+    }
+
+    private void addUrlEncoded(String encoded) {
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            add(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void addMultipart(byte[] body, byte[] delimiter) {
+        int pos = indexOf(body, delimiter, 0);
+        while (pos >= 0) {
+            int start = pos + delimiter.length;
+            // "--" after the delimiter ends the body
+            if (start + 1 < body.length && body[start] == '-' && body[start + 1] == '-') {
+                break;
+            }
+            int next = indexOf(body, delimiter, start);
+            if (next < 0) {
+                break;
+            }
+            addPart(body, skipLineBreak(body, start), next);
+            pos = next;
+        }
+    }
+
+    private void addPart(byte[] body, int start, int end) {
+        int headersEnd = indexOf(body, new byte[]{'\r', '\n', '\r', '\n'}, start);
+        if (headersEnd < 0 || headersEnd > end) {
+            return;
+        }
+        String headers = new String(body, start, headersEnd - start, StandardCharsets.UTF_8);
+        String disposition = null;
+        for (String header : headers.split("\r\n")) {
+            if (header.toLowerCase(Locale.ROOT).startsWith("content-disposition:")) {
+                disposition = header;
+            }
+        }
+        String name = disposition != null ? attribute(disposition, "name") : null;
+        if (name == null || attribute(disposition, "filename") != null) {
+            return;
+        }
+        // The value ends with the line break before the next delimiter
+        int valueStart = headersEnd + 4;
+        int valueEnd = end >= valueStart + 2 && body[end - 2] == '\r' && body[end - 1] == '\n' ? end - 2 : end;
+        add(name, new String(body, valueStart, Math.max(0, valueEnd - valueStart), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Value of an attribute such as boundary=... or name="..." in a header
+     */
+    static String attribute(String header, String attribute) {
+        for (String part : header.split(";")) {
+            String trimmed = part.trim();
+            int eq = trimmed.indexOf('=');
+            if (eq > 0 && trimmed.substring(0, eq).trim().equalsIgnoreCase(attribute)) {
+                String value = trimmed.substring(eq + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static int skipLineBreak(byte[] body, int pos) {
+        return pos + 1 < body.length && body[pos] == '\r' && body[pos + 1] == '\n' ? pos + 2 : pos;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] readBody(InputStream body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) > 0) {
+            if (out.size() + read > MAX_BODY_BYTES) {
+                throw new IOException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
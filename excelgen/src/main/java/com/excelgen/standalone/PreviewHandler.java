@@ -0,0 +1,94 @@
+package com.excelgen.standalone;
+
+import com.excelgen.Person;
+import com.excelgen.PersonParameters;
+import com.excelgen.export.HtmlPreview;
+import com.excelgen.export.HtmlPreviewWriter;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * POST /preview of the standalone server, same answer as the PreviewServlet
+ */
+final class PreviewHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "GET method not supported. Please use POST.");
+                return;
+            }
+
+            FormData form;
+            try {
+                form = FormData.parse(exchange.getRequestURI().getRawQuery(),
+                        exchange.getRequestHeaders().getFirst("Content-Type"), exchange.getRequestBody());
+            } catch (IOException e) {
+                send(exchange, 400, "text/plain", "Invalid request: " + e.getMessage());
+                return;
+            }
+
+            String name = form.get("name");
+            String ageStr = form.get("age");
+            String templateName = form.get("template");
+            if (name == null || name.trim().isEmpty() ||
+                ageStr == null || ageStr.trim().isEmpty() ||
+                templateName == null || templateName.trim().isEmpty()) {
+                send(exchange, 400, "text/plain", "Missing required parameters: name=" + name + ", age=" + ageStr
+                        + ", template=" + templateName);
+                return;
+            }
+
+            int age;
+            try {
+                age = Integer.parseInt(ageStr);
+            } catch (NumberFormatException e) {
+                send(exchange, 400, "text/plain", "Invalid age format");
+                return;
+            }
+
+            int rows = HtmlPreview.maxRows(form.get("rows"));
+            if (rows < 0) {
+                send(exchange, 400, "text/plain", "Invalid rows format");
+                return;
+            }
+
+            TemplateLayout layout = TemplateCache.shared().get(templateName);
+            if (layout == null) {
+                send(exchange, 404, "text/plain", "Template not found: " + templateName);
+                return;
+            }
+
+            Person person = PersonParameters.toPerson(form::getValues, age);
+            StringWriter html = new StringWriter();
+            HtmlPreviewWriter preview = HtmlPreview.render(layout, Collections.singletonMap("person", person),
+                    rows, html);
+
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.getResponseHeaders().set("X-Preview-Omitted", String.valueOf(preview.getOmittedItems()));
+            send(exchange, 200, "text/html", html.toString());
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (exchange.getResponseCode() < 0) {
+                send(exchange, 500, "text/plain", "Error rendering preview: " + e.getMessage());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + ";charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,157 @@
+package com.excelgen.standalone;
+
+import com.excelgen.Person;
+import com.excelgen.PersonParameters;
+import com.excelgen.export.DelimitedExporter;
+import com.excelgen.export.DelimitedFormat;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.EstimateAccuracy;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.MemoryEstimator;
+import com.excelgen.render.RenderCostEstimator;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.render.RenderScheduler;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import com.excelgen.template.WorkbookSnapshotPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * POST /processTemplate of the standalone server. Takes the same form
+ * parameters as the TemplateProcessorServlet and renders through the same
+ * lanes, memory budget, snapshot pool and renderers. spool=true is not
+ * supported, as there is no /reports endpoint to resume from.
+ */
+final class ProcessTemplateHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "GET method not supported. Please use POST.");
+                return;
+            }
+
+            FormData form;
+            try {
+                form = FormData.parse(exchange.getRequestURI().getRawQuery(),
+                        exchange.getRequestHeaders().getFirst("Content-Type"), exchange.getRequestBody());
+            } catch (IOException e) {
+                sendText(exchange, 400, "Invalid request: " + e.getMessage());
+                return;
+            }
+
+            String name = form.get("name");
+            String ageStr = form.get("age");
+            String templateName = form.get("template");
+            if (name == null || name.trim().isEmpty() ||
+                ageStr == null || ageStr.trim().isEmpty() ||
+                templateName == null || templateName.trim().isEmpty()) {
+                sendText(exchange, 400, "Missing required parameters: name=" + name + ", age=" + ageStr
+                        + ", template=" + templateName);
+                return;
+            }
+
+            int age;
+            try {
+                age = Integer.parseInt(ageStr);
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "Invalid age format");
+                return;
+            }
+
+            Person person = PersonParameters.toPerson(form::getValues, age);
+
+            TemplateLayout layout = TemplateCache.shared().get(templateName);
+            if (layout == null) {
+                sendText(exchange, 404, "Template not found: " + templateName);
+                return;
+            }
+            DelimitedFormat format = DelimitedFormat.negotiate(form.get("format"),
+                    exchange.getRequestHeaders().getFirst("Accept"));
+            long estimatedRows = RenderCostEstimator.estimateRows(layout, Collections.singletonMap("person", person));
+            long estimatedBytes = MemoryEstimator.estimateBytes(layout, estimatedRows, format != null);
+
+            try (RenderScheduler.Ticket ticket = RenderScheduler.shared().admit(templateName, estimatedRows);
+                 MemoryBudget.Reservation reservation = MemoryBudget.shared().reserve(estimatedBytes);
+                 EstimateAccuracy.Probe probe = EstimateAccuracy.shared().start(estimatedBytes)) {
+                if (format != null) {
+                    writeDelimited(exchange, form, layout, person, format);
+                } else {
+                    writeWorkbook(exchange, form, templateName, person);
+                }
+            } catch (RenderRejectedException e) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+                sendText(exchange, 503, "Server busy: " + e.getMessage());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Only possible while the status line has not been sent yet
+            if (exchange.getResponseCode() < 0) {
+                sendText(exchange, 500, "Error processing template: " + e.getMessage());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void writeWorkbook(HttpExchange exchange, FormData form, String templateName, Person person)
+            throws IOException {
+        Workbook workbook = WorkbookSnapshotPool.shared().acquire(templateName);
+        if (workbook == null) {
+            sendText(exchange, 404, "Template not found: " + templateName);
+            return;
+        }
+        CompressionPolicy compression = WorkbookOutput.resolve(templateName, form.get("compression"));
+
+        Context context = new Context();
+        context.putVar("person", person);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/vnd.ms-excel");
+        exchange.getResponseHeaders().set("Content-Disposition",
+                "attachment;filename=PersonReport_" + System.currentTimeMillis() + ".xls");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = WorkbookOutput.open(exchange.getResponseBody(), compression);
+        // Closes the stream, which ends the chunked response
+        WorkbookRenderer.transform(templateName, workbook, out, context);
+    }
+
+    private static void writeDelimited(HttpExchange exchange, FormData form, TemplateLayout layout, Person person,
+                                       DelimitedFormat format) throws IOException {
+        String gzipParameter = form.get("gzip");
+        boolean gzip = gzipParameter != null
+                ? "true".equalsIgnoreCase(gzipParameter)
+                : DelimitedFormat.acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+
+        exchange.getResponseHeaders().set("Content-Type", format.getContentType() + ";charset=UTF-8");
+        exchange.getResponseHeaders().set("Content-Disposition",
+                "attachment;filename=PersonReport_" + System.currentTimeMillis() + "." + format.getExtension());
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if (gzipParameter == null) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        DelimitedExporter.export(layout, Collections.singletonMap("person", person), format, out, gzip);
+        out.flush();
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,117 @@
+package com.excelgen.standalone;
+
+import com.excelgen.importer.WorkbookImporter;
+import com.excelgen.output.ParallelDeflateZipOutputStream;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateDescriptor;
+import com.excelgen.template.WorkbookSnapshotPool;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves /processTemplate, /preview and /listTemplates on the JDK's built-in HTTP
+ * server, for batch nodes that do not need a servlet container.
+ *
+ * <pre>
+ *   java -cp excelgen.jar:lib/* com.excelgen.standalone.StandaloneServer [port]
+ * </pre>
+ *
+ * Requests are handled on virtual threads when the JVM has them (Java 21),
+ * otherwise on a cached pool of platform threads; either way the render
+ * lanes and the memory budget limit how many renders run at once. The port
+ * comes from the first argument or excelgen.server.port (default 8080), the
+ * context path from excelgen.server.contextPath (default /excelgen, the
+ * same URLs as the WAR deployment).
+ */
+public final class StandaloneServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String contextPath;
+
+    private StandaloneServer(HttpServer server, ExecutorService executor, String contextPath) {
+        this.server = server;
+        this.executor = executor;
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * Preload the bundled templates and start serving
+     *
+     * @param port port to listen on, 0 for any free port
+     */
+    public static StandaloneServer start(int port, String contextPath) throws IOException {
+        String path = contextPath.endsWith("/") ? contextPath.substring(0, contextPath.length() - 1) : contextPath;
+
+        int count = TemplateCache.shared().preload();
+        System.out.println("Preloaded " + count + " template layout(s)");
+        for (String templateName : TemplateDescriptor.listBundled(StandaloneServer.class.getClassLoader())) {
+            WorkbookSnapshotPool.shared().warmUp(templateName);
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext(path + "/processTemplate", new ProcessTemplateHandler());
+        server.createContext(path + "/listTemplates", new TemplateListHandler());
+        server.createContext(path + "/preview", new PreviewHandler());
+        server.start();
+        return new StandaloneServer(server, executor, path);
+    }
+
+    /**
+     * One virtual thread per request when the JVM supports it, looked up
+     * reflectively so the build still targets Java 17
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "excelgen-http-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    /**
+     * Stop accepting requests, giving running ones up to the delay to finish
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("excelgen.server.port", 8080);
+        String contextPath = System.getProperty("excelgen.server.contextPath", "/excelgen");
+
+        StandaloneServer server = start(port, contextPath);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Excel template server listening on http://localhost:" + server.getPort()
+                + server.getContextPath() + "/ (started in "
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " ms, "
+                + ((runtime.totalMemory() - runtime.freeMemory()) >> 20) + " MB heap used)");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            ParallelDeflateZipOutputStream.shutdown();
+            WorkbookImporter.shutdown();
+        }, "excelgen-http-shutdown"));
+    }
+}
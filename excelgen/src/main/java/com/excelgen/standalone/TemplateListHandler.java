@@ -0,0 +1,39 @@
+package com.excelgen.standalone;
+
+import com.excelgen.template.TemplateCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * GET /listTemplates of the standalone server, same answer as the
+ * TemplateListServlet
+ */
+final class TemplateListHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            List<String> templates = TemplateCache.shared().listTemplates();
+
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < templates.size(); i++) {
+                json.append(i > 0 ? "," : "").append('"').append(templates.get(i)).append('"');
+            }
+            json.append(']');
+
+            byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.excelgen.template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-tokenised text of a template cell.
+ *
+ * A cell such as "Name: ${person.name}" is split once into literal parts and
+ * expression parts so that rendering never has to scan for ${...} again.
+ * There is always one more literal than there are expressions.
+ */
+public final class CellText {
+
+    private static final String EXPRESSION_BEGIN = "${";
+    private static final String EXPRESSION_END = "}";
+
+    private final String raw;
+    private final String[] literals;
+    private final String[] expressions;
+
+    private CellText(String raw, String[] literals, String[] expressions) {
+        this.raw = raw;
+        this.literals = literals;
+        this.expressions = expressions;
+    }
+
+    /**
+     * Split raw cell text into literal and ${...} expression parts
+     */
+    public static CellText parse(String raw) {
+        List<String> literals = new ArrayList<>();
+        List<String> expressions = new ArrayList<>();
+
+        int pos = 0;
+        while (true) {
+            int begin = raw.indexOf(EXPRESSION_BEGIN, pos);
+            int end = begin < 0 ? -1 : raw.indexOf(EXPRESSION_END, begin + EXPRESSION_BEGIN.length());
+            if (begin < 0 || end < 0) {
+                literals.add(raw.substring(pos));
+                break;
+            }
+            literals.add(raw.substring(pos, begin));
+            expressions.add(raw.substring(begin + EXPRESSION_BEGIN.length(), end).trim());
+            pos = end + EXPRESSION_END.length();
+        }
+
+        return new CellText(raw,
+                literals.toArray(new String[0]),
+                expressions.toArray(new String[0]));
+    }
+
+    /**
+     * Rebuild a CellText from parts that were tokenised earlier
+     */
+    public static CellText of(String raw, String[] literals, String[] expressions) {
+        if (literals.length != expressions.length + 1) {
+            throw new IllegalArgumentException("Expected " + (expressions.length + 1)
+                    + " literals but got " + literals.length);
+        }
+        return new CellText(raw, literals.clone(), expressions.clone());
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+
+    public boolean hasExpressions() {
+        return expressions.length > 0;
+    }
+
+    /**
+     * True when the whole cell is a single ${...} expression, so its value
+     * keeps the type returned by the evaluator instead of becoming text
+     */
+    public boolean isSingleExpression() {
+        return expressions.length == 1 && literals[0].isEmpty() && literals[1].isEmpty();
+    }
+
+    public int getExpressionCount() {
+        return expressions.length;
+    }
+
+    public String getExpression(int index) {
+        return expressions[index];
+    }
+
+    public String getLiteral(int index) {
+        return literals[index];
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
@@ -0,0 +1,74 @@
+package com.excelgen.template;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Build step that compiles every xlsx template in a directory into a
+ * {@link TemplateDescriptor}, plus an index listing the compiled templates.
+ *
+ * Run by Maven in the process-classes phase:
+ * <pre>
+ *   DescriptorCompiler &lt;template dir&gt; &lt;output dir&gt;
+ * </pre>
+ */
+public class DescriptorCompiler {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: DescriptorCompiler <template dir> <output dir>");
+            System.exit(2);
+        }
+
+        try {
+            int count = compileAll(new File(args[0]), new File(args[1]));
+            System.out.println("Compiled " + count + " template descriptor(s) into " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Error compiling template descriptors: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compile all xlsx files of templateDir into outputDir
+     *
+     * @return number of descriptors written
+     */
+    public static int compileAll(File templateDir, File outputDir) throws IOException {
+        File[] templates = templateDir.listFiles((dir, name) -> name.endsWith(".xlsx"));
+        if (templates == null) {
+            throw new IOException("Template directory not found: " + templateDir);
+        }
+        Arrays.sort(templates);
+
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create output directory: " + outputDir);
+        }
+
+        try (PrintWriter index = new PrintWriter(new File(outputDir, "index.txt"), StandardCharsets.UTF_8)) {
+            for (File template : templates) {
+                String templateName = template.getName();
+                TemplateDescriptor descriptor =
+                        TemplateDescriptor.compile(templateName, Files.readAllBytes(template.toPath()));
+
+                File target = new File(outputDir, templateName + TemplateDescriptor.EXTENSION);
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                    descriptor.write(out);
+                }
+                index.println(templateName);
+                System.out.println("  " + templateName + " -> " + target.getName()
+                        + " (" + descriptor.getLayout().getRowCount() + " rows, "
+                        + descriptor.getParts().size() + " parts)");
+            }
+        }
+        return templates.length;
+    }
+}
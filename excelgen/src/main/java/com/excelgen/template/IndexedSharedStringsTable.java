@@ -0,0 +1,56 @@
+package com.excelgen.template;
+
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared strings table indexed by plain text. POI looks every string up by
+ * the XML text of its rich text element, which serializes the element on
+ * each call and was the largest single cost of writing string cells. Strings
+ * without formatting are looked up here by their text instead; the index is
+ * filled with the template's static strings when the copy is parsed, and
+ * grows with the values written while rendering. Both sides are keyed on
+ * the decoded text, with _xHHHH_ escapes resolved, as getString returns it.
+ */
+final class IndexedSharedStringsTable extends SharedStringsTable {
+
+    private final Map<String, Integer> plain = new HashMap<>();
+
+    IndexedSharedStringsTable(PackagePart part) throws IOException {
+        super(part);
+        int size = getUniqueCount();
+        for (int i = 0; i < size; i++) {
+            XSSFRichTextString item = (XSSFRichTextString) getItemAt(i);
+            if (isPlain(item.getCTRst())) {
+                plain.putIfAbsent(item.getString(), i);
+            }
+        }
+    }
+
+    @Override
+    public int addSharedStringItem(RichTextString string) {
+        if (!(string instanceof XSSFRichTextString) || !isPlain(((XSSFRichTextString) string).getCTRst())) {
+            return super.addSharedStringItem(string);
+        }
+        String text = string.getString();
+        Integer index = plain.get(text);
+        if (index != null) {
+            count++;
+            return index;
+        }
+        index = super.addSharedStringItem(string);
+        plain.put(text, index);
+        return index;
+    }
+
+    private static boolean isPlain(CTRst entry) {
+        return entry.isSetT() && entry.sizeOfRArray() == 0 && entry.sizeOfRPhArray() == 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.excelgen.template;
+
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * XSSFWorkbook whose shared strings table is an
+ * {@link IndexedSharedStringsTable}. The table is swapped in under the same
+ * relationship id before POI picks it up, so the saved package is unchanged.
+ */
+final class IndexedWorkbook extends XSSFWorkbook {
+
+    IndexedWorkbook(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected void onDocumentRead() throws IOException {
+        for (POIXMLDocumentPart.RelationPart relation : getRelationParts()) {
+            POIXMLDocumentPart part = relation.getDocumentPart();
+            if (part instanceof SharedStringsTable && !(part instanceof IndexedSharedStringsTable)) {
+                String id = relation.getRelationship().getId();
+                IndexedSharedStringsTable indexed = new IndexedSharedStringsTable(part.getPackagePart());
+                removeRelation(part, false);
+                addRelation(id, XSSFRelation.SHARED_STRINGS, indexed);
+                break;
+            }
+        }
+        super.onDocumentRead();
+    }
+}
@@ -0,0 +1,233 @@
+package com.excelgen.template;
+
+import com.excelgen.expression.CompiledExpressionEvaluator;
+import org.jxls.expression.ExpressionEvaluator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies jx:if and jx:each commands and ${...} expressions of a compiled
+ * layout and hands the resulting rows to a {@link RowSink}, without building
+ * a workbook.
+ *
+ * Commands are applied to whole rows, which is how all bundled templates use
+ * them: rows of a false jx:if are dropped and the rows of a jx:each are
+ * repeated once per item. Rows outside every jx:area are copied as-is, and a
+ * template without jx:area is not evaluated at all, matching JXLS.
+ */
+public class LayoutWalker {
+
+    private final ExpressionEvaluator evaluator;
+    private final int maxItemsPerEach;
+
+    public LayoutWalker() {
+        this(CompiledExpressionEvaluator.shared());
+    }
+
+    public LayoutWalker(ExpressionEvaluator evaluator) {
+        this(evaluator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxItemsPerEach items rendered per jx:each, the rest are only
+     *                        counted and reported to {@link RowSink#itemsOmitted}
+     */
+    public LayoutWalker(ExpressionEvaluator evaluator, int maxItemsPerEach) {
+        this.evaluator = evaluator;
+        this.maxItemsPerEach = maxItemsPerEach;
+    }
+
+    /**
+     * Render the layout with the given variables
+     *
+     * @return number of rows written to the sink
+     */
+    public int walk(TemplateLayout layout, Map<String, Object> vars, RowSink sink) throws IOException {
+        Walk walk = new Walk(layout, new HashMap<>(vars), sink);
+
+        int row = 0;
+        for (TemplateCommand area : layout.getAreas()) {
+            if (area.isDegenerate() || area.getFirstRow() < row) {
+                continue;
+            }
+            for (; row < area.getFirstRow() && row < layout.getRowCount(); row++) {
+                walk.emitStatic(layout.getRow(row));
+            }
+            walk.renderRange(area.getFirstRow(), area.getLastRow(), area.getChildren());
+            row = area.getLastRow() + 1;
+        }
+        for (; row < layout.getRowCount(); row++) {
+            walk.emitStatic(layout.getRow(row));
+        }
+        return walk.outputRow;
+    }
+
+    /**
+     * Evaluate a single expression, turning evaluation failures into null
+     * the way JXLS leaves a cell empty when an expression cannot be resolved
+     */
+    protected Object evaluate(String expression, Map<String, Object> vars) {
+        try {
+            return evaluator.evaluate(expression, vars);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Value of a template cell inside a jx:area: the static value, the
+     * single expression's value, or the text with its expressions filled in
+     */
+    public Object value(TemplateCell cell, Map<String, Object> vars) {
+        if (!cell.isDynamic()) {
+            return cell.getStaticValue();
+        }
+        CellText text = cell.getText();
+        if (text.isSingleExpression()) {
+            return evaluate(text.getExpression(0), vars);
+        }
+        StringBuilder sb = new StringBuilder(text.getLiteral(0));
+        for (int i = 0; i < text.getExpressionCount(); i++) {
+            Object value = evaluate(text.getExpression(i), vars);
+            if (value != null) {
+                sb.append(value);
+            }
+            sb.append(text.getLiteral(i + 1));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    private final class Walk {
+        private final TemplateLayout layout;
+        private final Map<String, Object> vars;
+        private final RowSink sink;
+        private final Object[] values;
+        private int outputRow;
+
+        Walk(TemplateLayout layout, Map<String, Object> vars, RowSink sink) {
+            this.layout = layout;
+            this.vars = vars;
+            this.sink = sink;
+            this.values = new Object[layout.getWidth()];
+        }
+
+        void renderRange(int firstRow, int lastRow, List<TemplateCommand> commands) throws IOException {
+            int last = Math.min(lastRow, layout.getRowCount() - 1);
+            int next = 0;
+            int row = firstRow;
+            while (row <= last) {
+                while (next < commands.size() && commands.get(next).getFirstRow() < row) {
+                    next++;
+                }
+                if (next < commands.size() && commands.get(next).getFirstRow() == row) {
+                    row = renderCommand(commands.get(next++));
+                } else {
+                    emitEvaluated(layout.getRow(row), -1);
+                    row++;
+                }
+            }
+        }
+
+        /**
+         * @return the first row after the command
+         */
+        private int renderCommand(TemplateCommand command) throws IOException {
+            if (command.isDegenerate()) {
+                emitEvaluated(layout.getRow(command.getFirstRow()), command.getFirstColumn());
+                return command.getFirstRow() + 1;
+            }
+
+            switch (command.getName()) {
+                case TemplateCommand.IF:
+                    if (isTrue(evaluate(command.getCondition(), vars))) {
+                        renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                    }
+                    break;
+                case TemplateCommand.EACH:
+                    renderEach(command);
+                    break;
+                default:
+                    renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                    break;
+            }
+            return command.getLastRow() + 1;
+        }
+
+        private void renderEach(TemplateCommand command) throws IOException {
+            Object items = evaluate(command.getItems(), vars);
+            String var = command.getVar();
+            Object previous = vars.get(var);
+
+            int omitted = 0;
+            if (items instanceof Iterable) {
+                int rendered = 0;
+                for (Object item : (Iterable<?>) items) {
+                    if (rendered == maxItemsPerEach) {
+                        omitted = remaining((Iterable<?>) items, rendered);
+                        break;
+                    }
+                    vars.put(var, item);
+                    sink.itemStarted(command, rendered);
+                    renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                    rendered++;
+                }
+            } else if (items != null && items.getClass().isArray()) {
+                int length = Array.getLength(items);
+                for (int i = 0; i < Math.min(length, maxItemsPerEach); i++) {
+                    vars.put(var, Array.get(items, i));
+                    sink.itemStarted(command, i);
+                    renderRange(command.getFirstRow(), command.getLastRow(), command.getChildren());
+                }
+                omitted = Math.max(0, length - maxItemsPerEach);
+            }
+
+            if (previous != null) {
+                vars.put(var, previous);
+            } else {
+                vars.remove(var);
+            }
+            if (omitted > 0) {
+                sink.itemsOmitted(outputRow, command, omitted);
+            }
+        }
+
+        private int remaining(Iterable<?> items, int rendered) {
+            if (items instanceof Collection) {
+                return ((Collection<?>) items).size() - rendered;
+            }
+            int count = 0;
+            for (Object ignored : items) {
+                count++;
+            }
+            return count - rendered;
+        }
+
+        void emitStatic(TemplateRow row) throws IOException {
+            for (int c = 0; c < values.length; c++) {
+                TemplateCell cell = row.getCell(c);
+                values[c] = cell != null ? cell.getStaticValue() : null;
+            }
+            sink.row(outputRow++, row, values);
+        }
+
+        private void emitEvaluated(TemplateRow row, int clearedColumn) throws IOException {
+            for (int c = 0; c < values.length; c++) {
+                TemplateCell cell = row.getCell(c);
+                values[c] = cell == null || c == clearedColumn ? null : value(cell, vars);
+            }
+            sink.row(outputRow++, row, values);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.excelgen.template;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows produced by {@link LayoutWalker}, in output order.
+ */
+public interface RowSink {
+
+    /**
+     * Called once per output row.
+     *
+     * @param outputRow 0-based index of the row in the output
+     * @param source    template row the values were produced from
+     * @param values    one value per template column, null for empty cells.
+     *                  The array is reused for the next row, so copy it if it
+     *                  has to be kept.
+     */
+    void row(int outputRow, TemplateRow source, Object[] values) throws IOException;
+
+    /**
+     * Called before the rows of each item of a jx:each.
+     *
+     * @param command the jx:each command
+     * @param index   0-based index of the item in the list
+     */
+    default void itemStarted(TemplateCommand command, int index) throws IOException {
+    }
+
+    /**
+     * Called after a jx:each that was cut short by the walker's item limit.
+     *
+     * @param outputRow     index the next output row will get
+     * @param command       the jx:each command
+     * @param omittedItems  number of items that were not rendered
+     */
+    default void itemsOmitted(int outputRow, TemplateCommand command, int omittedItems) throws IOException {
+    }
+}
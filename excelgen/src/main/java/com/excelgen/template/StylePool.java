@@ -0,0 +1,70 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out one CellStyle per distinct {@link StyleSpec} and one Font per
+ * distinct font setting within a workbook.
+ *
+ * Creating a new style and font for every styled cell fills styles.xml with
+ * duplicates, and every parse of the template and every write of an output
+ * pays for them.
+ */
+public class StylePool {
+
+    private final Workbook workbook;
+    private final Map<StyleSpec, CellStyle> styles = new HashMap<>();
+    private final Map<Boolean, Font> fonts = new HashMap<>();
+
+    public StylePool(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    public CellStyle get(StyleSpec spec) {
+        CellStyle style = styles.get(spec);
+        if (style == null) {
+            style = create(spec);
+            styles.put(spec, style);
+        }
+        return style;
+    }
+
+    private CellStyle create(StyleSpec spec) {
+        if (spec.equals(StyleSpec.PLAIN)) {
+            // Style 0 is the workbook default
+            return workbook.getCellStyleAt(0);
+        }
+        CellStyle style = workbook.createCellStyle();
+        if (spec.isBold()) {
+            style.setFont(font(true));
+        }
+        if (spec.getFill() != null) {
+            style.setFillForegroundColor(spec.getFill().getIndex());
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+        return style;
+    }
+
+    private Font font(boolean bold) {
+        Font font = fonts.get(bold);
+        if (font == null) {
+            font = workbook.createFont();
+            font.setBold(bold);
+            fonts.put(bold, font);
+        }
+        return font;
+    }
+
+    /**
+     * Number of distinct styles handed out so far
+     */
+    public int size() {
+        return styles.size();
+    }
+}
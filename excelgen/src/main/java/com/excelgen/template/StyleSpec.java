@@ -0,0 +1,59 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.IndexedColors;
+
+import java.util.Objects;
+
+/**
+ * Description of a cell style, used as the key of a {@link StylePool}.
+ * Two equal specs always map to the same CellStyle in a workbook.
+ */
+public final class StyleSpec {
+
+    public static final StyleSpec PLAIN = new StyleSpec(false, null);
+    public static final StyleSpec BOLD = new StyleSpec(true, null);
+
+    private final boolean bold;
+    private final IndexedColors fill;
+
+    private StyleSpec(boolean bold, IndexedColors fill) {
+        this.bold = bold;
+        this.fill = fill;
+    }
+
+    /**
+     * Solid background fill, as used to mark command cells
+     */
+    public static StyleSpec fill(IndexedColors color) {
+        return new StyleSpec(false, color);
+    }
+
+    public StyleSpec withBold() {
+        return new StyleSpec(true, fill);
+    }
+
+    public boolean isBold() {
+        return bold;
+    }
+
+    public IndexedColors getFill() {
+        return fill;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StyleSpec)) {
+            return false;
+        }
+        StyleSpec other = (StyleSpec) o;
+        return bold == other.bold && fill == other.fill;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bold, fill);
+    }
+}
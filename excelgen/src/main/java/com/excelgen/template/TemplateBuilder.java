@@ -0,0 +1,202 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Declarative builder for JXLS 2.x templates.
+ *
+ * A template is described by cells, rows and jx: commands using Excel
+ * references ("A1", row 3, lastCell "B12"). Commands become cell comments,
+ * the place JXLS 2.x reads them from. Styles and fonts come from a
+ * {@link StylePool}, so each distinct style is stored once in styles.xml.
+ *
+ * <pre>
+ * TemplateBuilder.sheet("PersonInfo")
+ *         .cell("A1", "Person Report", StyleSpec.BOLD)
+ *         .area("B10")
+ *         .row(3, "Name:", "${person.name}")
+ *         .ifCommand("A6", "person.age &lt; 18", "B6")
+ *         .row(6, "Parent:", "${person.parentName}")
+ *         .write("person_template.xlsx");
+ * </pre>
+ */
+public final class TemplateBuilder {
+
+    private final String sheetName;
+    private final Map<String, CellSpec> cells = new TreeMap<>();
+    private final Map<String, String> comments = new TreeMap<>();
+    private final List<Integer> emptyRows = new ArrayList<>();
+    private final Map<Integer, Integer> columnWidths = new TreeMap<>();
+
+    private TemplateBuilder(String sheetName) {
+        this.sheetName = sheetName;
+    }
+
+    public static TemplateBuilder sheet(String sheetName) {
+        return new TemplateBuilder(sheetName);
+    }
+
+    public TemplateBuilder cell(String ref, String value) {
+        return cell(ref, value, StyleSpec.PLAIN);
+    }
+
+    public TemplateBuilder cell(String ref, String value, StyleSpec style) {
+        cells.put(key(ref), new CellSpec(new CellReference(ref), value, style));
+        return this;
+    }
+
+    /**
+     * Fill a row from column A onwards
+     *
+     * @param excelRow 1-based row number as shown in Excel
+     */
+    public TemplateBuilder row(int excelRow, String... values) {
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] != null) {
+                cell(new CellReference(excelRow - 1, c).formatAsString(), values[c]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Create rows without cells, e.g. spacing rows at the end of an area
+     */
+    public TemplateBuilder emptyRows(int fromExcelRow, int toExcelRow) {
+        for (int r = fromExcelRow; r <= toExcelRow; r++) {
+            emptyRows.add(r - 1);
+        }
+        return this;
+    }
+
+    public TemplateBuilder columnWidths(int... widths) {
+        for (int c = 0; c < widths.length; c++) {
+            columnWidths.put(c, widths[c]);
+        }
+        return this;
+    }
+
+    /**
+     * Attach free text as a cell comment
+     */
+    public TemplateBuilder comment(String ref, String text) {
+        String existing = comments.get(key(ref));
+        comments.put(key(ref), existing == null ? text : existing + "\n" + text);
+        return this;
+    }
+
+    /**
+     * jx:area starting at A1
+     */
+    public TemplateBuilder area(String lastCell) {
+        return comment("A1", "jx:area(lastCell=\"" + lastCell + "\")");
+    }
+
+    public TemplateBuilder ifCommand(String ref, String condition, String lastCell) {
+        return comment(ref, "jx:if(condition=\"" + condition + "\", lastCell=\"" + lastCell + "\")");
+    }
+
+    public TemplateBuilder each(String ref, String items, String var, String lastCell) {
+        return comment(ref, "jx:each(items=\"" + items + "\", var=\"" + var + "\", lastCell=\"" + lastCell + "\")");
+    }
+
+    /**
+     * Create the workbook described so far
+     */
+    public Workbook build() {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet(sheetName);
+        StylePool styles = new StylePool(workbook);
+
+        for (int r : emptyRows) {
+            row(sheet, r);
+        }
+        for (CellSpec spec : cells.values()) {
+            Cell cell = cell(sheet, spec.ref);
+            cell.setCellValue(spec.value);
+            if (!spec.style.equals(StyleSpec.PLAIN)) {
+                cell.setCellStyle(styles.get(spec.style));
+            }
+        }
+
+        if (!comments.isEmpty()) {
+            Drawing<?> drawing = sheet.createDrawingPatriarch();
+            CreationHelper factory = workbook.getCreationHelper();
+            for (Map.Entry<String, String> entry : comments.entrySet()) {
+                CellReference ref = new CellReference(entry.getKey());
+                Cell cell = cell(sheet, ref);
+
+                ClientAnchor anchor = factory.createClientAnchor();
+                anchor.setCol1(ref.getCol());
+                anchor.setCol2(ref.getCol() + 3);
+                anchor.setRow1(ref.getRow());
+                anchor.setRow2(ref.getRow() + 2);
+                Comment comment = drawing.createCellComment(anchor);
+                comment.setString(factory.createRichTextString(entry.getValue()));
+                cell.setCellComment(comment);
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> width : columnWidths.entrySet()) {
+            sheet.setColumnWidth(width.getKey(), width.getValue());
+        }
+        return workbook;
+    }
+
+    /**
+     * Build the workbook and save it
+     */
+    public void write(String filePath) throws IOException {
+        try (Workbook workbook = build();
+             FileOutputStream outputStream = new FileOutputStream(filePath)) {
+            workbook.write(outputStream);
+        }
+    }
+
+    private static Row row(Sheet sheet, int index) {
+        Row row = sheet.getRow(index);
+        return row != null ? row : sheet.createRow(index);
+    }
+
+    private static Cell cell(Sheet sheet, CellReference ref) {
+        Row row = row(sheet, ref.getRow());
+        Cell cell = row.getCell(ref.getCol());
+        return cell != null ? cell : row.createCell(ref.getCol());
+    }
+
+    /**
+     * Normalise a reference such as "$B$12" to "B12"
+     */
+    private static String key(String ref) {
+        CellReference reference = new CellReference(ref);
+        return new CellReference(reference.getRow(), reference.getCol()).formatAsString();
+    }
+
+    private static final class CellSpec {
+        private final CellReference ref;
+        private final String value;
+        private final StyleSpec style;
+
+        CellSpec(CellReference ref, String value, StyleSpec style) {
+            this.ref = ref;
+            this.value = value;
+            this.style = style;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.excelgen.template;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each classpath template once and keeps the resulting layout for
+ * the life of the JVM. Templates are read-only resources, so a layout never
+ * goes stale.
+ *
+ * Layouts are loaded from the descriptors precompiled at build time when
+ * they exist. Templates without one are compiled once per content and
+ * library version and kept in the {@link TemplateDiskCache}, so they are
+ * not parsed again after a restart.
+ */
+public final class TemplateCache {
+
+    /** Templates offered to clients, in the order they are listed */
+    private static final String[] KNOWN_TEMPLATES = {
+        "person_template.xlsx",
+        "person_template_address.xlsx",
+        "person_template_old_style.xlsx",
+        "person_template_with_phones.xlsx"
+    };
+
+    private static final TemplateCache SHARED = new TemplateCache(TemplateCache.class.getClassLoader());
+
+    /** Kind of the disk cache entries holding template descriptors */
+    static final String DESCRIPTOR_ENTRY = "descriptor";
+
+    private final ClassLoader classLoader;
+    private final TemplateDiskCache diskCache;
+    private final Map<String, TemplateLayout> layouts = new ConcurrentHashMap<>();
+
+    public TemplateCache(ClassLoader classLoader) {
+        this(classLoader, TemplateDiskCache.shared());
+    }
+
+    public TemplateCache(ClassLoader classLoader, TemplateDiskCache diskCache) {
+        this.classLoader = classLoader;
+        this.diskCache = diskCache;
+    }
+
+    public static TemplateCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the compiled layout of a template resource
+     *
+     * @return the layout, or null when no such template exists
+     */
+    public TemplateLayout get(String templateName) throws IOException {
+        TemplateLayout layout = layouts.get(templateName);
+        if (layout != null) {
+            return layout;
+        }
+
+        layout = loadDescriptor(templateName);
+        if (layout == null) {
+            byte[] xlsx;
+            try (InputStream is = classLoader.getResourceAsStream(templateName)) {
+                if (is == null) {
+                    return null;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                is.transferTo(bytes);
+                xlsx = bytes.toByteArray();
+            }
+            layout = compileCached(templateName, xlsx);
+        }
+
+        TemplateLayout existing = layouts.putIfAbsent(templateName, layout);
+        return existing != null ? existing : layout;
+    }
+
+    /**
+     * Load every template listed in the descriptor index, so no request has
+     * to pay for loading a layout
+     *
+     * @return number of layouts loaded
+     */
+    public int preload() throws IOException {
+        int count = 0;
+        for (String templateName : TemplateDescriptor.listBundled(classLoader)) {
+            if (get(templateName) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Names of the known templates that exist on the classpath, as listed
+     * by /listTemplates
+     */
+    public List<String> listTemplates() {
+        List<String> templates = new ArrayList<>();
+        for (String template : KNOWN_TEMPLATES) {
+            try (InputStream is = classLoader.getResourceAsStream(template)) {
+                if (is != null) {
+                    templates.add(template);
+                }
+            } catch (IOException e) {
+                System.err.println("Error checking template: " + template);
+                e.printStackTrace();
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Names that may be loaded as templates: the known templates and those
+     * with a bundled descriptor. Other classpath resources are not templates.
+     */
+    static Set<String> templateNames(ClassLoader classLoader) {
+        Set<String> names = new LinkedHashSet<>(Arrays.asList(KNOWN_TEMPLATES));
+        try {
+            names.addAll(TemplateDescriptor.listBundled(classLoader));
+        } catch (IOException e) {
+            System.err.println("Could not read the template descriptor index: " + e.getMessage());
+        }
+        return names;
+    }
+
+    /**
+     * Layout of a template without a bundled descriptor, from the disk cache
+     * when an entry for its content exists
+     */
+    private TemplateLayout compileCached(String templateName, byte[] xlsx) throws IOException {
+        String key = TemplateDiskCache.key(xlsx);
+        InputStream cached = diskCache.open(DESCRIPTOR_ENTRY, key);
+        if (cached != null) {
+            try {
+                return TemplateDescriptor.read(cached).getLayout();
+            } catch (IOException | RuntimeException e) {
+                // Valid checksum but unreadable: written by a different format
+                System.err.println("Ignoring cached descriptor for " + templateName + ": " + e.getMessage());
+                diskCache.remove(DESCRIPTOR_ENTRY, key);
+            }
+        }
+
+        TemplateDescriptor descriptor = TemplateDescriptor.compile(templateName, xlsx);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        descriptor.write(out);
+        diskCache.store(DESCRIPTOR_ENTRY, key, out.toByteArray());
+        return descriptor.getLayout();
+    }
+
+    private TemplateLayout loadDescriptor(String templateName) {
+        try (InputStream is = classLoader.getResourceAsStream(TemplateDescriptor.resourceName(templateName))) {
+            if (is == null) {
+                return null;
+            }
+            return TemplateDescriptor.read(new BufferedInputStream(is)).getLayout();
+        } catch (IOException e) {
+            // A descriptor from another build: fall back to parsing the xlsx
+            System.err.println("Ignoring template descriptor for " + templateName + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
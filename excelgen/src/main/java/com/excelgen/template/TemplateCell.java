@@ -0,0 +1,54 @@
+package com.excelgen.template;
+
+/**
+ * A single non-empty cell of a compiled template.
+ *
+ * String cells carry their pre-tokenised {@link CellText}; numeric and boolean
+ * cells only have a static value.
+ */
+public final class TemplateCell {
+
+    private final int row;
+    private final int column;
+    private final Object staticValue;
+    private final CellText text;
+    private final short styleIndex;
+
+    public TemplateCell(int row, int column, Object staticValue, CellText text, short styleIndex) {
+        this.row = row;
+        this.column = column;
+        this.staticValue = staticValue;
+        this.text = text;
+        this.styleIndex = styleIndex;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Value of the cell as stored in the template (raw text for string cells)
+     */
+    public Object getStaticValue() {
+        return staticValue;
+    }
+
+    /**
+     * Tokenised text, or null for non-string cells
+     */
+    public CellText getText() {
+        return text;
+    }
+
+    public boolean isDynamic() {
+        return text != null && text.hasExpressions();
+    }
+
+    public short getStyleIndex() {
+        return styleIndex;
+    }
+}
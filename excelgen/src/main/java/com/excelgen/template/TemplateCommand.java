@@ -0,0 +1,122 @@
+package com.excelgen.template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JXLS 2.x command (jx:area, jx:if, jx:each) read from a cell comment,
+ * together with the cell range it covers and the commands nested inside it.
+ *
+ * Row and column bounds are 0-based POI indexes and inclusive.
+ */
+public final class TemplateCommand {
+
+    public static final String AREA = "area";
+    public static final String IF = "if";
+    public static final String EACH = "each";
+
+    private final String name;
+    private final int firstRow;
+    private final int firstColumn;
+    private final int lastRow;
+    private final int lastColumn;
+    private final Map<String, String> attributes;
+    private final List<TemplateCommand> children = new ArrayList<>();
+
+    public TemplateCommand(String name, int firstRow, int firstColumn, int lastRow, int lastColumn,
+                           Map<String, String> attributes) {
+        this.name = name;
+        this.firstRow = firstRow;
+        this.firstColumn = firstColumn;
+        this.lastRow = lastRow;
+        this.lastColumn = lastColumn;
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    public int getLastColumn() {
+        return lastColumn;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public String getAttribute(String attribute) {
+        return attributes.get(attribute);
+    }
+
+    /**
+     * Condition of a jx:if command
+     */
+    public String getCondition() {
+        return attributes.get("condition");
+    }
+
+    /**
+     * Items expression of a jx:each command
+     */
+    public String getItems() {
+        return attributes.get("items");
+    }
+
+    /**
+     * Loop variable of a jx:each command
+     */
+    public String getVar() {
+        return attributes.get("var");
+    }
+
+    /**
+     * Nested commands, ordered by their first row
+     */
+    public List<TemplateCommand> getChildren() {
+        return children;
+    }
+
+    void addChild(TemplateCommand child) {
+        children.add(child);
+    }
+
+    /**
+     * True when lastCell points above or left of the command cell.
+     * JXLS keeps such rows in place and only clears the command cell.
+     */
+    public boolean isDegenerate() {
+        return lastRow < firstRow || lastColumn < firstColumn;
+    }
+
+    public int getRowCount() {
+        return isDegenerate() ? 0 : lastRow - firstRow + 1;
+    }
+
+    boolean contains(int row, int column) {
+        return !isDegenerate()
+                && row >= firstRow && row <= lastRow
+                && column >= firstColumn && column <= lastColumn;
+    }
+
+    @Override
+    public String toString() {
+        return "jx:" + name + attributes + " [" + firstRow + "," + firstColumn
+                + " -> " + lastRow + "," + lastColumn + "]";
+    }
+}
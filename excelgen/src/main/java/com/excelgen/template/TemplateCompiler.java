@@ -0,0 +1,260 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an xlsx template once and turns its first sheet into a {@link TemplateLayout}.
+ *
+ * Commands are taken from cell comments, the same place JXLS 2.x looks for them.
+ * Command text in cell values (JXLS 1.x style) is kept as plain text.
+ */
+public final class TemplateCompiler {
+
+    private static final String COMMAND_PREFIX = "jx:";
+
+    private TemplateCompiler() {
+    }
+
+    public static TemplateLayout compile(InputStream templateStream) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook(templateStream)) {
+            return compile(workbook.getSheetAt(0));
+        }
+    }
+
+    public static TemplateLayout compile(Sheet sheet) {
+        int lastRow = sheet.getLastRowNum();
+        int width = 0;
+        for (Row row : sheet) {
+            width = Math.max(width, row.getLastCellNum());
+        }
+
+        List<TemplateCommand> commands = new ArrayList<>();
+        for (Map.Entry<CellAddress, ? extends Comment> entry : sheet.getCellComments().entrySet()) {
+            CellAddress address = entry.getKey();
+            String text = entry.getValue().getString().getString();
+            commands.addAll(parseCommands(text, address.getRow(), address.getColumn()));
+        }
+        for (TemplateCommand command : commands) {
+            width = Math.max(width, command.getLastColumn() + 1);
+        }
+
+        TemplateRow[] rows = new TemplateRow[lastRow + 1];
+        for (int r = 0; r <= lastRow; r++) {
+            TemplateCell[] cells = new TemplateCell[width];
+            Row row = sheet.getRow(r);
+            if (row != null) {
+                for (Cell cell : row) {
+                    cells[cell.getColumnIndex()] = toTemplateCell(cell);
+                }
+            }
+            rows[r] = new TemplateRow(r, cells);
+        }
+
+        int[] columnWidths = new int[width];
+        for (int c = 0; c < width; c++) {
+            columnWidths[c] = sheet.getColumnWidth(c);
+        }
+
+        return new TemplateLayout(sheet.getSheetName(), rows, width, columnWidths, buildTree(commands));
+    }
+
+    private static TemplateCell toTemplateCell(Cell cell) {
+        short style = cell.getCellStyle() != null ? cell.getCellStyle().getIndex() : 0;
+        switch (cell.getCellType()) {
+            case STRING:
+                String text = cell.getStringCellValue();
+                return new TemplateCell(cell.getRowIndex(), cell.getColumnIndex(), text, CellText.parse(text), style);
+            case NUMERIC:
+                return new TemplateCell(cell.getRowIndex(), cell.getColumnIndex(), cell.getNumericCellValue(), null, style);
+            case BOOLEAN:
+                return new TemplateCell(cell.getRowIndex(), cell.getColumnIndex(), cell.getBooleanCellValue(), null, style);
+            case BLANK:
+                return new TemplateCell(cell.getRowIndex(), cell.getColumnIndex(), null, null, style);
+            default:
+                return new TemplateCell(cell.getRowIndex(), cell.getColumnIndex(), cell.toString(), null, style);
+        }
+    }
+
+    /**
+     * Attach every command to the innermost command whose range contains its
+     * cell. Commands outside any jx:area are ignored, as JXLS does.
+     */
+    static List<TemplateCommand> buildTree(List<TemplateCommand> commands) {
+        List<TemplateCommand> sorted = new ArrayList<>(commands);
+        sorted.sort(Comparator.comparingInt(TemplateCommand::getFirstRow)
+                .thenComparingInt(TemplateCommand::getFirstColumn));
+
+        List<TemplateCommand> areas = new ArrayList<>();
+        for (TemplateCommand command : sorted) {
+            if (TemplateCommand.AREA.equals(command.getName())) {
+                areas.add(command);
+            }
+        }
+
+        for (int i = 0; i < sorted.size(); i++) {
+            TemplateCommand command = sorted.get(i);
+            if (TemplateCommand.AREA.equals(command.getName())) {
+                continue;
+            }
+            // A parent must be larger, or the same size and declared first,
+            // which keeps commands sharing one range from nesting in each other
+            TemplateCommand parent = null;
+            for (int j = 0; j < sorted.size(); j++) {
+                TemplateCommand candidate = sorted.get(j);
+                if (j == i || !candidate.contains(command.getFirstRow(), command.getFirstColumn())) {
+                    continue;
+                }
+                long size = size(candidate);
+                if (size < size(command) || (size == size(command) && j > i)) {
+                    continue;
+                }
+                if (parent == null || size <= size(parent)) {
+                    parent = candidate;
+                }
+            }
+            if (parent != null) {
+                parent.addChild(command);
+            } else {
+                System.err.println("Ignoring command outside of any jx:area: " + command);
+            }
+        }
+        return areas;
+    }
+
+    private static long size(TemplateCommand command) {
+        if (command.isDegenerate()) {
+            return 0;
+        }
+        return (long) command.getRowCount() * (command.getLastColumn() - command.getFirstColumn() + 1);
+    }
+
+    /**
+     * Parse all jx:name(attr="value" ...) commands found in a comment
+     */
+    static List<TemplateCommand> parseCommands(String text, int row, int column) {
+        List<TemplateCommand> commands = new ArrayList<>();
+        int pos = text.indexOf(COMMAND_PREFIX);
+        while (pos >= 0) {
+            int open = text.indexOf('(', pos);
+            if (open < 0) {
+                break;
+            }
+            String name = text.substring(pos + COMMAND_PREFIX.length(), open).trim();
+            int close = findClosingParenthesis(text, open);
+            if (close < 0 || !isIdentifier(name)) {
+                pos = text.indexOf(COMMAND_PREFIX, pos + COMMAND_PREFIX.length());
+                continue;
+            }
+
+            Map<String, String> attributes = parseAttributes(text.substring(open + 1, close));
+            int lastRow = row;
+            int lastColumn = column;
+            String lastCell = attributes.get("lastCell");
+            if (lastCell != null) {
+                CellReference reference = new CellReference(lastCell);
+                lastRow = reference.getRow();
+                lastColumn = reference.getCol();
+            }
+            commands.add(new TemplateCommand(name, row, column, lastRow, lastColumn, attributes));
+            pos = text.indexOf(COMMAND_PREFIX, close);
+        }
+        return commands;
+    }
+
+    private static int findClosingParenthesis(String text, int open) {
+        boolean quoted = false;
+        for (int i = open + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ')' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isLetterOrDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse attr="value" pairs separated by commas and/or spaces.
+     * List values such as areas=["A6:B6"] are kept as raw text.
+     */
+    static Map<String, String> parseAttributes(String text) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            while (i < length && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == ',')) {
+                i++;
+            }
+            int keyStart = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            String key = text.substring(keyStart, i);
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (key.isEmpty() || i >= length || text.charAt(i) != '=') {
+                i++;
+                continue;
+            }
+            i++;
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+
+            String value;
+            char first = text.charAt(i);
+            if (first == '"') {
+                int end = text.indexOf('"', i + 1);
+                end = end < 0 ? length : end;
+                value = text.substring(i + 1, end);
+                i = end + 1;
+            } else if (first == '[') {
+                int end = text.indexOf(']', i + 1);
+                end = end < 0 ? length - 1 : end;
+                value = text.substring(i, end + 1);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != ',') {
+                    end++;
+                }
+                value = text.substring(i, end);
+                i = end;
+            }
+            attributes.put(key, value);
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,444 @@
+package com.excelgen.template;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Precompiled form of a template, written at build time by
+ * {@link DescriptorCompiler} and bundled next to the xlsx files.
+ *
+ * A descriptor holds the {@link TemplateLayout} (static cells, tokenised
+ * expressions, command tree) and a reference to every raw package part of the
+ * source xlsx, so the runtime can use a template without opening it with POI.
+ *
+ * Binary format, all numbers big-endian:
+ * <pre>
+ *   magic "XGTD", version, template name, source size + CRC32
+ *   string table (every string is written once and referenced by index)
+ *   package parts: name, size, CRC32
+ *   layout: sheet name, width, column widths, rows, command tree
+ * </pre>
+ */
+public final class TemplateDescriptor {
+
+    public static final String RESOURCE_DIRECTORY = "descriptors/";
+    public static final String EXTENSION = ".tdesc";
+    public static final String INDEX_RESOURCE = RESOURCE_DIRECTORY + "index.txt";
+
+    private static final int MAGIC = 0x58475444; // "XGTD"
+    static final int VERSION = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_NUMBER = 2;
+    private static final byte VALUE_BOOLEAN = 3;
+
+    private final String templateName;
+    private final long sourceSize;
+    private final long sourceChecksum;
+    private final List<PartReference> parts;
+    private final TemplateLayout layout;
+
+    public TemplateDescriptor(String templateName, long sourceSize, long sourceChecksum,
+                              List<PartReference> parts, TemplateLayout layout) {
+        this.templateName = templateName;
+        this.sourceSize = sourceSize;
+        this.sourceChecksum = sourceChecksum;
+        this.parts = Collections.unmodifiableList(new ArrayList<>(parts));
+        this.layout = layout;
+    }
+
+    /**
+     * Compile the bytes of an xlsx template into a descriptor
+     */
+    public static TemplateDescriptor compile(String templateName, byte[] xlsx) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(xlsx);
+
+        List<PartReference> parts = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            byte[] buffer = new byte[8192];
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                CRC32 partCrc = new CRC32();
+                long size = 0;
+                int n;
+                while ((n = zip.read(buffer)) > 0) {
+                    partCrc.update(buffer, 0, n);
+                    size += n;
+                }
+                parts.add(new PartReference(entry.getName(), size, partCrc.getValue()));
+            }
+        }
+
+        TemplateLayout layout = TemplateCompiler.compile(new ByteArrayInputStream(xlsx));
+        return new TemplateDescriptor(templateName, xlsx.length, crc.getValue(), parts, layout);
+    }
+
+    /**
+     * Classpath resource name of the descriptor for a template
+     */
+    public static String resourceName(String templateName) {
+        return RESOURCE_DIRECTORY + templateName + EXTENSION;
+    }
+
+    /**
+     * Names of the templates compiled into descriptors by the build
+     */
+    public static List<String> listBundled(ClassLoader classLoader) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (InputStream is = classLoader.getResourceAsStream(INDEX_RESOURCE)) {
+            if (is == null) {
+                return names;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    names.add(line.trim());
+                }
+            }
+        }
+        return names;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    /**
+     * Size in bytes of the xlsx the descriptor was compiled from
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * CRC32 of the xlsx the descriptor was compiled from
+     */
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    /**
+     * Raw package parts of the source xlsx, in zip order
+     */
+    public List<PartReference> getParts() {
+        return parts;
+    }
+
+    public TemplateLayout getLayout() {
+        return layout;
+    }
+
+    // ---- writing ----
+
+    public void write(OutputStream out) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        body.writeInt(parts.size());
+        for (PartReference part : parts) {
+            writeString(body, strings, part.getName());
+            body.writeLong(part.getSize());
+            body.writeInt((int) part.getChecksum());
+        }
+        writeLayout(body, strings, layout);
+        body.flush();
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        writeRawString(data, templateName);
+        data.writeLong(sourceSize);
+        data.writeInt((int) sourceChecksum);
+        data.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            writeRawString(data, s);
+        }
+        bodyBytes.writeTo(data);
+        data.flush();
+    }
+
+    private static void writeLayout(DataOutputStream out, Map<String, Integer> strings,
+                                    TemplateLayout layout) throws IOException {
+        writeString(out, strings, layout.getSheetName());
+        out.writeShort(layout.getWidth());
+        for (int c = 0; c < layout.getWidth(); c++) {
+            out.writeInt(layout.getColumnWidth(c));
+        }
+
+        out.writeInt(layout.getRowCount());
+        for (int r = 0; r < layout.getRowCount(); r++) {
+            TemplateRow row = layout.getRow(r);
+            int count = 0;
+            for (int c = 0; c < row.getWidth(); c++) {
+                if (row.getCell(c) != null) {
+                    count++;
+                }
+            }
+            out.writeShort(count);
+            for (int c = 0; c < row.getWidth(); c++) {
+                TemplateCell cell = row.getCell(c);
+                if (cell != null) {
+                    writeCell(out, strings, cell);
+                }
+            }
+        }
+
+        out.writeShort(layout.getAreas().size());
+        for (TemplateCommand area : layout.getAreas()) {
+            writeCommand(out, strings, area);
+        }
+    }
+
+    private static void writeCell(DataOutputStream out, Map<String, Integer> strings,
+                                  TemplateCell cell) throws IOException {
+        out.writeShort(cell.getColumn());
+        out.writeShort(cell.getStyleIndex());
+
+        Object value = cell.getStaticValue();
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_NUMBER);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, strings, value.toString());
+        }
+
+        CellText text = cell.getText();
+        if (text == null) {
+            out.writeShort(-1);
+            return;
+        }
+        out.writeShort(text.getExpressionCount());
+        for (int i = 0; i < text.getExpressionCount(); i++) {
+            writeString(out, strings, text.getLiteral(i));
+            writeString(out, strings, text.getExpression(i));
+        }
+        writeString(out, strings, text.getLiteral(text.getExpressionCount()));
+    }
+
+    private static void writeCommand(DataOutputStream out, Map<String, Integer> strings,
+                                     TemplateCommand command) throws IOException {
+        writeString(out, strings, command.getName());
+        out.writeInt(command.getFirstRow());
+        out.writeShort(command.getFirstColumn());
+        out.writeInt(command.getLastRow());
+        out.writeShort(command.getLastColumn());
+        out.writeShort(command.getAttributes().size());
+        for (Map.Entry<String, String> attribute : command.getAttributes().entrySet()) {
+            writeString(out, strings, attribute.getKey());
+            writeString(out, strings, attribute.getValue());
+        }
+        out.writeShort(command.getChildren().size());
+        for (TemplateCommand child : command.getChildren()) {
+            writeCommand(out, strings, child);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings,
+                                    String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        out.writeInt(index);
+    }
+
+    private static void writeRawString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ---- reading ----
+
+    public static TemplateDescriptor read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a template descriptor");
+        }
+        int version = data.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported template descriptor version " + version);
+        }
+        String templateName = readRawString(data);
+        long sourceSize = data.readLong();
+        long sourceChecksum = data.readInt() & 0xFFFFFFFFL;
+
+        String[] strings = new String[data.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readRawString(data);
+        }
+
+        int partCount = data.readInt();
+        List<PartReference> parts = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            String name = strings[data.readInt()];
+            long size = data.readLong();
+            long checksum = data.readInt() & 0xFFFFFFFFL;
+            parts.add(new PartReference(name, size, checksum));
+        }
+
+        TemplateLayout layout = readLayout(data, strings);
+        return new TemplateDescriptor(templateName, sourceSize, sourceChecksum, parts, layout);
+    }
+
+    private static TemplateLayout readLayout(DataInputStream in, String[] strings) throws IOException {
+        String sheetName = strings[in.readInt()];
+        int width = in.readUnsignedShort();
+        int[] columnWidths = new int[width];
+        for (int c = 0; c < width; c++) {
+            columnWidths[c] = in.readInt();
+        }
+
+        TemplateRow[] rows = new TemplateRow[in.readInt()];
+        for (int r = 0; r < rows.length; r++) {
+            TemplateCell[] cells = new TemplateCell[width];
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                TemplateCell cell = readCell(in, strings, r);
+                cells[cell.getColumn()] = cell;
+            }
+            rows[r] = new TemplateRow(r, cells);
+        }
+
+        int areaCount = in.readUnsignedShort();
+        List<TemplateCommand> areas = new ArrayList<>(areaCount);
+        for (int i = 0; i < areaCount; i++) {
+            areas.add(readCommand(in, strings));
+        }
+        return new TemplateLayout(sheetName, rows, width, columnWidths, areas);
+    }
+
+    private static TemplateCell readCell(DataInputStream in, String[] strings, int row) throws IOException {
+        int column = in.readUnsignedShort();
+        short style = in.readShort();
+
+        Object value;
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                value = null;
+                break;
+            case VALUE_NUMBER:
+                value = in.readDouble();
+                break;
+            case VALUE_BOOLEAN:
+                value = in.readBoolean();
+                break;
+            case VALUE_STRING:
+                value = strings[in.readInt()];
+                break;
+            default:
+                throw new IOException("Unknown cell value type " + type);
+        }
+
+        CellText text = null;
+        int expressionCount = in.readShort();
+        if (expressionCount >= 0) {
+            String[] literals = new String[expressionCount + 1];
+            String[] expressions = new String[expressionCount];
+            for (int i = 0; i < expressionCount; i++) {
+                literals[i] = strings[in.readInt()];
+                expressions[i] = strings[in.readInt()];
+            }
+            literals[expressionCount] = strings[in.readInt()];
+            text = CellText.of((String) value, literals, expressions);
+        }
+        return new TemplateCell(row, column, value, text, style);
+    }
+
+    private static TemplateCommand readCommand(DataInputStream in, String[] strings) throws IOException {
+        String name = strings[in.readInt()];
+        int firstRow = in.readInt();
+        int firstColumn = in.readUnsignedShort();
+        int lastRow = in.readInt();
+        int lastColumn = in.readUnsignedShort();
+
+        int attributeCount = in.readUnsignedShort();
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.put(strings[in.readInt()], strings[in.readInt()]);
+        }
+
+        TemplateCommand command = new TemplateCommand(name, firstRow, firstColumn, lastRow, lastColumn, attributes);
+        int childCount = in.readUnsignedShort();
+        for (int i = 0; i < childCount; i++) {
+            command.addChild(readCommand(in, strings));
+        }
+        return command;
+    }
+
+    private static String readRawString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A part (zip entry) of the source xlsx package
+     */
+    public static final class PartReference {
+
+        private final String name;
+        private final long size;
+        private final long checksum;
+
+        public PartReference(String name, long size, long checksum) {
+            this.name = name;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Part name inside the package, e.g. xl/worksheets/sheet1.xml
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Uncompressed size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * CRC32 of the uncompressed part
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + size + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.excelgen.template;
+
+import com.excelgen.PrivateDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps compiled template state (layouts of templates without a bundled
+ * descriptor, generated renderer classes) in a local directory, so a
+ * restarted node does not parse and compile its templates again.
+ *
+ * Entries are keyed by a SHA-256 of the content they were compiled from and
+ * of {@link #LIBRARY_VERSION}, so an entry never outlives the template or
+ * the code that produced it. An entry is memory-mapped on load and its
+ * checksum verified before use; a corrupt or unreadable entry is deleted
+ * and the caller compiles as if there were none.
+ *
+ * Entries hold class files that are defined into this JVM, so the cache
+ * only trusts a private directory: it is created owner-only, and the
+ * directory and every entry must be owned by the process user and not
+ * writable by group or others, otherwise they are ignored.
+ *
+ * The directory is excelgen.cache.dir (default .excelgen/template-cache in
+ * user.home); -Dexcelgen.cache.enabled=false turns the cache off.
+ */
+public final class TemplateDiskCache {
+
+    /**
+     * Version of the code that compiles templates: POI, the descriptor
+     * format and every class whose state a descriptor holds, so a change to
+     * expression or command parsing invalidates cached layouts
+     */
+    public static final String LIBRARY_VERSION = org.apache.poi.Version.getVersion()
+            + "/" + TemplateDescriptor.VERSION
+            + "/" + classDigest(TemplateCompiler.class, TemplateDescriptor.class, TemplateLayout.class,
+                    TemplateRow.class, TemplateCell.class, TemplateCommand.class, CellText.class, StyleSpec.class);
+
+    private static final int MAGIC = 0x58474345; // "XGCE"
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".entry";
+
+    private static final TemplateDiskCache SHARED = new TemplateDiskCache(
+            Paths.get(System.getProperty("excelgen.cache.dir",
+                    Paths.get(System.getProperty("user.home"), ".excelgen", "template-cache").toString())),
+            Boolean.parseBoolean(System.getProperty("excelgen.cache.enabled", "true")));
+
+    private final Path directory;
+    private final boolean enabled;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public TemplateDiskCache(Path directory, boolean enabled) {
+        this.directory = directory;
+        this.enabled = enabled;
+    }
+
+    public static TemplateDiskCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Key of the entry compiled from content by the current library version
+     */
+    public static String key(byte[] content) {
+        MessageDigest sha = sha256();
+        sha.update(LIBRARY_VERSION.getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+        sha.update(content);
+        return hex(sha.digest());
+    }
+
+    /**
+     * Open a verified entry. The stream reads the mapped file directly and
+     * needs no closing.
+     *
+     * @return the entry payload, or null when there is no usable entry
+     */
+    public InputStream open(String kind, String key) {
+        if (!enabled || !isPrivateDirectory()) {
+            return null;
+        }
+        Path file = file(kind, key);
+        if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) || !PrivateDirectory.isPrivate(file)) {
+                reject(file, "not a private file of the process user");
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer payload = verify(mapped, key);
+            if (payload == null) {
+                reject(file, "checksum or header mismatch");
+                return null;
+            }
+            hits.incrementAndGet();
+            return new BufferInputStream(payload);
+        } catch (IOException | RuntimeException e) {
+            reject(file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Write an entry. The file is written aside and moved in place, so
+     * readers never see a partial entry. Failures are logged and ignored:
+     * the cache is an optimisation only.
+     */
+    public void store(String kind, String key, byte[] payload) {
+        if (!enabled || !isPrivateDirectory()) {
+            return;
+        }
+        Path file = file(kind, key);
+        Path temp = null;
+        try {
+            // Owner-only, like the directory
+            temp = Files.createTempFile(directory, kind + "-", ".tmp");
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+
+            ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 + keyBytes.length + 8 + 8);
+            header.putInt(MAGIC).putInt(FORMAT).putInt(keyBytes.length).put(keyBytes)
+                    .putLong(payload.length).putLong(crc.getValue());
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(header.array());
+                out.write(payload);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write template cache entry " + file + ": " + e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // left for the next start
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete an entry that turned out to be unusable, for instance classes
+     * that no longer link
+     */
+    public void remove(String kind, String key) {
+        reject(file(kind, key), "rejected by caller");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Entries found corrupt or stale and deleted
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Digest of the class files of the given classes and their nested
+     * classes, to key entries on the code that produced them
+     */
+    public static String classDigest(Class<?>... types) {
+        Set<Class<?>> all = new TreeSet<>(Comparator.comparing(Class::getName));
+        for (Class<?> type : types) {
+            addWithNested(all, type);
+        }
+        MessageDigest sha = sha256();
+        for (Class<?> type : all) {
+            sha.update(type.getName().getBytes(StandardCharsets.UTF_8));
+            ClassLoader loader = type.getClassLoader();
+            if (loader == null) {
+                // JDK classes: the Java version stands for them
+                sha.update(System.getProperty("java.version").getBytes(StandardCharsets.UTF_8));
+                continue;
+            }
+            try (InputStream in = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+                if (in != null) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    in.transferTo(bytes);
+                    sha.update(bytes.toByteArray());
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read class file of " + type.getName() + ": " + e.getMessage());
+            }
+        }
+        return hex(sha.digest()).substring(0, 16);
+    }
+
+    /**
+     * Create the directory owner-only when missing, and check that it is a
+     * private directory of the process user
+     */
+    private boolean isPrivateDirectory() {
+        try {
+            PrivateDirectory.require(directory);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring template cache directory " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void addWithNested(Set<Class<?>> all, Class<?> type) {
+        if (all.add(type)) {
+            for (Class<?> nested : type.getDeclaredClasses()) {
+                addWithNested(all, nested);
+            }
+        }
+    }
+
+    private Path file(String kind, String key) {
+        return directory.resolve(kind + "-" + key + SUFFIX);
+    }
+
+    /**
+     * @return the payload of a well-formed entry for key, or null
+     */
+    private static ByteBuffer verify(ByteBuffer entry, String key) {
+        byte[] expectedKey = key.getBytes(StandardCharsets.UTF_8);
+        if (entry.remaining() < 12 || entry.getInt() != MAGIC || entry.getInt() != FORMAT
+                || entry.getInt() != expectedKey.length || entry.remaining() < expectedKey.length + 16) {
+            return null;
+        }
+        byte[] storedKey = new byte[expectedKey.length];
+        entry.get(storedKey);
+        long length = entry.getLong();
+        long checksum = entry.getLong();
+        if (!MessageDigest.isEqual(storedKey, expectedKey) || length != entry.remaining()) {
+            return null;
+        }
+        ByteBuffer payload = entry.slice();
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return crc.getValue() == checksum ? payload : null;
+    }
+
+    private void reject(Path file, String reason) {
+        rejected.incrementAndGet();
+        System.err.println("Discarding template cache entry " + file.getFileName() + ": " + reason);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete template cache entry " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a buffer without copying it
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.excelgen.template;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled form of a JXLS template sheet: the cells of every row with their
+ * expressions already tokenised, and the tree of jx: commands rooted at the
+ * jx:area commands.
+ *
+ * A layout is immutable once built and can be shared between requests.
+ */
+public final class TemplateLayout {
+
+    private final String sheetName;
+    private final TemplateRow[] rows;
+    private final int width;
+    private final int[] columnWidths;
+    private final List<TemplateCommand> areas;
+
+    public TemplateLayout(String sheetName, TemplateRow[] rows, int width, int[] columnWidths,
+                          List<TemplateCommand> areas) {
+        this.sheetName = sheetName;
+        this.rows = rows;
+        this.width = width;
+        this.columnWidths = columnWidths;
+        this.areas = Collections.unmodifiableList(areas);
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    public TemplateRow getRow(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Number of columns, i.e. the last used column index + 1
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Column widths in POI units (1/256 of a character)
+     */
+    public int getColumnWidth(int column) {
+        return column < columnWidths.length ? columnWidths[column] : 0;
+    }
+
+    /**
+     * Root jx:area commands, ordered by their first row. A template without
+     * areas is copied as-is by JXLS, expressions included.
+     */
+    public List<TemplateCommand> getAreas() {
+        return areas;
+    }
+
+    public boolean hasAreas() {
+        return !areas.isEmpty();
+    }
+}
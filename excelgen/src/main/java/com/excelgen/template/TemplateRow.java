@@ -0,0 +1,37 @@
+package com.excelgen.template;
+
+/**
+ * One row of a compiled template, with cells indexed by column.
+ * Missing cells are null.
+ */
+public final class TemplateRow {
+
+    private final int index;
+    private final TemplateCell[] cells;
+
+    public TemplateRow(int index, TemplateCell[] cells) {
+        this.index = index;
+        this.cells = cells;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getWidth() {
+        return cells.length;
+    }
+
+    public TemplateCell getCell(int column) {
+        return column < cells.length ? cells[column] : null;
+    }
+
+    public boolean isEmpty() {
+        for (TemplateCell cell : cells) {
+            if (cell != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a few ready-to-use workbooks per template so a request never has to
+ * parse the template itself.
+ *
+ * JXLS transforms a workbook in place, so every request needs its own copy.
+ * The template bytes are read once into a snapshot; copies are parsed from
+ * that snapshot on a background thread and handed out by {@link #acquire}.
+ * Each acquired workbook belongs to the caller and is never returned.
+ * Only the templates {@link TemplateCache} knows are pooled; any other
+ * resource name is treated as a missing template.
+ */
+public final class WorkbookSnapshotPool {
+
+    private static final int DEFAULT_DEPTH = Integer.getInteger("excelgen.snapshots.depth", 2);
+
+    private static final WorkbookSnapshotPool SHARED =
+            new WorkbookSnapshotPool(WorkbookSnapshotPool.class.getClassLoader(), DEFAULT_DEPTH);
+
+    private final ClassLoader classLoader;
+    private final int depth;
+    private final Set<String> templateNames;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "workbook-snapshot-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WorkbookSnapshotPool(ClassLoader classLoader, int depth) {
+        this.classLoader = classLoader;
+        this.depth = Math.max(1, depth);
+        this.templateNames = TemplateCache.templateNames(classLoader);
+    }
+
+    public static WorkbookSnapshotPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Take a workbook of the template that the caller may transform.
+     * Falls back to parsing on the calling thread when the pool is empty.
+     *
+     * @return the workbook, or null when no such template exists
+     */
+    public Workbook acquire(String templateName) throws IOException {
+        Snapshot snapshot = snapshot(templateName);
+        if (snapshot == null) {
+            return null;
+        }
+
+        Workbook workbook = snapshot.ready.poll();
+        if (workbook == null) {
+            workbook = snapshot.cloneWorkbook();
+        }
+        refill(snapshot);
+        return workbook;
+    }
+
+    /**
+     * Read the template and start filling its pool ahead of the first request
+     *
+     * @return false when no such template exists
+     */
+    public boolean warmUp(String templateName) throws IOException {
+        Snapshot snapshot = snapshot(templateName);
+        if (snapshot == null) {
+            return false;
+        }
+        refill(snapshot);
+        return true;
+    }
+
+    /**
+     * Number of parsed workbooks waiting for the template
+     */
+    public int available(String templateName) {
+        Snapshot snapshot = snapshots.get(templateName);
+        return snapshot != null ? snapshot.ready.size() : 0;
+    }
+
+    private Snapshot snapshot(String templateName) throws IOException {
+        Snapshot snapshot = snapshots.get(templateName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (!templateNames.contains(templateName)) {
+            return null;
+        }
+
+        byte[] bytes;
+        try (InputStream is = classLoader.getResourceAsStream(templateName)) {
+            if (is == null) {
+                return null;
+            }
+            bytes = is.readAllBytes();
+        }
+
+        snapshot = new Snapshot(templateName, bytes, depth);
+        Snapshot existing = snapshots.putIfAbsent(templateName, snapshot);
+        return existing != null ? existing : snapshot;
+    }
+
+    private void refill(Snapshot snapshot) {
+        if (!snapshot.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refiller.execute(() -> {
+            boolean failed = false;
+            try {
+                while (snapshot.ready.remainingCapacity() > 0) {
+                    if (!snapshot.ready.offer(snapshot.cloneWorkbook())) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                failed = true;
+                System.err.println("Could not refill workbook pool for " + snapshot.templateName
+                        + ": " + e.getMessage());
+            } finally {
+                snapshot.refilling.set(false);
+            }
+            // An acquire between the full pool and the cleared flag did not start a refill
+            if (!failed && snapshot.ready.remainingCapacity() > 0) {
+                refill(snapshot);
+            }
+        });
+    }
+
+    /**
+     * The bytes of one template and the workbooks parsed from them
+     */
+    private static final class Snapshot {
+
+        private final String templateName;
+        private final byte[] bytes;
+        private final BlockingQueue<Workbook> ready;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        Snapshot(String templateName, byte[] bytes, int depth) {
+            this.templateName = templateName;
+            this.bytes = bytes;
+            this.ready = new ArrayBlockingQueue<>(depth);
+        }
+
+        /**
+         * Independent in-memory copy of the template. POI has no deep copy
+         * for XSSFWorkbook, so the copy is parsed from the snapshot bytes,
+         * with its shared strings indexed by text ({@link IndexedWorkbook}).
+         */
+        Workbook cloneWorkbook() throws IOException {
+            return new IndexedWorkbook(new ByteArrayInputStream(bytes));
+        }
+    }
+}
@@ -1,59 +1,48 @@
 package com.excelgen;
 
-import org.apache.poi.ss.usermodel.*;
+import com.excelgen.output.OutputInspector;
 
-import java.io.FileInputStream;
+import java.io.File;
 
 public class ExcelDumper {
     public static void main(String[] args) throws Exception {
-        String filePath = "/Users/tanmaypatil/excel-templating/person_with_many_phones_output.xlsx";
-
-        try (FileInputStream fis = new FileInputStream(filePath);
-             Workbook workbook = WorkbookFactory.create(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-
-            System.out.println("=== Excel File Content ===");
-            System.out.println("File: " + filePath);
-            System.out.println();
-
-            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) {
-                    System.out.println("Row " + (i + 1) + ": (empty)");
-                    continue;
-                }
-
-                StringBuilder sb = new StringBuilder();
-                sb.append("Row ").append(i + 1).append(": ");
-
-                for (int j = 0; j < 5; j++) {  // Check first 5 columns
-                    Cell cell = row.getCell(j);
-                    if (cell != null) {
-                        String value = getCellValue(cell);
-                        if (!value.isEmpty()) {
-                            sb.append("|").append(value);
-                        }
+        String filePath = args.length > 0 ? args[0]
+                : "/Users/tanmaypatil/excel-templating/person_with_many_phones_output.xlsx";
+
+        System.out.println("=== Excel File Content ===");
+        System.out.println("File: " + filePath);
+        System.out.println();
+
+        // Stream the cells instead of loading the workbook, so large
+        // outputs can be dumped too
+        StringBuilder sb = new StringBuilder();
+        int[] currentRow = {-1};
+        OutputInspector.open(new File(filePath)).scan(
+                row -> true,
+                cell -> cell.getColumn() < 5,  // Check first 5 columns
+                cell -> {
+                    if (cell.getRow() != currentRow[0]) {
+                        printRow(sb, currentRow[0], cell.getRow());
+                        currentRow[0] = cell.getRow();
+                        sb.setLength(0);
+                        sb.append("Row ").append(cell.getRow() + 1).append(": ");
                     }
-                }
-
-                System.out.println(sb.toString());
-            }
-        }
+                    if (!cell.getValue().isEmpty()) {
+                        sb.append("|").append(cell.getValue());
+                    }
+                });
+        printRow(sb, currentRow[0], currentRow[0] + 1);
     }
 
-    private static String getCellValue(Cell cell) {
-        if (cell == null) return "";
-
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                return String.valueOf((int) cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            default:
-                return "";
+    /**
+     * Print the finished row, then the empty rows up to the next one
+     */
+    private static void printRow(StringBuilder sb, int row, int nextRow) {
+        if (row >= 0) {
+            System.out.println(sb.toString());
+        }
+        for (int i = row + 1; i < nextRow; i++) {
+            System.out.println("Row " + (i + 1) + ": (empty)");
         }
     }
 }
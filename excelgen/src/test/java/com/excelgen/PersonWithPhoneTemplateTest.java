@@ -1,6 +1,6 @@
 package com.excelgen;
 
-import org.apache.poi.ss.usermodel.*;
+import com.excelgen.output.OutputInspector;
 import org.jxls.common.Context;
 import org.jxls.util.JxlsHelper;
 import org.junit.jupiter.api.Test;
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
 import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +44,7 @@ class PersonWithPhoneTemplateTest {
         File outputFile = new File(outputPath);
         assertTrue(outputFile.exists(), "Output Excel file should be created");
         assertTrue(outputFile.length() > 0, "Output file should not be empty");
+        verifyOutput(outputPath, person);
 
         System.out.println("✓ Template with phones processed successfully: " + outputPath);
         System.out.println("  Person: " + person.getName() + ", Age: " + person.getAge());
@@ -133,97 +136,50 @@ class PersonWithPhoneTemplateTest {
     }
 
     /**
-     * Verify the output contains correct data
+     * Verify the output contains correct data, streaming the output with the
+     * inspector instead of loading the workbook
      */
     private void verifyOutput(String outputPath, Person person) throws IOException {
-        try (FileInputStream fis = new FileInputStream(outputPath);
-             Workbook workbook = WorkbookFactory.create(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-
-            // Find and verify name
-            String nameValue = findCellValue(sheet, "Name:");
-            assertNotNull(nameValue, "Name should be present");
-            assertTrue(nameValue.contains(person.getName()),
-                "Should contain name: " + person.getName());
-
-            // Find and verify age
-            String ageValue = findCellValue(sheet, "Age:");
-            assertNotNull(ageValue, "Age should be present");
-            assertTrue(ageValue.contains(String.valueOf(person.getAge())),
-                "Should contain age: " + person.getAge());
-
-            // If person has phones, verify they appear
-            if (person.isPhoneExists()) {
-                boolean foundPhoneNumbers = containsText(sheet, "Phone Numbers:");
-                assertTrue(foundPhoneNumbers, "Should contain 'Phone Numbers:' section");
-
-                // Verify each phone appears
-                for (Phone phone : person.getPhones()) {
-                    boolean foundPhoneType = containsText(sheet, phone.getPhoneType());
-                    boolean foundPhoneNo = containsText(sheet, phone.getPhoneNo());
-
-                    assertTrue(foundPhoneType,
-                        "Should contain phone type: " + phone.getPhoneType());
-                    assertTrue(foundPhoneNo,
-                        "Should contain phone number: " + phone.getPhoneNo());
-                }
-
-                System.out.println("  ✓ All " + person.getPhones().size() + " phones verified in output");
+        OutputInspector inspector = OutputInspector.open(new File(outputPath));
+
+        // Find and verify name
+        String nameValue = findCellValue(inspector, "Name:");
+        assertNotNull(nameValue, "Name should be present");
+        assertTrue(nameValue.contains(person.getName()),
+            "Should contain name: " + person.getName());
+
+        // Find and verify age
+        String ageValue = findCellValue(inspector, "Age:");
+        assertNotNull(ageValue, "Age should be present");
+        assertTrue(ageValue.contains(String.valueOf(person.getAge())),
+            "Should contain age: " + person.getAge());
+
+        // If person has phones, verify they appear
+        if (person.isPhoneExists()) {
+            assertNotNull(inspector.findFirst(cell -> cell.getValue().contains("Phone Numbers:")),
+                "Should contain 'Phone Numbers:' section");
+
+            // Verify each phone appears, in a single pass over the output
+            Set<String> missing = new LinkedHashSet<>();
+            for (Phone phone : person.getPhones()) {
+                missing.add(phone.getPhoneType());
+                missing.add(phone.getPhoneNo());
             }
-        }
-    }
+            inspector.scan(cell -> missing.removeIf(text -> cell.getValue().contains(text)));
+            assertTrue(missing.isEmpty(), "Should contain phone types and numbers: " + missing);
 
-    /**
-     * Find cell value in the next column after finding a label
-     */
-    private String findCellValue(Sheet sheet, String label) {
-        for (Row row : sheet) {
-            for (Cell cell : row) {
-                if (cell.getCellType() == CellType.STRING &&
-                    cell.getStringCellValue().contains(label)) {
-                    Cell nextCell = row.getCell(cell.getColumnIndex() + 1);
-                    if (nextCell != null) {
-                        return getCellValueAsString(nextCell);
-                    }
-                }
-            }
+            System.out.println("  ✓ All " + person.getPhones().size() + " phones verified in output");
         }
-        return null;
     }
 
     /**
-     * Check if sheet contains specific text
-     */
-    private boolean containsText(Sheet sheet, String text) {
-        for (Row row : sheet) {
-            if (row == null) continue;
-            for (Cell cell : row) {
-                if (cell == null) continue;
-                String cellValue = getCellValueAsString(cell);
-                if (cellValue.contains(text)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Get cell value as string
+     * Find cell value in the next column after finding a label
      */
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) return "";
-
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                return String.valueOf((int) cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            default:
-                return "";
+    private String findCellValue(OutputInspector inspector, String label) throws IOException {
+        OutputInspector.CellValue labelCell = inspector.findFirst(cell -> cell.getValue().contains(label));
+        if (labelCell == null) {
+            return null;
         }
+        return inspector.value(labelCell.getRow(), labelCell.getColumn() + 1);
     }
 }
@@ -0,0 +1,53 @@
+package com.excelgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bounded interning of low-cardinality values
+ */
+class ValueInternerTest {
+
+    @Test
+    void testEqualValuesShareOneInstance() {
+        // Given: An empty interner
+        ValueInterner interner = new ValueInterner(16, 32, Collections.singleton("phoneType"));
+
+        // When: The same value arrives as two different strings
+        String first = interner.intern(new String("Mobile"));
+        String second = interner.intern(new String("Mobile"));
+
+        // Then: Both calls return the same instance
+        assertSame(first, second);
+        assertEquals(1, interner.size());
+        assertEquals(1, interner.getHits());
+        assertTrue(interner.isInterned("phoneType"));
+        assertFalse(interner.isInterned("name"));
+
+        System.out.println("✓ Equal values share one instance");
+    }
+
+    @Test
+    void testInternerIsBounded() {
+        // Given: An interner for at most two short values
+        ValueInterner interner = new ValueInterner(2, 8, Collections.emptySet());
+
+        // When: Long values and more distinct values than the bound arrive
+        String longValue = new String("Very long value");
+        assertSame(longValue, interner.intern(longValue));
+        interner.intern("Home");
+        interner.intern("Work");
+        String third = new String("Mobile");
+
+        // Then: The table stops growing and returns new values unchanged
+        assertSame(third, interner.intern(third));
+        assertNotSame(third, interner.intern(new String("Mobile")));
+        assertEquals(2, interner.size());
+        assertNull(interner.intern(null));
+
+        System.out.println("✓ Interner never grows past its bound");
+    }
+}
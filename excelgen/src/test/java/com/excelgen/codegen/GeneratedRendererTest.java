@@ -0,0 +1,230 @@
+package com.excelgen.codegen;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.expression.NullNavigation;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateBuilder;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateCompiler;
+import com.excelgen.template.TemplateDiskCache;
+import com.excelgen.template.TemplateLayout;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that generated renderers produce the same output as the layout
+ * walker and as JXLS
+ */
+class GeneratedRendererTest {
+
+    private static final String[] TEMPLATES = {
+        "person_template.xlsx",
+        "person_template_address.xlsx",
+        "person_template_old_style.xlsx",
+        "person_template_with_phones.xlsx"
+    };
+
+    private static List<Person> persons() {
+        Person minor = new Person("Minor Person", 15, "Parent Person");
+        minor.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 5; i++) {
+            minor.addPhone(i % 2 == 0 ? "Home" : "Mobile", "+1-555-000" + i);
+        }
+        Person adult = new Person("Adult Person", 40, null);
+        Person boundary = new Person("Boundary \"Person\"", 18, "Parent");
+        boundary.setAddress(new Address("Work", "1 Office Park\nSuite 2"));
+        return Arrays.asList(minor, adult, boundary);
+    }
+
+    @Test
+    void testGeneratedRowsMatchLayoutWalker() throws IOException {
+        for (String templateName : TEMPLATES) {
+            // Given: A generated renderer for the template
+            TemplateLayout layout = TemplateCache.shared().get(templateName);
+            GeneratedRenderer renderer = RendererCompiler.compile(templateName, layout, "person", Person.class);
+            assertNotNull(renderer, templateName);
+
+            for (Person person : persons()) {
+                // When: The same person is rendered by both
+                List<String> walked = new ArrayList<>();
+                int walkedRows = new LayoutWalker().walk(layout, Collections.singletonMap("person", person),
+                        collect(walked));
+                List<String> generated = new ArrayList<>();
+                int generatedRows = renderer.render(person, collect(generated));
+
+                // Then: They produce identical rows
+                assertEquals(walkedRows, generatedRows, templateName);
+                assertEquals(walked, generated, templateName + " / " + person.getName());
+            }
+        }
+
+        System.out.println("✓ Generated rows match the layout walker for all templates");
+    }
+
+    @Test
+    void testGeneratedWorkbookMatchesJxls() throws IOException {
+        for (String templateName : TEMPLATES) {
+            for (Person person : persons()) {
+                // Given: The same person in a JXLS context
+                Context context = new Context();
+                context.putVar("person", person);
+
+                // When: Rendered through the generated renderer and through JXLS
+                ByteArrayOutputStream generatedOut = new ByteArrayOutputStream();
+                try (InputStream is = getClass().getClassLoader().getResourceAsStream(templateName)) {
+                    assertTrue(WorkbookRenderer.renderGenerated(templateName, new XSSFWorkbook(is),
+                            generatedOut, context), templateName);
+                }
+                ByteArrayOutputStream jxlsOut = new ByteArrayOutputStream();
+                try (InputStream is = getClass().getClassLoader().getResourceAsStream(templateName)) {
+                    JxlsHelper.getInstance().processTemplate(is, jxlsOut, context);
+                }
+
+                // Then: Both workbooks have the same cells, types and styles
+                assertSameCells(templateName + " / " + person.getName(), jxlsOut.toByteArray(),
+                        generatedOut.toByteArray());
+            }
+        }
+
+        System.out.println("✓ Generated workbooks match JXLS for all templates");
+    }
+
+    @Test
+    void testMissingAddressIsCountedNotEvaluated() throws IOException {
+        // Given: The address template and a person without an address
+        TemplateLayout layout = TemplateCache.shared().get("person_template_address.xlsx");
+        GeneratedRenderer renderer = RendererCompiler.compile("person_template_address.xlsx", layout,
+                "person", Person.class);
+        Person person = new Person("No Address", 40, null);
+        long before = NullNavigation.getSuppressedCount();
+
+        // When: It is rendered
+        List<String> rows = new ArrayList<>();
+        renderer.render(person, collect(rows));
+
+        // Then: The Address row, which is outside the jx:if, is left empty
+        // and the null address is counted
+        assertTrue(rows.contains("6:8:[Address:, null]"), rows.toString());
+        assertEquals(1, NullNavigation.getSuppressedCount() - before);
+
+        System.out.println("✓ Missing address counted without evaluation failures");
+    }
+
+    @Test
+    void testUnsupportedExpressionStaysOnJxls() throws IOException {
+        // Given: A template calling a method, which the generator cannot type
+        TemplateLayout layout;
+        try (Workbook workbook = TemplateBuilder.sheet("PersonInfo")
+                .area("B3")
+                .row(1, "Name:", "${person.name}")
+                .row(2, "Has phones:", "${person.hasPhones()}")
+                .build()) {
+            layout = TemplateCompiler.compile(workbook.getSheetAt(0));
+        }
+
+        // When/Then: No renderer is generated
+        assertNull(RendererCompiler.generateSource(layout, "Unsupported", "person", Person.class));
+        assertNull(RendererCompiler.compile("unsupported.xlsx", layout, "person", Person.class));
+
+        System.out.println("✓ Template with method calls left to JXLS");
+    }
+
+    @Test
+    void testRendererIsCachedPerTemplate() throws IOException {
+        TemplateLayout layout = TemplateCache.shared().get("person_template_with_phones.xlsx");
+        RendererCompiler compiler = new RendererCompiler();
+
+        GeneratedRenderer first = compiler.get("person_template_with_phones.xlsx", layout, "person", Person.class);
+        GeneratedRenderer second = compiler.get("person_template_with_phones.xlsx", layout, "person", Person.class);
+
+        assertNotNull(first);
+        assertSame(first, second);
+    }
+
+    @Test
+    void testRendererClassesAreLoadedFromDiskCache(@TempDir Path cacheDir) throws IOException {
+        // Given: A renderer compiled once with an on-disk cache
+        String templateName = "person_template_with_phones.xlsx";
+        TemplateLayout layout = TemplateCache.shared().get(templateName);
+        GeneratedRenderer compiled = new RendererCompiler(new TemplateDiskCache(cacheDir, true))
+                .get(templateName, layout, "person", Person.class);
+        assertNotNull(compiled);
+
+        // When: A restarted node asks for the same renderer
+        TemplateDiskCache restarted = new TemplateDiskCache(cacheDir, true);
+        GeneratedRenderer loaded = new RendererCompiler(restarted).get(templateName, layout, "person", Person.class);
+
+        // Then: Its classes come from the cache and render the same rows
+        assertNotNull(loaded);
+        assertEquals(1, restarted.getHits());
+        for (Person person : persons()) {
+            List<String> expected = new ArrayList<>();
+            compiled.render(person, collect(expected));
+            List<String> actual = new ArrayList<>();
+            loaded.render(person, collect(actual));
+            assertEquals(expected, actual, person.getName());
+        }
+
+        System.out.println("✓ Generated renderer loaded from disk cache without javac");
+    }
+
+    private static RowSink collect(List<String> rows) {
+        return (outputRow, source, values) ->
+                rows.add(outputRow + ":" + source.getIndex() + ":" + Arrays.toString(values));
+    }
+
+    private static void assertSameCells(String message, byte[] expectedBytes, byte[] actualBytes) throws IOException {
+        try (Workbook expectedWorkbook = new XSSFWorkbook(new ByteArrayInputStream(expectedBytes));
+             Workbook actualWorkbook = new XSSFWorkbook(new ByteArrayInputStream(actualBytes))) {
+            Sheet expected = expectedWorkbook.getSheetAt(0);
+            Sheet actual = actualWorkbook.getSheetAt(0);
+            int lastRow = Math.max(expected.getLastRowNum(), actual.getLastRowNum());
+            for (int r = 0; r <= lastRow; r++) {
+                assertEquals(describe(expected.getRow(r)), describe(actual.getRow(r)), message + " row " + r);
+            }
+        }
+    }
+
+    /**
+     * Cells of a row with type and style. Blank cells in the default style
+     * are skipped: JXLS leaves some behind where rows were removed, and
+     * Excel shows them exactly like missing cells.
+     */
+    private static String describe(Row row) {
+        StringBuilder sb = new StringBuilder();
+        if (row != null) {
+            for (Cell cell : row) {
+                if (cell.getCellType() == CellType.BLANK && cell.getCellStyle().getIndex() == 0) {
+                    continue;
+                }
+                sb.append('[').append(cell.getColumnIndex()).append(' ').append(cell.getCellType())
+                        .append(" s").append(cell.getCellStyle().getIndex()).append(' ').append(cell)
+                        .append(cell.getCellComment() != null ? " comment" : "").append(']');
+            }
+        }
+        return sb.toString();
+    }
+}
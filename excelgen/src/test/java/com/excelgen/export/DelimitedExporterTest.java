@@ -0,0 +1,167 @@
+package com.excelgen.export;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for CSV/TSV output rendered from the compiled template layout
+ */
+class DelimitedExporterTest {
+
+    @Test
+    void testMinorWithAddressToCsv() throws IOException {
+        // Given: A minor with an address
+        Person minor = new Person("John Doe", 15, "Jane Doe");
+        minor.setAddress(new Address("Home", "123 Main St, Hometown"));
+
+        // When: Render the address template as CSV
+        String csv = export("person_template_address.xlsx", minor, DelimitedFormat.CSV, false);
+
+        // Then: Expressions are evaluated, jx:if rows are kept, commas are quoted
+        assertEquals("Person Report with Address,\r\n"
+                + ",\r\n"
+                + "Name:,John Doe\r\n"
+                + "Age:,15\r\n"
+                + ",\r\n"
+                + "Parent Name :,Jane Doe\r\n"
+                + ",\r\n"
+                + "Address Type:,Home\r\n"
+                + "Address:,\"123 Main St, Hometown\"\r\n", csv);
+
+        System.out.println("✓ Minor with address rendered to CSV");
+    }
+
+    @Test
+    void testAdultWithoutAddressDropsConditionalRows() throws IOException {
+        // Given: An adult without address
+        Person adult = new Person("Alice Smith", 25, "Bob Smith");
+
+        // When: Render as CSV
+        String csv = export("person_template_address.xlsx", adult, DelimitedFormat.CSV, false);
+
+        // Then: Parent and address type rows are removed, like the xlsx output
+        assertFalse(csv.contains("Bob Smith"), "Parent should not be shown for adult");
+        assertFalse(csv.contains("Address Type:"), "Address type should not be shown without address");
+        assertTrue(csv.contains("Address:,\r\n"), "Address line row stays, with an empty value");
+
+        System.out.println("✓ Adult without address rendered to CSV");
+    }
+
+    @Test
+    void testPhonesAreRepeatedAsTsv() throws IOException {
+        // Given: A person with phones
+        Person person = new Person("Emma Wilson", 30, "David Wilson");
+        person.addPhone("Mobile", "+1-555-0001");
+        person.addPhone("Work", "+1-555-0003");
+
+        // When: Render the phones template as TSV
+        String tsv = export("person_template_with_phones.xlsx", person, DelimitedFormat.TSV, false);
+
+        // Then: One line per phone, no trailing padding rows
+        assertTrue(tsv.contains("Phone Numbers:\t\nMobile\t'+1-555-0001\nWork\t'+1-555-0003\n"), tsv);
+        assertTrue(tsv.endsWith("Work\t'+1-555-0003\n"), "Trailing blank template rows are dropped");
+
+        System.out.println("✓ Phones rendered to TSV");
+    }
+
+    @Test
+    void testTemplateWithoutAreaIsNotEvaluated() throws IOException {
+        // Given/When: person_template.xlsx has no jx:area, so JXLS copies it as-is
+        String csv = export("person_template.xlsx", new Person("John Doe", 15, "Jane Doe"),
+                DelimitedFormat.CSV, false);
+
+        // Then: The same holds for CSV output
+        assertTrue(csv.contains("Name:,${person.name}"), csv);
+    }
+
+    @Test
+    void testGzipAndLargePhoneList() throws IOException {
+        // Given: A person with many phones
+        Person person = new Person("Bulk Person", 40, null);
+        for (int i = 0; i < 50_000; i++) {
+            person.addPhone(i % 2 == 0 ? "Mobile" : "Home", "+1-555-" + i);
+        }
+
+        // When: Render gzip-compressed CSV
+        byte[] gzipped = exportBytes("person_template_with_phones.xlsx", person, DelimitedFormat.CSV, true);
+
+        // Then: The decompressed text has one line per phone
+        String csv;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(csv.contains("Home,\"'+1-555-49999\"\r\n"));
+        assertEquals(50_000, csv.split("\r\n").length - 10, "Expected 10 fixed lines plus phones");
+
+        System.out.println("✓ 50,000 phones rendered to gzip CSV: " + gzipped.length + " bytes");
+    }
+
+    @Test
+    void testFormulaLikeValuesAreNeutralized() throws IOException {
+        // Given: A person whose values would start formulas in a spreadsheet
+        Person person = new Person("=HYPERLINK(\"http://evil\",\"x\")", 15, "@SUM(A1)");
+        person.setAddress(new Address("-2+3", "\t=1+1"));
+
+        // When: Render as CSV and TSV
+        String csv = export("person_template_address.xlsx", person, DelimitedFormat.CSV, false);
+        String tsv = export("person_template_address.xlsx", person, DelimitedFormat.TSV, false);
+
+        // Then: Every such value is prefixed with ' so it stays text; numbers are unchanged
+        assertTrue(csv.contains("Name:,\"'=HYPERLINK(\"\"http://evil\"\",\"\"x\"\")\"\r\n"), csv);
+        assertTrue(csv.contains("Age:,15\r\n"), csv);
+        assertTrue(csv.contains("Parent Name :,\"'@SUM(A1)\"\r\n"), csv);
+        assertTrue(csv.contains("Address Type:,\"'-2+3\"\r\n"), csv);
+        assertTrue(csv.contains("Address:,\"'\t=1+1\"\r\n"), csv);
+        assertTrue(tsv.contains("Name:\t'=HYPERLINK(\"http://evil\",\"x\")\n"), tsv);
+        assertTrue(tsv.contains("Address:\t' =1+1\n"), tsv);
+
+        System.out.println("✓ Formula-like values neutralized in CSV and TSV");
+    }
+
+    @Test
+    void testFormatNegotiation() {
+        assertEquals(DelimitedFormat.CSV, DelimitedFormat.negotiate("csv", null));
+        assertEquals(DelimitedFormat.TSV, DelimitedFormat.negotiate(null, "text/tab-separated-values;q=0.9"));
+        assertEquals(DelimitedFormat.CSV, DelimitedFormat.negotiate("", "application/json, text/csv"));
+        assertNull(DelimitedFormat.negotiate("xlsx", "text/csv"), "Explicit parameter wins");
+        assertNull(DelimitedFormat.negotiate(null, "*/*"));
+    }
+
+    @Test
+    void testGzipEncodingNegotiation() {
+        assertTrue(DelimitedFormat.acceptsGzip("gzip, deflate, br"));
+        assertTrue(DelimitedFormat.acceptsGzip("deflate;q=1.0, X-GZIP;q=0.5"));
+        assertTrue(DelimitedFormat.acceptsGzip("identity, *;q=0.1"));
+        assertFalse(DelimitedFormat.acceptsGzip(null));
+        assertFalse(DelimitedFormat.acceptsGzip("gzip;q=0"), "q=0 refuses gzip");
+        assertFalse(DelimitedFormat.acceptsGzip("gzip; Q=0.000, *"), "Explicit gzip overrides *");
+        assertFalse(DelimitedFormat.acceptsGzip("x-gzip-foo, identity"), "Only whole coding names match");
+        assertFalse(DelimitedFormat.acceptsGzip("*;q=0"));
+    }
+
+    private String export(String template, Person person, DelimitedFormat format, boolean gzip) throws IOException {
+        return new String(exportBytes(template, person, format, gzip), StandardCharsets.UTF_8);
+    }
+
+    private byte[] exportBytes(String template, Person person, DelimitedFormat format, boolean gzip)
+            throws IOException {
+        TemplateLayout layout = TemplateCache.shared().get(template);
+        assertNotNull(layout, "Template not found: " + template);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DelimitedExporter.export(layout, Collections.singletonMap("person", person), format, out, gzip);
+        return out.toByteArray();
+    }
+}
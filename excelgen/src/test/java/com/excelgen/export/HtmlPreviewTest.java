@@ -0,0 +1,83 @@
+package com.excelgen.export;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HTML preview rendered from the compiled template layout
+ */
+class HtmlPreviewTest {
+
+    @Test
+    void testMinorWithAddressPreview() throws IOException {
+        // Given: A minor with an address containing markup
+        Person minor = new Person("John <b>Doe</b>", 15, "Jane & Co");
+        minor.setAddress(new Address("Home", "123 \"Main\" St"));
+
+        // When: Preview the address template
+        StringWriter html = new StringWriter();
+        HtmlPreviewWriter preview = render("person_template_address.xlsx", minor, 50, html);
+
+        // Then: Same rows as the CSV output, values escaped
+        assertEquals(9, preview.getRowsWritten());
+        assertEquals(0, preview.getOmittedItems());
+        assertTrue(html.toString().startsWith("<table class=\"excelgen-preview\""), html.toString());
+        assertTrue(html.toString().contains("<tr><td>Name:</td><td>John &lt;b&gt;Doe&lt;/b&gt;</td></tr>"));
+        assertTrue(html.toString().contains("<td>Jane &amp; Co</td>"));
+        assertTrue(html.toString().contains("<td>15</td>"), "Whole numbers without .0");
+        assertTrue(html.toString().contains("<td>123 &quot;Main&quot; St</td>"));
+        assertTrue(html.toString().endsWith("</table>\n"));
+
+        System.out.println("✓ Minor with address previewed as HTML");
+    }
+
+    @Test
+    void testLargePhoneListIsCut() throws IOException {
+        // Given: A person with 100,000 phones
+        Person person = new Person("Bulk Person", 40, null);
+        for (int i = 0; i < 100_000; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+
+        // When: Preview it with 5 rows per list
+        StringWriter html = new StringWriter();
+        long start = System.nanoTime();
+        HtmlPreviewWriter preview = render("person_template_with_phones.xlsx", person, 5, html);
+        long micros = (System.nanoTime() - start) / 1000;
+
+        // Then: Only the first 5 phones are shown, followed by the omitted count
+        assertTrue(html.toString().contains("<td>+1-555-4</td></tr>\n<tr class=\"omitted\"><td colspan=\"2\">"
+                + "&hellip; 99995 more items</td></tr>"), html.toString());
+        assertFalse(html.toString().contains("+1-555-5<"));
+        assertEquals(99_995, preview.getOmittedItems());
+        assertTrue(html.getBuffer().length() < 4096, "Preview size does not depend on the list size");
+
+        System.out.println("✓ 100,000 phones previewed in " + micros + " µs (" + html.getBuffer().length() + " chars)");
+    }
+
+    @Test
+    void testRowsParameter() {
+        assertEquals(HtmlPreview.DEFAULT_MAX_ROWS, HtmlPreview.maxRows(null));
+        assertEquals(HtmlPreview.DEFAULT_MAX_ROWS, HtmlPreview.maxRows(" "));
+        assertEquals(10, HtmlPreview.maxRows("10"));
+        assertEquals(HtmlPreview.MAX_ROWS_LIMIT, HtmlPreview.maxRows("1000000"));
+        assertEquals(0, HtmlPreview.maxRows("-3"));
+        assertEquals(-1, HtmlPreview.maxRows("ten"));
+    }
+
+    private HtmlPreviewWriter render(String template, Person person, int maxRows, StringWriter html)
+            throws IOException {
+        TemplateLayout layout = TemplateCache.shared().get(template);
+        assertNotNull(layout, "Template not found: " + template);
+        return HtmlPreview.render(layout, Collections.singletonMap("person", person), maxRows, html);
+    }
+}
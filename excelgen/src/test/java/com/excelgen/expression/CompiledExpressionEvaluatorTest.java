@@ -0,0 +1,194 @@
+package com.excelgen.expression;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.render.WorkbookRenderer;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.expression.JexlExpressionEvaluator;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the compiled expression evaluator gives the same results as JEXL
+ */
+class CompiledExpressionEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+        "person.name",
+        "person.age",
+        "person.address.type",
+        "person.address.addressLine",
+        "person.addressExists",
+        "!person.addressExists",
+        "not person.phoneExists",
+        "person.age < 18",
+        "person.age <= 15",
+        "person.age gt 15",
+        "person.age >= 18.5",
+        "person.age == 15",
+        "person.age != 15",
+        "person.name == 'Expr Person'",
+        "person.name != \"Someone\"",
+        "person.parentName == null",
+        "person.addressExists == true",
+        "phone.phoneType",
+        "phone.phoneType == 'Home'",
+        "settings.locale",
+        "missing",
+        "person.phones"
+    };
+
+    private static Map<String, Object> vars() {
+        Person person = new Person("Expr Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        person.addPhone("Home", "+1-555-0001");
+
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("locale", "en");
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("person", person);
+        vars.put("phone", person.getPhones().get(0));
+        vars.put("settings", settings);
+        return vars;
+    }
+
+    @Test
+    void testResultsMatchJexl() {
+        // Given: A compiled and a plain JEXL evaluator
+        CompiledExpressionEvaluator compiled = new CompiledExpressionEvaluator();
+        JexlExpressionEvaluator jexl = new JexlExpressionEvaluator();
+        Map<String, Object> vars = vars();
+
+        // Then: Every expression evaluates to the same value, without JEXL
+        for (String expression : EXPRESSIONS) {
+            assertEquals(jexl.evaluate(expression, vars), compiled.evaluate(expression, vars), expression);
+            assertTrue(compiled.isCompiled(expression), expression);
+        }
+        assertEquals(0, compiled.getFallbackCount());
+
+        System.out.println("✓ Compiled results match JEXL for " + EXPRESSIONS.length + " expressions");
+    }
+
+    @Test
+    void testComplexExpressionsFallBackToJexl() {
+        // Given: Expressions outside the compiled subset
+        CompiledExpressionEvaluator compiled = new CompiledExpressionEvaluator();
+        JexlExpressionEvaluator jexl = new JexlExpressionEvaluator();
+        Map<String, Object> vars = vars();
+        String[] expressions = {
+            "person.hasPhones()",
+            "person.age + 1",
+            "person.age < 18 && person.addressExists",
+            "(person.age)",
+            "person.phones.size()"
+        };
+
+        // When: They are evaluated
+        for (String expression : expressions) {
+            assertFalse(compiled.isCompiled(expression), expression);
+
+            // Then: JEXL gives the answer
+            assertEquals(jexl.evaluate(expression, vars), compiled.evaluate(expression, vars), expression);
+        }
+        assertEquals(expressions.length, compiled.getFallbackCount());
+
+        System.out.println("✓ Complex expressions evaluated by JEXL");
+    }
+
+    @Test
+    void testUnsupportedValuesFallBackToJexl() {
+        // Given: A string compared to a number
+        CompiledExpressionEvaluator compiled = new CompiledExpressionEvaluator();
+        JexlExpressionEvaluator jexl = new JexlExpressionEvaluator();
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("count", "7");
+
+        // Then: The compiled form hands this case to JEXL
+        assertEquals(jexl.evaluate("count < 10", vars), compiled.evaluate("count < 10", vars));
+        assertEquals(1, compiled.getFallbackCount());
+
+        System.out.println("✓ Unsupported values evaluated by JEXL");
+    }
+
+    @Test
+    void testNullBeansYieldNullWithoutJexl() {
+        // Given: A person without an address
+        CompiledExpressionEvaluator compiled = new CompiledExpressionEvaluator();
+        JexlExpressionEvaluator jexl = new JexlExpressionEvaluator();
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("person", new Person("No Address", 30, null));
+        String[] expressions = {
+            "person.address.type",
+            "person.address.addressLine",
+            "person.address.type == 'Home'",
+            "person.address.type != 'Home'",
+            "person.address.type == null",
+            "person.address.type < 'Home'",
+            "!person.address.addressLine"
+        };
+        long suppressedBefore = NullNavigation.getSuppressedCount();
+
+        // When: Expressions navigate through the missing address
+        for (String expression : expressions) {
+            // Then: Results match JEXL, without JEXL being involved
+            assertEquals(jexl.evaluate(expression, vars), compiled.evaluate(expression, vars), expression);
+        }
+        assertEquals(0, compiled.getFallbackCount());
+        assertEquals(expressions.length, NullNavigation.getSuppressedCount() - suppressedBefore);
+
+        System.out.println("✓ Null beans navigated without JEXL");
+    }
+
+    @Test
+    void testRenderMatchesDefaultJxls() throws IOException {
+        // Given: A minor with an address and several phones
+        Person person = new Person("Render Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 50; i++) {
+            person.addPhone(i % 2 == 0 ? "Home" : "Mobile", "+1-555-" + i);
+        }
+        Context context = new Context();
+        context.putVar("person", person);
+
+        // When: Rendered with the compiled evaluator and with plain JXLS
+        ByteArrayOutputStream compiledOut = new ByteArrayOutputStream();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("person_template_with_phones.xlsx")) {
+            WorkbookRenderer.transform(new XSSFWorkbook(is), compiledOut, context);
+        }
+        ByteArrayOutputStream jexlOut = new ByteArrayOutputStream();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("person_template_with_phones.xlsx")) {
+            JxlsHelper.getInstance().processTemplate(is, jexlOut, context);
+        }
+
+        // Then: Both workbooks have the same cells
+        try (Workbook a = new XSSFWorkbook(new ByteArrayInputStream(compiledOut.toByteArray()));
+             Workbook b = new XSSFWorkbook(new ByteArrayInputStream(jexlOut.toByteArray()))) {
+            Sheet expected = b.getSheetAt(0);
+            Sheet actual = a.getSheetAt(0);
+            assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+            for (int r = 0; r <= expected.getLastRowNum(); r++) {
+                for (int c = 0; c < 2; c++) {
+                    assertEquals(
+                            String.valueOf(expected.getRow(r) == null ? null : expected.getRow(r).getCell(c)),
+                            String.valueOf(actual.getRow(r) == null ? null : actual.getRow(r).getCell(c)),
+                            "Row " + r + " col " + c);
+                }
+            }
+        }
+
+        System.out.println("✓ Compiled render matches default JXLS render");
+    }
+}
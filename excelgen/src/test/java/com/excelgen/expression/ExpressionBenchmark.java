@@ -0,0 +1,60 @@
+package com.excelgen.expression;
+
+import com.excelgen.Person;
+import com.excelgen.sample.PersonGenerator;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.RowSink;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.jxls.expression.JexlExpressionEvaluator;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Prints how long the layout walker takes to render generated persons
+ * without an address through the address template, with plain JEXL and
+ * with the compiled evaluator. Run from the IDE or with:
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.excelgen.expression.ExpressionBenchmark
+ *
+ * Optional argument: number of persons per run (default 200000).
+ */
+public class ExpressionBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int persons = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        TemplateLayout layout = TemplateCache.shared().get("person_template_address.xlsx");
+        RowSink sink = (outputRow, source, values) -> { };
+        PersonGenerator generator = new PersonGenerator(PersonGenerator.DEFAULT_SEED,
+                PersonGenerator.DEFAULT_MAX_PHONES, 0);
+
+        LayoutWalker[] walkers = {
+            new LayoutWalker(new JexlExpressionEvaluator()),
+            new LayoutWalker(new CompiledExpressionEvaluator())
+        };
+        String[] names = {"jexl", "compiled"};
+
+        for (int w = 0; w < walkers.length; w++) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP + RUNS; run++) {
+                long start = System.nanoTime();
+                Iterator<Person> generated = generator.persons(persons).iterator();
+                while (generated.hasNext()) {
+                    walkers[w].walk(layout, Collections.singletonMap("person", generated.next()), sink);
+                }
+                long elapsed = System.nanoTime() - start;
+                if (run >= WARMUP) {
+                    best = Math.min(best, elapsed);
+                }
+            }
+            System.out.printf("%-10s %,d persons in %,d ms (%,.0f persons/s)%n", names[w], persons,
+                    best / 1_000_000, persons / (best / 1e9));
+        }
+        System.out.println("null navigations: " + NullNavigation.getSuppressedCount());
+    }
+}
@@ -0,0 +1,271 @@
+package com.excelgen.importer;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.Phone;
+import com.excelgen.template.LayoutWalker;
+import com.excelgen.template.TemplateBuilder;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateCompiler;
+import com.excelgen.template.TemplateLayout;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for importing filled templates back into persons
+ */
+class WorkbookImporterTest {
+
+    private static final String PHONES_TEMPLATE = "person_template_with_phones.xlsx";
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Person> persons() {
+        Person minor = new Person("Minor Person", 15, "Parent Person");
+        minor.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 5; i++) {
+            minor.addPhone(i % 2 == 0 ? "Home" : "Mobile", "+1-555-000" + i);
+        }
+        Person adult = new Person("Adult Person", 40, null);
+        Person boundary = new Person("Boundary Person", 18, null);
+        boundary.setAddress(new Address("Work", "1 Office Park\nSuite 2"));
+        boundary.addPhone("Work", "+1-555-0100");
+        return Arrays.asList(minor, adult, boundary);
+    }
+
+    @Test
+    void testRoundTripsJxlsOutput() throws IOException {
+        for (String templateName : new String[]{"person_template_address.xlsx", PHONES_TEMPLATE}) {
+            WorkbookImporter<Person> importer = WorkbookImporter.forTemplate(templateName);
+            boolean hasPhones = templateName.equals(PHONES_TEMPLATE);
+
+            for (Person person : persons()) {
+                // Given: A report rendered by JXLS
+                File file = renderJxls(templateName, person);
+
+                // When: It is imported
+                List<ImportedSheet<Person>> sheets = importer.importFile(file);
+
+                // Then: The person comes back as it was rendered
+                assertEquals(1, sheets.size(), templateName);
+                assertEquals(Collections.emptyList(), sheets.get(0).getWarnings(), templateName);
+                Person expected = hasPhones ? person : withoutPhones(person);
+                assertEquals(describe(expected), describe(sheets.get(0).getValue()),
+                        templateName + " / " + person.getName());
+            }
+        }
+
+        System.out.println("✓ JXLS output imported back into persons");
+    }
+
+    @Test
+    void testLabelsAroundValuesAndSkippedExpressions() throws IOException {
+        // Given: A template with labels in the value cells and a method call
+        TemplateLayout layout;
+        try (Workbook workbook = TemplateBuilder.sheet("PersonInfo")
+                .area("B4")
+                .row(1, "Name: ${person.name}", "${person.hasPhones()}")
+                .row(2, "Age:", "${person.age} years")
+                .row(4, "Parent:", "${person.parentName}")
+                .build()) {
+            layout = TemplateCompiler.compile(workbook.getSheetAt(0));
+        }
+        WorkbookImporter<Person> importer = new WorkbookImporter<>(layout, "person", Person.class);
+        File file = tempDir.resolve("labels.xlsx").toFile();
+        writeWalked(layout, file, Collections.singletonList(new Person("Label Person", 33, "Someone")));
+
+        // When: The filled copy is imported
+        List<ImportedSheet<Person>> sheets = importer.importFile(file);
+
+        // Then: Literal text around the values is removed
+        Person person = sheets.get(0).getValue();
+        assertEquals("Label Person", person.getName());
+        assertEquals(33, person.getAge());
+        assertEquals("Someone", person.getParentName());
+        assertEquals(Collections.singletonList("${person.hasPhones()}"), importer.getSkippedExpressions());
+
+        System.out.println("✓ Labels around values removed, method calls skipped");
+    }
+
+    @Test
+    void testInvalidValuesAndUnknownRowsAreReported() throws IOException {
+        // Given: A filled copy with a wrong age and an extra row
+        File file = renderJxls(PHONES_TEMPLATE, persons().get(0));
+        try (Workbook workbook = new XSSFWorkbook(new FileInputStream(file))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            sheet.getRow(3).getCell(1).setCellValue("fifteen");
+            sheet.getRow(2).createCell(3).setCellValue("ignored, outside the template columns");
+            Row notes = sheet.createRow(30);
+            notes.createCell(0).setCellValue("Notes:");
+            notes.createCell(1).setCellValue("Call after 5pm");
+            try (OutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            }
+        }
+
+        // When: It is imported
+        ImportedSheet<Person> sheet = WorkbookImporter.forTemplate(PHONES_TEMPLATE).importFile(file).get(0);
+
+        // Then: Everything else is imported, and the problems are listed
+        assertEquals("Minor Person", sheet.getValue().getName());
+        assertEquals(0, sheet.getValue().getAge());
+        assertEquals(5, sheet.getValue().getPhones().size());
+        assertEquals(Arrays.asList(
+                "Cell B4 (age): 'fifteen' is not a valid int",
+                "Row 31 does not match the template"), sheet.getWarnings());
+
+        System.out.println("✓ Invalid values and unknown rows reported as warnings");
+    }
+
+    @Test
+    void testManySheetsAndHundredThousandPhones() throws IOException {
+        // Given: 50 filled sheets, one of them with 100k phones
+        TemplateLayout layout = TemplateCache.shared().get(PHONES_TEMPLATE);
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Person person = new Person("Person " + i, 20 + i, null);
+            int phones = i == 25 ? 100_000 : 3;
+            for (int p = 0; p < phones; p++) {
+                person.addPhone("Mobile", "+1-555-" + p);
+            }
+            persons.add(person);
+        }
+        File file = tempDir.resolve("bulk.xlsx").toFile();
+        writeWalked(layout, file, persons);
+
+        // When: It is imported one sheet at a time
+        int[] sheets = {0};
+        long[] phones = {0};
+        String[] lastPhone = {null};
+        int count = WorkbookImporter.forTemplate(PHONES_TEMPLATE).importFile(file, file.getName(), sheet -> {
+            Person person = sheet.getValue();
+            assertEquals("Person " + sheets[0], person.getName());
+            assertTrue(sheet.getWarnings().isEmpty(), sheet.getWarnings().toString());
+            phones[0] += person.getPhones().size();
+            if (person.getPhones().size() > 3) {
+                lastPhone[0] = person.getPhones().get(person.getPhones().size() - 1).getPhoneNo();
+            }
+            sheets[0]++;
+        });
+
+        // Then: Every sheet and phone is read
+        assertEquals(50, count);
+        assertEquals(49 * 3 + 100_000, phones[0]);
+        assertEquals("+1-555-99999", lastPhone[0]);
+
+        System.out.println("✓ 50 sheets with " + phones[0] + " phones imported");
+    }
+
+    @Test
+    void testUploadsImportedInParallel() throws IOException {
+        // Given: Several uploaded files
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Person person = new Person("Upload " + i, 30 + i, null);
+            person.addPhone("Home", "+1-555-0" + i);
+            files.add(renderJxls(PHONES_TEMPLATE, person));
+        }
+
+        // When: They are imported together
+        List<ImportedSheet<Person>> sheets = WorkbookImporter.forTemplate(PHONES_TEMPLATE).importAll(files);
+
+        // Then: Each file gives its own person, in file order
+        assertEquals(8, sheets.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(files.get(i).getName(), sheets.get(i).getFileName());
+            assertEquals("Upload " + i, sheets.get(i).getValue().getName());
+            assertEquals(30 + i, sheets.get(i).getValue().getAge());
+            assertEquals("+1-555-0" + i, sheets.get(i).getValue().getPhones().get(0).getPhoneNo());
+        }
+
+        System.out.println("✓ Uploads imported in parallel");
+    }
+
+    @Test
+    void testMissingFileAndTemplate() throws IOException {
+        WorkbookImporter<Person> importer = WorkbookImporter.forTemplate(PHONES_TEMPLATE);
+
+        assertThrows(FileNotFoundException.class, () -> importer.importFile(tempDir.resolve("missing.xlsx").toFile()));
+        assertNull(WorkbookImporter.forTemplate("no_such_template.xlsx"));
+    }
+
+    private File renderJxls(String templateName, Person person) throws IOException {
+        Context context = new Context();
+        context.putVar("person", person);
+        File file = Files.createTempFile(tempDir, "filled_", ".xlsx").toFile();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(templateName);
+             OutputStream out = new FileOutputStream(file)) {
+            JxlsHelper.getInstance().processTemplate(is, out, context);
+        }
+        return file;
+    }
+
+    /**
+     * Write one sheet per person as the layout walker renders it, streaming
+     * the rows so large fixtures stay cheap
+     */
+    private static void writeWalked(TemplateLayout layout, File file, List<Person> persons) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (Person person : persons) {
+                Sheet sheet = workbook.createSheet(person.getName());
+                new LayoutWalker().walk(layout, Collections.singletonMap("person", person), (outputRow, source, values) -> {
+                    Row row = sheet.createRow(outputRow);
+                    for (int c = 0; c < values.length; c++) {
+                        if (values[c] instanceof Number) {
+                            row.createCell(c).setCellValue(((Number) values[c]).doubleValue());
+                        } else if (values[c] != null) {
+                            row.createCell(c).setCellValue(values[c].toString());
+                        }
+                    }
+                });
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static Person withoutPhones(Person person) {
+        return new Person(person.getName(), person.getAge(), person.getParentName(), person.getAddress());
+    }
+
+    private static String describe(Person person) {
+        StringBuilder sb = new StringBuilder()
+                .append(person.getName()).append('|').append(person.getAge())
+                .append('|').append(person.getParentName());
+        if (person.getAddress() != null) {
+            sb.append('|').append(person.getAddress().getType())
+                    .append('|').append(person.getAddress().getAddressLine());
+        }
+        for (Phone phone : person.getPhones()) {
+            sb.append('|').append(phone.getPhoneType()).append('=').append(phone.getPhoneNo());
+        }
+        return sb.toString();
+    }
+}
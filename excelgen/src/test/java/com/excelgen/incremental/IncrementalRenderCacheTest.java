@@ -0,0 +1,95 @@
+package com.excelgen.incremental;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.render.MemoryBudget;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-session LRU of incremental renderers
+ */
+class IncrementalRenderCacheTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @Test
+    void testKeptStateIsChargedToTheBudget() throws IOException {
+        // Given: A cache on its own memory budget
+        MemoryBudget budget = new MemoryBudget(64L << 20, 0);
+        IncrementalRenderCache cache = new IncrementalRenderCache(budget, 64L << 20, 16);
+
+        // When: A session renders once and then with one phone edited
+        assertEquals(-1, render(cache, "session-a", "+1-555-0002"));
+        long retained = cache.getRetainedBytes();
+        assertEquals(1, render(cache, "session-a", "+1-555-9999"));
+
+        // Then: What the renderer keeps is reserved, and released with the session
+        assertTrue(retained > 0);
+        assertEquals(cache.get("session-a", TEMPLATE).getRetainedBytes(), cache.getRetainedBytes());
+        assertEquals(cache.getRetainedBytes(), budget.getReserved());
+        cache.removeSession("session-a");
+        assertEquals(0, cache.getEntries());
+        assertEquals(0, budget.getReserved());
+
+        System.out.println("✓ Incremental state of " + retained + " bytes charged to the memory budget");
+    }
+
+    @Test
+    void testLeastRecentlyUsedSessionIsEvicted() throws IOException {
+        // Given: A cache with room for the state of one session
+        MemoryBudget budget = new MemoryBudget(64L << 20, 0);
+        IncrementalRenderCache probe = new IncrementalRenderCache(budget, 64L << 20, 16);
+        render(probe, "probe", "+1-555-0002");
+        long oneSession = probe.getRetainedBytes();
+        probe.removeSession("probe");
+        IncrementalRenderCache cache = new IncrementalRenderCache(budget, oneSession * 3 / 2, 16);
+        render(cache, "session-a", "+1-555-0002");
+
+        // When: A second session renders
+        render(cache, "session-b", "+1-555-0002");
+
+        // Then: The first session lost its state and renders in full again
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("session-a", TEMPLATE));
+        assertEquals(oneSession, budget.getReserved());
+        assertEquals(-1, render(cache, "session-a", "+1-555-9999"));
+        assertNull(cache.get("session-b", TEMPLATE));
+
+        System.out.println("✓ Least recently used session evicted");
+    }
+
+    @Test
+    void testStateIsDroppedWhenTheBudgetIsUsedUp() throws IOException {
+        // Given: A memory budget that renders have used up
+        MemoryBudget budget = new MemoryBudget(1L << 20, 0);
+        MemoryBudget.Reservation renders = budget.tryReserve(1L << 20);
+        IncrementalRenderCache cache = new IncrementalRenderCache(budget, 64L << 20, 16);
+
+        // When: A session renders twice
+        assertEquals(-1, render(cache, "session-a", "+1-555-0002"));
+        int second = render(cache, "session-a", "+1-555-9999");
+
+        // Then: Nothing is kept, so both are full renders
+        assertEquals(-1, second);
+        assertEquals(0, cache.getRetainedBytes());
+        assertEquals(0, cache.getEntries());
+        assertNull(budget.tryReserve(1));
+        renders.close();
+
+        System.out.println("✓ Incremental state dropped when the memory budget is used up");
+    }
+
+    private static int render(IncrementalRenderCache cache, String sessionId, String workPhone) throws IOException {
+        Person person = new Person("Emma Wilson", 15, "David Wilson");
+        person.setAddress(new Address("Home", "123 Main St"));
+        person.addPhone("Mobile", "+1-555-0001");
+        person.addPhone("Work", workPhone);
+        return cache.render(sessionId, TEMPLATE, person, CompressionPolicy.DEFAULT, new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,203 @@
+package com.excelgen.incremental;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputInspector;
+import com.excelgen.output.WorkbookFingerprint;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.template.WorkbookSnapshotPool;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for incremental re-rendering of a template for one session
+ */
+class IncrementalRenderTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @Test
+    void testChangedPhoneNumberPatchesOneCell() throws IOException {
+        // Given: A first, full render
+        IncrementalRender incremental = new IncrementalRender(TEMPLATE);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        assertEquals(-1, incremental.render(person("+1-555-0002"), CompressionPolicy.DEFAULT, first));
+
+        // When: The same person comes back with one phone number edited
+        Person edited = person("+1-555-9999");
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        int patched = incremental.render(edited, CompressionPolicy.DEFAULT, second);
+
+        // Then: One cell is rewritten and the package equals a full render
+        assertEquals(1, patched);
+        assertEquals(1, incremental.getIncrementalRenders());
+        assertValidPackage(second.toByteArray());
+        assertEquals(Arrays.asList("Work", "+1-555-9999"), OutputInspector.open(second.toByteArray()).row(12));
+        assertSameCells(fullRender(edited), second.toByteArray());
+
+        System.out.println("✓ Changed phone number patched " + patched + " cell");
+    }
+
+    @Test
+    void testRootPropertyAndAddressChanges() throws IOException {
+        // Given: A first render
+        IncrementalRender incremental = new IncrementalRender(TEMPLATE);
+        incremental.render(person("+1-555-0002"), CompressionPolicy.FAST, new ByteArrayOutputStream());
+
+        // When: Name and address line change, with markup in the values
+        Person edited = person("+1-555-0002");
+        edited.setName("Emma <Wilson> & Co");
+        edited.getAddress().setAddressLine("42 Elm St");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int patched = incremental.render(edited, CompressionPolicy.FAST, out);
+
+        // Then: Two cells are patched, the workbook still opens in POI
+        assertEquals(2, patched);
+        assertValidPackage(out.toByteArray());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("Emma <Wilson> & Co", workbook.getSheetAt(0).getRow(2).getCell(1).getStringCellValue());
+            assertEquals("42 Elm St", workbook.getSheetAt(0).getRow(8).getCell(1).getStringCellValue());
+        }
+        assertSameCells(fullRender(edited), out.toByteArray());
+
+        System.out.println("✓ Name and address patched in place");
+    }
+
+    @Test
+    void testStructuralChangesRenderInFull() throws IOException {
+        // Given: A first render of a person with an address
+        IncrementalRender incremental = new IncrementalRender(TEMPLATE);
+        incremental.render(person("+1-555-0002"), CompressionPolicy.DEFAULT, new ByteArrayOutputStream());
+
+        // When: The address is removed, which drops the jx:if address type row
+        Person withoutAddress = person("+1-555-0002");
+        withoutAddress.setAddress(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(-1, incremental.render(withoutAddress, CompressionPolicy.DEFAULT, out));
+        assertSameCells(fullRender(withoutAddress), out.toByteArray());
+
+        // And: A phone is added, which changes the jx:each list
+        Person morePhones = person("+1-555-0002");
+        morePhones.setAddress(null);
+        morePhones.addPhone("Home", "+1-555-0003");
+        assertEquals(-1, incremental.render(morePhones, CompressionPolicy.DEFAULT, new ByteArrayOutputStream()));
+
+        // And: The age changes, which only clears a label in this template
+        Person adult = person("+1-555-0002");
+        adult.setAddress(null);
+        adult.addPhone("Home", "+1-555-0003");
+        adult.setAge(18);
+        out = new ByteArrayOutputStream();
+        assertEquals(1, incremental.render(adult, CompressionPolicy.DEFAULT, out));
+        assertSameCells(fullRender(adult), out.toByteArray());
+
+        assertEquals(3, incremental.getFullRenders());
+        assertEquals(1, incremental.getIncrementalRenders());
+
+        System.out.println("✓ Structural changes fall back to full renders");
+    }
+
+    @Test
+    void testEditCostDoesNotDependOnReportSize() throws IOException {
+        // Given: A person with 30,000 phones, rendered once
+        Person bulk = bulkPerson(30_000, -1);
+        IncrementalRender incremental = new IncrementalRender(TEMPLATE);
+        long start = System.nanoTime();
+        incremental.render(bulk, CompressionPolicy.DEFAULT, new ByteArrayOutputStream());
+        long fullMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // When: One phone number in the middle is edited
+        Person edited = bulkPerson(30_000, 15_000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        int patched = incremental.render(edited, CompressionPolicy.DEFAULT, out);
+        long patchMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then: One cell is patched and the output holds the new number
+        assertEquals(1, patched);
+        assertValidPackage(out.toByteArray());
+        OutputInspector inspector = OutputInspector.open(out.toByteArray());
+        assertEquals("edited", inspector.value(11 + 15_000, 1));
+        assertEquals("+1-555-15001", inspector.value(11 + 15_001, 1));
+
+        System.out.println("✓ 30,000 phones: full render " + fullMillis + " ms, one edit " + patchMillis + " ms");
+    }
+
+    @Test
+    void testBeanDiffPaths() {
+        Person before = person("+1-555-0002");
+        Person after = person("+1-555-0002");
+        after.setParentName("Other Parent");
+        after.getPhones().get(1).setPhoneType("Home");
+        after.addPhone("Fax", "+1-555-0004");
+
+        List<String> changes = BeanDiff.diff("person", before, after);
+
+        assertTrue(changes.contains("person.parentName"), changes.toString());
+        assertTrue(changes.contains("person.phones"), changes.toString());
+        assertTrue(changes.contains("person.phones[1].phoneType"), changes.toString());
+        assertFalse(changes.contains("person.name"));
+        assertTrue(BeanDiff.diff("person", before, person("+1-555-0002")).isEmpty());
+    }
+
+    private static Person person(String workPhone) {
+        Person person = new Person("Emma Wilson", 15, "David Wilson");
+        person.setAddress(new Address("Home", "123 Main St"));
+        person.addPhone("Mobile", "+1-555-0001");
+        person.addPhone("Work", workPhone);
+        return person;
+    }
+
+    private static Person bulkPerson(int phones, int editedIndex) {
+        Person person = new Person("Bulk Person", 40, null);
+        person.setAddress(new Address("Office", "1 Bulk Way"));
+        for (int i = 0; i < phones; i++) {
+            person.addPhone("Mobile", i == editedIndex ? "edited" : "+1-555-" + i);
+        }
+        return person;
+    }
+
+    private static byte[] fullRender(Person person) throws IOException {
+        Context context = new Context();
+        context.putVar("person", person);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WorkbookRenderer.transform(TEMPLATE, WorkbookSnapshotPool.shared().acquire(TEMPLATE),
+                WorkbookOutput.open(out, CompressionPolicy.DEFAULT), context);
+        return out.toByteArray();
+    }
+
+    /**
+     * Same cells, types, styles and values, compared by streaming both outputs
+     */
+    private static void assertSameCells(byte[] expected, byte[] actual) throws IOException {
+        WorkbookFingerprint.Difference difference = WorkbookFingerprint.firstDifference(expected, actual);
+        assertNull(difference, () -> String.valueOf(difference));
+    }
+
+    /**
+     * Read every entry with java.util.zip, which checks sizes and CRCs
+     */
+    private static void assertValidPackage(byte[] xlsx) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            int entries = 0;
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                zip.readAllBytes();
+                entries++;
+            }
+            assertTrue(entries > 5, "Expected a complete xlsx package");
+        }
+    }
+}
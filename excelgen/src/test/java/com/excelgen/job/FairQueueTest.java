@@ -0,0 +1,57 @@
+package com.excelgen.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-client round-robin job queue
+ */
+class FairQueueTest {
+
+    @Test
+    void testClientsAreServedInTurn() throws InterruptedException {
+        // Given: One client with many jobs, then two clients with one job each
+        FairQueue<String> queue = new FairQueue<>(100, 10);
+        for (int i = 1; i <= 4; i++) {
+            queue.offer("bulk", "bulk-" + i);
+        }
+        queue.offer("alice", "alice-1");
+        queue.offer("bob", "bob-1");
+
+        // When: All jobs are taken
+        List<String> order = new ArrayList<>();
+        String item;
+        while ((item = queue.poll(0, TimeUnit.MILLISECONDS)) != null) {
+            order.add(item);
+        }
+
+        // Then: The single jobs do not wait behind all the bulk jobs
+        assertEquals(Arrays.asList("bulk-1", "alice-1", "bob-1", "bulk-2", "bulk-3", "bulk-4"), order);
+        System.out.println("✓ Round robin order: " + order);
+    }
+
+    @Test
+    void testLimits() {
+        FairQueue<String> queue = new FairQueue<>(3, 2);
+
+        assertTrue(queue.offer("a", "a1"));
+        assertTrue(queue.offer("a", "a2"));
+        assertFalse(queue.offer("a", "a3"), "Per-client limit");
+        assertTrue(queue.offer("b", "b1"));
+        assertFalse(queue.offer("c", "c1"), "Total capacity");
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.size("a"));
+    }
+
+    @Test
+    void testPollTimesOutWhenEmpty() throws InterruptedException {
+        FairQueue<String> queue = new FairQueue<>(1, 1);
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,268 @@
+package com.excelgen.job;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.render.RenderScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the crash-safe job journal and resuming batches from it
+ */
+class JobJournalTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testUnfinishedJobIsRecoveredWithCheckpoints() throws IOException {
+        // Given: A batch of two persons with the first one checkpointed
+        RenderJob job = batch("job-1", person("Ann", 15, true, 2), person("Bob", 40, false, 0));
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            journal.awaitDurable(journal.submitted(job));
+            journal.checkpoint(job.getId(), 0, "report-0");
+        }
+
+        // When: The journal is opened again, as after a restart
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            List<JobJournal.RecoveredJob> recovered = journal.recover();
+
+            // Then: The job comes back with its persons and the finished report
+            assertEquals(1, recovered.size());
+            JobJournal.RecoveredJob copy = recovered.get(0);
+            assertEquals("job-1", copy.getId());
+            assertEquals(TEMPLATE, copy.getTemplateName());
+            assertEquals(CompressionPolicy.FAST, copy.getCompression());
+            assertEquals("report-0", copy.getReportId(0));
+            assertNull(copy.getReportId(1));
+
+            Person ann = copy.getPersons().get(0);
+            assertEquals("Ann", ann.getName());
+            assertEquals("Home", ann.getAddress().getType());
+            assertEquals(2, ann.getPhones().size());
+            assertEquals("+1-555-1", ann.getPhones().get(1).getPhoneNo());
+            assertNull(copy.getPersons().get(1).getAddress());
+        }
+
+        System.out.println("✓ Unfinished job recovered with its checkpoint");
+    }
+
+    @Test
+    void testFinishedJobsAreCompactedAway() throws IOException {
+        // Given: One finished and one unfinished job
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            journal.submitted(batch("done", person("A", 30, false, 500)));
+            journal.finished("done");
+            journal.awaitDurable(journal.submitted(batch("open", person("B", 30, false, 1))));
+        }
+        long before = Files.size(tempDir.resolve(JobJournal.FILE_NAME));
+
+        // When/Then: Only the unfinished job survives and the file shrinks
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            assertEquals(1, journal.recover().size());
+            assertEquals("open", journal.recover().get(0).getId());
+        }
+        assertTrue(Files.size(tempDir.resolve(JobJournal.FILE_NAME)) < before);
+    }
+
+    @Test
+    void testTornRecordIsIgnored() throws IOException {
+        // Given: A journal whose last record was cut off by a crash
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            journal.submitted(batch("job-1", person("A", 30, false, 0)));
+        }
+        Files.write(tempDir.resolve(JobJournal.FILE_NAME), new byte[]{0, 0, 0, 50, 1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        // When/Then: The complete records are still recovered
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            assertEquals(1, journal.recover().size());
+            journal.awaitDurable(journal.checkpoint("job-1", 0, "report-0"));
+        }
+        try (JobJournal journal = JobJournal.open(tempDir, 10)) {
+            assertEquals("report-0", journal.recover().get(0).getReportId(0));
+        }
+
+        System.out.println("✓ Torn tail ignored");
+    }
+
+    @Test
+    void testSharedDirectoryIsRefused() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        // Given: A journal in a directory other users may write to
+        Path shared = tempDir.resolve("shared");
+        try (JobJournal journal = JobJournal.open(shared, 10)) {
+            journal.awaitDurable(journal.submitted(batch("planted", person("Eve", 30, false, 0))));
+        }
+        Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        // When: It is opened again
+        // Then: Nothing is replayed from it
+        assertThrows(IOException.class, () -> JobJournal.open(shared, 10));
+
+        System.out.println("✓ Journal in a shared directory refused");
+    }
+
+    @Test
+    void testMissingDirectoryIsCreatedOwnerOnly() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        // Given: A journal directory that does not exist yet
+        Path directory = tempDir.resolve("nested").resolve("jobs");
+
+        // When: The journal is opened
+        try (JobJournal journal = JobJournal.open(directory, 10)) {
+            assertTrue(journal.recover().isEmpty());
+        }
+
+        // Then: Only the process user can list or enter it
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)));
+    }
+
+    @Test
+    void testRejectedJobIsNotResumed() throws Exception {
+        // Given: A stopped service whose client may queue one job
+        OutputSpool spool = new OutputSpool(tempDir.resolve("spool"), TimeUnit.HOURS.toMillis(1));
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            RenderJobService service = new RenderJobService(spool, RenderScheduler.shared(), MemoryBudget.shared(),
+                    journal, 1, 10, 1);
+            service.shutdown();
+            Thread.sleep(50);
+            Person person = person("A", 30, false, 0);
+            RenderJob queued = service.submit("client", TEMPLATE, person, CompressionPolicy.DEFAULT);
+
+            // When: A second job is rejected
+            assertThrows(RenderRejectedException.class,
+                    () -> service.submit("client", TEMPLATE, person, CompressionPolicy.DEFAULT));
+
+            // Then: After a restart only the accepted job is resumed
+            journal.close();
+            try (JobJournal reopened = JobJournal.open(tempDir.resolve("journal"), 10)) {
+                List<JobJournal.RecoveredJob> recovered = reopened.recover();
+                assertEquals(1, recovered.size());
+                assertEquals(queued.getId(), recovered.get(0).getId());
+            }
+        }
+
+        System.out.println("✓ Rejected job is not resumed");
+    }
+
+    @Test
+    void testBatchResumesAfterLastCheckpoint() throws Exception {
+        // Given: A batch of three whose first report was rendered before a restart
+        OutputSpool spool = new OutputSpool(tempDir.resolve("spool"), TimeUnit.HOURS.toMillis(1));
+        SpooledReport first = spool.spool("application/vnd.ms-excel", "first.xls",
+                out -> out.write("rendered before restart".getBytes(StandardCharsets.UTF_8)));
+        RenderJob job = batch("batch-1",
+                person("Ann", 15, true, 3), person("Bob", 40, true, 5), person("Cid", 12, false, 1));
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            journal.submitted(job);
+            journal.awaitDurable(journal.checkpoint(job.getId(), 0, first.getId()));
+        }
+
+        // When: A new service starts on the same journal
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            RenderJobService service = new RenderJobService(spool, RenderScheduler.shared(), MemoryBudget.shared(),
+                    journal, 1, 10, 10);
+            try {
+                RenderJob resumed = service.find("batch-1");
+                assertNotNull(resumed, "Unfinished batch should be resumed");
+                long deadline = System.currentTimeMillis() + 30_000;
+                while (resumed.getStatus() != RenderJob.Status.DONE && resumed.getStatus() != RenderJob.Status.FAILED
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+
+                // Then: Only the remaining persons were rendered
+                assertEquals(RenderJob.Status.DONE, resumed.getStatus(), "Job error: " + resumed.getError());
+                assertEquals(first.getId(), resumed.getReportId(0));
+                assertNotNull(spool.find(resumed.getReportId(1)));
+                assertNotNull(spool.find(resumed.getReportId(2)));
+                assertEquals(3, resumed.getPersonsDone());
+            } finally {
+                service.shutdown();
+            }
+        }
+
+        // And: A further restart has nothing left to resume
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            assertTrue(journal.recover().isEmpty());
+        }
+
+        System.out.println("✓ Batch resumed from its last checkpoint");
+    }
+
+    @Test
+    void testShutdownStopsBatchAtCheckpoint() throws Exception {
+        // Given: A service rendering a long batch
+        OutputSpool spool = new OutputSpool(tempDir.resolve("spool"), TimeUnit.HOURS.toMillis(1));
+        Person[] persons = new Person[20];
+        for (int i = 0; i < persons.length; i++) {
+            persons[i] = person("P" + i, 30, true, 2_000);
+        }
+        String jobId;
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            RenderJobService service = new RenderJobService(spool, RenderScheduler.shared(), MemoryBudget.shared(),
+                    journal, 1, 10, 10);
+            RenderJob job = service.submitBatch("client", TEMPLATE, Arrays.asList(persons), CompressionPolicy.FAST);
+            jobId = job.getId();
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (job.getPersonsDone() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // When: The service is shut down mid-batch
+            service.shutdown();
+
+            // Then: The worker stops after the person it was rendering
+            assertTrue(service.awaitTermination(30_000), "Worker should stop");
+            assertTrue(job.getPersonsDone() < persons.length, "Batch should not run to the end");
+            assertNotEquals(RenderJob.Status.FAILED, job.getStatus(), "Job error: " + job.getError());
+        }
+
+        // And: The next start resumes it after its last checkpoint
+        try (JobJournal journal = JobJournal.open(tempDir.resolve("journal"), 10)) {
+            List<JobJournal.RecoveredJob> recovered = journal.recover();
+            assertEquals(1, recovered.size());
+            assertEquals(jobId, recovered.get(0).getId());
+            assertNotNull(recovered.get(0).getReportId(0));
+        }
+
+        System.out.println("✓ Shutdown stopped the batch at a checkpoint");
+    }
+
+    private RenderJob batch(String id, Person... persons) {
+        return new RenderJob(id, "client", TEMPLATE, Arrays.asList(persons), CompressionPolicy.FAST);
+    }
+
+    private Person person(String name, int age, boolean address, int phones) {
+        Person person = new Person(name, age, age < 18 ? "Parent of " + name : null);
+        if (address) {
+            person.setAddress(new Address("Home", "1 Main St"));
+        }
+        for (int i = 0; i < phones; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+        return person;
+    }
+}
@@ -0,0 +1,120 @@
+package com.excelgen.job;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.output.CompressionPolicy;
+import com.excelgen.output.OutputSpool;
+import com.excelgen.output.SpooledReport;
+import com.excelgen.render.MemoryBudget;
+import com.excelgen.render.RenderLane;
+import com.excelgen.render.RenderRejectedException;
+import com.excelgen.render.RenderScheduler;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for asynchronous render jobs
+ */
+class RenderJobServiceTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @TempDir
+    Path spoolDir;
+
+    private OutputSpool spool;
+    private RenderJobService service;
+
+    @BeforeEach
+    void setUp() {
+        spool = new OutputSpool(spoolDir, TimeUnit.HOURS.toMillis(1));
+        RenderScheduler scheduler = new RenderScheduler(5_000,
+                new RenderLane("interactive", 2, 10, 2, 10_000),
+                new RenderLane("bulk", 1, 10, 1, 10_000));
+        service = new RenderJobService(spool, scheduler, new MemoryBudget(512L * 1024 * 1024, 10_000), 1, 10, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testJobRendersIntoSpool() throws Exception {
+        // Given: A minor with an address and 300 phones
+        Person person = new Person("Job Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 300; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+
+        // When: The job is submitted and polled until it finishes
+        RenderJob job = service.submit("client-a", TEMPLATE, person, CompressionPolicy.FAST);
+        assertNotNull(service.find(job.getId()));
+        waitUntilFinished(job);
+
+        // Then: It is done, its progress covers all rows and the report is in the spool
+        assertEquals(RenderJob.Status.DONE, job.getStatus(), "Job error: " + job.getError());
+        assertTrue(job.getEstimatedRows() >= 300);
+        assertEquals(job.getEstimatedRows(), job.getRowsDone());
+
+        SpooledReport report = spool.find(job.getReportId());
+        assertNotNull(report);
+        try (InputStream is = Files.newInputStream(report.getFile());
+             Workbook workbook = new XSSFWorkbook(is)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("+1-555-299", sheet.getRow(11 + 299).getCell(1).getStringCellValue());
+        }
+
+        System.out.println("✓ Job rendered " + job.getRowsDone() + " rows into " + report.getLength() + " bytes");
+    }
+
+    @Test
+    void testUnknownTemplateFails() throws Exception {
+        RenderJob job = service.submit("client-a", "no_such_template.xlsx", new Person("X", 30, null), CompressionPolicy.DEFAULT);
+        waitUntilFinished(job);
+
+        assertEquals(RenderJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getError().contains("no_such_template.xlsx"));
+    }
+
+    @Test
+    void testClientQueueLimit() throws Exception {
+        // Given: A service whose worker has stopped, so submitted jobs stay queued
+        service.shutdown();
+        service = new RenderJobService(spool, RenderScheduler.shared(), MemoryBudget.shared(), 1, 10, 2);
+        service.shutdown();
+        Thread.sleep(50);
+
+        // When: One client submits more than its share
+        Person person = new Person("X", 30, null);
+        service.submit("greedy", TEMPLATE, person, CompressionPolicy.DEFAULT);
+        service.submit("greedy", TEMPLATE, person, CompressionPolicy.DEFAULT);
+
+        // Then: The third is rejected, other clients can still submit
+        assertThrows(RenderRejectedException.class,
+                () -> service.submit("greedy", TEMPLATE, person, CompressionPolicy.DEFAULT));
+        assertNotNull(service.submit("polite", TEMPLATE, person, CompressionPolicy.DEFAULT));
+        assertEquals(3, service.getQueued());
+    }
+
+    private void waitUntilFinished(RenderJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (job.getStatus() != RenderJob.Status.DONE && job.getStatus() != RenderJob.Status.FAILED
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.excelgen.output;
+
+import com.excelgen.Person;
+import com.excelgen.sample.PersonGenerator;
+import com.sun.management.OperatingSystemMXBean;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Prints CPU time and output size of every compression policy for each
+ * bundled template. CPU time is that of the whole process, so parts
+ * deflated on the parallel pool are counted too; it also includes GC and
+ * JIT threads, so run with nothing else in the JVM. Run from the IDE or
+ * with:
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.excelgen.output.CompressionBenchmark
+ *
+ * Optional argument: number of phones per person (default 20000).
+ */
+public class CompressionBenchmark {
+
+    private static final String[] TEMPLATES = {
+        "person_template.xlsx",
+        "person_template_address.xlsx",
+        "person_template_old_style.xlsx",
+        "person_template_with_phones.xlsx"
+    };
+
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int phones = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        Person person = new PersonGenerator().person(0, phones);
+
+        OperatingSystemMXBean os = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+
+        System.out.println("Phones per person: " + phones);
+        System.out.printf("%-34s %-8s %12s %12s%n", "Template", "Policy", "CPU ms/run", "Bytes");
+        for (String template : TEMPLATES) {
+            for (CompressionPolicy policy : CompressionPolicy.values()) {
+                for (int i = 0; i < WARMUP; i++) {
+                    render(template, person, policy);
+                }
+
+                long cpuStart = os.getProcessCpuTime();
+                int bytes = 0;
+                for (int i = 0; i < RUNS; i++) {
+                    bytes = render(template, person, policy);
+                }
+                double cpuMs = (os.getProcessCpuTime() - cpuStart) / 1_000_000.0 / RUNS;
+
+                System.out.printf("%-34s %-8s %12.1f %12d%n", template, policy, cpuMs, bytes);
+            }
+        }
+    }
+
+    private static int render(String template, Person person, CompressionPolicy policy) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream is = CompressionBenchmark.class.getClassLoader().getResourceAsStream(template);
+             OutputStream out = WorkbookOutput.open(bytes, policy)) {
+
+            Context context = new Context();
+            context.putVar("person", person);
+            JxlsHelper.getInstance().processTemplate(is, out, context);
+        }
+        return bytes.size();
+    }
+}
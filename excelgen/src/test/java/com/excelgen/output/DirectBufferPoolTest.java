@@ -0,0 +1,57 @@
+package com.excelgen.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the pool of direct staging buffers
+ */
+class DirectBufferPoolTest {
+
+    @Test
+    void testReleasedBufferIsReusedCleared() {
+        // Given: A pool with one buffer that was written to and released
+        DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+        ByteBuffer first = pool.acquire(4096);
+        assertTrue(first.isDirect());
+        first.put(new byte[100]);
+        pool.release(first);
+
+        // When: A buffer of the same capacity is acquired
+        ByteBuffer second = pool.acquire(4096);
+
+        // Then: It is the same buffer, cleared, and only one was allocated
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(4096, second.limit());
+        assertEquals(1, pool.getAllocated());
+        assertEquals(2, pool.getAcquired());
+        assertEquals(4096, pool.getInUseBytes());
+
+        System.out.println("✓ Released buffers are reused");
+    }
+
+    @Test
+    void testPoolKeepsAtMostItsLimit() {
+        // Given: A pool that keeps at most 8 KB
+        DirectBufferPool pool = new DirectBufferPool(8192);
+        ByteBuffer a = pool.acquire(4096);
+        ByteBuffer b = pool.acquire(4096);
+        ByteBuffer c = pool.acquire(4096);
+
+        // When: All three buffers are released
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        // Then: Two are kept and the third is left to the garbage collector
+        assertEquals(8192, pool.getPooledBytes());
+        assertEquals(0, pool.getInUseBytes());
+        assertEquals(1, pool.getDiscarded());
+
+        System.out.println("✓ Pool never keeps more than its limit");
+    }
+}
@@ -0,0 +1,139 @@
+package com.excelgen.output;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the streaming output inspector
+ */
+class OutputInspectorTest {
+
+    private static final int MILLION = 1_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadsRenderedTemplate() throws IOException {
+        // Given: A rendered phones template
+        Person person = new Person("Inspect Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        person.addPhone("Mobile", "+1-555-0001");
+        person.addPhone("Work", "+1-555-0002");
+        Context context = new Context();
+        context.putVar("person", person);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("person_template_with_phones.xlsx")) {
+            JxlsHelper.getInstance().processTemplate(is, out, context);
+        }
+
+        // When: It is inspected
+        OutputInspector inspector = OutputInspector.open(out.toByteArray());
+
+        // Then: Values are read as Excel displays them
+        assertEquals("Inspect Person", inspector.value(2, 1));
+        assertEquals("15", inspector.value(3, 1));
+        assertEquals(Arrays.asList("Mobile", "+1-555-0001"), inspector.row(11));
+        assertEquals("", inspector.value(4, 1));
+        assertEquals(0, inspector.count(cell -> cell.getValue().contains("${")));
+
+        OutputInspector.CellValue phones = inspector.findFirst(cell -> cell.getValue().equals("Phone Numbers:"));
+        assertNotNull(phones);
+        assertEquals(10, phones.getRow());
+        assertEquals(0, phones.getColumn());
+
+        System.out.println("✓ Rendered template read by the inspector");
+    }
+
+    @Test
+    void testRowAndCellPredicates() throws IOException {
+        // Given: An output with 1000 numbered rows
+        File file = writeRows(1000);
+        OutputInspector inspector = OutputInspector.open(file);
+
+        // When/Then: Predicates restrict what is seen
+        long[] seen = {0};
+        inspector.scan(row -> row % 10 == 0, cell -> cell.getColumn() == 1, cell -> seen[0]++);
+        assertEquals(100, seen[0]);
+
+        assertTrue(inspector.allMatch(row -> true, cell -> cell.getColumn() != 0
+                || cell.getValue().startsWith("Row ")));
+        assertFalse(inspector.allMatch(row -> row > 500, cell -> !cell.getValue().equals("Row 700")));
+        assertEquals(999, inspector.lastRow());
+
+        System.out.println("✓ Row and cell predicates applied");
+    }
+
+    @Test
+    void testMillionRowOutputInSmallHeap() throws IOException {
+        // Given: An output with a million rows written by SXSSF
+        File file = writeRows(MILLION);
+
+        // When: The whole output is scanned
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long[] cells = {0};
+        long[] peak = {0};
+        String[] last = {null};
+        OutputInspector.open(file).scan(cell -> {
+            cells[0]++;
+            if (cell.getRow() == MILLION - 1 && cell.getColumn() == 0) {
+                last[0] = cell.getValue();
+            }
+            if ((cells[0] & 0xFFFF) == 0) {
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - usedBefore);
+            }
+        });
+
+        // Then: Every cell is seen, without holding the workbook in memory
+        assertEquals(2L * MILLION, cells[0]);
+        assertEquals("Row 999999", last[0]);
+        assertTrue(peak[0] < 256L * 1024 * 1024, "Heap grew by " + (peak[0] >> 20) + " MB");
+
+        System.out.println("✓ Million-row output scanned, heap growth about " + (peak[0] >> 20) + " MB");
+    }
+
+    @Test
+    void testMissingFile() {
+        OutputInspector inspector = OutputInspector.open(tempDir.resolve("missing.xlsx").toFile());
+
+        assertThrows(IOException.class, () -> inspector.value(0, 0));
+    }
+
+    private File writeRows(int rows) throws IOException {
+        File file = tempDir.resolve("rows_" + rows + ".xlsx").toFile();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try (OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Rows");
+            for (int r = 0; r < rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("Row " + r);
+                row.createCell(1).setCellValue(r);
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        return file;
+    }
+}
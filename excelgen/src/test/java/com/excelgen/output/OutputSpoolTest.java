@@ -0,0 +1,129 @@
+package com.excelgen.output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for spooling reports and serving byte ranges from them
+ */
+class OutputSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSpoolAndResumeFromOffset() throws IOException {
+        // Given: A spooled report
+        OutputSpool spool = new OutputSpool(tempDir, 60_000);
+        byte[] content = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        SpooledReport report = spool.spool("application/vnd.ms-excel", "PersonReport.xls",
+                out -> out.write(content));
+
+        // When: The client resumes after receiving the first 10 bytes
+        SpooledReport found = spool.find(report.getId());
+        ByteRange range = ByteRange.parse("bytes=10-", found.getLength());
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        found.copyTo(range.getStart(), range.getLength(), received);
+
+        // Then: Only the remaining bytes are sent
+        assertEquals("abcdefghij", received.toString(StandardCharsets.US_ASCII));
+        assertEquals("bytes 10-19/20", range.toContentRange(found.getLength()));
+        assertEquals("PersonReport.xls", found.getFileName());
+        assertEquals(report.getETag(), found.getETag(), "ETag must be stable across lookups");
+
+        System.out.println("✓ Download resumed at byte 10 of spooled report " + report.getId());
+    }
+
+    @Test
+    void testUnknownAndMalformedIdsAreNotFound() throws IOException {
+        OutputSpool spool = new OutputSpool(tempDir, 60_000);
+
+        assertNull(spool.find("../../etc/passwd"), "Path traversal must be rejected");
+        assertNull(spool.find("00000000-0000-0000-0000-000000000000"));
+        assertNull(spool.find(null));
+    }
+
+    @Test
+    void testSharedDirectoryIsRefused() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        // Given: A spool directory other users may write to
+        Path shared = Files.createDirectory(tempDir.resolve("shared"));
+        Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+        OutputSpool spool = new OutputSpool(shared, 60_000);
+
+        // When: A report is spooled
+        // Then: Nothing is written there
+        assertThrows(IOException.class, () -> spool.spool("text/csv", "x.csv", out -> out.write(1)));
+        try (Stream<Path> files = Files.list(shared)) {
+            assertEquals(0, files.count());
+        }
+
+        System.out.println("✓ Shared spool directory refused");
+    }
+
+    @Test
+    void testMissingDirectoryIsCreatedOwnerOnly() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path directory = tempDir.resolve("nested").resolve("spool");
+
+        new OutputSpool(directory, 60_000).spool("text/csv", "x.csv", out -> out.write(1));
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)));
+    }
+
+    @Test
+    void testFailedRenderLeavesNothingBehind() throws IOException {
+        OutputSpool spool = new OutputSpool(tempDir, 60_000);
+
+        assertThrows(IOException.class, () -> spool.spool("text/csv", "x.csv", out -> {
+            out.write(1);
+            throw new IOException("render failed");
+        }));
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "Partial spool file should be deleted");
+        }
+    }
+
+    @Test
+    void testExpiredReportsArePurged() throws IOException {
+        OutputSpool spool = new OutputSpool(tempDir, 0);
+        SpooledReport report = spool.spool("text/csv", "x.csv", out -> out.write(1));
+
+        Files.setLastModifiedTime(report.getFile(),
+                FileTime.fromMillis(System.currentTimeMillis() - 1_000));
+        spool.purgeExpired();
+
+        assertNull(spool.find(report.getId()));
+    }
+
+    @Test
+    void testRangeParsing() {
+        assertNull(ByteRange.parse(null, 100));
+        assertNull(ByteRange.parse("bytes=0-10,20-30", 100), "Multiple ranges fall back to the full body");
+        assertNull(ByteRange.parse("items=0-10", 100));
+
+        ByteRange suffix = ByteRange.parse("bytes=-30", 100);
+        assertEquals(70, suffix.getStart());
+        assertEquals(99, suffix.getEnd());
+
+        ByteRange clipped = ByteRange.parse("bytes=90-500", 100);
+        assertEquals(10, clipped.getLength());
+
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=100-", 100));
+        assertEquals("bytes */100", ByteRange.UNSATISFIABLE.toContentRange(100));
+    }
+}
@@ -0,0 +1,188 @@
+package com.excelgen.output;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel deflate zip writer
+ */
+class ParallelDeflateZipOutputStreamTest {
+
+    @Test
+    void testLargeAndSmallEntriesRoundTrip() throws IOException {
+        // Given: One entry far above the parallel threshold and one below it
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 3_000_000; i++) {
+            sb.append("<row r=\"").append(i).append("\"><c t=\"s\"><v>").append(i % 97).append("</v></c></row>");
+        }
+        byte[] large = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] small = "<workbook/>".getBytes(StandardCharsets.UTF_8);
+
+        // When: Write with small blocks so the large entry is split many times
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ParallelDeflateZipOutputStream zip = new ParallelDeflateZipOutputStream(
+                bytes, Deflater.DEFAULT_COMPRESSION, 64 * 1024, 256 * 1024)) {
+            zip.putArchiveEntry(new ZipArchiveEntry("xl/worksheets/sheet1.xml"));
+            for (int offset = 0; offset < large.length; offset += 10_000) {
+                zip.write(large, offset, Math.min(10_000, large.length - offset));
+            }
+            zip.closeArchiveEntry();
+
+            zip.putArchiveEntry(new ZipArchiveEntry("xl/workbook.xml"));
+            zip.write(small);
+            zip.closeArchiveEntry();
+        }
+
+        // Then: A standard zip reader inflates both entries and checks their CRC
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ZipEntry first = in.getNextEntry();
+            assertEquals("xl/worksheets/sheet1.xml", first.getName());
+            assertArrayEquals(large, in.readAllBytes(), "Large entry should survive the round trip");
+
+            ZipEntry second = in.getNextEntry();
+            assertEquals("xl/workbook.xml", second.getName());
+            assertArrayEquals(small, in.readAllBytes());
+            assertNull(in.getNextEntry());
+        }
+        assertTrue(bytes.size() < large.length / 4, "Large entry should be compressed");
+
+        System.out.println("✓ " + large.length + " bytes deflated in parallel to " + bytes.size() + " bytes");
+    }
+
+    @Test
+    void testBuffersAreReturnedToThePool() throws IOException {
+        // Given: A private pool and an entry large enough to go parallel
+        DirectBufferPool pool = new DirectBufferPool(64L * 1024 * 1024);
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("<row/>".charAt(i % 6));
+        }
+
+        // When: Two packages are written one after the other
+        for (int round = 0; round < 2; round++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ParallelDeflateZipOutputStream zip = new ParallelDeflateZipOutputStream(
+                    bytes, Deflater.BEST_SPEED, 64 * 1024, 256 * 1024, pool)) {
+                zip.putArchiveEntry(new ZipArchiveEntry("xl/worksheets/sheet1.xml"));
+                for (int i = 0; i < 8; i++) {
+                    zip.write(data);
+                }
+                zip.closeArchiveEntry();
+            }
+            try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertNotNull(in.getNextEntry());
+                assertEquals(8 * data.length, in.readAllBytes().length);
+            }
+        }
+
+        // Then: Every buffer went back and the second package reused them
+        assertEquals(0, pool.getInUseBytes());
+        assertTrue(pool.getPooledBytes() > 0);
+        assertTrue(pool.getAllocated() < pool.getAcquired() / 2,
+                "Expected most buffers to be reused: " + pool.getAllocated() + " of " + pool.getAcquired());
+
+        System.out.println("✓ " + pool.getAcquired() + " buffer acquires served by "
+                + pool.getAllocated() + " direct allocations");
+    }
+
+    @Test
+    void testDeflatedChunksAreStreamedBeforeTheEntryCloses(@TempDir Path tempDir) throws IOException {
+        // Given: 32 MB of rows with random values, which deflate to several megabytes
+        DirectBufferPool pool = new DirectBufferPool(64L * 1024 * 1024);
+        SplittableRandom random = new SplittableRandom(7);
+        byte[] data = new byte[1024 * 1024];
+        CRC32 crc = new CRC32();
+        Path file = tempDir.resolve("large.zip");
+        long written;
+        long maxInUse = 0;
+
+        // When: The entry is written, checking the output before it is closed
+        try (OutputStream fileOut = Files.newOutputStream(file);
+             ParallelDeflateZipOutputStream zip = new ParallelDeflateZipOutputStream(
+                     fileOut, Deflater.BEST_SPEED, 64 * 1024, 256 * 1024, pool)) {
+            zip.putArchiveEntry(new ZipArchiveEntry("xl/worksheets/sheet1.xml"));
+            for (int i = 0; i < 32; i++) {
+                for (int j = 0; j < data.length; j++) {
+                    data[j] = (byte) ('0' + random.nextInt(10));
+                }
+                crc.update(data);
+                zip.write(data);
+                maxInUse = Math.max(maxInUse, pool.getInUseBytes());
+            }
+            fileOut.flush();
+            written = Files.size(file);
+            zip.closeArchiveEntry();
+        }
+
+        // Then: Most compressed data was on disk before the close, in bounded direct memory
+        long total = Files.size(file);
+        assertTrue(written > total / 2, "Only " + written + " of " + total + " bytes written before close");
+        assertTrue(maxInUse < 8L * 1024 * 1024, "Direct memory in use grew to " + maxInUse);
+        assertEquals(0, pool.getInUseBytes());
+
+        // And: The central directory and data descriptor carry the real CRC and sizes
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            ZipEntry entry = zipFile.getEntry("xl/worksheets/sheet1.xml");
+            assertEquals(32L * data.length, entry.getSize());
+            assertEquals(crc.getValue(), entry.getCrc());
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                assertEquals(32L * data.length, in.transferTo(OutputStream.nullOutputStream()));
+            }
+        }
+
+        System.out.println("✓ " + written + " of " + total + " compressed bytes streamed before the entry closed");
+    }
+
+    @Test
+    void testJxlsOutputWithLargeSheetOpensInPoi() throws IOException {
+        // Given: A person whose phone list makes a sheet XML above the threshold
+        Person person = new Person("Bulk Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 60_000; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+
+        // When: JXLS writes through the parallel stream
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream templateStream = getClass().getResourceAsStream("/person_template_with_phones.xlsx");
+             OutputStream out = new ParallelDeflateZipOutputStream(bytes, Deflater.BEST_SPEED)) {
+            Context context = new Context();
+            context.putVar("person", person);
+            JxlsHelper.getInstance().processTemplate(templateStream, out, context);
+        }
+
+        // Then: POI reads the workbook back
+        try (Workbook wb = new XSSFWorkbook(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Sheet sheet = wb.getSheetAt(0);
+            assertEquals("Bulk Person", sheet.getRow(2).getCell(1).getStringCellValue());
+            assertEquals("+1-555-59999", sheet.getRow(11 + 59_999).getCell(1).getStringCellValue());
+        }
+
+        System.out.println("✓ 60,000 phone rows written with parallel deflate: " + bytes.size() + " bytes");
+    }
+}
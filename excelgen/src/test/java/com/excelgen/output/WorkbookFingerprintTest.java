@@ -0,0 +1,107 @@
+package com.excelgen.output;
+
+import com.excelgen.Person;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.sample.PersonGenerator;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the canonical content fingerprint of outputs
+ */
+class WorkbookFingerprintTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    /**
+     * Golden fingerprint of person 1 of seed 3 with 50 phones. Update it
+     * only when a change to the template or renderer is meant to change
+     * the output.
+     */
+    private static final String GOLDEN = "93e140e32baafaf294d2b33eca50b516749aa3115592c25cc50e9a68fede1373";
+
+    @Test
+    void testEnginesMatchGoldenFingerprint() throws IOException {
+        // Given: One generated person
+        Person person = new PersonGenerator(3).person(1, 50);
+
+        // When: It is rendered by JXLS and by the generated renderer
+        byte[] jxls = render(person, false);
+        byte[] generated = render(person, true);
+
+        // Then: Both match the golden fingerprint, although their bytes differ
+        WorkbookFingerprint expected = WorkbookFingerprint.of(jxls);
+        assertEquals(GOLDEN, expected.getHash(), "Output of the golden render changed");
+        assertEquals(expected, WorkbookFingerprint.of(generated));
+        assertNull(WorkbookFingerprint.firstDifference(jxls, generated));
+        assertEquals(64, expected.getHash().length());
+        assertTrue(expected.getCells() > 50);
+
+        System.out.println("✓ JXLS and generated renderer: " + expected);
+    }
+
+    @Test
+    void testFirstDifferenceIsPinpointed() throws IOException {
+        // Given: Two renders where only phone 500 differs
+        PersonGenerator generator = new PersonGenerator(3);
+        Person original = generator.person(2, 1_000);
+        Person edited = generator.person(2, 1_000);
+        edited.getPhones().get(500).setPhoneNo("+1-000-000-0000");
+        byte[] expected = render(original, false);
+        byte[] actual = render(edited, false);
+
+        // When: They are compared
+        WorkbookFingerprint.Difference difference = WorkbookFingerprint.firstDifference(expected, actual);
+
+        // Then: The difference is the number cell of phone 500
+        assertNotEquals(WorkbookFingerprint.of(expected), WorkbookFingerprint.of(actual));
+        assertNotNull(difference);
+        assertEquals(11 + 500, difference.getActual().getRow());
+        assertEquals(1, difference.getActual().getColumn());
+        assertEquals("+1-000-000-0000", difference.getActual().getValue());
+        assertEquals(original.getPhones().get(500).getPhoneNo(), difference.getExpected().getValue());
+        assertTrue(difference.toString().contains("PersonInfo!B512"), difference.toString());
+
+        System.out.println("✓ " + difference);
+    }
+
+    @Test
+    void testMissingCellsAreReported() throws IOException {
+        // Given: A render with fewer phones than the expected one
+        PersonGenerator generator = new PersonGenerator(3);
+        byte[] expected = render(generator.person(4, 20), false);
+        byte[] actual = render(generator.person(4, 19), false);
+
+        // When: They are compared
+        WorkbookFingerprint.Difference difference = WorkbookFingerprint.firstDifference(expected, actual);
+
+        // Then: The first cell of the missing row is reported
+        assertNotNull(difference);
+        assertEquals(11 + 19, difference.getExpected().getRow());
+        assertTrue(difference.getActual() == null || difference.getActual().getRow() > 11 + 19);
+
+        System.out.println("✓ " + difference);
+    }
+
+    private byte[] render(Person person, boolean generated) throws IOException {
+        Context context = new Context();
+        context.putVar("person", person);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(TEMPLATE)) {
+            XSSFWorkbook workbook = new XSSFWorkbook(is);
+            if (generated) {
+                assertTrue(WorkbookRenderer.renderGenerated(TEMPLATE, workbook, out, context));
+            } else {
+                WorkbookRenderer.transform(workbook, out, context);
+            }
+        }
+        return out.toByteArray();
+    }
+}
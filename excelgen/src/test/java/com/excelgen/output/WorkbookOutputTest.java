@@ -0,0 +1,86 @@
+package com.excelgen.output;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for writing xlsx packages with a configurable compression policy
+ */
+class WorkbookOutputTest {
+
+    private static final String TEMPLATE_PATH = "/person_template_with_phones.xlsx";
+
+    @Test
+    void testPoliciesTradeSizeForSpeed() throws IOException {
+        // Given: A person with enough phones for compression to matter
+        Person person = new Person("Bulk Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 5_000; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+
+        // When: Render once per policy
+        Map<CompressionPolicy, byte[]> outputs = new EnumMap<>(CompressionPolicy.class);
+        for (CompressionPolicy policy : CompressionPolicy.values()) {
+            outputs.put(policy, render(person, policy));
+            System.out.println("  " + policy + ": " + outputs.get(policy).length + " bytes");
+        }
+
+        // Then: Every output is a valid workbook and the sizes follow the level
+        for (byte[] output : outputs.values()) {
+            try (Workbook wb = new XSSFWorkbook(new ByteArrayInputStream(output))) {
+                Sheet sheet = wb.getSheetAt(0);
+                assertEquals("+1-555-4999", sheet.getRow(11 + 4_999).getCell(1).getStringCellValue());
+            }
+        }
+        assertTrue(outputs.get(CompressionPolicy.STORED).length > 2 * outputs.get(CompressionPolicy.FAST).length,
+                "Stored output should be much larger than deflated output");
+        assertTrue(outputs.get(CompressionPolicy.FAST).length >= outputs.get(CompressionPolicy.MAXIMUM).length,
+                "Maximum compression should not be larger than fast compression");
+
+        System.out.println("✓ All compression policies produce valid workbooks");
+    }
+
+    @Test
+    void testResolvePolicy() {
+        // Request parameter wins over the template default
+        assertEquals(CompressionPolicy.MAXIMUM,
+                WorkbookOutput.resolve("person_template_with_phones.xlsx", "maximum"));
+
+        // Template default from template-compression.properties
+        assertEquals(CompressionPolicy.FAST,
+                WorkbookOutput.resolve("person_template_with_phones.xlsx", null));
+
+        // No template default, unknown request value
+        assertEquals(CompressionPolicy.DEFAULT,
+                WorkbookOutput.resolve("person_template_address.xlsx", "ultra"));
+    }
+
+    private byte[] render(Person person, CompressionPolicy policy) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream templateStream = getClass().getResourceAsStream(TEMPLATE_PATH);
+             OutputStream out = WorkbookOutput.open(bytes, policy)) {
+
+            Context context = new Context();
+            context.putVar("person", person);
+            JxlsHelper.getInstance().processTemplate(templateStream, out, context);
+        }
+        return bytes.toByteArray();
+    }
+}
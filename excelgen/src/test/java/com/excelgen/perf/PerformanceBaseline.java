@@ -0,0 +1,130 @@
+package com.excelgen.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Budgets of the performance suite, read from perf-baseline.properties.
+ *
+ * For every scenario the file holds the measured median latency, heap
+ * allocated per render and output size. A measurement is over budget when
+ * it exceeds the baseline by more than the metric's tolerance; latency also
+ * gets a fixed slack so renders of a few milliseconds do not fail on noise.
+ */
+final class PerformanceBaseline {
+
+    static final String RESOURCE = "perf-baseline.properties";
+    static final int VERSION = 1;
+
+    static final String MEDIAN_MILLIS = "medianMillis";
+    static final String ALLOCATED_BYTES = "allocatedBytes";
+    static final String OUTPUT_BYTES = "outputBytes";
+    static final String[] METRICS = {MEDIAN_MILLIS, ALLOCATED_BYTES, OUTPUT_BYTES};
+
+    /** Tolerances used when the file has none: 50% latency, 20% allocation, 5% output size */
+    private static final Properties DEFAULT_TOLERANCES = new Properties();
+
+    static {
+        DEFAULT_TOLERANCES.setProperty("tolerance." + MEDIAN_MILLIS, "0.5");
+        DEFAULT_TOLERANCES.setProperty("tolerance." + MEDIAN_MILLIS + ".slack", "10");
+        DEFAULT_TOLERANCES.setProperty("tolerance." + ALLOCATED_BYTES, "0.2");
+        DEFAULT_TOLERANCES.setProperty("tolerance." + OUTPUT_BYTES, "0.05");
+    }
+
+    private final Properties values;
+
+    private PerformanceBaseline(Properties values) {
+        this.values = values;
+    }
+
+    static PerformanceBaseline load() throws IOException {
+        Properties values = new Properties(DEFAULT_TOLERANCES);
+        try (InputStream in = PerformanceBaseline.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                values.load(in);
+            }
+        }
+        String version = values.getProperty("version");
+        if (version != null && Integer.parseInt(version) != VERSION) {
+            throw new IllegalStateException(RESOURCE + " is version " + version + ", expected " + VERSION
+                    + "; regenerate it with -Dexcelgen.perf.updateBaseline=true");
+        }
+        return new PerformanceBaseline(values);
+    }
+
+    /**
+     * @return the baseline value, or -1 when the scenario has none
+     */
+    long get(String scenario, String metric) {
+        String value = values.getProperty(scenario + "." + metric);
+        return value != null ? Long.parseLong(value.trim()) : -1;
+    }
+
+    /**
+     * Largest value that is still within budget
+     */
+    long budget(String scenario, String metric) {
+        long baseline = get(scenario, metric);
+        if (baseline < 0) {
+            return -1;
+        }
+        double tolerance = Double.parseDouble(values.getProperty("tolerance." + metric));
+        long budget = (long) Math.ceil(baseline * (1 + tolerance));
+        if (MEDIAN_MILLIS.equals(metric)) {
+            budget = Math.max(budget, baseline + Long.parseLong(values.getProperty("tolerance.medianMillis.slack")));
+        }
+        return budget;
+    }
+
+    /**
+     * Write a new baseline with the measured values and the current tolerances
+     */
+    void write(Path file, Map<String, long[]> measured) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            out.write("# Budgets of RenderPerformanceTest. Each metric may exceed its baseline by the\n");
+            out.write("# tolerance (0.5 = 50%) before the build fails. allocatedBytes and outputBytes\n");
+            out.write("# are checked by every mvn test; medianMillis only by mvn -Pperf test.\n");
+            out.write("# medianMillis was measured on one developer machine; other machines and CI\n");
+            out.write("# runners can be 2x slower or faster, so regenerate it where -Pperf runs.\n");
+            out.write("# Regenerate with mvn -Pperf test -Dexcelgen.perf.updateBaseline=true after an\n");
+            out.write("# intended change and commit this file together with the change.\n");
+            out.write("version=" + VERSION + "\n");
+            for (String metric : METRICS) {
+                out.write("tolerance." + metric + "=" + values.getProperty("tolerance." + metric) + "\n");
+            }
+            out.write("tolerance.medianMillis.slack=" + values.getProperty("tolerance.medianMillis.slack") + "\n");
+            for (Map.Entry<String, long[]> scenario : new TreeMap<>(measured).entrySet()) {
+                out.write("\n");
+                for (int m = 0; m < METRICS.length; m++) {
+                    out.write(scenario.getKey() + "." + METRICS[m] + "=" + scenario.getValue()[m] + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Scenarios of the baseline that were not measured
+     */
+    List<String> missingFrom(Map<String, long[]> measured) {
+        List<String> missing = new ArrayList<>();
+        for (String key : values.stringPropertyNames()) {
+            if (key.endsWith("." + MEDIAN_MILLIS) && !key.startsWith("tolerance.")) {
+                String scenario = key.substring(0, key.length() - MEDIAN_MILLIS.length() - 1);
+                if (!measured.containsKey(scenario)) {
+                    missing.add(scenario);
+                }
+            }
+        }
+        return missing;
+    }
+}
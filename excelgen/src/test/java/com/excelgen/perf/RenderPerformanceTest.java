@@ -0,0 +1,284 @@
+package com.excelgen.perf;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.output.WorkbookOutput;
+import com.excelgen.render.WorkbookRenderer;
+import com.excelgen.sample.PersonGenerator;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.WorkbookSnapshotPool;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jxls.common.Context;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Performance regression suite. Renders every template at fixed data sizes
+ * through the production path (snapshot pool, renderer, zip output) and
+ * checks median latency, heap allocated per render and output size against
+ * the budgets in perf-baseline.properties.
+ *
+ * Allocation and output size do not depend on the machine and are checked
+ * in every build. Latency is checked only with
+ *
+ *   mvn -Pperf test
+ *
+ * since its baseline holds for the machine it was measured on. The report
+ * is printed and written to target/perf-report.txt. After an intended
+ * change, add -Dexcelgen.perf.updateBaseline=true to the perf run to
+ * rewrite the baseline in src/test/resources and commit it with the change.
+ */
+class RenderPerformanceTest {
+
+    private static final int WARMUP = Integer.getInteger("excelgen.perf.warmup", 5);
+    private static final int RUNS = Integer.getInteger("excelgen.perf.runs", 9);
+    /** Fewer runs in the default build; allocation and size barely vary */
+    private static final int QUICK_WARMUP = 2;
+    private static final int QUICK_RUNS = 3;
+    private static final boolean UPDATE = Boolean.getBoolean("excelgen.perf.updateBaseline");
+
+    private static final Path BASELINE_SOURCE = Paths.get("src", "test", "resources", PerformanceBaseline.RESOURCE);
+    private static final Path REPORT = Paths.get("target", "perf-report.txt");
+
+    /** Fixed seed, so every run renders the same data */
+    private static final PersonGenerator GENERATOR = new PersonGenerator(20_240_101L);
+
+    /** Fixed data sizes; every template needs at least one */
+    private static final Scenario[] SCENARIOS = {
+        new Scenario("person_template.xlsx", "adult", 40, false, 0),
+        new Scenario("person_template_address.xlsx", "minor-with-address", 15, true, 0),
+        new Scenario("person_template_old_style.xlsx", "adult", 40, false, 0),
+        new Scenario("person_template_with_phones.xlsx", "1k-phones", 15, true, 1_000),
+        new Scenario("person_template_with_phones.xlsx", "20k-phones", 15, true, 20_000)
+    };
+
+    @Test
+    void testAllocationAndOutputStayWithinBudget() throws IOException {
+        // Given: The committed baseline and a scenario for every template
+        PerformanceBaseline baseline = PerformanceBaseline.load();
+        assertEveryTemplateHasAScenario();
+
+        // When: Every scenario is measured after a short warm-up
+        Map<String, long[]> measured = new LinkedHashMap<>();
+        for (Scenario scenario : SCENARIOS) {
+            measured.put(scenario.name(), measure(scenario, QUICK_WARMUP, QUICK_RUNS));
+        }
+
+        // Then: Allocation and output size are within budget
+        List<String> violations = new ArrayList<>();
+        String report = report(baseline, measured, QUICK_WARMUP, QUICK_RUNS,
+                Arrays.asList(PerformanceBaseline.ALLOCATED_BYTES, PerformanceBaseline.OUTPUT_BYTES), violations);
+        System.out.print(report);
+        assertTrue(violations.isEmpty(), "Performance budgets exceeded:\n" + String.join("\n", violations));
+
+        System.out.println("✓ " + measured.size() + " render scenarios within allocation and output budgets");
+    }
+
+    @Test
+    @Tag("perf")
+    void testRendersStayWithinBudget() throws IOException {
+        // Given: The committed baseline and a scenario for every template
+        PerformanceBaseline baseline = PerformanceBaseline.load();
+        assertEveryTemplateHasAScenario();
+
+        // When: Every scenario is measured after warm-up
+        Map<String, long[]> measured = new LinkedHashMap<>();
+        for (Scenario scenario : SCENARIOS) {
+            measured.put(scenario.name(), measure(scenario, WARMUP, RUNS));
+        }
+
+        // Then: Nothing is over budget
+        List<String> violations = new ArrayList<>();
+        String report = report(baseline, measured, WARMUP, RUNS, Arrays.asList(PerformanceBaseline.METRICS),
+                violations);
+        System.out.print(report);
+        Files.createDirectories(REPORT.getParent());
+        Files.write(REPORT, report.getBytes(StandardCharsets.UTF_8));
+
+        if (UPDATE) {
+            baseline.write(BASELINE_SOURCE, measured);
+            System.out.println("✓ Baseline written to " + BASELINE_SOURCE);
+            return;
+        }
+        assertTrue(violations.isEmpty(), "Performance budgets exceeded (see " + REPORT + "):\n"
+                + String.join("\n", violations));
+
+        System.out.println("✓ " + measured.size() + " render scenarios within budget");
+    }
+
+    private static void assertEveryTemplateHasAScenario() throws IOException {
+        for (String template : TemplateCache.shared().listTemplates()) {
+            assertTrue(Arrays.stream(SCENARIOS).anyMatch(s -> s.template.equals(template)),
+                    "No performance scenario for template " + template);
+        }
+    }
+
+    /**
+     * @return median latency in ms, median allocated bytes and output bytes
+     */
+    private long[] measure(Scenario scenario, int warmup, int runs) throws IOException {
+        Person person = scenario.person();
+        long[] millis = new long[runs];
+        long[] allocated = new long[runs];
+        long outputBytes = 0;
+        for (int run = 0; run < warmup + runs; run++) {
+            awaitSnapshot(scenario.template);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long size = render(scenario.template, person);
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            if (run >= warmup) {
+                millis[run - warmup] = elapsed / 1_000_000;
+                allocated[run - warmup] = allocatedAfter - allocatedBefore;
+                outputBytes = size;
+            }
+        }
+        return new long[] {median(millis), median(allocated), outputBytes};
+    }
+
+    private static long render(String template, Person person) throws IOException {
+        Workbook workbook = WorkbookSnapshotPool.shared().acquire(template);
+        assertNotNull(workbook, "Template not found: " + template);
+        Context context = new Context();
+        context.putVar("person", person);
+        CountingOutputStream out = new CountingOutputStream();
+        WorkbookRenderer.transform(template, workbook,
+                WorkbookOutput.open(out, WorkbookOutput.resolve(template, null)), context);
+        return out.count;
+    }
+
+    /**
+     * Wait for the pool to refill, so no run pays for parsing the template
+     */
+    private static void awaitSnapshot(String template) throws IOException {
+        WorkbookSnapshotPool.shared().warmUp(template);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (WorkbookSnapshotPool.shared().available(template) == 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Heap allocated by the rendering thread so far. Background threads,
+     * such as the pool refill, are not counted.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String report(PerformanceBaseline baseline, Map<String, long[]> measured, int warmup, int runs,
+                                 List<String> metrics, List<String> violations) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Render performance (%d warm-up, %d measured runs, median)%n", warmup, runs));
+        sb.append(String.format("%-52s %-15s %14s %14s %14s %8s  %s%n",
+                "Scenario", "Metric", "Measured", "Baseline", "Budget", "Change", "Result"));
+        for (Map.Entry<String, long[]> scenario : measured.entrySet()) {
+            for (int m = 0; m < PerformanceBaseline.METRICS.length; m++) {
+                String metric = PerformanceBaseline.METRICS[m];
+                if (!metrics.contains(metric)) {
+                    continue;
+                }
+                long value = scenario.getValue()[m];
+                long base = baseline.get(scenario.getKey(), metric);
+                long budget = baseline.budget(scenario.getKey(), metric);
+
+                String change = base > 0 ? String.format("%+.0f%%", 100.0 * (value - base) / base) : "";
+                String result;
+                if (base < 0) {
+                    result = "NO BASELINE";
+                    violations.add(scenario.getKey() + " " + metric + ": no baseline, run with"
+                            + " -Dexcelgen.perf.updateBaseline=true");
+                } else if (value > budget) {
+                    result = "OVER BUDGET";
+                    violations.add(scenario.getKey() + " " + metric + ": " + value + " > budget " + budget
+                            + " (baseline " + base + ")");
+                } else {
+                    result = "ok";
+                }
+                sb.append(String.format("%-52s %-15s %,14d %,14d %,14d %8s  %s%n", scenario.getKey(), metric,
+                        value, base, budget, change, result));
+            }
+        }
+        for (String stale : baseline.missingFrom(measured)) {
+            sb.append("Baseline scenario no longer measured: ").append(stale).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A template rendered for one person of a fixed size
+     */
+    private static final class Scenario {
+        final String template;
+        final String label;
+        final int age;
+        final boolean address;
+        final int phones;
+
+        Scenario(String template, String label, int age, boolean address, int phones) {
+            this.template = template;
+            this.label = label;
+            this.age = age;
+            this.address = address;
+            this.phones = phones;
+        }
+
+        String name() {
+            return template.replace(".xlsx", "") + "." + label;
+        }
+
+        /**
+         * A generated person of exactly this size. Age and address are set
+         * so every scenario takes the same template branches.
+         */
+        Person person() {
+            Person person = GENERATOR.person(0, phones);
+            person.setAge(age);
+            person.setParentName(age < 18 ? "Parent Person" : null);
+            person.setAddress(address ? new Address("Home", "123 Main St") : null);
+            return person;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.excelgen.render;
+
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateLayout;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for heap-aware admission of renders
+ */
+class MemoryBudgetTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void testEstimateGrowsWithRows() throws IOException {
+        // Given: The phones template
+        TemplateLayout layout = TemplateCache.shared().get("person_template_with_phones.xlsx");
+
+        // When: Estimating small, large and streaming renders
+        long small = MemoryEstimator.estimateBytes(layout, 16, false);
+        long large = MemoryEstimator.estimateBytes(layout, 100_016, false);
+        long streaming = MemoryEstimator.estimateBytes(layout, 100_016, true);
+
+        // Then: xlsx renders pay per row, CSV/TSV renders do not
+        assertTrue(small > MemoryEstimator.WORKBOOK_BASE_BYTES);
+        assertTrue(large > 200 * MB, "100k phone rows should need a few hundred MB, got " + large / MB);
+        assertTrue(streaming < small);
+
+        System.out.println("✓ Estimates: small=" + small / 1024 + " KB, large=" + large / MB + " MB");
+    }
+
+    @Test
+    void testRejectsRenderLargerThanBudget() {
+        MemoryBudget budget = new MemoryBudget(100 * MB, 1_000);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> budget.reserve(200 * MB));
+        assertTrue(e.getMessage().contains("memory budget"));
+        assertEquals(1, budget.getRejected());
+    }
+
+    @Test
+    void testQueuedRenderStartsWhenMemoryIsReleased() throws Exception {
+        // Given: A budget mostly reserved by a running render
+        MemoryBudget budget = new MemoryBudget(100 * MB, 5_000);
+        MemoryBudget.Reservation running = budget.reserve(80 * MB);
+
+        // When: A second render needs more than what is left
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try (MemoryBudget.Reservation r = budget.reserve(50 * MB)) {
+                admitted.countDown();
+            } catch (RenderRejectedException e) {
+                // left at count 1, the assertion below fails
+            }
+        });
+        waiter.start();
+
+        // Then: It waits until the first one is done
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, budget.getWaiting());
+        running.close();
+        assertTrue(admitted.await(2, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(0, budget.getReserved());
+
+        System.out.println("✓ Queued render admitted after release");
+    }
+
+    @Test
+    void testWaitTimesOut() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100 * MB, 100);
+        try (MemoryBudget.Reservation running = budget.reserve(80 * MB)) {
+            RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> budget.reserve(50 * MB));
+            assertTrue(e.getRetryAfterSeconds() >= 1);
+        }
+        assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    void testAccuracyIsRecorded() {
+        EstimateAccuracy accuracy = new EstimateAccuracy();
+        accuracy.record(100, 50);
+        accuracy.record(100, 150);
+
+        assertEquals(2, accuracy.getSamples());
+        assertEquals(1.0, accuracy.getRatio(), 0.0001);
+        assertEquals(1, accuracy.getUnderEstimates());
+    }
+}
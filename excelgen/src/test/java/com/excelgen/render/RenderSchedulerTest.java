@@ -0,0 +1,144 @@
+package com.excelgen.render;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import com.excelgen.template.TemplateCache;
+import com.excelgen.template.TemplateCompiler;
+import com.excelgen.template.TemplateLayout;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for render cost estimation and the interactive/bulk render lanes
+ */
+class RenderSchedulerTest {
+
+    @Test
+    void testEstimateCountsOneRowPerPhone() throws IOException {
+        // Given: A person with 200 phones
+        Person person = new Person("Bulk Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        for (int i = 0; i < 200; i++) {
+            person.addPhone("Mobile", "+1-555-" + i);
+        }
+
+        // When: Estimating both bundled templates
+        TemplateLayout phones = TemplateCache.shared().get("person_template_with_phones.xlsx");
+        TemplateLayout simple = TemplateCache.shared().get("person_template.xlsx");
+        long phoneRows = RenderCostEstimator.estimateRows(phones, Collections.singletonMap("person", person));
+        long simpleRows = RenderCostEstimator.estimateRows(simple, Collections.singletonMap("person", person));
+
+        // Then: Phone rows are added only where a jx:each iterates the phones
+        assertEquals(phones.getRowCount() + 199, phoneRows);
+        assertEquals(simple.getRowCount(), simpleRows);
+
+        System.out.println("✓ Estimated " + phoneRows + " rows for 200 phones");
+    }
+
+    @Test
+    void testEstimateSizesNestedEachPerItem() throws IOException {
+        // Given: A template whose two-row jx:each over groups holds a one-row jx:each over the group
+        TemplateLayout layout;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            for (int r = 0; r < 4; r++) {
+                sheet.createRow(r).createCell(0).setCellValue("row " + r);
+                sheet.getRow(r).createCell(1).setCellValue("${member}");
+            }
+            Drawing<?> drawing = sheet.createDrawingPatriarch();
+            comment(sheet, drawing, 0, "jx:area(lastCell=\"B4\")");
+            comment(sheet, drawing, 1, "jx:each(items=\"groups\" var=\"group\" lastCell=\"B3\")");
+            comment(sheet, drawing, 2, "jx:each(items=\"group\" var=\"member\" lastCell=\"B3\")");
+            layout = TemplateCompiler.compile(sheet);
+        }
+        List<List<String>> groups = Arrays.asList(
+                Arrays.asList("a", "b", "c"), Collections.singletonList("d"), Collections.emptyList());
+
+        // When: Estimating three groups of three, one and no members
+        long rows = RenderCostEstimator.estimateRows(layout, Collections.singletonMap("groups", groups));
+
+        // Then: Two extra group blocks of two rows, and two extra member rows in the first group
+        assertEquals(layout.getRowCount() + 2 * 2 + 2, rows);
+
+        System.out.println("✓ Estimated " + rows + " rows for nested jx:each");
+    }
+
+        @Test
+    void testInteractiveRendersBypassBusyBulkLane() throws Exception {
+        // Given: A bulk lane with one slot, held by a long render
+        RenderScheduler scheduler = new RenderScheduler(1_000,
+                new RenderLane("interactive", 2, 10, 2, 1_000),
+                new RenderLane("bulk", 1, 0, 1, 100));
+        RenderScheduler.Ticket bulk = scheduler.admit("person_template_with_phones.xlsx", 200_000);
+        assertEquals("bulk", bulk.getLane().getName());
+
+        // When: Another bulk render and a small render arrive
+        RenderRejectedException rejected = assertThrows(RenderRejectedException.class,
+                () -> scheduler.admit("person_template_with_phones.xlsx", 50_000));
+
+        // Then: The bulk one is shed, the small one starts right away
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        try (RenderScheduler.Ticket small = scheduler.admit("person_template.xlsx", 7)) {
+            assertEquals("interactive", small.getLane().getName());
+            assertEquals(1, scheduler.getInteractiveLane().getActive());
+        }
+        bulk.close();
+
+        assertEquals(1, scheduler.getBulkLane().getRejected());
+        assertEquals(0, scheduler.getBulkLane().getActive());
+        System.out.println("✓ Interactive render admitted while bulk lane full");
+    }
+
+    @Test
+    void testPerTemplateBulkheadLimitsOneTemplate() throws Exception {
+        // Given: A lane with two slots but one slot per template
+        RenderLane lane = new RenderLane("bulk", 2, 5, 1, 2_000);
+        RenderScheduler scheduler = new RenderScheduler(0, lane, lane);
+        RenderScheduler.Ticket first = scheduler.admit("a.xlsx", 1);
+
+        // When: A second render of the same template waits, another template runs
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try (RenderScheduler.Ticket ticket = scheduler.admit("a.xlsx", 1)) {
+                admitted.countDown();
+            } catch (RenderRejectedException e) {
+                // left at count 1, the assertion below fails
+            }
+        });
+        waiter.start();
+        try (RenderScheduler.Ticket other = scheduler.admit("b.xlsx", 1)) {
+            assertFalse(admitted.await(200, TimeUnit.MILLISECONDS), "Bulkhead should hold the second a.xlsx render");
+        }
+
+        // Then: It starts as soon as the first one finishes
+        first.close();
+        assertTrue(admitted.await(2, TimeUnit.SECONDS));
+        waiter.join();
+
+        System.out.println("✓ Per-template bulkhead enforced");
+    }
+
+    private static void comment(Sheet sheet, Drawing<?> drawing, int row, String text) {
+        ClientAnchor anchor = sheet.getWorkbook().getCreationHelper().createClientAnchor();
+        anchor.setRow1(row);
+        anchor.setCol1(0);
+        anchor.setRow2(row + 2);
+        anchor.setCol2(3);
+        Comment comment = drawing.createCellComment(anchor);
+        comment.setString(sheet.getWorkbook().getCreationHelper().createRichTextString(text));
+        sheet.getRow(row).getCell(0).setCellComment(comment);
+    }
+}
@@ -0,0 +1,122 @@
+package com.excelgen.sample;
+
+import com.excelgen.Person;
+import com.excelgen.Phone;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the seeded synthetic data generator
+ */
+class PersonGeneratorTest {
+
+    @Test
+    void testSameSeedGivesSamePersons() {
+        // Given: Two generators with the same seed and one with another seed
+        PersonGenerator first = new PersonGenerator(7);
+        PersonGenerator second = new PersonGenerator(7);
+        PersonGenerator other = new PersonGenerator(8);
+
+        // When: The same persons are generated, one of them out of order
+        String expected = describe(first.persons(200).collect(Collectors.toList()).get(123));
+        String regenerated = describe(second.person(123));
+
+        // Then: They are identical, and another seed gives other data
+        assertEquals(expected, regenerated);
+        assertNotEquals(expected, describe(other.person(123)));
+
+        System.out.println("✓ Person 123 of seed 7: " + expected.substring(0, Math.min(60, expected.length())));
+    }
+
+    @Test
+    void testDistributionsAreRealistic() {
+        // Given: A generator with the default phone cap
+        PersonGenerator generator = new PersonGenerator(42);
+
+        // When: 100,000 persons are streamed and counted
+        int count = 100_000;
+        int minors = 0;
+        int withAddress = 0;
+        int withoutPhones = 0;
+        int maxPhones = 0;
+        long phones = 0;
+        Iterator<Person> persons = generator.persons(count).iterator();
+        while (persons.hasNext()) {
+            Person person = persons.next();
+            if (person.getAge() < 18) {
+                minors++;
+                assertNotNull(person.getParentName(), "Minors have a parent");
+            }
+            assertTrue(person.getAge() >= 0 && person.getAge() <= 95);
+            if (person.isAddressExists()) {
+                withAddress++;
+            }
+            int size = person.getPhones().size();
+            if (size == 0) {
+                withoutPhones++;
+            }
+            maxPhones = Math.max(maxPhones, size);
+            phones += size;
+        }
+
+        // Then: The shares are close to the documented ones and phones are heavy-tailed
+        assertEquals(0.22, minors / (double) count, 0.01);
+        assertEquals(0.80, withAddress / (double) count, 0.01);
+        assertEquals(0.10, withoutPhones / (double) count, 0.01);
+        assertTrue(maxPhones > 1_000, "Expected a heavy tail, longest phone list: " + maxPhones);
+        assertTrue(maxPhones <= PersonGenerator.DEFAULT_MAX_PHONES);
+        assertTrue(phones / (double) count < 10, "Most persons have few phones");
+
+        System.out.println("✓ " + count + " persons: " + minors + " minors, " + withAddress + " with address, "
+                + phones + " phones (max " + maxPhones + ")");
+    }
+
+    @Test
+    void testFixedPhoneCount() {
+        // Given: A generator
+        PersonGenerator generator = new PersonGenerator(42);
+
+        // When: A person is asked for with an exact number of phones
+        Person person = generator.person(5, 2_500);
+
+        // Then: It has that many, and the rest of the person is unchanged
+        assertEquals(2_500, person.getPhones().size());
+        assertEquals(generator.person(5).getName(), person.getName());
+        assertTrue(person.getPhones().get(0).getPhoneNo().matches("\\+1-\\d{3}-\\d{3}-\\d{4}"));
+
+        System.out.println("✓ Fixed size person: " + person.getName() + " with 2,500 phones");
+    }
+
+    @Test
+    void testAddressShare() {
+        // Given: Generators with no and with only persons with an address
+        PersonGenerator none = new PersonGenerator(42, PersonGenerator.DEFAULT_MAX_PHONES, 0);
+        PersonGenerator all = new PersonGenerator(42, PersonGenerator.DEFAULT_MAX_PHONES, 1);
+
+        // When/Then: Every person follows the share
+        for (int i = 0; i < 1_000; i++) {
+            assertNull(none.person(i).getAddress());
+            assertNotNull(all.person(i).getAddress());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PersonGenerator(42, 10, 1.5));
+
+        System.out.println("✓ Address share 0 and 1 are honoured");
+    }
+
+    private static String describe(Person person) {
+        StringBuilder sb = new StringBuilder()
+                .append(person.getName()).append('|').append(person.getAge()).append('|')
+                .append(person.getParentName()).append('|');
+        if (person.getAddress() != null) {
+            sb.append(person.getAddress().getType()).append(' ').append(person.getAddress().getAddressLine());
+        }
+        for (Phone phone : person.getPhones()) {
+            sb.append('|').append(phone.getPhoneType()).append(' ').append(phone.getPhoneNo());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package com.excelgen.standalone;
+
+import com.excelgen.output.OutputInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the standalone server, over real HTTP
+ */
+class StandaloneServerTest {
+
+    private static StandaloneServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = StandaloneServer.start(0, "/excelgen");
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testListTemplates() throws Exception {
+        HttpResponse<String> response = client.send(request("/listTemplates").GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("[\"person_template.xlsx\",\"person_template_address.xlsx\","
+                + "\"person_template_old_style.xlsx\",\"person_template_with_phones.xlsx\"]", response.body());
+
+        System.out.println("✓ Templates listed by the standalone server");
+    }
+
+    @Test
+    void testMultipartFormRendersWorkbook() throws Exception {
+        // Given: The form the web page sends, as multipart/form-data
+        String boundary = "----excelgen" + System.nanoTime();
+        String body = part(boundary, "name", "Standalone Person")
+                + part(boundary, "age", "15")
+                + part(boundary, "parentName", "Parent Person")
+                + part(boundary, "addressType", "Home")
+                + part(boundary, "addressLine", "123 Main St")
+                + part(boundary, "template", "person_template_with_phones.xlsx")
+                + part(boundary, "phoneType[]", "Mobile")
+                + part(boundary, "phoneNo[]", "+1-555-0001")
+                + part(boundary, "phoneType[]", "Work")
+                + part(boundary, "phoneNo[]", "+1-555-0002")
+                + "--" + boundary + "--\r\n";
+
+        // When: It is posted
+        HttpResponse<byte[]> response = client.send(request("/processTemplate")
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        // Then: The rendered workbook comes back
+        assertEquals(200, response.statusCode());
+        assertEquals("application/vnd.ms-excel", response.headers().firstValue("Content-Type").orElse(null));
+        OutputInspector inspector = OutputInspector.open(response.body());
+        assertEquals("Standalone Person", inspector.value(2, 1));
+        assertEquals("123 Main St", inspector.value(8, 1));
+        assertEquals(Arrays.asList("Mobile", "+1-555-0001"), inspector.row(11));
+        assertEquals(Arrays.asList("Work", "+1-555-0002"), inspector.row(12));
+
+        System.out.println("✓ Multipart form rendered by the standalone server");
+    }
+
+    @Test
+    void testUrlEncodedFormRendersCsv() throws Exception {
+        HttpResponse<String> response = client.send(request("/processTemplate")
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "name=Csv+Person&age=40&template=person_template_address.xlsx&format=csv"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/csv"));
+        assertTrue(response.body().contains("Name:,Csv Person"), response.body());
+
+        System.out.println("✓ URL-encoded form rendered as CSV");
+    }
+
+    @Test
+    void testPreviewRendersHtml() throws Exception {
+        HttpResponse<String> response = client.send(request("/preview")
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("name=Preview+Person&age=40"
+                                + "&template=person_template_with_phones.xlsx&rows=1"
+                                + "&phoneType%5B%5D=Mobile&phoneNo%5B%5D=1&phoneType%5B%5D=Work&phoneNo%5B%5D=2"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/html"));
+        assertEquals("1", response.headers().firstValue("X-Preview-Omitted").orElse(null));
+        assertTrue(response.body().contains("<td>Preview Person</td>"), response.body());
+        assertTrue(response.body().contains("<td>Mobile</td>"));
+        assertFalse(response.body().contains("<td>Work</td>"));
+
+        System.out.println("✓ Preview rendered by the standalone server");
+    }
+
+    @Test
+    void testErrorsMatchServlet() throws Exception {
+        HttpResponse<String> missing = client.send(request("/processTemplate")
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("name=Someone")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, missing.statusCode());
+        assertTrue(missing.body().startsWith("Missing required parameters"));
+
+        HttpResponse<String> badAge = client.send(request("/processTemplate?name=A&age=old&template=x.xlsx")
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, badAge.statusCode());
+        assertEquals("Invalid age format", badAge.body());
+
+        HttpResponse<String> unknown = client.send(request("/processTemplate?name=A&age=1&template=nope.xlsx")
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(404, unknown.statusCode());
+
+        HttpResponse<String> get = client.send(request("/processTemplate").GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+    }
+
+    private static HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/excelgen" + path));
+    }
+
+    private static String part(String boundary, String name, String value) {
+        return "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+}
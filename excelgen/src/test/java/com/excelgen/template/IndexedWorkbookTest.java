@@ -0,0 +1,117 @@
+package com.excelgen.template;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the workbook copies with a text-indexed shared strings table
+ */
+class IndexedWorkbookTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @Test
+    void testTemplateStringsAreReused() throws IOException {
+        // Given: A copy of the phones template
+        try (IndexedWorkbook workbook = open()) {
+            SharedStringsTable strings = workbook.getSharedStringSource();
+            assertTrue(strings instanceof IndexedSharedStringsTable);
+            int unique = strings.getUniqueCount();
+            String label = workbook.getSheetAt(0).getRow(0).getCell(0).getStringCellValue();
+
+            // When: The template's own text and a new value are written many times
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int i = 0; i < 100; i++) {
+                Row row = sheet.createRow(100 + i);
+                row.createCell(0).setCellValue(label);
+                row.createCell(1).setCellValue(i % 2 == 0 ? "Mobile" : "Home");
+            }
+
+            // Then: Only the two new values were added to the table
+            assertEquals(unique + 2, strings.getUniqueCount());
+            assertEquals(label, sheet.getRow(100).getCell(0).getStringCellValue());
+            assertEquals("Home", sheet.getRow(199).getCell(1).getStringCellValue());
+        }
+
+        System.out.println("✓ Shared strings are looked up by text");
+    }
+
+    @Test
+    void testFormattedStringsKeepTheirRuns() throws IOException {
+        // Given: A copy with a plain and a formatted cell of the same text
+        byte[] saved;
+        try (IndexedWorkbook workbook = open()) {
+            Row row = workbook.getSheetAt(0).createRow(100);
+            row.createCell(0).setCellValue("Mobile");
+            XSSFRichTextString bold = new XSSFRichTextString("Mobile");
+            XSSFFont font = workbook.createFont();
+            font.setBold(true);
+            bold.applyFont(font);
+            row.createCell(1).setCellValue(bold);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            saved = out.toByteArray();
+        }
+
+        // When: The saved workbook is read back with plain POI
+        try (XSSFWorkbook reread = new XSSFWorkbook(new ByteArrayInputStream(saved))) {
+            Row row = reread.getSheetAt(0).getRow(100);
+            Cell plain = row.getCell(0);
+            Cell formatted = row.getCell(1);
+
+            // Then: Both cells have the text and only the second one is bold
+            assertEquals("Mobile", plain.getStringCellValue());
+            assertEquals("Mobile", formatted.getStringCellValue());
+            assertEquals(0, ((XSSFRichTextString) plain.getRichStringCellValue()).numFormattingRuns());
+            assertTrue(((XSSFRichTextString) formatted.getRichStringCellValue()).numFormattingRuns() > 0);
+        }
+
+        System.out.println("✓ Formatted strings are not merged with plain ones");
+    }
+
+    @Test
+    void testEscapedTemplateStringsAreReused() throws IOException {
+        // Given: A template whose shared string holds an _xHHHH_ escape
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            workbook.createSheet().createRow(0).createCell(0).setCellValue("Tab_x0009_Here");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            template = out.toByteArray();
+        }
+
+        try (IndexedWorkbook workbook = new IndexedWorkbook(new ByteArrayInputStream(template))) {
+            SharedStringsTable strings = workbook.getSharedStringSource();
+            int unique = strings.getUniqueCount();
+
+            // When: The decoded text is written
+            workbook.getSheetAt(0).createRow(1).createCell(0).setCellValue("Tab\tHere");
+
+            // Then: It is found in the table instead of added again
+            assertEquals(unique, strings.getUniqueCount());
+        }
+
+        System.out.println("✓ Escaped template strings are looked up by their decoded text");
+    }
+
+    private IndexedWorkbook open() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(TEMPLATE)) {
+            assertNotNull(in, "Template not found: " + TEMPLATE);
+            return new IndexedWorkbook(in);
+        }
+    }
+}
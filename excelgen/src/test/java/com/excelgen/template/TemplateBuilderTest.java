@@ -0,0 +1,129 @@
+package com.excelgen.template;
+
+import com.excelgen.ImprovedTemplateGenerator;
+import com.excelgen.PersonWithPhoneTemplateGenerator;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the declarative template builder and its style pool
+ */
+class TemplateBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStylesAndFontsAreShared() throws IOException {
+        // Given: Several cells using the same two non-default styles
+        TemplateBuilder builder = TemplateBuilder.sheet("PersonInfo")
+                .cell("A1", "Title", StyleSpec.BOLD)
+                .cell("A5", "Section", StyleSpec.BOLD)
+                .cell("A9", "Other section", StyleSpec.BOLD)
+                .cell("A2", "jx:if(...)", StyleSpec.fill(IndexedColors.LIGHT_YELLOW))
+                .cell("A3", "jx:if(...)", StyleSpec.fill(IndexedColors.LIGHT_YELLOW))
+                .row(4, "Name:", "${person.name}");
+
+        // When: The workbook is built
+        try (Workbook workbook = builder.build()) {
+            // Then: Default style + bold + fill, and default font + bold
+            assertEquals(3, workbook.getNumCellStyles(), "Each distinct style should be stored once");
+            assertEquals(2, workbook.getNumberOfFontsAsInt(), "Bold font should be stored once");
+            assertEquals(workbook.getSheetAt(0).getRow(0).getCell(0).getCellStyle().getIndex(),
+                    workbook.getSheetAt(0).getRow(8).getCell(0).getCellStyle().getIndex());
+        }
+
+        System.out.println("✓ Styles and fonts deduplicated");
+    }
+
+    @Test
+    void testCommandsAreWrittenAsComments() {
+        // Given/When: A template with area, if and each commands
+        TemplateLayout layout;
+        try (Workbook workbook = TemplateBuilder.sheet("PersonInfo")
+                .cell("A1", "Report", StyleSpec.BOLD)
+                .area("B6")
+                .row(3, "Parent:", "${person.parentName}")
+                .ifCommand("A3", "person.age < 18", "B3")
+                .row(5, "${phone.phoneType}", "${phone.phoneNo}")
+                .each("A5", "person.phones", "phone", "B5")
+                .build()) {
+            layout = TemplateCompiler.compile(workbook.getSheetAt(0));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        // Then: The compiler sees the same command tree
+        List<TemplateCommand> children = layout.getAreas().get(0).getChildren();
+        assertEquals(2, children.size());
+        assertEquals("person.age < 18", children.get(0).getCondition());
+        assertEquals("person.phones", children.get(1).getItems());
+        assertEquals("phone", children.get(1).getVar());
+    }
+
+    @Test
+    void testGeneratorsStillMatchBundledTemplates() throws IOException {
+        // Given: The generators rewritten on top of the builder
+        String phones = tempDir.resolve("phones.xlsx").toString();
+        String improved = tempDir.resolve("improved.xlsx").toString();
+        PersonWithPhoneTemplateGenerator.createTemplateWithPhones(phones);
+        ImprovedTemplateGenerator.createProperJxlsTemplate(improved);
+
+        // Then: They compile to the same layout as the templates they created
+        assertSameLayout(compileResource("/person_template_with_phones.xlsx"), compileFile(phones));
+        assertSameLayout(compileResource("/person_template.xlsx"), compileFile(improved));
+
+        System.out.println("✓ Builder-based generators reproduce the bundled templates");
+    }
+
+    private void assertSameLayout(TemplateLayout expected, TemplateLayout actual) {
+        assertEquals(expected.getRowCount(), actual.getRowCount(), "Row count");
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getWidth(); c++) {
+                TemplateCell e = expected.getRow(r).getCell(c);
+                TemplateCell a = actual.getRow(r).getCell(c);
+                assertEquals(e == null ? null : e.getStaticValue(), a == null ? null : a.getStaticValue(),
+                        "Cell " + r + "," + c);
+            }
+        }
+        assertCommands(expected.getAreas(), actual.getAreas());
+    }
+
+    private void assertCommands(List<TemplateCommand> expected, List<TemplateCommand> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TemplateCommand e = expected.get(i);
+            TemplateCommand a = actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getFirstRow(), a.getFirstRow());
+            assertEquals(e.getLastRow(), a.getLastRow());
+            assertEquals(e.getLastColumn(), a.getLastColumn());
+            assertEquals(e.getCondition(), a.getCondition());
+            assertEquals(e.getItems(), a.getItems());
+            assertEquals(e.getVar(), a.getVar());
+            assertCommands(e.getChildren(), a.getChildren());
+        }
+    }
+
+    private TemplateLayout compileResource(String resource) throws IOException {
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            return TemplateCompiler.compile(is);
+        }
+    }
+
+    private TemplateLayout compileFile(String path) throws IOException {
+        try (InputStream is = new FileInputStream(path)) {
+            return TemplateCompiler.compile(is);
+        }
+    }
+}
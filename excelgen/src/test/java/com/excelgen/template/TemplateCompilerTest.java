@@ -0,0 +1,107 @@
+package com.excelgen.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for compiling xlsx templates into a TemplateLayout
+ */
+class TemplateCompilerTest {
+
+    @Test
+    void testCompileTemplateWithPhones() throws IOException {
+        // Given/When: the bundled template with jx:area, jx:if and jx:each comments
+        TemplateLayout layout = compile("/person_template_with_phones.xlsx");
+
+        // Then: one area holding the three nested commands
+        assertEquals(2, layout.getWidth(), "Template uses columns A and B");
+        assertEquals(1, layout.getAreas().size(), "Should have a single jx:area");
+
+        TemplateCommand area = layout.getAreas().get(0);
+        assertEquals(0, area.getFirstRow());
+        assertEquals(14, area.getLastRow(), "lastCell B15 is POI row 14");
+
+        List<TemplateCommand> children = area.getChildren();
+        assertEquals(3, children.size(), "Area should contain two jx:if and one jx:each");
+        assertTrue(children.get(0).isDegenerate(), "Parent jx:if points above its own cell");
+        assertEquals("person.addressExists", children.get(1).getCondition());
+
+        TemplateCommand each = children.get(2);
+        assertEquals(TemplateCommand.EACH, each.getName());
+        assertEquals("person.phones", each.getItems());
+        assertEquals("phone", each.getVar());
+        assertEquals(11, each.getFirstRow());
+        assertEquals(11, each.getLastRow());
+
+        TemplateCell phoneType = layout.getRow(11).getCell(0);
+        assertTrue(phoneType.getText().isSingleExpression());
+        assertEquals("phone.phoneType", phoneType.getText().getExpression(0));
+
+        System.out.println("✓ Template with phones compiled: " + children);
+    }
+
+    @Test
+    void testTemplateWithoutAreaHasNoCommands() throws IOException {
+        // Given/When: person_template.xlsx keeps its jx:if in a cell value, not a comment
+        TemplateLayout layout = compile("/person_template.xlsx");
+
+        // Then: JXLS would not process it, so neither do we
+        assertFalse(layout.hasAreas(), "Explanatory comment must not become a command");
+        assertEquals("${person.name}", layout.getRow(2).getCell(1).getStaticValue());
+
+        System.out.println("✓ Template without jx:area compiled as static content");
+    }
+
+    @Test
+    void testParseCommandAttributes() {
+        Map<String, String> attributes = TemplateCompiler.parseAttributes(
+                "items=\"person.phones\" var=\"phone\", lastCell=\"B12\" areas=[\"A6:B6\"]");
+
+        assertEquals("person.phones", attributes.get("items"));
+        assertEquals("phone", attributes.get("var"));
+        assertEquals("B12", attributes.get("lastCell"));
+        assertEquals("[\"A6:B6\"]", attributes.get("areas"));
+    }
+
+    @Test
+    void testNestedCommandsBecomeChildren() {
+        List<TemplateCommand> commands = TemplateCompiler.parseCommands(
+                "jx:area(lastCell=\"C10\")", 0, 0);
+        commands.addAll(TemplateCompiler.parseCommands(
+                "jx:each(items=\"person.phones\" var=\"phone\" lastCell=\"C6\")\n"
+                        + "jx:if(condition=\"phone.phoneNo != null\" lastCell=\"C5\")", 4, 0));
+
+        List<TemplateCommand> areas = TemplateCompiler.buildTree(commands);
+
+        assertEquals(1, areas.size());
+        TemplateCommand each = areas.get(0).getChildren().get(0);
+        assertEquals(TemplateCommand.EACH, each.getName());
+        assertEquals(1, each.getChildren().size(), "jx:if should nest inside the larger jx:each");
+        assertEquals(TemplateCommand.IF, each.getChildren().get(0).getName());
+    }
+
+    @Test
+    void testCellTextTokenisation() {
+        CellText text = CellText.parse("Name: ${person.name} (${person.age})");
+
+        assertEquals(2, text.getExpressionCount());
+        assertFalse(text.isSingleExpression());
+        assertEquals("Name: ", text.getLiteral(0));
+        assertEquals("person.age", text.getExpression(1));
+        assertEquals(")", text.getLiteral(2));
+        assertFalse(CellText.parse("Phone Numbers:").hasExpressions());
+    }
+
+    private TemplateLayout compile(String resource) throws IOException {
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            assertNotNull(is, "Template not found: " + resource);
+            return TemplateCompiler.compile(is);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.excelgen.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the binary template descriptors compiled at build time
+ */
+class TemplateDescriptorTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @Test
+    void testRoundTripKeepsLayout() throws IOException {
+        // Given: A descriptor compiled from the phones template
+        TemplateDescriptor descriptor = TemplateDescriptor.compile(TEMPLATE, readResource(TEMPLATE));
+
+        // When: It is written and read back
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        descriptor.write(out);
+        TemplateDescriptor copy = TemplateDescriptor.read(new ByteArrayInputStream(out.toByteArray()));
+
+        // Then: Source, parts and layout are unchanged
+        assertEquals(TEMPLATE, copy.getTemplateName());
+        assertEquals(descriptor.getSourceSize(), copy.getSourceSize());
+        assertEquals(descriptor.getSourceChecksum(), copy.getSourceChecksum());
+        assertEquals(descriptor.getParts().size(), copy.getParts().size());
+        assertTrue(copy.getParts().stream().anyMatch(p -> p.getName().equals("xl/worksheets/sheet1.xml")),
+                "Sheet part should be referenced");
+
+        TemplateLayout expected = descriptor.getLayout();
+        TemplateLayout actual = copy.getLayout();
+        assertEquals(expected.getSheetName(), actual.getSheetName());
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getWidth(); c++) {
+                TemplateCell e = expected.getRow(r).getCell(c);
+                TemplateCell a = actual.getRow(r).getCell(c);
+                if (e == null) {
+                    assertNull(a);
+                    continue;
+                }
+                assertEquals(e.getStaticValue(), a.getStaticValue());
+                assertEquals(e.getStyleIndex(), a.getStyleIndex());
+                assertEquals(e.isDynamic(), a.isDynamic());
+                if (e.isDynamic()) {
+                    assertEquals(e.getText().getExpression(0), a.getText().getExpression(0));
+                    assertEquals(e.getText().isSingleExpression(), a.getText().isSingleExpression());
+                }
+            }
+        }
+        assertCommands(expected.getAreas(), actual.getAreas());
+
+        System.out.println("✓ Descriptor round trip: " + out.size() + " bytes");
+    }
+
+    @Test
+    void testRejectsForeignData() {
+        // Given: Bytes that are not a descriptor
+        byte[] bytes = "PK not a descriptor".getBytes();
+
+        // When/Then: Reading fails with an IOException
+        assertThrows(IOException.class, () -> TemplateDescriptor.read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void testBuildBundlesDescriptors() throws IOException {
+        // Given: The descriptors written by the process-classes build step
+        try (InputStream is = getClass().getClassLoader()
+                .getResourceAsStream(TemplateDescriptor.resourceName(TEMPLATE))) {
+            assertNotNull(is, "Build should bundle a descriptor for " + TEMPLATE);
+        }
+
+        // When: The cache preloads them
+        TemplateCache cache = new TemplateCache(getClass().getClassLoader());
+        int loaded = cache.preload();
+
+        // Then: Every bundled template has a layout
+        assertTrue(loaded >= 4, "Expected all bundled templates, got " + loaded);
+        assertEquals(1, cache.get(TEMPLATE).getAreas().size());
+    }
+
+    private void assertCommands(List<TemplateCommand> expected, List<TemplateCommand> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            assertCommands(expected.get(i).getChildren(), actual.get(i).getChildren());
+        }
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+            return is.readAllBytes();
+        }
+    }
+}
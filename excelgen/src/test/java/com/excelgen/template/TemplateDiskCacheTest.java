@@ -0,0 +1,234 @@
+package com.excelgen.template;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the on-disk cache of compiled templates
+ */
+class TemplateDiskCacheTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEntrySurvivesRestart() throws IOException {
+        // Given: An entry stored by one cache instance
+        byte[] payload = "compiled template state".getBytes(StandardCharsets.UTF_8);
+        String key = TemplateDiskCache.key("template content".getBytes(StandardCharsets.UTF_8));
+        new TemplateDiskCache(directory, true).store("test", key, payload);
+
+        // When: A new instance, as after a restart, opens it
+        TemplateDiskCache restarted = new TemplateDiskCache(directory, true);
+        InputStream in = restarted.open("test", key);
+
+        // Then: The payload is read back from the mapped entry
+        assertNotNull(in);
+        assertArrayEquals(payload, readAll(in));
+        assertEquals(1, restarted.getHits());
+        assertNull(restarted.open("test", TemplateDiskCache.key("other content".getBytes(StandardCharsets.UTF_8))),
+                "Different content must not share an entry");
+        assertEquals(1, restarted.getMisses());
+
+        System.out.println("✓ Cache entry read back after restart");
+    }
+
+    @Test
+    void testCorruptEntryIsDiscarded() throws IOException {
+        // Given: A stored entry with one payload byte flipped
+        TemplateDiskCache cache = new TemplateDiskCache(directory, true);
+        String key = TemplateDiskCache.key(new byte[] {1, 2, 3});
+        cache.store("test", key, new byte[1000]);
+        Path entry = entries().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(entry.toFile(), "rw")) {
+            file.seek(file.length() - 10);
+            file.write(0x7F);
+        }
+
+        // When: It is opened
+        InputStream in = cache.open("test", key);
+
+        // Then: It is rejected and deleted
+        assertNull(in);
+        assertEquals(1, cache.getRejected());
+        assertFalse(Files.exists(entry));
+
+        System.out.println("✓ Corrupt cache entry discarded");
+    }
+
+    @Test
+    void testTemplateWithoutDescriptorIsCompiledOnce() throws IOException {
+        // Given: A template whose bundled descriptor is not available
+        TemplateDiskCache cache = new TemplateDiskCache(directory, true);
+        TemplateLayout compiled = new TemplateCache(withoutDescriptors(), cache).get(TEMPLATE);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, entries().size());
+
+        // When: A restarted node loads the same template
+        TemplateDiskCache restarted = new TemplateDiskCache(directory, true);
+        TemplateLayout loaded = new TemplateCache(withoutDescriptors(), restarted).get(TEMPLATE);
+
+        // Then: The layout comes from the cache entry
+        assertEquals(1, restarted.getHits());
+        assertEquals(0, restarted.getMisses());
+        assertSameShape(compiled, loaded);
+
+        System.out.println("✓ Template layout loaded from disk cache after restart");
+    }
+
+    @Test
+    void testCorruptTemplateEntryFallsBackToCompile() throws IOException {
+        // Given: A cached layout whose file was truncated
+        new TemplateCache(withoutDescriptors(), new TemplateDiskCache(directory, true)).get(TEMPLATE);
+        Path entry = entries().get(0);
+        byte[] bytes = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+
+        // When: A restarted node loads the template
+        TemplateDiskCache restarted = new TemplateDiskCache(directory, true);
+        TemplateLayout layout = new TemplateCache(withoutDescriptors(), restarted).get(TEMPLATE);
+
+        // Then: The template is compiled normally and the entry rewritten
+        assertSameShape(TemplateCompiler.compile(getClass().getClassLoader().getResourceAsStream(TEMPLATE)), layout);
+        assertEquals(1, restarted.getRejected());
+        assertEquals(bytes.length, Files.size(entries().get(0)));
+
+        System.out.println("✓ Corrupt template entry falls back to a normal compile");
+    }
+
+    @Test
+    void testDisabledCacheWritesNothing() throws IOException {
+        // Given: A disabled cache
+        TemplateDiskCache cache = new TemplateDiskCache(directory, false);
+
+        // When: A template without descriptor is loaded
+        assertNotNull(new TemplateCache(withoutDescriptors(), cache).get(TEMPLATE));
+
+        // Then: No entry is written
+        assertTrue(entries().isEmpty());
+    }
+
+    @Test
+    void testMissingDirectoryIsCreatedOwnerOnly() throws IOException {
+        assumeTrue(isPosix());
+        // Given: A cache whose directory does not exist yet
+        Path missing = directory.resolve("nested").resolve("cache");
+        TemplateDiskCache cache = new TemplateDiskCache(missing, true);
+
+        // When: An entry is stored
+        cache.store("test", TemplateDiskCache.key(new byte[] {1}), new byte[] {42});
+
+        // Then: The directory and the entry are private to the process user
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(missing)));
+        try (Stream<Path> files = Files.list(missing)) {
+            Path entry = files.findFirst().orElseThrow();
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(entry)));
+        }
+
+        System.out.println("✓ Cache directory created owner-only");
+    }
+
+    @Test
+    void testSharedDirectoryIsIgnored() throws IOException {
+        assumeTrue(isPosix());
+        // Given: A valid entry in a directory other users may write to
+        String key = TemplateDiskCache.key(new byte[] {7});
+        new TemplateDiskCache(directory, true).store("renderer", key, new byte[] {1, 2, 3});
+        Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        // When: The entry is opened
+        TemplateDiskCache cache = new TemplateDiskCache(directory, true);
+
+        // Then: Nothing is read from the directory
+        assertNull(cache.open("renderer", key));
+        assertEquals(0, cache.getHits());
+
+        System.out.println("✓ World-writable cache directory ignored");
+    }
+
+    @Test
+    void testWritableEntryIsRejected() throws IOException {
+        assumeTrue(isPosix());
+        // Given: A valid entry that group and others may write to
+        String key = TemplateDiskCache.key(new byte[] {8});
+        TemplateDiskCache cache = new TemplateDiskCache(directory, true);
+        cache.store("renderer", key, new byte[] {1, 2, 3});
+        Path entry = entries().get(0);
+        Files.setPosixFilePermissions(entry, PosixFilePermissions.fromString("rw-rw-rw-"));
+
+        // When: It is opened
+        InputStream in = cache.open("renderer", key);
+
+        // Then: It is rejected and deleted although its checksum is valid
+        assertNull(in);
+        assertEquals(1, cache.getRejected());
+        assertFalse(Files.exists(entry));
+
+        System.out.println("✓ Writable cache entry rejected");
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Class loader of the test classpath without the bundled descriptors
+     */
+    private ClassLoader withoutDescriptors() {
+        return new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                return name.startsWith(TemplateDescriptor.RESOURCE_DIRECTORY) ? null : super.getResourceAsStream(name);
+            }
+        };
+    }
+
+    private static void assertSameShape(TemplateLayout expected, TemplateLayout actual) {
+        assertEquals(expected.getSheetName(), actual.getSheetName());
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getAreas().size(), actual.getAreas().size());
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getWidth(); c++) {
+                TemplateCell e = expected.getRow(r).getCell(c);
+                TemplateCell a = actual.getRow(r).getCell(c);
+                assertEquals(e == null, a == null);
+                if (e != null) {
+                    assertEquals(e.getStaticValue(), a.getStaticValue());
+                    assertEquals(e.getStyleIndex(), a.getStyleIndex());
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        in.transferTo(out);
+        return out.toByteArray();
+    }
+}
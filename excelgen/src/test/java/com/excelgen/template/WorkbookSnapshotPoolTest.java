@@ -0,0 +1,125 @@
+package com.excelgen.template;
+
+import com.excelgen.Address;
+import com.excelgen.Person;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jxls.common.Context;
+import org.jxls.transform.poi.PoiTransformer;
+import org.jxls.util.JxlsHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the pool of pre-parsed template workbooks
+ */
+class WorkbookSnapshotPoolTest {
+
+    private static final String TEMPLATE = "person_template_with_phones.xlsx";
+
+    @Test
+    void testAcquiredWorkbooksAreIndependent() throws IOException {
+        // Given: A pool for the phones template
+        WorkbookSnapshotPool pool = new WorkbookSnapshotPool(getClass().getClassLoader(), 2);
+
+        // When: Two workbooks are taken and one is changed
+        try (Workbook first = pool.acquire(TEMPLATE); Workbook second = pool.acquire(TEMPLATE)) {
+            assertNotSame(first, second);
+            first.getSheetAt(0).getRow(0).getCell(0).setCellValue("changed");
+
+            // Then: The other copy still has the template content
+            assertNotEquals("changed", second.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        }
+
+        System.out.println("✓ Pooled workbooks are independent copies");
+    }
+
+    @Test
+    void testPoolIsRefilledInBackground() throws Exception {
+        // Given: A pool that has been warmed up
+        WorkbookSnapshotPool pool = new WorkbookSnapshotPool(getClass().getClassLoader(), 3);
+        assertTrue(pool.warmUp(TEMPLATE));
+
+        // Then: It fills up to its depth without any acquire
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.available(TEMPLATE) < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, pool.available(TEMPLATE));
+
+        // When: One is taken, the pool is topped up again
+        pool.acquire(TEMPLATE).close();
+        deadline = System.currentTimeMillis() + 10_000;
+        while (pool.available(TEMPLATE) < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, pool.available(TEMPLATE));
+
+        System.out.println("✓ Pool refilled in background");
+    }
+
+    @Test
+    void testUnknownTemplate() throws IOException {
+        WorkbookSnapshotPool pool = new WorkbookSnapshotPool(getClass().getClassLoader(), 1);
+
+        assertNull(pool.acquire("no_such_template.xlsx"));
+        assertFalse(pool.warmUp("no_such_template.xlsx"));
+    }
+
+    @Test
+    void testOtherResourcesAreNotTemplates() throws IOException {
+        // Given: A pool and a classpath resource that is not a template
+        WorkbookSnapshotPool pool = new WorkbookSnapshotPool(getClass().getClassLoader(), 1);
+        assertNotNull(getClass().getClassLoader().getResource("template-compression.properties"));
+
+        // When/Then: It is treated as a missing template and nothing is pooled
+        assertNull(pool.acquire("template-compression.properties"));
+        assertFalse(pool.warmUp("template-compression.properties"));
+        assertEquals(0, pool.available("template-compression.properties"));
+
+        System.out.println("✓ Non-template resources are refused");
+    }
+
+    @Test
+    void testRenderFromPooledWorkbookMatchesStreamRender() throws IOException {
+        // Given: A minor with an address and two phones
+        Person person = new Person("Pool Person", 15, "Parent Person");
+        person.setAddress(new Address("Home", "123 Main St"));
+        person.addPhone("Mobile", "+1-555-0001");
+        person.addPhone("Work", "+1-555-0002");
+        Context context = new Context();
+        context.putVar("person", person);
+
+        // When: Rendered from the pool and from the template stream
+        WorkbookSnapshotPool pool = new WorkbookSnapshotPool(getClass().getClassLoader(), 1);
+        ByteArrayOutputStream pooled = new ByteArrayOutputStream();
+        PoiTransformer transformer = PoiTransformer.createTransformer(pool.acquire(TEMPLATE));
+        transformer.setOutputStream(pooled);
+        JxlsHelper.getInstance().processTemplate(context, transformer);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        JxlsHelper.getInstance().processTemplate(
+                getClass().getClassLoader().getResourceAsStream(TEMPLATE), streamed, context);
+
+        // Then: Both outputs have the same cell content
+        try (Workbook a = new XSSFWorkbook(new ByteArrayInputStream(pooled.toByteArray()));
+             Workbook b = new XSSFWorkbook(new ByteArrayInputStream(streamed.toByteArray()))) {
+            Sheet expected = b.getSheetAt(0);
+            Sheet actual = a.getSheetAt(0);
+            assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+            for (int r = 0; r <= expected.getLastRowNum(); r++) {
+                assertEquals(String.valueOf(expected.getRow(r) == null ? null : expected.getRow(r).getCell(1)),
+                        String.valueOf(actual.getRow(r) == null ? null : actual.getRow(r).getCell(1)),
+                        "Row " + r);
+            }
+        }
+
+        System.out.println("✓ Pooled render matches stream render");
+    }
+}